@@ -104,6 +104,16 @@ public class AdapterDeploymentContext {
         return resolvedDeployment;
     }
 
+    /**
+     * Closes the deployment of single-tenant deployments. Deployments resolved by a KeycloakConfigResolver belong to the
+     * resolver, which has to close them itself.
+     */
+    public void close() {
+        if (deployment != null) {
+            deployment.close();
+        }
+    }
+
     protected KeycloakDeployment resolveUrls(KeycloakDeployment deployment, HttpFacade facade) {
         if (deployment.relativeUrls == RelativeUrlsUsed.NEVER) {
             // Absolute URI are already set to everything
@@ -119,38 +129,45 @@ public class AdapterDeploymentContext {
         if (deployment.getClient() == null) {
             throw new RuntimeException("KeycloakDeployment was never initialized through appropriate SPIs");
         }
-        HttpGet get = new HttpGet(deployment.getRealmInfoUrl());
         try {
-            HttpResponse response = deployment.getClient().execute(get);
-            int status = response.getStatusLine().getStatusCode();
-            if (status != 200) {
-                close(response);
-                throw new RuntimeException("Unable to resolve realm public key remotely, status = " + status);
-            }
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                throw new RuntimeException("Unable to resolve realm public key remotely.  There was no entity.");
+            PublishedRealmRepresentation rep = JsonSerialization.readValue(fetch(deployment, deployment.getRealmInfoUrl()), PublishedRealmRepresentation.class);
+            deployment.setRealmKey(rep.getPublicKey());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to resolve realm public key remotely", e);
+        }
+
+        // Tokens signed by keys replaced in the realm are still valid, those keys are only published in the JWKS
+        if (deployment.getJwksUrl() != null) {
+            deployment.getRealmKeyResolver().resolve(deployment);
+        }
+    }
+
+    private String fetch(KeycloakDeployment deployment, String url) throws IOException {
+        HttpGet get = new HttpGet(url);
+        HttpResponse response = deployment.getClient().execute(get);
+        int status = response.getStatusLine().getStatusCode();
+        if (status != 200) {
+            close(response);
+            throw new IOException("Unable to resolve " + url + ", status = " + status);
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("Unable to resolve " + url + ". There was no entity.");
+        }
+        InputStream is = entity.getContent();
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            int c;
+            while ((c = is.read()) != -1) {
+                os.write(c);
             }
-            InputStream is = entity.getContent();
+            return new String(os.toByteArray());
+        } finally {
             try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                int c;
-                while ((c = is.read()) != -1) {
-                    os.write(c);
-                }
-                byte[] bytes = os.toByteArray();
-                String json = new String(bytes);
-                PublishedRealmRepresentation rep = JsonSerialization.readValue(json, PublishedRealmRepresentation.class);
-                deployment.setRealmKey(rep.getPublicKey());
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException ignored) {
-
-                }
+                is.close();
+            } catch (IOException ignored) {
+
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to resolve realm public key remotely", e);
         }
     }
 
@@ -182,6 +199,11 @@ public class AdapterDeploymentContext {
             return (this.realmInfoUrl != null) ? this.realmInfoUrl : delegate.getRealmInfoUrl();
         }
 
+        @Override
+        public String getJwksUrl() {
+            return (this.jwksUrl != null) ? this.jwksUrl : delegate.getJwksUrl();
+        }
+
         @Override
         public String getTokenUrl() {
             return (this.tokenUrl != null) ? this.tokenUrl : delegate.getTokenUrl();
@@ -232,6 +254,16 @@ public class AdapterDeploymentContext {
             delegate.setRealmKey(realmKey);
         }
 
+        @Override
+        public Map<String, PublicKey> getRealmKeys() {
+            return delegate.getRealmKeys();
+        }
+
+        @Override
+        public void setRealmKeys(Map<String, PublicKey> realmKeys) {
+            delegate.setRealmKeys(realmKeys);
+        }
+
         @Override
         public void setResourceName(String resourceName) {
             delegate.setResourceName(resourceName);
@@ -456,6 +488,31 @@ public class AdapterDeploymentContext {
         public void setTurnOffChangeSessionIdOnLogin(boolean turnOffChangeSessionIdOnLogin) {
             delegate.setTurnOffChangeSessionIdOnLogin(turnOffChangeSessionIdOnLogin);
         }
+
+        @Override
+        public RealmKeyResolver getRealmKeyResolver() {
+            return delegate.getRealmKeyResolver();
+        }
+
+        @Override
+        public int getMinTimeBetweenJwksRequests() {
+            return delegate.getMinTimeBetweenJwksRequests();
+        }
+
+        @Override
+        public void setMinTimeBetweenJwksRequests(int minTimeBetweenJwksRequests) {
+            delegate.setMinTimeBetweenJwksRequests(minTimeBetweenJwksRequests);
+        }
+
+        @Override
+        public int getPublicKeyCacheTtl() {
+            return delegate.getPublicKeyCacheTtl();
+        }
+
+        @Override
+        public void setPublicKeyCacheTtl(int publicKeyCacheTtl) {
+            delegate.setPublicKeyCacheTtl(publicKeyCacheTtl);
+        }
     }
 
     protected KeycloakUriBuilder getBaseBuilder(HttpFacade facade, String base) {
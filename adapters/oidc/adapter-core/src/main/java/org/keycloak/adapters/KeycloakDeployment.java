@@ -29,6 +29,7 @@ import org.keycloak.common.util.KeycloakUriBuilder;
 
 import java.net.URI;
 import java.security.PublicKey;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,8 +44,11 @@ public class KeycloakDeployment {
     protected RelativeUrlsUsed relativeUrls;
     protected String realm;
     protected volatile PublicKey realmKey;
+    protected volatile Map<String, PublicKey> realmKeys = Collections.emptyMap();
+    protected RealmKeyResolver realmKeyResolver = new RealmKeyResolver();
     protected String authServerBaseUrl;
     protected String realmInfoUrl;
+    protected String jwksUrl;
     protected KeycloakUriBuilder authUrl;
     protected String tokenUrl;
     protected KeycloakUriBuilder logoutUrl;
@@ -75,6 +79,8 @@ public class KeycloakDeployment {
     protected boolean registerNodeAtStartup;
     protected int registerNodePeriod;
     protected boolean turnOffChangeSessionIdOnLogin;
+    protected int minTimeBetweenJwksRequests;
+    protected int publicKeyCacheTtl;
 
     protected volatile int notBefore;
 
@@ -105,6 +111,40 @@ public class KeycloakDeployment {
         this.realmKey = realmKey;
     }
 
+    /**
+     * Returns the realm key with given kid. Falls back to the realm key if the kid is null or unknown, which is the case for
+     * tokens issued before the realm had multiple keys. An unknown kid triggers a refresh of the realm keys in background.
+     */
+    public PublicKey getRealmKey(String kid) {
+        if (kid != null) {
+            PublicKey key = getRealmKeys().get(kid);
+            if (key != null) return key;
+            if (getClient() != null && getJwksUrl() != null) {
+                getRealmKeyResolver().refreshInBackground(this);
+            }
+        }
+        return getRealmKey();
+    }
+
+    public Map<String, PublicKey> getRealmKeys() {
+        return realmKeys;
+    }
+
+    public void setRealmKeys(Map<String, PublicKey> realmKeys) {
+        this.realmKeys = realmKeys;
+    }
+
+    public RealmKeyResolver getRealmKeyResolver() {
+        return realmKeyResolver;
+    }
+
+    /**
+     * Stops refreshing the realm keys in background. Called by the adapters when the application is undeployed.
+     */
+    public void close() {
+        getRealmKeyResolver().close();
+    }
+
     public String getAuthServerBaseUrl() {
         return authServerBaseUrl;
     }
@@ -138,6 +178,7 @@ public class KeycloakDeployment {
         String login = authUrlBuilder.clone().path(ServiceUrlConstants.AUTH_PATH).build(getRealm()).toString();
         authUrl = KeycloakUriBuilder.fromUri(login);
         realmInfoUrl = authUrlBuilder.clone().path(ServiceUrlConstants.REALM_INFO_PATH).build(getRealm()).toString();
+        jwksUrl = authUrlBuilder.clone().path(ServiceUrlConstants.JWKS_URL).build(getRealm()).toString();
 
         tokenUrl = authUrlBuilder.clone().path(ServiceUrlConstants.TOKEN_PATH).build(getRealm()).toString();
         logoutUrl = KeycloakUriBuilder.fromUri(authUrlBuilder.clone().path(ServiceUrlConstants.TOKEN_SERVICE_LOGOUT_PATH).build(getRealm()).toString());
@@ -154,6 +195,10 @@ public class KeycloakDeployment {
         return realmInfoUrl;
     }
 
+    public String getJwksUrl() {
+        return jwksUrl;
+    }
+
     public KeycloakUriBuilder getAuthUrl() {
         return authUrl;
     }
@@ -357,4 +402,20 @@ public class KeycloakDeployment {
     public void setTurnOffChangeSessionIdOnLogin(boolean turnOffChangeSessionIdOnLogin) {
         this.turnOffChangeSessionIdOnLogin = turnOffChangeSessionIdOnLogin;
     }
+
+    public int getMinTimeBetweenJwksRequests() {
+        return minTimeBetweenJwksRequests;
+    }
+
+    public void setMinTimeBetweenJwksRequests(int minTimeBetweenJwksRequests) {
+        this.minTimeBetweenJwksRequests = minTimeBetweenJwksRequests;
+    }
+
+    public int getPublicKeyCacheTtl() {
+        return publicKeyCacheTtl;
+    }
+
+    public void setPublicKeyCacheTtl(int publicKeyCacheTtl) {
+        this.publicKeyCacheTtl = publicKeyCacheTtl;
+    }
 }
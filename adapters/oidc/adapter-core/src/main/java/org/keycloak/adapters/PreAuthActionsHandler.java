@@ -198,7 +198,7 @@ public class PreAuthActionsHandler {
 
         try {
             JWSInput input = new JWSInput(token);
-            if (RSAProvider.verify(input, deployment.getRealmKey())) {
+            if (RSAProvider.verify(input, deployment.getRealmKey(input.getHeader().getKeyId()))) {
                 return input;
             }
         } catch (JWSInputException ignore) {
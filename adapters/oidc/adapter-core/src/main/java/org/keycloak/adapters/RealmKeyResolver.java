@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.adapters;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKParser;
+import org.keycloak.jose.jwk.RSAPublicJWK;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the realm keys from the JWKS endpoint of the realm and keeps them in the deployment.
+ *
+ * Keys are only ever replaced as a whole with an immutable map, so tokens are verified against the current keys without
+ * any locking. Apart from the initial load, keys are refreshed in background, either periodically after the public key
+ * cache TTL or when a token signed by an unknown key is seen. The latter is limited by the min time between JWKS requests,
+ * so tokens with made up key ids can't be used to flood the auth server. Requests are never blocked by a refresh, tokens
+ * signed by a new key are rejected until the refresh completed.
+ *
+ * All resolvers share a single daemon thread, which is stopped once every resolver is closed. Adapters close the resolver
+ * of their deployment when the application is undeployed.
+ */
+public class RealmKeyResolver {
+
+    private static final Logger log = Logger.getLogger(RealmKeyResolver.class);
+
+    private static ScheduledExecutorService sharedExecutor;
+    private static int sharedExecutorUsers;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> periodicRefresh;
+    private boolean closed;
+    private volatile int lastRequestTime;
+
+    /**
+     * Loads the realm keys and schedules the periodic refresh. Failures are only logged, as the realm public key is still
+     * available to verify tokens.
+     */
+    public void resolve(KeycloakDeployment deployment) {
+        refresh(deployment);
+        schedulePeriodicRefresh(deployment);
+    }
+
+    /**
+     * Refreshes the realm keys in background, unless they were requested less than min time between JWKS requests ago or
+     * are being refreshed already.
+     */
+    public void refreshInBackground(final KeycloakDeployment deployment) {
+        if (Time.currentTime() < lastRequestTime + deployment.getMinTimeBetweenJwksRequests()) {
+            return;
+        }
+        ScheduledExecutorService executor = getExecutor();
+        if (executor == null) {
+            return;
+        }
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh(deployment);
+                    } finally {
+                        refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            throw e;
+        }
+        schedulePeriodicRefresh(deployment);
+    }
+
+    /**
+     * Cancels the periodic refresh and releases the executor, which is shut down once all resolvers are closed. The keys
+     * aren't refreshed anymore after the resolver is closed.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (periodicRefresh != null) {
+            periodicRefresh.cancel(false);
+            periodicRefresh = null;
+        }
+        if (executor != null) {
+            executor = null;
+            releaseSharedExecutor();
+        }
+    }
+
+    protected void refresh(KeycloakDeployment deployment) {
+        lastRequestTime = Time.currentTime();
+        try {
+            deployment.setRealmKeys(fetchKeys(deployment));
+            log.debugv("Resolved realm keys from {0}", deployment.getJwksUrl());
+        } catch (Exception e) {
+            log.warn("Unable to resolve realm keys from " + deployment.getJwksUrl(), e);
+        }
+    }
+
+    protected synchronized void schedulePeriodicRefresh(final KeycloakDeployment deployment) {
+        int ttl = deployment.getPublicKeyCacheTtl();
+        if (ttl <= 0 || periodicRefresh != null) {
+            return;
+        }
+        ScheduledExecutorService executor = getExecutor();
+        if (executor == null) {
+            return;
+        }
+        periodicRefresh = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (refreshing.compareAndSet(false, true)) {
+                    try {
+                        refresh(deployment);
+                    } finally {
+                        refreshing.set(false);
+                    }
+                }
+            }
+        }, ttl, ttl, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the shared executor, or null if the resolver is closed
+     */
+    protected synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null && !closed) {
+            executor = acquireSharedExecutor();
+        }
+        return executor;
+    }
+
+    protected synchronized boolean isPeriodicRefreshScheduled() {
+        return periodicRefresh != null;
+    }
+
+    protected Map<String, PublicKey> fetchKeys(KeycloakDeployment deployment) throws Exception {
+        HttpGet get = new HttpGet(deployment.getJwksUrl());
+        HttpResponse response = deployment.getClient().execute(get);
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (status != 200) {
+            EntityUtils.consumeQuietly(entity);
+            throw new IOException("Unable to resolve " + deployment.getJwksUrl() + ", status = " + status);
+        }
+        if (entity == null) {
+            throw new IOException("Unable to resolve " + deployment.getJwksUrl() + ". There was no entity.");
+        }
+
+        JSONWebKeySet keySet = JsonSerialization.readValue(EntityUtils.toString(entity, "UTF-8"), JSONWebKeySet.class);
+        Map<String, PublicKey> keys = new HashMap<>();
+        if (keySet.getKeys() != null) {
+            for (JWK jwk : keySet.getKeys()) {
+                if (JWK.SIG_USE.equals(jwk.getPublicKeyUse()) && RSAPublicJWK.RSA.equals(jwk.getKeyType())) {
+                    keys.put(jwk.getKeyId(), JWKParser.create(jwk).toPublicKey());
+                }
+            }
+        }
+        return Collections.unmodifiableMap(keys);
+    }
+
+    private static synchronized ScheduledExecutorService acquireSharedExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "keycloak-realm-key-resolver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        sharedExecutorUsers++;
+        return sharedExecutor;
+    }
+
+    private static synchronized void releaseSharedExecutor() {
+        if (--sharedExecutorUsers == 0) {
+            sharedExecutor.shutdownNow();
+            sharedExecutor = null;
+        }
+    }
+
+}
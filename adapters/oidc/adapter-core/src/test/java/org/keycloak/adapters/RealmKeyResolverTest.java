@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.adapters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.common.util.Time;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RealmKeyResolverTest {
+
+    private KeycloakDeployment deployment;
+    private TestResolver resolver;
+    private PublicKey newKey;
+
+    @Before
+    public void before() throws Exception {
+        deployment = KeycloakDeploymentBuilder.build(getClass().getResourceAsStream("/keycloak.json"));
+        deployment.setPublicKeyCacheTtl(0);
+
+        newKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+        resolver = new TestResolver(Collections.singletonMap("new", newKey));
+        deployment.realmKeyResolver = resolver;
+    }
+
+    @After
+    public void after() {
+        Time.setOffset(0);
+        deployment.close();
+    }
+
+    @Test
+    public void unknownKeyRefreshedInBackground() throws Exception {
+        assertSame(deployment.getRealmKey(), deployment.getRealmKey("new"));
+
+        waitForFetches(1);
+        assertSame(newKey, deployment.getRealmKey("new"));
+        assertSame(deployment.getRealmKey(), deployment.getRealmKey(null));
+    }
+
+    @Test
+    public void minTimeBetweenRequests() throws Exception {
+        deployment.getRealmKey("unknown");
+        waitForFetches(1);
+
+        deployment.getRealmKey("unknown");
+        Thread.sleep(100);
+        assertEquals(1, resolver.fetches.get());
+
+        Time.setOffset(deployment.getMinTimeBetweenJwksRequests());
+        deployment.getRealmKey("unknown");
+        waitForFetches(2);
+    }
+
+    @Test
+    public void knownKeyNotRefreshed() throws Exception {
+        resolver.resolve(deployment);
+        assertEquals(1, resolver.fetches.get());
+
+        Time.setOffset(deployment.getMinTimeBetweenJwksRequests());
+        assertSame(newKey, deployment.getRealmKey("new"));
+        Thread.sleep(100);
+        assertEquals(1, resolver.fetches.get());
+    }
+
+    @Test
+    public void closeCancelsPeriodicRefresh() throws Exception {
+        deployment.setPublicKeyCacheTtl(60);
+        resolver.resolve(deployment);
+        assertTrue(resolver.isPeriodicRefreshScheduled());
+        ScheduledExecutorService executor = resolver.getExecutor();
+
+        deployment.close();
+        assertFalse(resolver.isPeriodicRefreshScheduled());
+        assertTrue(executor.isShutdown());
+
+        // Closed resolvers don't refresh the keys anymore
+        assertNull(resolver.getExecutor());
+        Time.setOffset(deployment.getMinTimeBetweenJwksRequests());
+        deployment.getRealmKey("unknown");
+        Thread.sleep(100);
+        assertEquals(1, resolver.fetches.get());
+    }
+
+    @Test
+    public void executorSharedUntilAllResolversClosed() throws Exception {
+        TestResolver other = new TestResolver(Collections.<String, PublicKey>emptyMap());
+        ScheduledExecutorService executor = resolver.getExecutor();
+        assertSame(executor, other.getExecutor());
+
+        other.close();
+        assertFalse(executor.isShutdown());
+
+        resolver.close();
+        assertTrue(executor.isShutdown());
+    }
+
+    private void waitForFetches(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && resolver.completed.get() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, resolver.completed.get());
+        assertEquals(expected, resolver.fetches.get());
+    }
+
+    private static class TestResolver extends RealmKeyResolver {
+
+        private final Map<String, PublicKey> keys;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private TestResolver(Map<String, PublicKey> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        protected void refresh(KeycloakDeployment deployment) {
+            super.refresh(deployment);
+            completed.incrementAndGet();
+        }
+
+        @Override
+        protected Map<String, PublicKey> fetchKeys(KeycloakDeployment deployment) {
+            fetches.incrementAndGet();
+            return keys;
+        }
+    }
+
+}
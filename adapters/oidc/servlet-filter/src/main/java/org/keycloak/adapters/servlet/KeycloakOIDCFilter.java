@@ -173,6 +173,8 @@ public class KeycloakOIDCFilter implements Filter {
 
     @Override
     public void destroy() {
-
+        if (deploymentContext != null) {
+            deploymentContext.close();
+        }
     }
 }
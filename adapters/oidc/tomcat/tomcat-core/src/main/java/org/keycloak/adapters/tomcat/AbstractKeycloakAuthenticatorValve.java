@@ -98,6 +98,9 @@ public abstract class AbstractKeycloakAuthenticatorValve extends FormAuthenticat
         if (nodesRegistrationManagement != null) {
             nodesRegistrationManagement.stop();
         }
+        if (deploymentContext != null) {
+            deploymentContext.close();
+        }
     }
 
 
@@ -178,11 +178,12 @@ public class KeycloakServletExtension implements ServletExtension {
         cookieConfig.setPath(deploymentInfo.getContextPath());
         deploymentInfo.setServletSessionConfig(cookieConfig);
         ChangeSessionId.turnOffChangeSessionIdOnLogin(deploymentInfo);
+        final AdapterDeploymentContext finalDeploymentContext = deploymentContext;
         deploymentInfo.addListener(new ListenerInfo(UndertowNodesRegistrationManagementWrapper.class, new InstanceFactory<UndertowNodesRegistrationManagementWrapper>() {
 
             @Override
             public InstanceHandle<UndertowNodesRegistrationManagementWrapper> createInstance() throws InstantiationException {
-                UndertowNodesRegistrationManagementWrapper listener = new UndertowNodesRegistrationManagementWrapper(nodesRegistrationManagement);
+                UndertowNodesRegistrationManagementWrapper listener = new UndertowNodesRegistrationManagementWrapper(nodesRegistrationManagement, finalDeploymentContext);
                 return new ImmediateInstanceHandle<UndertowNodesRegistrationManagementWrapper>(listener);
             }
 
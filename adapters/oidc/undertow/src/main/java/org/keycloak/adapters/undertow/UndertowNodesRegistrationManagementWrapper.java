@@ -20,6 +20,7 @@ package org.keycloak.adapters.undertow;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.keycloak.adapters.AdapterDeploymentContext;
 import org.keycloak.adapters.NodesRegistrationManagement;
 
 /**
@@ -28,9 +29,15 @@ import org.keycloak.adapters.NodesRegistrationManagement;
 public class UndertowNodesRegistrationManagementWrapper implements ServletContextListener {
 
     private final NodesRegistrationManagement delegate;
+    private final AdapterDeploymentContext deploymentContext;
 
     public UndertowNodesRegistrationManagementWrapper(NodesRegistrationManagement delegate) {
+        this(delegate, null);
+    }
+
+    public UndertowNodesRegistrationManagementWrapper(NodesRegistrationManagement delegate, AdapterDeploymentContext deploymentContext) {
         this.delegate = delegate;
+        this.deploymentContext = deploymentContext;
     }
 
     @Override
@@ -40,5 +47,8 @@ public class UndertowNodesRegistrationManagementWrapper implements ServletContex
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         delegate.stop();
+        if (deploymentContext != null) {
+            deploymentContext.close();
+        }
     }
 }
@@ -36,7 +36,14 @@ public class RSATokenVerifier {
     }
 
     public static AccessToken verifyToken(String tokenString, PublicKey realmKey, String realmUrl, boolean checkActive, boolean checkTokenType) throws VerificationException {
-        AccessToken token = toAccessToken(tokenString, realmKey);
+        return verifyToken(toJWSInput(tokenString), realmKey, realmUrl, checkActive, checkTokenType);
+    }
+
+    /**
+     * Verifies an already parsed token, so the key can be chosen by the kid from the token header without parsing the token twice.
+     */
+    public static AccessToken verifyToken(JWSInput input, PublicKey realmKey, String realmUrl, boolean checkActive, boolean checkTokenType) throws VerificationException {
+        AccessToken token = toAccessToken(input, realmKey);
 
         String user = token.getSubject();
         if (user == null) {
@@ -64,12 +71,10 @@ public class RSATokenVerifier {
     }
 
     public static AccessToken toAccessToken(String tokenString, PublicKey realmKey) throws VerificationException {
-        JWSInput input;
-        try {
-            input = new JWSInput(tokenString);
-        } catch (JWSInputException e) {
-            throw new VerificationException("Couldn't parse token", e);
-        }
+        return toAccessToken(toJWSInput(tokenString), realmKey);
+    }
+
+    public static AccessToken toAccessToken(JWSInput input, PublicKey realmKey) throws VerificationException {
         if (!isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
 
         AccessToken token;
@@ -81,6 +86,14 @@ public class RSATokenVerifier {
         return token;
     }
 
+    public static JWSInput toJWSInput(String tokenString) throws VerificationException {
+        try {
+            return new JWSInput(tokenString);
+        } catch (JWSInputException e) {
+            throw new VerificationException("Couldn't parse token", e);
+        }
+    }
+
     private static boolean isPublicKeyValid(JWSInput input, PublicKey realmKey) throws VerificationException {
         try {
             return RSAProvider.verify(input, realmKey);
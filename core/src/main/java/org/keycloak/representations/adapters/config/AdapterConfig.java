@@ -36,7 +36,7 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
         "client-keystore", "client-keystore-password", "client-key-password",
         "always-refresh-token",
         "register-node-at-startup", "register-node-period", "token-store", "principal-attribute",
-        "proxy-url"
+        "proxy-url", "min-time-between-jwks-requests", "public-key-cache-ttl"
 })
 public class AdapterConfig extends BaseAdapterConfig {
 
@@ -75,6 +75,20 @@ public class AdapterConfig extends BaseAdapterConfig {
     @JsonProperty("proxy-url")
     protected String proxyUrl;
 
+    /**
+     * Minimum time in seconds between requests for realm keys triggered by tokens signed with an unknown key, configurable via
+     * the adapter config property {@code min-time-between-jwks-requests}.
+     */
+    @JsonProperty("min-time-between-jwks-requests")
+    protected int minTimeBetweenJwksRequests = 10;
+
+    /**
+     * Time in seconds after which the realm keys are refreshed in background, configurable via the adapter config property
+     * {@code public-key-cache-ttl}. Keys are not refreshed periodically if it's not positive.
+     */
+    @JsonProperty("public-key-cache-ttl")
+    protected int publicKeyCacheTtl = 86400;
+
     public boolean isAllowAnyHostname() {
         return allowAnyHostname;
     }
@@ -194,4 +208,20 @@ public class AdapterConfig extends BaseAdapterConfig {
     public void setProxyUrl(String proxyUrl) {
         this.proxyUrl = proxyUrl;
     }
+
+    public int getMinTimeBetweenJwksRequests() {
+        return minTimeBetweenJwksRequests;
+    }
+
+    public void setMinTimeBetweenJwksRequests(int minTimeBetweenJwksRequests) {
+        this.minTimeBetweenJwksRequests = minTimeBetweenJwksRequests;
+    }
+
+    public int getPublicKeyCacheTtl() {
+        return publicKeyCacheTtl;
+    }
+
+    public void setPublicKeyCacheTtl(int publicKeyCacheTtl) {
+        this.publicKeyCacheTtl = publicKeyCacheTtl;
+    }
 }
@@ -37,6 +37,7 @@ public class RealmRepresentation {
     protected Integer ssoSessionIdleTimeout;
     protected Integer ssoSessionMaxLifespan;
     protected Integer offlineSessionIdleTimeout;
+    protected Integer passiveKeyLifespan;
     protected Integer accessCodeLifespan;
     protected Integer accessCodeLifespanUserAction;
     protected Integer accessCodeLifespanLogin;
@@ -260,6 +261,14 @@ public class RealmRepresentation {
         this.offlineSessionIdleTimeout = offlineSessionIdleTimeout;
     }
 
+    public Integer getPassiveKeyLifespan() {
+        return passiveKeyLifespan;
+    }
+
+    public void setPassiveKeyLifespan(Integer passiveKeyLifespan) {
+        this.passiveKeyLifespan = passiveKeyLifespan;
+    }
+
     public List<ScopeMappingRepresentation> getScopeMappings() {
         return scopeMappings;
     }
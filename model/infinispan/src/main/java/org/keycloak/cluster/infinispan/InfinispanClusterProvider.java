@@ -116,6 +116,17 @@ public class InfinispanClusterProvider implements ClusterProvider {
     }
 
 
+    @Override
+    public void notifySync(String taskKey, ClusterEvent event) {
+        // Put the value to the cache to notify listeners on all the nodes. The put is synchronous, so listeners on the other
+        // nodes have run once this returns. The event is removed right away, the cache is only used as the channel
+        cache.getAdvancedCache()
+                .withFlags(Flag.IGNORE_RETURN_VALUES, Flag.FORCE_SYNCHRONOUS)
+                .put(taskKey, event);
+        removeFromCache(taskKey);
+    }
+
+
     private String getCurrentNode(Cache<String, Serializable> cache) {
         Transport transport = cache.getCacheManager().getTransport();
         return transport==null ? "local" : transport.getAddress().toString();
@@ -17,6 +17,7 @@
 
 package org.keycloak.connections.infinispan;
 
+import org.infinispan.commons.marshall.AdvancedExternalizer;
 import org.infinispan.configuration.cache.CacheMode;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
@@ -114,6 +115,10 @@ public class DefaultInfinispanConnectionProviderFactory implements InfinispanCon
         }
         gcb.globalJmxStatistics().allowDuplicateDomains(allowDuplicateJMXDomains);
 
+        for (AdvancedExternalizer<?> externalizer : KeycloakExternalizers.getExternalizers()) {
+            gcb.serialization().addAdvancedExternalizer(externalizer);
+        }
+
         cacheManager = new DefaultCacheManager(gcb.build());
         containerManaged = false;
 
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.infinispan;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+/**
+ * Externalizers of the entities stored in Keycloak caches. The ids must never change, as they are written to the stream
+ * instead of the class names. They are above the ranges reserved by Infinispan and its modules.
+ */
+public class KeycloakExternalizers {
+
+    public static final int USER_SESSION_ENTITY = 65536;
+    public static final int CLIENT_SESSION_ENTITY = 65537;
+    public static final int LOGIN_FAILURE_ENTITY = 65538;
+    public static final int LOGIN_FAILURE_KEY = 65539;
+
+    public static List<AdvancedExternalizer<?>> getExternalizers() {
+        return Arrays.<AdvancedExternalizer<?>>asList(
+                new UserSessionEntity.ExternalizerImpl(),
+                new ClientSessionEntity.ExternalizerImpl(),
+                new LoginFailureEntity.ExternalizerImpl(),
+                new LoginFailureKey.ExternalizerImpl()
+        );
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.infinispan;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact encodings shared by the externalizers of the session entities. Sizes and ints are varints, strings are written
+ * with a one byte null marker, enums by name, collections and maps with size + 1 (0 for null).
+ */
+public class KeycloakMarshallUtil {
+
+    private static final int STRING_NULL = 0;
+    private static final int STRING_UTF = 1;
+    private static final int STRING_LONG = 2;
+
+    // writeUTF is limited to 65535 bytes of modified UTF-8, which is never more than 3 bytes per char
+    private static final int MAX_UTF_CHARS = 65535 / 3;
+
+    public static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeString(ObjectOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(STRING_NULL);
+        } else if (value.length() <= MAX_UTF_CHARS) {
+            out.writeByte(STRING_UTF);
+            out.writeUTF(value);
+        } else {
+            out.writeByte(STRING_LONG);
+            out.writeObject(value);
+        }
+    }
+
+    public static String readString(ObjectInput in) throws IOException, ClassNotFoundException {
+        switch (in.readByte()) {
+            case STRING_NULL:
+                return null;
+            case STRING_UTF:
+                return in.readUTF();
+            case STRING_LONG:
+                return (String) in.readObject();
+            default:
+                throw new IOException("Invalid string marker");
+        }
+    }
+
+    public static void writeLong(ObjectOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeLong(value);
+    }
+
+    public static Long readLong(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * Enums are written by name, so adding or reordering constants doesn't break nodes running another version
+     */
+    public static <E extends Enum<E>> void writeEnum(ObjectOutput out, E value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    public static <E extends Enum<E>> E readEnum(ObjectInput in, Class<E> type) throws IOException, ClassNotFoundException {
+        String name = readString(in);
+        if (name == null) return null;
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid constant " + name + " of " + type.getName());
+        }
+    }
+
+    public static void writeStrings(ObjectOutput out, Collection<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * @return size of the written collection, -1 for null
+     */
+    public static int readSize(ObjectInput in) throws IOException {
+        return readVarInt(in) - 1;
+    }
+
+    public static Set<String> readStringSet(ObjectInput in) throws IOException, ClassNotFoundException {
+        int size = readSize(in);
+        if (size < 0) return null;
+        Set<String> values = new HashSet<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    public static void writeStringMap(ObjectOutput out, Map<String, String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, String> readStringMap(ObjectInput in) throws IOException, ClassNotFoundException {
+        int size = readSize(in);
+        if (size < 0) return null;
+        Map<String, String> values = new HashMap<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            values.put(key, readString(in));
+        }
+        return values;
+    }
+
+    private static int capacity(int size) {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+}
@@ -1,18 +1,26 @@
 package org.keycloak.models.cache.infinispan;
 
 import org.infinispan.Cache;
+import org.infinispan.context.Flag;
 import org.infinispan.notifications.cachelistener.annotation.CacheEntriesEvicted;
 import org.infinispan.notifications.cachelistener.annotation.CacheEntryInvalidated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
 import org.infinispan.notifications.cachelistener.event.CacheEntriesEvictedEvent;
 import org.infinispan.notifications.cachelistener.event.CacheEntryInvalidatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
 import org.jboss.logging.Logger;
+import org.keycloak.cluster.ClusterEvent;
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.cache.infinispan.entities.AbstractRevisioned;
 import org.keycloak.models.cache.infinispan.entities.Revisioned;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.Predicate;
 
 /**
@@ -24,10 +32,13 @@ public abstract class CacheManager {
     protected final Cache<String, Long> revisions;
     protected final Cache<String, Revisioned> cache;
     protected final UpdateCounter counter = new UpdateCounter();
+    protected final String nodeId = UUID.randomUUID().toString();
+    protected final CacheMemoryAccounting memoryAccounting;
 
-    public CacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions) {
+    public CacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions, CacheMemoryAccounting memoryAccounting) {
         this.cache = cache;
         this.revisions = revisions;
+        this.memoryAccounting = memoryAccounting;
         this.cache.addListener(this);
     }
 
@@ -35,6 +46,10 @@ public abstract class CacheManager {
         return cache;
     }
 
+    public CacheMemoryAccounting getMemoryAccounting() {
+        return memoryAccounting;
+    }
+
     public long getCurrentCounter() {
         return counter.current();
     }
@@ -51,6 +66,14 @@ public abstract class CacheManager {
         return revision;
     }
 
+    /**
+     * @return true if the revision of given key was bumped above given revision
+     */
+    public boolean isRevisionNewer(String id, long revision) {
+        Long current = revisions.get(id);
+        return current != null && current > revision;
+    }
+
     public void endRevisionBatch() {
         try {
             revisions.endBatch(true);
@@ -74,6 +97,7 @@ public abstract class CacheManager {
             RealmCacheManager.logger.tracev("get() rev: {0} o.rev: {1}", rev.longValue(), oRev);
             return null;
         }
+        if (memoryAccounting.isLimited()) memoryAccounting.accessed(id);
         return o != null && type.isInstance(o) ? type.cast(o) : null;
     }
 
@@ -86,11 +110,61 @@ public abstract class CacheManager {
         return removed;
     }
 
+    /**
+     * Invalidates all the keys on this node and sends them to the other cluster nodes in one {@link CacheInvalidationEvent}
+     * instead of an invalidation message per key.  Falls back to {@link #invalidateObject(String)} if there is no cluster provider.
+     */
+    public void invalidateObjects(KeycloakSession session, Set<String> ids) {
+        if (ids.isEmpty()) return;
+        ClusterProvider cluster = session.getProvider(ClusterProvider.class);
+        if (cluster == null) {
+            for (String id : ids) {
+                invalidateObject(id);
+            }
+            return;
+        }
+        for (String id : ids) {
+            cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL, Flag.IGNORE_RETURN_VALUES).remove(id);
+        }
+        bumpVersions(ids);
+        cluster.notifySync(getInvalidationEventKey(), new CacheInvalidationEvent(nodeId, ids));
+    }
+
+    /**
+     * Applies invalidations sent by another node.  Cascading evictions of all removed objects are done in a single pass over the cache.
+     */
+    public void invalidationEventReceived(ClusterEvent event) {
+        if (!(event instanceof CacheInvalidationEvent)) return;
+        CacheInvalidationEvent invalidationEvent = (CacheInvalidationEvent) event;
+        if (nodeId.equals(invalidationEvent.getSender())) return;
+
+        logger.tracev("received invalidation event: {0}", invalidationEvent);
+        Predicate<Map.Entry<String, Revisioned>> evictions = null;
+        bumpVersions(invalidationEvent.getInvalidations());
+        for (String id : invalidationEvent.getInvalidations()) {
+            Object removed = cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL).remove(id);
+            if (removed == null) continue;
+            Predicate<Map.Entry<String, Revisioned>> predicate = getInvalidationPredicate(removed);
+            if (predicate != null) evictions = evictions == null ? predicate : evictions.or(predicate);
+        }
+        if (evictions != null) runEvictions(evictions);
+    }
+
     protected void bumpVersion(String id) {
         long next = counter.next();
         Object rev = revisions.put(id, next);
     }
 
+    /**
+     * Bumps the revisions of all given ids.  Subclasses override this to update derived state once per invalidation set
+     * rather than once per id
+     */
+    protected void bumpVersions(Collection<String> ids) {
+        for (String id : ids) {
+            bumpVersion(id);
+        }
+    }
+
     public void addRevisioned(Revisioned object, long startupRevision) {
         //startRevisionBatch();
         String id = object.getId();
@@ -121,6 +195,7 @@ public abstract class CacheManager {
             if (rev.equals(object.getRevision())) {
                 if (id.endsWith("realm.clients")) RealmCacheManager.logger.tracev("adding Object.revision {0} rev {1}", object.getRevision(), rev);
                 cache.putForExternalRead(id, object);
+                weigh(id, object);
                 return;
             }
             if (rev > object.getRevision()) { // revision is ahead, don't cache
@@ -131,14 +206,33 @@ public abstract class CacheManager {
             if (id.endsWith("realm.clients")) RealmCacheManager.logger.tracev("adding Object.revision {0} rev {1}", object.getRevision(), rev);
             revisions.put(id, object.getRevision());
             cache.putForExternalRead(id, object);
+            weigh(id, object);
         } finally {
             endRevisionBatch();
         }
 
     }
 
+    /**
+     * Accounts the added entry, so the weight per realm is shown in the server info, and evicts entries of the same realm
+     * (or of the heaviest realm) if any weight limit is exceeded
+     */
+    protected void weigh(String id, Revisioned object) {
+        // putForExternalRead() is a no-op if there is an entry already or the key is locked
+        if (cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL).get(id) != object) return;
+        memoryAccounting.added(id, object);
+        if (!memoryAccounting.isLimited()) return;
+        Collection<String> evictions = memoryAccounting.getEvictions(CacheMemoryAccounting.getRealm(object), CacheMemoryAccounting.EntryType.of(object));
+        bumpVersions(evictions);
+        for (String key : evictions) {
+            logger.tracev("evicting overweight entry: {0}", key);
+            cache.evict(key);
+        }
+    }
+
     public void clear() {
         cache.clear();
+        memoryAccounting.clear();
     }
 
     public void addInvalidations(Predicate<Map.Entry<String, Revisioned>> predicate, Set<String> invalidations) {
@@ -155,6 +249,11 @@ public abstract class CacheManager {
                 .filter(predicate).iterator();
     }
 
+    @CacheEntryRemoved
+    public void cacheRemoved(CacheEntryRemovedEvent<String, Object> event) {
+        if (!event.isPre()) memoryAccounting.removed(event.getKey());
+    }
+
     @CacheEntryInvalidated
     public void cacheInvalidated(CacheEntryInvalidatedEvent<String, Object> event) {
         if (event.isPre()) {
@@ -171,6 +270,7 @@ public abstract class CacheManager {
         } else {
         //if (!event.isPre()) {
             String key = event.getKey();
+            memoryAccounting.removed(key);
             if (key.startsWith("invalidation.key")) {
                 // if you do cache.remove() on node 1 and the entry doesn't exist on node 2, node 2 never receives a invalidation event
                 // so, we do this to force this.
@@ -192,10 +292,13 @@ public abstract class CacheManager {
 
     @CacheEntriesEvicted
     public void cacheEvicted(CacheEntriesEvictedEvent<String, Object> event) {
+        if (!event.isPre()) {
+            bumpVersions(event.getEntries().keySet());
+        }
         if (!event.isPre())
         for (Map.Entry<String, Object> entry : event.getEntries().entrySet()) {
+            memoryAccounting.removed(entry.getKey());
             Object object = entry.getValue();
-            bumpVersion(entry.getKey());
             if (object == null) continue;
             RealmCacheManager.logger.tracev("evicting: {0}" + object.getClass().getName());
             Predicate<Map.Entry<String, Revisioned>> predicate = getInvalidationPredicate(object);
@@ -207,11 +310,16 @@ public abstract class CacheManager {
         Set<String> evictions = new HashSet<>();
         addInvalidations(current, evictions);
         RealmCacheManager.logger.tracev("running evictions size: {0}", evictions.size());
+        bumpVersions(evictions);
         for (String key : evictions) {
             cache.evict(key);
-            bumpVersion(key);
         }
     }
 
     protected abstract Predicate<Map.Entry<String, Revisioned>> getInvalidationPredicate(Object object);
+
+    /**
+     * Key under which {@link CacheInvalidationEvent}s of this cache are sent through the {@link ClusterProvider}
+     */
+    public abstract String getInvalidationEventKey();
 }
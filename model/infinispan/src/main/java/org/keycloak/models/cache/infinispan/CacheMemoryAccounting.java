@@ -0,0 +1,329 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.keycloak.Config;
+import org.keycloak.models.cache.infinispan.entities.CachedClient;
+import org.keycloak.models.cache.infinispan.entities.CachedClientTemplate;
+import org.keycloak.models.cache.infinispan.entities.CachedGroup;
+import org.keycloak.models.cache.infinispan.entities.CachedRealm;
+import org.keycloak.models.cache.infinispan.entities.CachedRole;
+import org.keycloak.models.cache.infinispan.entities.CachedUser;
+import org.keycloak.models.cache.infinispan.entities.InRealm;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the estimated retained size (weight) of cache entries per realm and entry type and picks entries to evict once
+ * the configured limits are exceeded.  Entries are always evicted from the realm that exceeds its limit, or from the
+ * heaviest realm if the total limit is exceeded, so one large realm can't push the entries of other realms out of the cache.
+ * Within a realm the least recently used of the oldest entries is evicted first.  It's an approximation, so reading an
+ * entry only updates its access time and doesn't need a lock.
+ *
+ * Limits are in bytes, -1 means unlimited:
+ * <ul>
+ *     <li>maxWeight - total weight of the cache</li>
+ *     <li>maxRealmWeight - weight of the entries of a single realm</li>
+ *     <li>entryTypeMaxWeight.[realm|client|clientTemplate|role|group|user|query] - weight of the entries of given type within a single realm</li>
+ * </ul>
+ */
+public class CacheMemoryAccounting {
+
+    public static final String NO_REALM = "none";
+
+    // Count of the oldest entries of a realm and type, from which the least recently used one is evicted
+    private static final int EVICTION_SAMPLES = 16;
+
+    public enum EntryType {
+        REALM("realm"), CLIENT("client"), CLIENT_TEMPLATE("clientTemplate"), ROLE("role"), GROUP("group"), USER("user"), QUERY("query");
+
+        private final String configName;
+
+        EntryType(String configName) {
+            this.configName = configName;
+        }
+
+        public String getConfigName() {
+            return configName;
+        }
+
+        public static EntryType of(Revisioned object) {
+            if (object instanceof CachedRealm) return REALM;
+            if (object instanceof CachedClient) return CLIENT;
+            if (object instanceof CachedClientTemplate) return CLIENT_TEMPLATE;
+            if (object instanceof CachedRole) return ROLE;
+            if (object instanceof CachedGroup) return GROUP;
+            if (object instanceof CachedUser) return USER;
+            return QUERY;
+        }
+    }
+
+    private static class Weight {
+        private final String realm;
+        private final EntryType type;
+        private final long weight;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Weight(String realm, EntryType type, long weight) {
+            this.realm = realm;
+            this.type = type;
+            this.weight = weight;
+        }
+    }
+
+    private static class RealmUsage {
+        private long weight;
+        private final Map<EntryType, Long> typeWeights = new EnumMap<>(EntryType.class);
+        private final Map<EntryType, LinkedHashSet<String>> keys = new EnumMap<>(EntryType.class);
+
+        private long getTypeWeight(EntryType type) {
+            Long w = typeWeights.get(type);
+            return w != null ? w : 0L;
+        }
+
+        private int getEntries() {
+            int count = 0;
+            for (LinkedHashSet<String> k : keys.values()) count += k.size();
+            return count;
+        }
+
+        private EntryType getHeaviestType() {
+            EntryType heaviest = null;
+            for (EntryType type : keys.keySet()) {
+                if (keys.get(type).isEmpty()) continue;
+                if (heaviest == null || getTypeWeight(type) > getTypeWeight(heaviest)) heaviest = type;
+            }
+            return heaviest;
+        }
+    }
+
+    private final long maxWeight;
+    private final long maxRealmWeight;
+    private final Map<EntryType, Long> maxTypeWeights = new EnumMap<>(EntryType.class);
+
+    private final ConcurrentMap<String, Weight> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RealmUsage> realms = new ConcurrentHashMap<>();
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    public CacheMemoryAccounting(long maxWeight, long maxRealmWeight, Map<EntryType, Long> maxTypeWeights) {
+        this.maxWeight = maxWeight;
+        this.maxRealmWeight = maxRealmWeight;
+        this.maxTypeWeights.putAll(maxTypeWeights);
+    }
+
+    public static CacheMemoryAccounting create(Config.Scope config) {
+        if (config == null) return new CacheMemoryAccounting(-1, -1, new EnumMap<>(EntryType.class));
+        Map<EntryType, Long> typeWeights = new EnumMap<>(EntryType.class);
+        Config.Scope typeConfig = config.scope("entryTypeMaxWeight");
+        for (EntryType type : EntryType.values()) {
+            Long max = typeConfig.getLong(type.getConfigName());
+            if (max != null) typeWeights.put(type, max);
+        }
+        return new CacheMemoryAccounting(config.getLong("maxWeight", -1L), config.getLong("maxRealmWeight", -1L), typeWeights);
+    }
+
+    public static String getRealm(Revisioned object) {
+        if (object instanceof CachedRealm) return object.getId();
+        if (object instanceof InRealm) return ((InRealm) object).getRealm();
+        return NO_REALM;
+    }
+
+    public boolean isLimited() {
+        return maxWeight > 0 || maxRealmWeight > 0 || !maxTypeWeights.isEmpty();
+    }
+
+    public long getTotalWeight() {
+        return totalWeight.get();
+    }
+
+    public void added(String key, Revisioned object) {
+        String realm = getRealm(object);
+        Weight weight = new Weight(realm, EntryType.of(object), RevisionedSizeEstimator.estimate(object));
+        Weight previous = entries.put(key, weight);
+        if (previous != null) release(key, previous);
+
+        while (true) {
+            RealmUsage usage = realms.computeIfAbsent(realm, r -> new RealmUsage());
+            synchronized (usage) {
+                // The usage was removed by release() of the last entry of the realm in the meantime
+                if (realms.get(realm) != usage) continue;
+                usage.weight += weight.weight;
+                usage.typeWeights.put(weight.type, usage.getTypeWeight(weight.type) + weight.weight);
+                usage.keys.computeIfAbsent(weight.type, t -> new LinkedHashSet<>()).add(key);
+            }
+            break;
+        }
+        totalWeight.addAndGet(weight.weight);
+    }
+
+    /**
+     * Marks the entry as most recently used, so it's evicted after the other sampled entries of the same type and realm
+     */
+    public void accessed(String key) {
+        Weight weight = entries.get(key);
+        if (weight != null) weight.lastAccess = System.nanoTime();
+    }
+
+    public void removed(String key) {
+        Weight weight = entries.remove(key);
+        if (weight != null) release(key, weight);
+    }
+
+    private void release(String key, Weight weight) {
+        RealmUsage usage = realms.get(weight.realm);
+        if (usage != null) {
+            synchronized (usage) {
+                usage.weight -= weight.weight;
+                usage.typeWeights.put(weight.type, usage.getTypeWeight(weight.type) - weight.weight);
+                LinkedHashSet<String> keys = usage.keys.get(weight.type);
+                if (keys != null) keys.remove(key);
+                if (usage.getEntries() == 0) realms.remove(weight.realm, usage);
+            }
+        }
+        totalWeight.addAndGet(-weight.weight);
+    }
+
+    public int getRealmCount() {
+        return realms.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        realms.clear();
+        totalWeight.set(0);
+    }
+
+    /**
+     * Returns the keys which need to be evicted so all limits are satisfied again after an entry was added to given realm.
+     * Returned keys are already released from the accounting.
+     */
+    public List<String> getEvictions(String realm, EntryType type) {
+        List<String> evictions = new LinkedList<>();
+        if (!isLimited()) return evictions;
+
+        RealmUsage usage = realms.get(realm);
+        if (usage != null) {
+            Long maxTypeWeight = maxTypeWeights.get(type);
+            while (maxTypeWeight != null && maxTypeWeight >= 0 && getTypeWeight(usage, type) > maxTypeWeight) {
+                if (!evictLeastRecentlyUsed(usage, type, evictions)) break;
+            }
+            while (maxRealmWeight >= 0 && getWeight(usage) > maxRealmWeight) {
+                if (!evictLeastRecentlyUsed(usage, null, evictions)) break;
+            }
+        }
+        while (maxWeight >= 0 && totalWeight.get() > maxWeight) {
+            RealmUsage heaviest = getHeaviestRealm();
+            if (heaviest == null || !evictLeastRecentlyUsed(heaviest, null, evictions)) break;
+        }
+        return evictions;
+    }
+
+    private long getWeight(RealmUsage usage) {
+        synchronized (usage) {
+            return usage.weight;
+        }
+    }
+
+    private long getTypeWeight(RealmUsage usage, EntryType type) {
+        synchronized (usage) {
+            return usage.getTypeWeight(type);
+        }
+    }
+
+    private RealmUsage getHeaviestRealm() {
+        RealmUsage heaviest = null;
+        long heaviestWeight = 0;
+        for (RealmUsage usage : realms.values()) {
+            long weight = getWeight(usage);
+            if (weight > heaviestWeight) {
+                heaviest = usage;
+                heaviestWeight = weight;
+            }
+        }
+        return heaviest;
+    }
+
+    private boolean evictLeastRecentlyUsed(RealmUsage usage, EntryType type, List<String> evictions) {
+        String key;
+        synchronized (usage) {
+            EntryType evictedType = type != null ? type : usage.getHeaviestType();
+            if (evictedType == null) return false;
+            LinkedHashSet<String> keys = usage.keys.get(evictedType);
+            if (keys == null || keys.isEmpty()) return false;
+            key = getLeastRecentlyUsed(keys);
+        }
+        removed(key);
+        evictions.add(key);
+        return true;
+    }
+
+    private String getLeastRecentlyUsed(LinkedHashSet<String> keys) {
+        String leastRecentlyUsed = null;
+        long oldestAccess = Long.MAX_VALUE;
+        Iterator<String> it = keys.iterator();
+        for (int i = 0; i < EVICTION_SAMPLES && it.hasNext(); i++) {
+            String key = it.next();
+            Weight weight = entries.get(key);
+            if (weight == null) return key;
+            // nanoTime values may only be compared by their difference
+            if (leastRecentlyUsed == null || weight.lastAccess - oldestAccess < 0) {
+                leastRecentlyUsed = key;
+                oldestAccess = weight.lastAccess;
+            }
+        }
+        return leastRecentlyUsed;
+    }
+
+    /**
+     * Weight and entry counts per realm, keyed by realm id, suitable for the server info page
+     */
+    public Map<String, String> getOperationalInfo() {
+        Map<String, String> info = new TreeMap<>();
+        info.put("totalWeight", Long.toString(totalWeight.get()));
+        info.put("totalEntries", Integer.toString(entries.size()));
+        if (maxWeight >= 0) info.put("maxWeight", Long.toString(maxWeight));
+        if (maxRealmWeight >= 0) info.put("maxRealmWeight", Long.toString(maxRealmWeight));
+        for (Map.Entry<EntryType, Long> max : maxTypeWeights.entrySet()) {
+            info.put("entryTypeMaxWeight." + max.getKey().getConfigName(), Long.toString(max.getValue()));
+        }
+        for (Map.Entry<String, RealmUsage> realm : realms.entrySet()) {
+            RealmUsage usage = realm.getValue();
+            synchronized (usage) {
+                if (usage.weight == 0) continue;
+                String prefix = "realm." + realm.getKey() + ".";
+                info.put(prefix + "weight", Long.toString(usage.weight));
+                info.put(prefix + "entries", Integer.toString(usage.getEntries()));
+                for (Map.Entry<EntryType, Long> typeWeight : usage.typeWeights.entrySet()) {
+                    if (typeWeight.getValue() == 0) continue;
+                    info.put(prefix + typeWeight.getKey().getConfigName() + ".weight", Long.toString(typeWeight.getValue()));
+                }
+            }
+        }
+        return info;
+    }
+}
@@ -20,23 +20,30 @@ package org.keycloak.models.cache.infinispan;
 import org.infinispan.Cache;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.cluster.ClusterProvider;
 import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.cache.CacheRealmProvider;
 import org.keycloak.models.cache.CacheRealmProviderFactory;
 import org.keycloak.models.cache.infinispan.entities.Revisioned;
+import org.keycloak.provider.ServerInfoAwareProviderFactory;
+
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class InfinispanCacheRealmProviderFactory implements CacheRealmProviderFactory {
+public class InfinispanCacheRealmProviderFactory implements CacheRealmProviderFactory, ServerInfoAwareProviderFactory {
 
     private static final Logger log = Logger.getLogger(InfinispanCacheRealmProviderFactory.class);
 
     protected volatile RealmCacheManager realmCache;
 
+    protected Config.Scope config;
+
     @Override
     public CacheRealmProvider create(KeycloakSession session) {
         lazyInit(session);
@@ -49,7 +56,12 @@ public class InfinispanCacheRealmProviderFactory implements CacheRealmProviderFa
                 if (realmCache == null) {
                     Cache<String, Revisioned> cache = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.REALM_CACHE_NAME);
                     Cache<String, Long> revisions = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.VERSION_CACHE_NAME);
-                    realmCache = new RealmCacheManager(cache, revisions);
+                    realmCache = new RealmCacheManager(cache, revisions, CacheMemoryAccounting.create(config));
+
+                    ClusterProvider cluster = session.getProvider(ClusterProvider.class);
+                    if (cluster != null) {
+                        cluster.registerListener(RealmCacheManager.INVALIDATION_EVENTS, realmCache::invalidationEventReceived);
+                    }
                 }
             }
         }
@@ -57,6 +69,7 @@ public class InfinispanCacheRealmProviderFactory implements CacheRealmProviderFa
 
     @Override
     public void init(Config.Scope config) {
+        this.config = config;
     }
 
     @Override
@@ -73,4 +86,11 @@ public class InfinispanCacheRealmProviderFactory implements CacheRealmProviderFa
         return "default";
     }
 
+    @Override
+    public Map<String, String> getOperationalInfo() {
+        RealmCacheManager cacheManager = realmCache;
+        if (cacheManager == null) return Collections.emptyMap();
+        return cacheManager.getMemoryAccounting().getOperationalInfo();
+    }
+
 }
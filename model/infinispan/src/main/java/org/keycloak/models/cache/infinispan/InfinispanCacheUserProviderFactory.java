@@ -23,6 +23,7 @@ import org.infinispan.notifications.cachelistener.annotation.*;
 import org.infinispan.notifications.cachelistener.event.*;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.cluster.ClusterProvider;
 import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
@@ -30,18 +31,23 @@ import org.keycloak.models.cache.CacheUserProvider;
 import org.keycloak.models.cache.CacheUserProviderFactory;
 import org.keycloak.models.cache.infinispan.entities.CachedUser;
 import org.keycloak.models.cache.infinispan.entities.Revisioned;
+import org.keycloak.provider.ServerInfoAwareProviderFactory;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class InfinispanCacheUserProviderFactory implements CacheUserProviderFactory {
+public class InfinispanCacheUserProviderFactory implements CacheUserProviderFactory, ServerInfoAwareProviderFactory {
 
     private static final Logger log = Logger.getLogger(InfinispanCacheUserProviderFactory.class);
 
     protected volatile UserCacheManager userCache;
 
+    protected Config.Scope config;
+
 
 
     @Override
@@ -56,7 +62,12 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
                 if (userCache == null) {
                     Cache<String, Revisioned> cache = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.USER_CACHE_NAME);
                     Cache<String, Long> revisions = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.VERSION_CACHE_NAME);
-                    userCache = new UserCacheManager(cache, revisions);
+                    userCache = new UserCacheManager(cache, revisions, CacheMemoryAccounting.create(config));
+
+                    ClusterProvider cluster = session.getProvider(ClusterProvider.class);
+                    if (cluster != null) {
+                        cluster.registerListener(UserCacheManager.INVALIDATION_EVENTS, userCache::invalidationEventReceived);
+                    }
                 }
             }
         }
@@ -64,6 +75,7 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
 
     @Override
     public void init(Config.Scope config) {
+        this.config = config;
     }
 
     @Override
@@ -80,5 +92,12 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
         return "default";
     }
 
+    @Override
+    public Map<String, String> getOperationalInfo() {
+        UserCacheManager cacheManager = userCache;
+        if (cacheManager == null) return Collections.emptyMap();
+        return cacheManager.getMemoryAccounting().getOperationalInfo();
+    }
+
 
 }
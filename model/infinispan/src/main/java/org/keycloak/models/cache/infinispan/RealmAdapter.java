@@ -443,6 +443,12 @@ public class RealmAdapter implements RealmModel {
         setPublicKeyPem(publicKeyPem);
     }
 
+    @Override
+    public String getKeyId() {
+        if (isUpdated()) return updated.getKeyId();
+        return cached.getKeyId();
+    }
+
     @Override
     public X509Certificate getCertificate() {
         if (isUpdated()) return updated.getCertificate();
@@ -494,6 +500,42 @@ public class RealmAdapter implements RealmModel {
         setPrivateKeyPem(privateKeyPem);
     }
 
+    @Override
+    public List<RealmKeyModel> getPassiveKeys() {
+        if (isUpdated()) return updated.getPassiveKeys();
+        return new LinkedList<>(cached.getPassiveKeys());
+    }
+
+    @Override
+    public void addPassiveKey(RealmKeyModel key) {
+        getDelegateForUpdate();
+        updated.addPassiveKey(key);
+    }
+
+    @Override
+    public void removePassiveKey(String kid) {
+        getDelegateForUpdate();
+        updated.removePassiveKey(kid);
+    }
+
+    @Override
+    public PublicKey getPassivePublicKey(String kid) {
+        if (isUpdated()) return updated.getPassivePublicKey(kid);
+        return cached.getPassivePublicKey(kid);
+    }
+
+    @Override
+    public int getPassiveKeyLifespan() {
+        if (isUpdated()) return updated.getPassiveKeyLifespan();
+        return cached.getPassiveKeyLifespan();
+    }
+
+    @Override
+    public void setPassiveKeyLifespan(int seconds) {
+        getDelegateForUpdate();
+        updated.setPassiveKeyLifespan(seconds);
+    }
+
     @Override
     public String getCodeSecret() {
         return isUpdated() ? updated.getCodeSecret() : cached.getCodeSecret();
@@ -34,8 +34,14 @@ import org.keycloak.models.cache.infinispan.stream.InClientPredicate;
 import org.keycloak.models.cache.infinispan.stream.InRealmPredicate;
 import org.keycloak.models.cache.infinispan.stream.RealmQueryPredicate;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 
 /**
@@ -46,10 +52,84 @@ public class RealmCacheManager extends CacheManager {
 
     protected static final Logger logger = Logger.getLogger(RealmCacheManager.class);
 
-    public RealmCacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions) {
-        super(cache, revisions);
+    public static final String INVALIDATION_EVENTS = "realm-cache-invalidations";
+
+    protected final ConcurrentMap<String, RealmCacheSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    public RealmCacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions, CacheMemoryAccounting memoryAccounting) {
+        super(cache, revisions, memoryAccounting);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        snapshots.clear();
+    }
+
+    /**
+     * Returns the current snapshot of the realm.  Never null, an empty snapshot is returned if nothing was published yet.
+     */
+    public RealmCacheSnapshot getSnapshot(String realmId) {
+        RealmCacheSnapshot snapshot = snapshots.get(realmId);
+        return snapshot != null ? snapshot : new RealmCacheSnapshot(realmId);
+    }
+
+    /**
+     * Adds entries and role closures to the realm snapshot.  Entries are re-checked against the revisions cache so that an
+     * entry invalidated after it was read is never published.  Role closures are only published if no role left the snapshot
+     * since the closure was computed and all of the roles it contains are part of the new snapshot.
+     */
+    public void publishSnapshot(String realmId, Map<String, Revisioned> added, long rolesVersion, Map<String, Set<String>> closures) {
+        snapshots.compute(realmId, (key, current) -> {
+            RealmCacheSnapshot base = current != null ? current : new RealmCacheSnapshot(realmId);
+            Map<String, Revisioned> accepted = new HashMap<>();
+            for (Map.Entry<String, Revisioned> entry : added.entrySet()) {
+                Long rev = revisions.get(entry.getKey());
+                Long entryRev = entry.getValue().getRevision();
+                if (rev != null && entryRev != null && rev <= entryRev) {
+                    accepted.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Map<String, Set<String>> acceptedClosures = new HashMap<>();
+            if (base.getRolesVersion() == rolesVersion) {
+                for (Map.Entry<String, Set<String>> closure : closures.entrySet()) {
+                    boolean complete = true;
+                    for (String roleId : closure.getValue()) {
+                        if (!base.contains(roleId) && !accepted.containsKey(roleId)) {
+                            complete = false;
+                            break;
+                        }
+                    }
+                    if (complete) acceptedClosures.put(closure.getKey(), closure.getValue());
+                }
+            }
+            RealmCacheSnapshot snapshot = base.with(accepted, acceptedClosures);
+            return snapshot.size() == 0 ? null : snapshot;
+        });
     }
 
+    @Override
+    protected void bumpVersion(String id) {
+        bumpVersions(Collections.singleton(id));
+    }
+
+    @Override
+    protected void bumpVersions(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        for (String id : ids) {
+            super.bumpVersion(id);
+        }
+        // Revisions are already bumped, so a concurrent publish can't re-add the stale entries after they are dropped here.
+        // All ids are dropped from a snapshot with a single copy
+        Set<String> removed = ids instanceof Set ? (Set<String>) ids : new HashSet<>(ids);
+        for (String realmId : snapshots.keySet()) {
+            if (removed.contains(realmId)) {
+                snapshots.remove(realmId);
+            } else {
+                snapshots.computeIfPresent(realmId, (key, snapshot) -> snapshot.without(removed));
+            }
+        }
+    }
 
     public void realmInvalidation(String id, Set<String> invalidations) {
         Predicate<Map.Entry<String, Revisioned>> predicate = getRealmInvalidationPredicate(id);
@@ -138,6 +218,11 @@ public class RealmCacheManager extends CacheManager {
         return getRoleInvalidationPredicate(id);
     }
 
+    @Override
+    public String getInvalidationEventKey() {
+        return INVALIDATION_EVENTS;
+    }
+
     @Override
     protected Predicate<Map.Entry<String, Revisioned>> getInvalidationPredicate(Object object) {
         if (object instanceof CachedRealm) {
@@ -36,7 +36,9 @@ import org.keycloak.models.cache.infinispan.entities.CachedRealm;
 import org.keycloak.models.cache.infinispan.entities.CachedRealmRole;
 import org.keycloak.models.cache.infinispan.entities.CachedRole;
 import org.keycloak.models.cache.infinispan.entities.ClientListQuery;
+import org.keycloak.models.cache.infinispan.entities.InRealm;
 import org.keycloak.models.cache.infinispan.entities.RealmListQuery;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
 import org.keycloak.models.cache.infinispan.entities.RoleListQuery;
 import org.keycloak.models.utils.KeycloakModelUtils;
 
@@ -99,6 +101,13 @@ import java.util.Set;
  * - roles are tricky because of composites.  Composite lists are cached too.  So, when a role is removed
  * we also iterate and invalidate any role or group that contains that role being removed.
  *
+ * Realm snapshots:
+ * - Validated cache entries of a realm are also published into an immutable per-realm snapshot held by RealmCacheManager.
+ * The snapshot is fetched once per realm per session and lookups are served from it without touching the caches.
+ * - Every revision bump drops the bumped key from the snapshots (copy-on-write) and entries read by this session are published
+ * at the end of the transaction after being re-checked against the revisions cache.  Composite role closures are kept in the
+ * snapshot too so hasRole() doesn't need to walk the composite tree.
+ *
  * - any relationship should be resolved from session.realms().  For example if JPA.getClientByClientId() is invoked,
  *  JPA should find the id of the client and then call session.realms().getClientById().  THis is to ensure that the cached
  *  object is invoked and all proper invalidation are being invoked.
@@ -124,6 +133,9 @@ public class RealmCacheSession implements CacheRealmProvider {
     protected Map<String, GroupAdapter> managedGroups = new HashMap<>();
     protected Set<String> listInvalidations = new HashSet<>();
     protected Set<String> invalidations = new HashSet<>();
+    protected Map<String, RealmCacheSnapshot> snapshots = new HashMap<>();
+    protected Map<String, Map<String, Revisioned>> snapshotAdditions = new HashMap<>();
+    protected Map<String, Map<String, Set<String>>> roleClosureAdditions = new HashMap<>();
 
     protected boolean clearAll;
     protected final long startupRevision;
@@ -252,9 +264,90 @@ public class RealmCacheSession implements CacheRealmProvider {
     }
 
     protected void runInvalidations() {
-        for (String id : invalidations) {
-            cache.invalidateObject(id);
+        cache.invalidateObjects(session, invalidations);
+    }
+
+    protected RealmCacheSnapshot getSnapshot(String realmId) {
+        RealmCacheSnapshot snapshot = snapshots.get(realmId);
+        if (snapshot == null) {
+            snapshot = cache.getSnapshot(realmId);
+            snapshots.put(realmId, snapshot);
         }
+        return snapshot;
+    }
+
+    /**
+     * Looks up a validated cache entry, first in the realm snapshot and then in the cache.  Entries found in the cache
+     * are remembered and published into the snapshot when the transaction completes.
+     */
+    protected <T extends Revisioned> T getCached(String realmId, String id, Class<T> type) {
+        T cached = getSnapshot(realmId).get(id, type);
+        if (cached != null) return cached;
+        cached = cache.get(id, type);
+        if (cached == null) return null;
+        if (cached instanceof InRealm && !realmId.equals(((InRealm) cached).getRealm())) return cached;
+        Map<String, Revisioned> added = snapshotAdditions.get(realmId);
+        if (added == null) {
+            added = new HashMap<>();
+            snapshotAdditions.put(realmId, added);
+        }
+        added.put(id, cached);
+        return cached;
+    }
+
+    /**
+     * @return ids of all roles reachable from the role through composites or null if they are not all cached
+     */
+    public Set<String> getRoleClosure(CachedRole role) {
+        // closures don't see changes made by this session
+        if (!invalidations.isEmpty() || !listInvalidations.isEmpty()) return null;
+        String realmId = role.getRealm();
+        RealmCacheSnapshot snapshot = getSnapshot(realmId);
+        Set<String> closure = snapshot.getRoleClosure(role.getId());
+        if (closure != null) return closure;
+
+        Map<String, Set<String>> computed = roleClosureAdditions.get(realmId);
+        if (computed != null && computed.containsKey(role.getId())) return computed.get(role.getId());
+
+        closure = new HashSet<>();
+        LinkedList<CachedRole> queue = new LinkedList<>();
+        closure.add(role.getId());
+        queue.add(role);
+        while (!queue.isEmpty()) {
+            CachedRole current = queue.removeFirst();
+            for (String id : current.getComposites()) {
+                if (!closure.add(id)) continue;
+                CachedRole composite = getCached(realmId, id, CachedRole.class);
+                if (composite == null) return null;
+                queue.add(composite);
+            }
+        }
+        if (computed == null) {
+            computed = new HashMap<>();
+            roleClosureAdditions.put(realmId, computed);
+        }
+        computed.put(role.getId(), closure);
+        return closure;
+    }
+
+    protected void publishSnapshots() {
+        Set<String> realms = new HashSet<>(snapshotAdditions.keySet());
+        realms.addAll(roleClosureAdditions.keySet());
+        for (String realmId : realms) {
+            if (invalidations.contains(realmId)) continue;
+            Map<String, Revisioned> added = new HashMap<>();
+            Map<String, Revisioned> read = snapshotAdditions.get(realmId);
+            if (read != null) {
+                for (Map.Entry<String, Revisioned> entry : read.entrySet()) {
+                    if (!invalidations.contains(entry.getKey())) added.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Map<String, Set<String>> closures = roleClosureAdditions.get(realmId);
+            if (closures == null) closures = new HashMap<>();
+            cache.publishSnapshot(realmId, added, getSnapshot(realmId).getRolesVersion(), closures);
+        }
+        snapshotAdditions.clear();
+        roleClosureAdditions.clear();
     }
 
     private KeycloakTransaction getPrepareTransaction() {
@@ -312,11 +405,15 @@ public class RealmCacheSession implements CacheRealmProvider {
             @Override
             public void commit() {
                 try {
-                    if (delegate == null) return;
+                    if (delegate == null) {
+                        publishSnapshots();
+                        return;
+                    }
                     if (clearAll) {
                         cache.clear();
                     }
                     runInvalidations();
+                    publishSnapshots();
                     transactionActive = false;
                 } finally {
                     cache.endRevisionBatch();
@@ -367,7 +464,7 @@ public class RealmCacheSession implements CacheRealmProvider {
 
     @Override
     public RealmModel getRealm(String id) {
-        CachedRealm cached = cache.get(id, CachedRealm.class);
+        CachedRealm cached = getCached(id, id, CachedRealm.class);
         if (cached != null) {
             logger.tracev("by id cache hit: {0}", cached.getName());
         }
@@ -501,7 +598,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getClients(realm);
         }
 
-        ClientListQuery query = cache.get(cacheKey, ClientListQuery.class);
+        ClientListQuery query = getCached(realm.getId(), cacheKey, ClientListQuery.class);
         if (query != null) {
             logger.tracev("getClients cache hit: {0}", realm.getName());
         }
@@ -573,7 +670,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getRealmRoles(realm);
         }
 
-        RoleListQuery query = cache.get(cacheKey, RoleListQuery.class);
+        RoleListQuery query = getCached(realm.getId(), cacheKey, RoleListQuery.class);
         if (query != null) {
             logger.tracev("getRealmRoles cache hit: {0}", realm.getName());
         }
@@ -609,7 +706,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getClientRoles(realm, client);
         }
 
-        RoleListQuery query = cache.get(cacheKey, RoleListQuery.class);
+        RoleListQuery query = getCached(realm.getId(), cacheKey, RoleListQuery.class);
         if (query != null) {
             logger.tracev("getClientRoles cache hit: {0}", client.getClientId());
         }
@@ -660,7 +757,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getRealmRole(realm, name);
         }
 
-        RoleListQuery query = cache.get(cacheKey, RoleListQuery.class);
+        RoleListQuery query = getCached(realm.getId(), cacheKey, RoleListQuery.class);
         if (query != null) {
             logger.tracev("getRealmRole cache hit: {0}.{1}", realm.getName(), name);
         }
@@ -690,7 +787,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getClientRole(realm, client, name);
         }
 
-        RoleListQuery query = cache.get(cacheKey, RoleListQuery.class);
+        RoleListQuery query = getCached(realm.getId(), cacheKey, RoleListQuery.class);
         if (query != null) {
             logger.tracev("getClientRole cache hit: {0}.{1}", client.getClientId(), name);
         }
@@ -723,7 +820,7 @@ public class RealmCacheSession implements CacheRealmProvider {
 
     @Override
     public RoleModel getRoleById(String id, RealmModel realm) {
-        CachedRole cached = cache.get(id, CachedRole.class);
+        CachedRole cached = getCached(realm.getId(), id, CachedRole.class);
         if (cached != null && !cached.getRealm().equals(realm.getId())) {
             cached = null;
         }
@@ -752,7 +849,7 @@ public class RealmCacheSession implements CacheRealmProvider {
 
     @Override
     public GroupModel getGroupById(String id, RealmModel realm) {
-        CachedGroup cached = cache.get(id, CachedGroup.class);
+        CachedGroup cached = getCached(realm.getId(), id, CachedGroup.class);
         if (cached != null && !cached.getRealm().equals(realm.getId())) {
             cached = null;
         }
@@ -790,7 +887,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getGroups(realm);
         }
 
-        GroupListQuery query = cache.get(cacheKey, GroupListQuery.class);
+        GroupListQuery query = getCached(realm.getId(), cacheKey, GroupListQuery.class);
         if (query != null) {
             logger.tracev("getGroups cache hit: {0}", realm.getName());
         }
@@ -826,7 +923,7 @@ public class RealmCacheSession implements CacheRealmProvider {
             return getDelegate().getTopLevelGroups(realm);
         }
 
-        GroupListQuery query = cache.get(cacheKey, GroupListQuery.class);
+        GroupListQuery query = getCached(realm.getId(), cacheKey, GroupListQuery.class);
         if (query != null) {
             logger.tracev("getTopLevelGroups cache hit: {0}", realm.getName());
         }
@@ -900,7 +997,7 @@ public class RealmCacheSession implements CacheRealmProvider {
 
     @Override
     public ClientModel getClientById(String id, RealmModel realm) {
-        CachedClient cached = cache.get(id, CachedClient.class);
+        CachedClient cached = getCached(realm.getId(), id, CachedClient.class);
         if (cached != null && !cached.getRealm().equals(realm.getId())) {
             cached = null;
         }
@@ -929,7 +1026,7 @@ public class RealmCacheSession implements CacheRealmProvider {
     @Override
     public ClientModel getClientByClientId(String clientId, RealmModel realm) {
         String cacheKey = getClientByClientIdCacheKey(clientId, realm);
-        ClientListQuery query = cache.get(cacheKey, ClientListQuery.class);
+        ClientListQuery query = getCached(realm.getId(), cacheKey, ClientListQuery.class);
         String id = null;
 
         if (query != null) {
@@ -962,7 +1059,7 @@ public class RealmCacheSession implements CacheRealmProvider {
 
     @Override
     public ClientTemplateModel getClientTemplateById(String id, RealmModel realm) {
-        CachedClientTemplate cached = cache.get(id, CachedClientTemplate.class);
+        CachedClientTemplate cached = getCached(realm.getId(), id, CachedClientTemplate.class);
         if (cached != null && !cached.getRealm().equals(realm.getId())) {
             cached = null;
         }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.keycloak.models.cache.infinispan.entities.CachedRole;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, node-local view of the validated cache entries of one realm (the realm itself, clients, roles, groups,
+ * client templates and the list queries over them) plus the computed composite role closures.
+ *
+ * Request threads read a snapshot without any locking or revision lookups.  Snapshots are never modified in place;
+ * {@link RealmCacheManager} replaces them copy-on-write whenever entries are published or a revision is bumped.
+ */
+public class RealmCacheSnapshot {
+
+    private final String realmId;
+    private final long rolesVersion;
+    private final Map<String, Revisioned> entries;
+    private final Map<String, Set<String>> roleClosures;
+
+    public RealmCacheSnapshot(String realmId) {
+        this(realmId, 0L, Collections.<String, Revisioned>emptyMap(), Collections.<String, Set<String>>emptyMap());
+    }
+
+    private RealmCacheSnapshot(String realmId, long rolesVersion, Map<String, Revisioned> entries, Map<String, Set<String>> roleClosures) {
+        this.realmId = realmId;
+        this.rolesVersion = rolesVersion;
+        this.entries = entries;
+        this.roleClosures = roleClosures;
+    }
+
+    public String getRealmId() {
+        return realmId;
+    }
+
+    /**
+     * Incremented whenever a role leaves the snapshot.  Role closures computed against an older version are discarded.
+     */
+    public long getRolesVersion() {
+        return rolesVersion;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public <T> T get(String id, Class<T> type) {
+        Revisioned o = entries.get(id);
+        return o != null && type.isInstance(o) ? type.cast(o) : null;
+    }
+
+    /**
+     * @return ids of all roles reachable from the given role through composites (including the role itself) or null if not computed yet
+     */
+    public Set<String> getRoleClosure(String roleId) {
+        return roleClosures.get(roleId);
+    }
+
+    RealmCacheSnapshot with(Map<String, Revisioned> added, Map<String, Set<String>> closures) {
+        if (added.isEmpty() && closures.isEmpty()) return this;
+        Map<String, Revisioned> newEntries = entries;
+        if (!added.isEmpty()) {
+            newEntries = new HashMap<>(entries);
+            newEntries.putAll(added);
+            newEntries = Collections.unmodifiableMap(newEntries);
+        }
+        Map<String, Set<String>> newClosures = roleClosures;
+        if (!closures.isEmpty()) {
+            newClosures = new HashMap<>(roleClosures);
+            for (Map.Entry<String, Set<String>> closure : closures.entrySet()) {
+                newClosures.put(closure.getKey(), Collections.unmodifiableSet(closure.getValue()));
+            }
+            newClosures = Collections.unmodifiableMap(newClosures);
+        }
+        return new RealmCacheSnapshot(realmId, rolesVersion, newEntries, newClosures);
+    }
+
+    RealmCacheSnapshot without(Collection<String> ids) {
+        Map<String, Revisioned> newEntries = null;
+        boolean roleRemoved = false;
+        for (String id : ids) {
+            if (!entries.containsKey(id)) continue;
+            if (newEntries == null) newEntries = new HashMap<>(entries);
+            Revisioned removed = newEntries.remove(id);
+            if (removed instanceof CachedRole) roleRemoved = true;
+        }
+        if (newEntries == null) return this;
+        newEntries = Collections.unmodifiableMap(newEntries);
+        if (roleRemoved) {
+            return new RealmCacheSnapshot(realmId, rolesVersion + 1, newEntries, Collections.<String, Set<String>>emptyMap());
+        }
+        return new RealmCacheSnapshot(realmId, rolesVersion, newEntries, roleClosures);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rough estimate of the retained heap size of cached entities.  Walks the object graph reflectively, JDK classes other than
+ * strings, boxed primitives, arrays, collections and maps are counted with a fixed size.  The estimate is only used to weigh
+ * cache entries against each other, it doesn't need to be exact.
+ */
+public class RevisionedSizeEstimator {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int COLLECTION_ENTRY = 32;
+    private static final int OPAQUE_OBJECT = 64;
+
+    private static final Map<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
+
+    public static long estimate(Object object) {
+        return estimate(object, new IdentityHashMap<>());
+    }
+
+    private static long estimate(Object object, IdentityHashMap<Object, Boolean> visited) {
+        if (object == null || object instanceof Enum || object instanceof Class) return 0;
+        if (visited.put(object, Boolean.TRUE) != null) return 0;
+
+        if (object instanceof String) {
+            return OBJECT_HEADER + 24 + 2L * ((String) object).length();
+        }
+        if (object instanceof Number || object instanceof Boolean || object instanceof Character) {
+            return OBJECT_HEADER + 8;
+        }
+
+        Class<?> clazz = object.getClass();
+        if (clazz.isArray()) {
+            int length = Array.getLength(object);
+            Class<?> componentType = clazz.getComponentType();
+            if (componentType.isPrimitive()) {
+                return OBJECT_HEADER + (long) length * primitiveSize(componentType);
+            }
+            long size = OBJECT_HEADER + (long) length * REFERENCE;
+            for (int i = 0; i < length; i++) {
+                size += estimate(Array.get(object, i), visited);
+            }
+            return size;
+        }
+        if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            long size = OBJECT_HEADER * 2 + (long) collection.size() * COLLECTION_ENTRY;
+            for (Object element : collection) {
+                size += estimate(element, visited);
+            }
+            return size;
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            long size = OBJECT_HEADER * 3 + (long) map.size() * COLLECTION_ENTRY;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimate(entry.getKey(), visited);
+                size += estimate(entry.getValue(), visited);
+            }
+            return size;
+        }
+        if (clazz.getName().startsWith("java.") || clazz.getName().startsWith("javax.") || clazz.getName().startsWith("sun.")) {
+            return OPAQUE_OBJECT;
+        }
+
+        long size = OBJECT_HEADER;
+        for (Field field : getFields(clazz)) {
+            Class<?> type = field.getType();
+            if (type.isPrimitive()) {
+                size += primitiveSize(type);
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += estimate(field.get(object), visited);
+            } catch (IllegalAccessException e) {
+                size += OPAQUE_OBJECT;
+            }
+        }
+        return size;
+    }
+
+    private static List<Field> getFields(Class<?> clazz) {
+        List<Field> result = fields.get(clazz);
+        if (result != null) return result;
+
+        result = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                try {
+                    field.setAccessible(true);
+                    result.add(field);
+                } catch (RuntimeException e) {
+                    // not accessible, ignore
+                }
+            }
+        }
+        fields.put(clazz, result);
+        return result;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        return 1;
+    }
+
+}
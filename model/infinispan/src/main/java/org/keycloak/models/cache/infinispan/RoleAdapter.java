@@ -174,6 +174,10 @@ public class RoleAdapter implements RoleModel {
     public boolean hasRole(RoleModel role) {
         if (this.equals(role)) return true;
         if (!isComposite()) return false;
+        if (!isUpdated()) {
+            Set<String> closure = cacheSession.getRoleClosure(cached);
+            if (closure != null) return closure.contains(role.getId());
+        }
 
         Set<RoleModel> visited = new HashSet<RoleModel>();
         return KeycloakModelUtils.searchFor(role, this, visited);
@@ -37,14 +37,21 @@ public class UserCacheManager extends CacheManager {
 
     protected static final Logger logger = Logger.getLogger(UserCacheManager.class);
 
+    public static final String INVALIDATION_EVENTS = "user-cache-invalidations";
+
     protected volatile boolean enabled = true;
-    public UserCacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions) {
-        super(cache, revisions);
+    public UserCacheManager(Cache<String, Revisioned> cache, Cache<String, Long> revisions, CacheMemoryAccounting memoryAccounting) {
+        super(cache, revisions, memoryAccounting);
     }
 
     @Override
     public void clear() {
-        cache.clear();
+        super.clear();
+    }
+
+    @Override
+    public String getInvalidationEventKey() {
+        return INVALIDATION_EVENTS;
     }
 
     @Override
@@ -36,10 +36,16 @@ import org.keycloak.models.cache.CacheUserProvider;
 import org.keycloak.models.cache.infinispan.entities.CachedFederatedIdentityLinks;
 import org.keycloak.models.cache.infinispan.entities.CachedUser;
 import org.keycloak.models.cache.infinispan.entities.UserListQuery;
+import org.keycloak.models.cache.infinispan.entities.UserSearchQuery;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
+ * Paged user searches, listings, group members and user counts are cached as id lists ({@link UserSearchQuery}).  They are
+ * all made stale at once by bumping the realm's user queries key whenever a user of the realm is added, removed or updated.
+ * Queries of realms with user federation providers aren't cached, as their results depend on the federation storage too.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
@@ -55,6 +61,7 @@ public class UserCacheSession implements CacheUserProvider {
 
     protected Set<String> invalidations = new HashSet<>();
     protected Set<String> realmInvalidations = new HashSet<>();
+    protected Set<String> queryInvalidations = new HashSet<>();
     protected Map<String, UserModel> managedUsers = new HashMap<>();
 
     public UserCacheSession(UserCacheManager cache, KeycloakSession session) {
@@ -79,19 +86,24 @@ public class UserCacheSession implements CacheUserProvider {
     }
 
     public void registerUserInvalidation(RealmModel realm,CachedUser user) {
+        invalidateUserQueries(realm);
         invalidations.add(user.getId());
         if (user.getEmail() != null) invalidations.add(getUserByEmailCacheKey(realm.getId(), user.getEmail()));
         invalidations.add(getUserByUsernameCacheKey(realm.getId(), user.getUsername()));
         if (realm.isIdentityFederationEnabled()) invalidations.add(getFederatedIdentityLinksCacheKey(user.getId()));
     }
 
+    protected void invalidateUserQueries(RealmModel realm) {
+        invalidations.add(getUserQueriesCacheKey(realm.getId()));
+        queryInvalidations.add(realm.getId());
+    }
+
     protected void runInvalidations() {
         for (String realmId : realmInvalidations) {
+            invalidations.add(getUserQueriesCacheKey(realmId));
             cache.invalidateRealmUsers(realmId, invalidations);
         }
-        for (String invalidation : invalidations) {
-            cache.invalidateObject(invalidation);
-        }
+        cache.invalidateObjects(session, invalidations);
     }
 
     private KeycloakTransaction getTransaction() {
@@ -186,6 +198,63 @@ public class UserCacheSession implements CacheUserProvider {
         return userId + ".idplinks";
     }
 
+    public String getUserQueriesCacheKey(String realmId) {
+        return realmId + ".users.queries";
+    }
+
+    private String getUserQueryCacheKey(String realmId, String query, int firstResult, int maxResults) {
+        return realmId + ".users.query." + query + "." + firstResult + "." + maxResults;
+    }
+
+    private boolean isQueryCacheable(RealmModel realm) {
+        return !realmInvalidations.contains(realm.getId()) && !queryInvalidations.contains(realm.getId())
+                && realm.getUserFederationProviders().isEmpty();
+    }
+
+    private UserSearchQuery getCachedQuery(RealmModel realm, String cacheKey) {
+        if (!isQueryCacheable(realm) || invalidations.contains(cacheKey)) return null;
+        UserSearchQuery query = cache.get(cacheKey, UserSearchQuery.class);
+        if (query == null) return null;
+        if (cache.isRevisionNewer(getUserQueriesCacheKey(realm.getId()), query.getQueriesRevision())) {
+            logger.tracev("stale user query: {0}", cacheKey);
+            return null;
+        }
+        return query;
+    }
+
+    private boolean isQueryLoadCacheable(RealmModel realm) {
+        // users changed after this transaction started. With repeatable read we might have loaded stale results
+        return isQueryCacheable(realm) && !cache.isRevisionNewer(getUserQueriesCacheKey(realm.getId()), startupRevision);
+    }
+
+    protected List<UserModel> getCachedUsers(RealmModel realm, String cacheKey, Supplier<List<UserModel>> loader) {
+        if (!isQueryCacheable(realm)) return loader.get();
+        UserSearchQuery query = getCachedQuery(realm, cacheKey);
+        if (query == null) {
+            Long queriesRevision = cache.getCurrentRevision(getUserQueriesCacheKey(realm.getId()));
+            Long loaded = cache.getCurrentRevision(cacheKey);
+            List<UserModel> model = loader.get();
+            if (model == null || !isQueryLoadCacheable(realm)) return model;
+            LinkedHashSet<String> ids = new LinkedHashSet<>();
+            for (UserModel user : model) ids.add(user.getId());
+            query = new UserSearchQuery(loaded, cacheKey, realm, ids, queriesRevision);
+            logger.tracev("adding user query cache miss: {0}", cacheKey);
+            cache.addRevisioned(query, startupRevision);
+            return model;
+        }
+        logger.tracev("user query cache hit: {0}", cacheKey);
+        List<UserModel> list = new LinkedList<>();
+        for (String id : query.getUsers()) {
+            UserModel user = getUserById(id, realm);
+            if (user == null) {
+                invalidations.add(cacheKey);
+                return loader.get();
+            }
+            list.add(user);
+        }
+        return list;
+    }
+
     @Override
     public UserModel getUserByUsername(String username, RealmModel realm) {
         logger.tracev("getUserByUsername: {0}", username);
@@ -333,7 +402,8 @@ public class UserCacheSession implements CacheUserProvider {
 
     @Override
     public List<UserModel> getGroupMembers(RealmModel realm, GroupModel group, int firstResult, int maxResults) {
-        return getDelegate().getGroupMembers(realm, group, firstResult, maxResults);
+        String cacheKey = getUserQueryCacheKey(realm.getId(), "group." + group.getId(), firstResult, maxResults);
+        return getCachedUsers(realm, cacheKey, () -> getDelegate().getGroupMembers(realm, group, firstResult, maxResults));
     }
 
     @Override
@@ -360,12 +430,27 @@ public class UserCacheSession implements CacheUserProvider {
 
     @Override
     public int getUsersCount(RealmModel realm) {
-        return getDelegate().getUsersCount(realm);
+        String cacheKey = getUserQueryCacheKey(realm.getId(), "count", -1, -1);
+        UserSearchQuery query = getCachedQuery(realm, cacheKey);
+        if (query != null && query.getCount() != null) {
+            logger.tracev("user count cache hit: {0}", realm.getName());
+            return query.getCount();
+        }
+        if (!isQueryCacheable(realm)) return getDelegate().getUsersCount(realm);
+
+        Long queriesRevision = cache.getCurrentRevision(getUserQueriesCacheKey(realm.getId()));
+        Long loaded = cache.getCurrentRevision(cacheKey);
+        int count = getDelegate().getUsersCount(realm);
+        if (isQueryLoadCacheable(realm)) {
+            cache.addRevisioned(new UserSearchQuery(loaded, cacheKey, realm, count, queriesRevision), startupRevision);
+        }
+        return count;
     }
 
     @Override
     public List<UserModel> getUsers(RealmModel realm, int firstResult, int maxResults, boolean includeServiceAccounts) {
-        return getDelegate().getUsers(realm, firstResult, maxResults, includeServiceAccounts);
+        String cacheKey = getUserQueryCacheKey(realm.getId(), "list." + includeServiceAccounts, firstResult, maxResults);
+        return getCachedUsers(realm, cacheKey, () -> getDelegate().getUsers(realm, firstResult, maxResults, includeServiceAccounts));
     }
 
     @Override
@@ -375,7 +460,8 @@ public class UserCacheSession implements CacheUserProvider {
 
     @Override
     public List<UserModel> searchForUser(String search, RealmModel realm, int firstResult, int maxResults) {
-        return getDelegate().searchForUser(search, realm, firstResult, maxResults);
+        String cacheKey = getUserQueryCacheKey(realm.getId(), "search." + search, firstResult, maxResults);
+        return getCachedUsers(realm, cacheKey, () -> getDelegate().searchForUser(search, realm, firstResult, maxResults));
     }
 
     @Override
@@ -385,7 +471,8 @@ public class UserCacheSession implements CacheUserProvider {
 
     @Override
     public List<UserModel> searchForUserByAttributes(Map<String, String> attributes, RealmModel realm, int firstResult, int maxResults) {
-        return getDelegate().searchForUserByAttributes(attributes, realm, firstResult, maxResults);
+        String cacheKey = getUserQueryCacheKey(realm.getId(), "attributes." + new TreeMap<>(attributes), firstResult, maxResults);
+        return getCachedUsers(realm, cacheKey, () -> getDelegate().searchForUserByAttributes(attributes, realm, firstResult, maxResults));
     }
 
     @Override
@@ -466,6 +553,7 @@ public class UserCacheSession implements CacheUserProvider {
             invalidations.add(getFederatedIdentityLinksCacheKey(user.getId()));
         }
 
+        invalidateUserQueries(realm);
         invalidations.add(user.getId());
         if (user.getEmail() != null) invalidations.add(getUserByEmailCacheKey(realm.getId(), user.getEmail()));
         invalidations.add(getUserByUsernameCacheKey(realm.getId(), user.getUsername()));
@@ -534,6 +622,7 @@ public class UserCacheSession implements CacheUserProvider {
     }
     @Override
     public void preRemove(RealmModel realm, GroupModel group) {
+        invalidateUserQueries(realm);
         getDelegate().preRemove(realm, group);
     }
 
@@ -28,6 +28,7 @@ import org.keycloak.models.IdentityProviderMapperModel;
 import org.keycloak.models.IdentityProviderModel;
 import org.keycloak.models.OTPPolicy;
 import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RequiredActionProviderModel;
@@ -36,7 +37,9 @@ import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserFederationMapperModel;
 import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.cache.infinispan.RealmCache;
+import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.common.util.MultivaluedHashMap;
+import org.keycloak.common.util.Time;
 
 import java.io.Serializable;
 import java.security.PrivateKey;
@@ -84,6 +87,7 @@ public class CachedRealm extends AbstractRevisioned {
     protected int ssoSessionIdleTimeout;
     protected int ssoSessionMaxLifespan;
     protected int offlineSessionIdleTimeout;
+    protected int passiveKeyLifespan;
     protected int accessTokenLifespan;
     protected int accessTokenLifespanForImplicitFlow;
     protected int accessCodeLifespan;
@@ -95,6 +99,7 @@ public class CachedRealm extends AbstractRevisioned {
 
     protected transient PublicKey publicKey;
     protected String publicKeyPem;
+    protected String keyId;
     protected transient PrivateKey privateKey;
     protected String privateKeyPem;
     protected transient X509Certificate certificate;
@@ -108,6 +113,8 @@ public class CachedRealm extends AbstractRevisioned {
     protected String masterAdminClient;
 
     protected List<RequiredCredentialModel> requiredCredentials;
+    protected List<RealmKeyModel> passiveKeys;
+    protected transient Map<String, PublicKey> passivePublicKeys;
     protected List<UserFederationProviderModel> userFederationProviders;
     protected MultivaluedHashMap<String, UserFederationMapperModel> userFederationMappers = new MultivaluedHashMap<String, UserFederationMapperModel>();
     protected Set<UserFederationMapperModel> userFederationMapperSet;
@@ -180,6 +187,7 @@ public class CachedRealm extends AbstractRevisioned {
         ssoSessionIdleTimeout = model.getSsoSessionIdleTimeout();
         ssoSessionMaxLifespan = model.getSsoSessionMaxLifespan();
         offlineSessionIdleTimeout = model.getOfflineSessionIdleTimeout();
+        passiveKeyLifespan = model.getPassiveKeyLifespan();
         accessTokenLifespan = model.getAccessTokenLifespan();
         accessTokenLifespanForImplicitFlow = model.getAccessTokenLifespanForImplicitFlow();
         accessCodeLifespan = model.getAccessCodeLifespan();
@@ -191,6 +199,7 @@ public class CachedRealm extends AbstractRevisioned {
 
         publicKeyPem = model.getPublicKeyPem();
         publicKey = model.getPublicKey();
+        keyId = model.getKeyId();
         privateKeyPem = model.getPrivateKeyPem();
         privateKey = model.getPrivateKey();
         certificatePem = model.getCertificatePem();
@@ -203,6 +212,11 @@ public class CachedRealm extends AbstractRevisioned {
         emailTheme = model.getEmailTheme();
 
         requiredCredentials = model.getRequiredCredentials();
+        passiveKeys = model.getPassiveKeys();
+        passivePublicKeys = new HashMap<>();
+        for (RealmKeyModel key : passiveKeys) {
+            passivePublicKeys.put(key.getKid(), KeycloakModelUtils.getPublicKey(key.getPublicKeyPem()));
+        }
         userFederationProviders = model.getUserFederationProviders();
         userFederationMapperSet = model.getUserFederationMappers();
         for (UserFederationMapperModel mapper : userFederationMapperSet) {
@@ -378,6 +392,10 @@ public class CachedRealm extends AbstractRevisioned {
         return offlineSessionIdleTimeout;
     }
 
+    public int getPassiveKeyLifespan() {
+        return passiveKeyLifespan;
+    }
+
     public int getAccessTokenLifespan() {
         return accessTokenLifespan;
     }
@@ -413,6 +431,21 @@ public class CachedRealm extends AbstractRevisioned {
         return requiredCredentials;
     }
 
+    public List<RealmKeyModel> getPassiveKeys() {
+        return passiveKeys;
+    }
+
+    public PublicKey getPassivePublicKey(String kid) {
+        int currentTime = Time.currentTime();
+        for (RealmKeyModel key : passiveKeys) {
+            if (key.getKid().equals(kid) && key.getExpiration() > currentTime) {
+                PublicKey publicKey = passivePublicKeys != null ? passivePublicKeys.get(kid) : null;
+                return publicKey != null ? publicKey : KeycloakModelUtils.getPublicKey(key.getPublicKeyPem());
+            }
+        }
+        return null;
+    }
+
     public PasswordPolicy getPasswordPolicy() {
         return passwordPolicy;
     }
@@ -573,6 +606,10 @@ public class CachedRealm extends AbstractRevisioned {
         return publicKey;
     }
 
+    public String getKeyId() {
+        return keyId;
+    }
+
     public PrivateKey getPrivateKey() {
         return privateKey;
     }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan.entities;
+
+import org.keycloak.models.RealmModel;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Result of a user search, listing or count.  Ids are kept in the order returned by the user provider.
+ *
+ * Besides its own revision, the entry remembers the revision of the realm's user queries key at the time it was loaded.  Any
+ * change of a user in the realm bumps that key, which makes all search results of the realm stale at once.
+ */
+public class UserSearchQuery extends AbstractRevisioned implements UserQuery {
+    private final Set<String> users;
+    private final Integer count;
+    private final long queriesRevision;
+    private final String realm;
+    private final String realmName;
+
+    public UserSearchQuery(Long revisioned, String id, RealmModel realm, LinkedHashSet<String> users, long queriesRevision) {
+        super(revisioned, id);
+        this.realm = realm.getId();
+        this.realmName = realm.getName();
+        this.users = users;
+        this.count = null;
+        this.queriesRevision = queriesRevision;
+    }
+
+    public UserSearchQuery(Long revisioned, String id, RealmModel realm, int count, long queriesRevision) {
+        super(revisioned, id);
+        this.realm = realm.getId();
+        this.realmName = realm.getName();
+        this.users = new LinkedHashSet<>();
+        this.count = count;
+        this.queriesRevision = queriesRevision;
+    }
+
+    @Override
+    public Set<String> getUsers() {
+        return users;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public long getQueriesRevision() {
+        return queriesRevision;
+    }
+
+    @Override
+    public String getRealm() {
+        return realm;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSearchQuery{" +
+                "id='" + getId() + "'" +
+                "realmName='" + realmName + '\'' +
+                '}';
+    }
+}
@@ -52,6 +52,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -272,6 +273,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         UserSessionEntity entity = getUserSessionEntity(session, false);
         if (entity != null) {
             removeUserSession(realm, entity, false);
+            tx.userSessionsRemoved(realm.getId(), entity.getUser(), entity.getId());
         }
     }
 
@@ -288,6 +290,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             UserSessionEntity userSessionEntity = (UserSessionEntity) itr.next();
             removeUserSession(realm, userSessionEntity, offline);
         }
+        tx.userSessionsRemoved(realm.getId(), user.getId(), null);
     }
 
     @Override
@@ -374,6 +377,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         while (itr.hasNext()) {
             cache.remove(itr.next());
         }
+        tx.userSessionsRemoved(realm.getId(), null, null);
     }
 
     @Override
@@ -582,6 +586,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         UserSessionEntity userSessionEntity = getUserSessionEntity(userSession, true);
         if (userSessionEntity != null) {
             removeUserSession(realm, userSessionEntity, true);
+            tx.userSessionsRemoved(realm.getId(), userSessionEntity.getUser(), userSessionEntity.getId());
         }
     }
 
@@ -734,6 +739,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         private boolean active;
         private boolean rollback;
         private Map<Object, CacheTask> tasks = new HashMap<>();
+        private Map<String, UserSessionModel.UserSessionsRemovedEvent> removedEvents = new LinkedHashMap<>();
 
         @Override
         public void begin() {
@@ -749,11 +755,40 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             for (CacheTask task : tasks.values()) {
                 task.execute();
             }
+
+            for (UserSessionModel.UserSessionsRemovedEvent event : removedEvents.values()) {
+                session.getKeycloakSessionFactory().publish(event);
+            }
         }
 
         @Override
         public void rollback() {
             tasks.clear();
+            removedEvents.clear();
+        }
+
+        public void userSessionsRemoved(final String realmId, final String userId, final String userSessionId) {
+            removedEvents.put(realmId + ":" + userId + ":" + userSessionId, new UserSessionModel.UserSessionsRemovedEvent() {
+                @Override
+                public KeycloakSession getKeycloakSession() {
+                    return session;
+                }
+
+                @Override
+                public String getRealmId() {
+                    return realmId;
+                }
+
+                @Override
+                public String getUserId() {
+                    return userId;
+                }
+
+                @Override
+                public String getUserSessionId() {
+                    return userSessionId;
+                }
+            });
         }
 
         @Override
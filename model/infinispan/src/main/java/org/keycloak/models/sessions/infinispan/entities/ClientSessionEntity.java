@@ -17,13 +17,21 @@
 
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.connections.infinispan.KeycloakExternalizers;
 import org.keycloak.models.ClientSessionModel;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static org.keycloak.connections.infinispan.KeycloakMarshallUtil.*;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
@@ -149,4 +157,73 @@ public class ClientSessionEntity extends SessionEntity {
     public Set<String> getRequiredActions() {
         return requiredActions;
     }
+
+    public static class ExternalizerImpl extends AbstractExternalizer<ClientSessionEntity> {
+
+        @Override
+        public Set<Class<? extends ClientSessionEntity>> getTypeClasses() {
+            return Collections.<Class<? extends ClientSessionEntity>>singleton(ClientSessionEntity.class);
+        }
+
+        @Override
+        public Integer getId() {
+            return KeycloakExternalizers.CLIENT_SESSION_ENTITY;
+        }
+
+        @Override
+        public void writeObject(ObjectOutput output, ClientSessionEntity session) throws IOException {
+            writeString(output, session.getId());
+            writeString(output, session.getRealm());
+            writeString(output, session.client);
+            writeString(output, session.userSession);
+            writeString(output, session.authMethod);
+            writeString(output, session.redirectUri);
+            writeVarInt(output, session.timestamp);
+            writeString(output, session.action);
+            writeStrings(output, session.roles);
+            writeStrings(output, session.protocolMappers);
+            writeStringMap(output, session.notes);
+            writeStringMap(output, session.userSessionNotes);
+            if (session.authenticatorStatus == null) {
+                writeVarInt(output, 0);
+            } else {
+                writeVarInt(output, session.authenticatorStatus.size() + 1);
+                for (Map.Entry<String, ClientSessionModel.ExecutionStatus> entry : session.authenticatorStatus.entrySet()) {
+                    writeString(output, entry.getKey());
+                    writeEnum(output, entry.getValue());
+                }
+            }
+            writeString(output, session.authUserId);
+            writeStrings(output, session.requiredActions);
+        }
+
+        @Override
+        public ClientSessionEntity readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            ClientSessionEntity session = new ClientSessionEntity();
+            session.setId(readString(input));
+            session.setRealm(readString(input));
+            session.client = readString(input);
+            session.userSession = readString(input);
+            session.authMethod = readString(input);
+            session.redirectUri = readString(input);
+            session.timestamp = readVarInt(input);
+            session.action = readString(input);
+            session.roles = readStringSet(input);
+            session.protocolMappers = readStringSet(input);
+            session.notes = readStringMap(input);
+            session.userSessionNotes = readStringMap(input);
+            int statusCount = readSize(input);
+            if (statusCount < 0) {
+                session.authenticatorStatus = null;
+            } else {
+                for (int i = 0; i < statusCount; i++) {
+                    String authenticator = readString(input);
+                    session.authenticatorStatus.put(authenticator, readEnum(input, ClientSessionModel.ExecutionStatus.class));
+                }
+            }
+            session.authUserId = readString(input);
+            session.requiredActions = readStringSet(input);
+            return session;
+        }
+    }
 }
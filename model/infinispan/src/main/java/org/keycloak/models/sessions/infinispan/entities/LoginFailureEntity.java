@@ -17,7 +17,17 @@
 
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.connections.infinispan.KeycloakExternalizers;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.connections.infinispan.KeycloakMarshallUtil.*;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -85,4 +95,39 @@ public class LoginFailureEntity implements Serializable {
         this.lastFailure = 0;
         this.lastIPFailure = null;
     }
+
+    public static class ExternalizerImpl extends AbstractExternalizer<LoginFailureEntity> {
+
+        @Override
+        public Set<Class<? extends LoginFailureEntity>> getTypeClasses() {
+            return Collections.<Class<? extends LoginFailureEntity>>singleton(LoginFailureEntity.class);
+        }
+
+        @Override
+        public Integer getId() {
+            return KeycloakExternalizers.LOGIN_FAILURE_ENTITY;
+        }
+
+        @Override
+        public void writeObject(ObjectOutput output, LoginFailureEntity loginFailure) throws IOException {
+            writeString(output, loginFailure.username);
+            writeString(output, loginFailure.realm);
+            writeVarInt(output, loginFailure.failedLoginNotBefore);
+            writeVarInt(output, loginFailure.numFailures);
+            output.writeLong(loginFailure.lastFailure);
+            writeString(output, loginFailure.lastIPFailure);
+        }
+
+        @Override
+        public LoginFailureEntity readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            LoginFailureEntity loginFailure = new LoginFailureEntity();
+            loginFailure.username = readString(input);
+            loginFailure.realm = readString(input);
+            loginFailure.failedLoginNotBefore = readVarInt(input);
+            loginFailure.numFailures = readVarInt(input);
+            loginFailure.lastFailure = input.readLong();
+            loginFailure.lastIPFailure = readString(input);
+            return loginFailure;
+        }
+    }
 }
@@ -17,7 +17,17 @@
 
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.connections.infinispan.KeycloakExternalizers;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.connections.infinispan.KeycloakMarshallUtil.*;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -52,4 +62,28 @@ public class LoginFailureKey implements Serializable {
         return result;
     }
 
+    public static class ExternalizerImpl extends AbstractExternalizer<LoginFailureKey> {
+
+        @Override
+        public Set<Class<? extends LoginFailureKey>> getTypeClasses() {
+            return Collections.<Class<? extends LoginFailureKey>>singleton(LoginFailureKey.class);
+        }
+
+        @Override
+        public Integer getId() {
+            return KeycloakExternalizers.LOGIN_FAILURE_KEY;
+        }
+
+        @Override
+        public void writeObject(ObjectOutput output, LoginFailureKey key) throws IOException {
+            writeString(output, key.realm);
+            writeString(output, key.username);
+        }
+
+        @Override
+        public LoginFailureKey readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            String realm = readString(input);
+            return new LoginFailureKey(realm, readString(input));
+        }
+    }
 }
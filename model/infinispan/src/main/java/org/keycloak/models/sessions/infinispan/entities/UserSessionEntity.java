@@ -17,11 +17,19 @@
 
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.connections.infinispan.KeycloakExternalizers;
 import org.keycloak.models.UserSessionModel;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
+import static org.keycloak.connections.infinispan.KeycloakMarshallUtil.*;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
@@ -145,4 +153,55 @@ public class UserSessionEntity extends SessionEntity {
     public void setBrokerUserId(String brokerUserId) {
         this.brokerUserId = brokerUserId;
     }
+
+    public static class ExternalizerImpl extends AbstractExternalizer<UserSessionEntity> {
+
+        @Override
+        public Set<Class<? extends UserSessionEntity>> getTypeClasses() {
+            return Collections.<Class<? extends UserSessionEntity>>singleton(UserSessionEntity.class);
+        }
+
+        @Override
+        public Integer getId() {
+            return KeycloakExternalizers.USER_SESSION_ENTITY;
+        }
+
+        @Override
+        public void writeObject(ObjectOutput output, UserSessionEntity session) throws IOException {
+            writeString(output, session.getId());
+            writeString(output, session.getRealm());
+            writeString(output, session.user);
+            writeString(output, session.brokerSessionId);
+            writeString(output, session.brokerUserId);
+            writeString(output, session.loginUsername);
+            writeString(output, session.ipAddress);
+            writeString(output, session.authMethod);
+            output.writeBoolean(session.rememberMe);
+            writeVarInt(output, session.started);
+            writeVarInt(output, session.lastSessionRefresh);
+            writeStrings(output, session.clientSessions);
+            writeEnum(output, session.state);
+            writeStringMap(output, session.notes);
+        }
+
+        @Override
+        public UserSessionEntity readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            UserSessionEntity session = new UserSessionEntity();
+            session.setId(readString(input));
+            session.setRealm(readString(input));
+            session.user = readString(input);
+            session.brokerSessionId = readString(input);
+            session.brokerUserId = readString(input);
+            session.loginUsername = readString(input);
+            session.ipAddress = readString(input);
+            session.authMethod = readString(input);
+            session.rememberMe = input.readBoolean();
+            session.started = readVarInt(input);
+            session.lastSessionRefresh = readVarInt(input);
+            session.clientSessions = readStringSet(input);
+            session.state = readEnum(input, UserSessionModel.State.class);
+            session.notes = readStringMap(input);
+            return session;
+        }
+    }
 }
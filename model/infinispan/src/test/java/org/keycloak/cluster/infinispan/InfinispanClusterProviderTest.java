@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.cluster.infinispan;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.cluster.ClusterEvent;
+import org.keycloak.cluster.ClusterListener;
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.models.KeycloakSession;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class InfinispanClusterProviderTest {
+
+    private DefaultCacheManager cacheManager;
+    private ClusterProvider cluster;
+    private Cache<String, Serializable> workCache;
+
+    @Before
+    public void before() {
+        GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+        gcb.globalJmxStatistics().allowDuplicateDomains(true);
+        cacheManager = new DefaultCacheManager(gcb.build());
+        cacheManager.defineConfiguration(InfinispanConnectionProvider.WORK_CACHE_NAME, new ConfigurationBuilder().build());
+        workCache = cacheManager.getCache(InfinispanConnectionProvider.WORK_CACHE_NAME);
+
+        final InfinispanConnectionProvider connections = stub(InfinispanConnectionProvider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getCache") ? cacheManager.getCache((String) args[0]) : null;
+            }
+        });
+        KeycloakSession session = stub(KeycloakSession.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getProvider") && args[0] == InfinispanConnectionProvider.class ? connections : null;
+            }
+        });
+        cluster = new InfinispanClusterProviderFactory().create(session);
+    }
+
+    @After
+    public void after() {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void notifiedEventStored() {
+        final List<ClusterEvent> received = new ArrayList<>();
+        cluster.registerListener("test-events", new ClusterListener() {
+            @Override
+            public void run(ClusterEvent event) {
+                received.add(event);
+            }
+        });
+
+        TestEvent event = new TestEvent();
+        cluster.notify("test-events", event);
+        assertEquals(1, received.size());
+        assertSame(event, received.get(0));
+        assertSame(event, workCache.get("test-events"));
+    }
+
+    @Test
+    public void syncNotifiedEventNotStored() {
+        final List<ClusterEvent> received = new ArrayList<>();
+        cluster.registerListener("test-events", new ClusterListener() {
+            @Override
+            public void run(ClusterEvent event) {
+                received.add(event);
+            }
+        });
+
+        TestEvent first = new TestEvent();
+        cluster.notifySync("test-events", first);
+        assertEquals(1, received.size());
+        assertSame(first, received.get(0));
+        assertFalse(workCache.containsKey("test-events"));
+
+        // Every event is delivered as a new entry
+        cluster.notifySync("test-events", new TestEvent());
+        assertEquals(2, received.size());
+        assertFalse(workCache.containsKey("test-events"));
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, handler));
+    }
+
+    private static class TestEvent implements ClusterEvent {
+    }
+
+}
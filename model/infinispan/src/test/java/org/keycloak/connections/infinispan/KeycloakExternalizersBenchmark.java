@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.infinispan;
+
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.manager.EmbeddedCacheManager;
+
+/**
+ * Compares bytes and time per entity marshalled with the Infinispan marshaller with and without the Keycloak externalizers.
+ * Not executed as part of the build, run the main method with an optional count of iterations.
+ */
+public class KeycloakExternalizersBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        Object[] entities = {
+                KeycloakExternalizersTest.createUserSession(),
+                KeycloakExternalizersTest.createClientSession(),
+                KeycloakExternalizersTest.createLoginFailure()
+        };
+
+        for (boolean externalizers : new boolean[] { false, true }) {
+            EmbeddedCacheManager cacheManager = KeycloakExternalizersTest.createCacheManager(externalizers);
+            try {
+                StreamingMarshaller marshaller = KeycloakExternalizersTest.getMarshaller(cacheManager);
+                for (Object entity : entities) {
+                    run(marshaller, entity, iterations / 10);
+
+                    byte[] bytes = marshaller.objectToByteBuffer(entity);
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        marshaller.objectToByteBuffer(entity);
+                    }
+                    long write = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        marshaller.objectFromByteBuffer(bytes);
+                    }
+                    long read = System.nanoTime() - start;
+
+                    System.out.println(String.format("%-13s %-20s %4d bytes, write: %6d ns/op, read: %6d ns/op", externalizers ? "externalizer" : "serializable",
+                            entity.getClass().getSimpleName(), bytes.length, write / iterations, read / iterations));
+                }
+            } finally {
+                cacheManager.stop();
+            }
+        }
+    }
+
+    private static void run(StreamingMarshaller marshaller, Object entity, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(entity));
+        }
+    }
+}
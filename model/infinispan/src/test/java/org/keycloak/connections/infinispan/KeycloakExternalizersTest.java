@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.infinispan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+public class KeycloakExternalizersTest {
+
+    private static EmbeddedCacheManager cacheManager;
+    private static StreamingMarshaller marshaller;
+
+    @BeforeClass
+    public static void startCacheManager() {
+        cacheManager = createCacheManager(true);
+        marshaller = getMarshaller(cacheManager);
+    }
+
+    @AfterClass
+    public static void stopCacheManager() {
+        cacheManager.stop();
+    }
+
+    static EmbeddedCacheManager createCacheManager(boolean externalizers) {
+        GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+        gcb.globalJmxStatistics().allowDuplicateDomains(true);
+        if (externalizers) {
+            for (AdvancedExternalizer<?> externalizer : KeycloakExternalizers.getExternalizers()) {
+                gcb.serialization().addAdvancedExternalizer(externalizer);
+            }
+        }
+        return new DefaultCacheManager(gcb.build());
+    }
+
+    static StreamingMarshaller getMarshaller(EmbeddedCacheManager cacheManager) {
+        return cacheManager.getCache().getAdvancedCache().getComponentRegistry().getCacheMarshaller();
+    }
+
+    static UserSessionEntity createUserSession() {
+        UserSessionEntity session = new UserSessionEntity();
+        session.setId("b5e5c3b6-8a5e-4b52-9d3c-7c2d8d1b5a0e");
+        session.setRealm("test");
+        session.setUser("6f7a2b3c-1d4e-4f5a-8b9c-0d1e2f3a4b5c");
+        session.setLoginUsername("test-user@localhost");
+        session.setIpAddress("127.0.0.1");
+        session.setAuthMethod("openid-connect");
+        session.setRememberMe(true);
+        session.setStarted(1464171000);
+        session.setLastSessionRefresh(1464171300);
+        session.setClientSessions(new HashSet<>(Arrays.asList("1c2d3e4f-5a6b-4c7d-8e9f-0a1b2c3d4e5f", "2d3e4f5a-6b7c-4d8e-9f0a-1b2c3d4e5f6a")));
+        session.setState(UserSessionModel.State.LOGGED_IN);
+        session.setNotes(new HashMap<String, String>());
+        session.getNotes().put("AUTH_TIME", "1464171000");
+        return session;
+    }
+
+    static ClientSessionEntity createClientSession() {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setId("1c2d3e4f-5a6b-4c7d-8e9f-0a1b2c3d4e5f");
+        session.setRealm("test");
+        session.setClient("9a8b7c6d-5e4f-4a3b-2c1d-0e9f8a7b6c5d");
+        session.setUserSession("b5e5c3b6-8a5e-4b52-9d3c-7c2d8d1b5a0e");
+        session.setAuthMethod("openid-connect");
+        session.setRedirectUri("http://localhost:8081/app/auth");
+        session.setTimestamp(1464171300);
+        session.setAction("CODE_TO_TOKEN");
+        session.setRoles(new HashSet<>(Arrays.asList("d6a1b1c5-7c1e-4d4b-9d8a-1e6f4f7f2b3a", "5f0f4b4e-2b2d-4a7f-8f37-4c4c3f0d1e2b")));
+        session.setProtocolMappers(new HashSet<>(Arrays.asList("8d0bba5a-4b4f-4c27-b8b7-5f1b2a3c7f9e")));
+        session.setNotes(new HashMap<String, String>());
+        session.getNotes().put("response_type", "code");
+        session.getNotes().put("iss", "http://localhost:8081/auth/realms/test");
+        session.getAuthenticatorStatus().put("auth-cookie", ClientSessionModel.ExecutionStatus.ATTEMPTED);
+        session.getAuthenticatorStatus().put("auth-username-password-form", ClientSessionModel.ExecutionStatus.SUCCESS);
+        session.setAuthUserId("6f7a2b3c-1d4e-4f5a-8b9c-0d1e2f3a4b5c");
+        session.getRequiredActions().add("UPDATE_PASSWORD");
+        return session;
+    }
+
+    static LoginFailureEntity createLoginFailure() {
+        LoginFailureEntity loginFailure = new LoginFailureEntity();
+        loginFailure.setUsername("test-user@localhost");
+        loginFailure.setRealm("test");
+        loginFailure.setFailedLoginNotBefore(1464171360);
+        loginFailure.setNumFailures(3);
+        loginFailure.setLastFailure(1464171300123L);
+        loginFailure.setLastIPFailure("127.0.0.1");
+        return loginFailure;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T object) throws Exception {
+        return (T) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(object));
+    }
+
+    @Test
+    public void testUserSession() throws Exception {
+        UserSessionEntity expected = createUserSession();
+        UserSessionEntity actual = roundTrip(expected);
+
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getUser(), actual.getUser());
+        Assert.assertNull(actual.getBrokerSessionId());
+        Assert.assertEquals(expected.getLoginUsername(), actual.getLoginUsername());
+        Assert.assertEquals(expected.getIpAddress(), actual.getIpAddress());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertTrue(actual.isRememberMe());
+        Assert.assertEquals(expected.getStarted(), actual.getStarted());
+        Assert.assertEquals(expected.getLastSessionRefresh(), actual.getLastSessionRefresh());
+        Assert.assertEquals(expected.getClientSessions(), actual.getClientSessions());
+        Assert.assertEquals(expected.getState(), actual.getState());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+
+        expected.setState(null);
+        expected.setNotes(null);
+        actual = roundTrip(expected);
+        Assert.assertNull(actual.getState());
+        Assert.assertNull(actual.getNotes());
+    }
+
+    @Test
+    public void testClientSession() throws Exception {
+        ClientSessionEntity expected = createClientSession();
+        ClientSessionEntity actual = roundTrip(expected);
+
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getClient(), actual.getClient());
+        Assert.assertEquals(expected.getUserSession(), actual.getUserSession());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.getRedirectUri(), actual.getRedirectUri());
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assert.assertEquals(expected.getAction(), actual.getAction());
+        Assert.assertEquals(expected.getRoles(), actual.getRoles());
+        Assert.assertEquals(expected.getProtocolMappers(), actual.getProtocolMappers());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+        Assert.assertNull(actual.getUserSessionNotes());
+        Assert.assertEquals(expected.getAuthenticatorStatus(), actual.getAuthenticatorStatus());
+        Assert.assertEquals(expected.getAuthUserId(), actual.getAuthUserId());
+        Assert.assertEquals(expected.getRequiredActions(), actual.getRequiredActions());
+    }
+
+    @Test
+    public void testLoginFailure() throws Exception {
+        LoginFailureEntity expected = createLoginFailure();
+        LoginFailureEntity actual = roundTrip(expected);
+
+        Assert.assertEquals(expected.getUsername(), actual.getUsername());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getFailedLoginNotBefore(), actual.getFailedLoginNotBefore());
+        Assert.assertEquals(expected.getNumFailures(), actual.getNumFailures());
+        Assert.assertEquals(expected.getLastFailure(), actual.getLastFailure());
+        Assert.assertEquals(expected.getLastIPFailure(), actual.getLastIPFailure());
+
+        LoginFailureKey key = new LoginFailureKey("test", "test-user@localhost");
+        Assert.assertEquals(key, roundTrip(key));
+    }
+
+    @Test
+    public void testLongString() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            value.append('ž');
+        }
+        UserSessionEntity expected = createUserSession();
+        expected.getNotes().put("long", value.toString());
+        Assert.assertEquals(expected.getNotes(), roundTrip(expected).getNotes());
+    }
+
+    @Test
+    public void testEnumWrittenByName() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        KeycloakMarshallUtil.writeEnum(out, UserSessionModel.State.LOGGED_OUT);
+        KeycloakMarshallUtil.writeEnum(out, null);
+        out.close();
+
+        // the name is stable, unlike the ordinal, which changes if constants are added or reordered
+        Assert.assertTrue(new String(bytes.toByteArray(), "UTF-8").contains("LOGGED_OUT"));
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(UserSessionModel.State.LOGGED_OUT, KeycloakMarshallUtil.readEnum(in, UserSessionModel.State.class));
+        Assert.assertNull(KeycloakMarshallUtil.readEnum(in, UserSessionModel.State.class));
+    }
+
+}
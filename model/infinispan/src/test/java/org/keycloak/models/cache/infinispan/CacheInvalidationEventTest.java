@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.cluster.ClusterEvent;
+import org.keycloak.cluster.ClusterListener;
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.cluster.ExecutionResult;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.cache.infinispan.entities.AbstractRevisioned;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Two nodes with separate caches, connected by a cluster provider which delivers events to the listeners of all nodes
+ */
+public class CacheInvalidationEventTest {
+
+    private DefaultCacheManager cacheManager1;
+    private DefaultCacheManager cacheManager2;
+    private RealmCacheManager node1;
+    private RealmCacheManager node2;
+    private TestCluster cluster;
+    private KeycloakSession session;
+
+    @Before
+    public void before() {
+        cacheManager1 = CacheTestUtil.createCacheManager();
+        cacheManager2 = CacheTestUtil.createCacheManager();
+        node1 = new RealmCacheManager(CacheTestUtil.realmCache(cacheManager1), CacheTestUtil.revisions(cacheManager1), CacheMemoryAccounting.create(null));
+        node2 = new RealmCacheManager(CacheTestUtil.realmCache(cacheManager2), CacheTestUtil.revisions(cacheManager2), CacheMemoryAccounting.create(null));
+
+        cluster = new TestCluster();
+        cluster.registerListener(RealmCacheManager.INVALIDATION_EVENTS, node1::invalidationEventReceived);
+        cluster.registerListener(RealmCacheManager.INVALIDATION_EVENTS, node2::invalidationEventReceived);
+
+        session = (KeycloakSession) Proxy.newProxyInstance(KeycloakSession.class.getClassLoader(), new Class[] { KeycloakSession.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getProvider") && args[0] == ClusterProvider.class ? cluster : null;
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        cacheManager1.stop();
+        cacheManager2.stop();
+    }
+
+    @Test
+    public void invalidationsSentInOneEvent() {
+        add(node1, "c1", "c2", "c3");
+        add(node2, "c1", "c2", "c3");
+
+        node1.invalidateObjects(session, new HashSet<>(Arrays.asList("c1", "c2")));
+
+        assertEquals(1, cluster.sent);
+        for (RealmCacheManager node : Arrays.asList(node1, node2)) {
+            assertNull(node.get("c1", Revisioned.class));
+            assertNull(node.get("c2", Revisioned.class));
+            assertNotNull(node.get("c3", Revisioned.class));
+        }
+    }
+
+    @Test
+    public void staleEntryNotCachedAfterInvalidation() {
+        add(node2, "c1");
+        long startupRevision = node2.getCurrentCounter();
+        Revisioned stale = node2.get("c1", Revisioned.class);
+
+        node1.invalidateObjects(session, new HashSet<>(Arrays.asList("c1")));
+
+        // A transaction on node 2, which read the entry before the invalidation, can't put it back
+        node2.addRevisioned(stale, startupRevision);
+        assertNull(node2.get("c1", Revisioned.class));
+    }
+
+    private void add(RealmCacheManager node, String... ids) {
+        for (String id : ids) {
+            long revision = node.getCurrentCounter();
+            node.revisions.put(id, revision);
+            node.getCache().put(id, new AbstractRevisioned(revision, id));
+        }
+    }
+
+    private static class TestCluster implements ClusterProvider {
+
+        private final List<ClusterListener> listeners = new ArrayList<>();
+        private int sent;
+
+        @Override
+        public int getClusterStartupTime() {
+            return 0;
+        }
+
+        @Override
+        public <T> ExecutionResult<T> executeIfNotExecuted(String taskKey, int taskTimeoutInSeconds, Callable<T> task) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerListener(String taskKey, ClusterListener task) {
+            listeners.add(task);
+        }
+
+        @Override
+        public void notify(String taskKey, ClusterEvent event) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void notifySync(String taskKey, ClusterEvent event) {
+            sent++;
+            for (ClusterListener listener : listeners) {
+                listener.run(event);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.cache.infinispan.CacheMemoryAccounting.EntryType;
+import org.keycloak.models.cache.infinispan.entities.ClientListQuery;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheMemoryAccountingTest {
+
+    private DefaultCacheManager cacheManager;
+
+    @Before
+    public void before() {
+        cacheManager = CacheTestUtil.createCacheManager();
+    }
+
+    @After
+    public void after() {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void unlimitedCacheWeighedNotEvicted() {
+        RealmCacheManager realmCache = realmCache(CacheMemoryAccounting.create(null));
+        add(realmCache, "q1", "r1");
+        add(realmCache, "q2", "r1");
+        add(realmCache, "q3", "r2");
+        assertTrue(realmCache.getMemoryAccounting().getTotalWeight() > 0);
+        assertEquals(2, realmCache.getMemoryAccounting().getRealmCount());
+        assertEquals("2", realmCache.getMemoryAccounting().getOperationalInfo().get("realm.r1.entries"));
+        assertNotNull(realmCache.get("q1", Revisioned.class));
+        assertNotNull(realmCache.get("q2", Revisioned.class));
+        assertNotNull(realmCache.get("q3", Revisioned.class));
+    }
+
+    @Test
+    public void emptiedRealmRemoved() {
+        CacheMemoryAccounting accounting = limitRealmWeight(Long.MAX_VALUE);
+        accounting.added("q1", query("q1", "r1"));
+        accounting.added("q2", query("q2", "r1"));
+        accounting.added("q3", query("q3", "r2"));
+        assertEquals(2, accounting.getRealmCount());
+
+        accounting.removed("q1");
+        accounting.removed("q2");
+        assertEquals(1, accounting.getRealmCount());
+        accounting.removed("q3");
+        assertEquals(0, accounting.getRealmCount());
+        assertEquals(0, accounting.getTotalWeight());
+
+        accounting.added("q1", query("q1", "r1"));
+        assertEquals(1, accounting.getRealmCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() {
+        CacheMemoryAccounting accounting = limitRealmWeight(RevisionedSizeEstimator.estimate(query("q1", "r1")) * 3);
+        accounting.added("q1", query("q1", "r1"));
+        accounting.added("q2", query("q2", "r1"));
+        accounting.added("q3", query("q3", "r1"));
+        assertTrue(accounting.getEvictions("r1", EntryType.QUERY).isEmpty());
+
+        accounting.accessed("q1");
+        accounting.added("q4", query("q4", "r1"));
+        assertEquals(Collections.singletonList("q2"), accounting.getEvictions("r1", EntryType.QUERY));
+
+        accounting.accessed("q3");
+        accounting.added("q5", query("q5", "r1"));
+        assertEquals(Collections.singletonList("q1"), accounting.getEvictions("r1", EntryType.QUERY));
+    }
+
+    @Test
+    public void evictionSampledFromOldestEntries() {
+        // ids of the same length, so all entries have the same weight
+        int count = 20;
+        CacheMemoryAccounting accounting = limitRealmWeight(RevisionedSizeEstimator.estimate(query("q10", "r1")) * count);
+        for (int i = 10; i < 10 + count; i++) {
+            accounting.added("q" + i, query("q" + i, "r1"));
+        }
+        for (int i = 10; i < 10 + count; i++) {
+            if (i != 15) accounting.accessed("q" + i);
+        }
+
+        // q15 is the least recently used one of the oldest entries
+        accounting.added("q" + (10 + count), query("q" + (10 + count), "r1"));
+        assertEquals(Collections.singletonList("q15"), accounting.getEvictions("r1", EntryType.QUERY));
+    }
+
+    @Test
+    public void evictionLimitedToOverweightRealm() {
+        CacheMemoryAccounting accounting = limitRealmWeight(RevisionedSizeEstimator.estimate(query("q1", "r1")) * 2);
+        accounting.added("q1", query("q1", "r1"));
+        accounting.added("q2", query("q2", "r2"));
+        accounting.added("q3", query("q3", "r2"));
+        accounting.added("q4", query("q4", "r2"));
+
+        List<String> evictions = accounting.getEvictions("r2", EntryType.QUERY);
+        assertEquals(Collections.singletonList("q2"), evictions);
+        assertTrue(accounting.getEvictions("r1", EntryType.QUERY).isEmpty());
+    }
+
+    @Test
+    public void overweightEntriesEvictedFromCache() {
+        RealmCacheManager realmCache = realmCache(limitRealmWeight(RevisionedSizeEstimator.estimate(query("q1", "r1")) * 2));
+        add(realmCache, "q1", "r1");
+        add(realmCache, "q2", "r1");
+        assertNotNull(realmCache.get("q1", Revisioned.class));
+
+        add(realmCache, "q3", "r1");
+        assertNotNull(realmCache.get("q1", Revisioned.class));
+        assertNull(realmCache.get("q2", Revisioned.class));
+        assertNotNull(realmCache.get("q3", Revisioned.class));
+        assertFalse(realmCache.getCache().containsKey("q2"));
+    }
+
+    private RealmCacheManager realmCache(CacheMemoryAccounting accounting) {
+        return new RealmCacheManager(CacheTestUtil.realmCache(cacheManager), CacheTestUtil.revisions(cacheManager), accounting);
+    }
+
+    private static CacheMemoryAccounting limitRealmWeight(long maxRealmWeight) {
+        return new CacheMemoryAccounting(-1, maxRealmWeight, new EnumMap<EntryType, Long>(EntryType.class));
+    }
+
+    private static ClientListQuery query(String id, String realmId) {
+        return new ClientListQuery(1L, id, CacheTestUtil.model(RealmModel.class, realmId), new HashSet<String>());
+    }
+
+    private static void add(RealmCacheManager realmCache, String id, String realmId) {
+        long revision = realmCache.getCurrentRevision(id);
+        realmCache.addRevisioned(new ClientListQuery(revision, id, CacheTestUtil.model(RealmModel.class, realmId), new HashSet<String>()), revision);
+    }
+
+}
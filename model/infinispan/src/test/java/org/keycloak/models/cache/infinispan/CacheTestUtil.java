@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.transaction.TransactionMode;
+import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.cache.infinispan.entities.CachedRealmRole;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+/**
+ * Local caches configured like the embedded caches of {@link org.keycloak.connections.infinispan.DefaultInfinispanConnectionProviderFactory}
+ */
+class CacheTestUtil {
+
+    static DefaultCacheManager createCacheManager() {
+        GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+        gcb.globalJmxStatistics().allowDuplicateDomains(true);
+        DefaultCacheManager cacheManager = new DefaultCacheManager(gcb.build());
+
+        cacheManager.defineConfiguration(InfinispanConnectionProvider.REALM_CACHE_NAME, new ConfigurationBuilder().build());
+        cacheManager.defineConfiguration(InfinispanConnectionProvider.USER_CACHE_NAME, new ConfigurationBuilder().build());
+
+        ConfigurationBuilder counterConfigBuilder = new ConfigurationBuilder();
+        counterConfigBuilder.invocationBatching().enable()
+                .transaction().transactionMode(TransactionMode.TRANSACTIONAL);
+        counterConfigBuilder.transaction().transactionManagerLookup(new DummyTransactionManagerLookup());
+        counterConfigBuilder.transaction().lockingMode(LockingMode.PESSIMISTIC);
+        cacheManager.defineConfiguration(InfinispanConnectionProvider.VERSION_CACHE_NAME, counterConfigBuilder.build());
+        return cacheManager;
+    }
+
+    static Cache<String, Revisioned> realmCache(DefaultCacheManager cacheManager) {
+        return cacheManager.getCache(InfinispanConnectionProvider.REALM_CACHE_NAME);
+    }
+
+    static Cache<String, Long> revisions(DefaultCacheManager cacheManager) {
+        return cacheManager.getCache(InfinispanConnectionProvider.VERSION_CACHE_NAME);
+    }
+
+    static CachedRealmRole role(long revision, String id, String realmId) {
+        return new CachedRealmRole(revision, model(RoleModel.class, id), model(RealmModel.class, realmId));
+    }
+
+    // Model stub, which only knows its id
+    static <T> T model(Class<T> type, final String id) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getId") || method.getName().equals("getName")) return id;
+                if (method.getReturnType() == boolean.class) return false;
+                if (method.getReturnType() == int.class) return 0;
+                if (method.getReturnType() == long.class) return 0L;
+                if (method.getReturnType() == java.util.Set.class) return Collections.emptySet();
+                if (method.getReturnType() == java.util.List.class) return Collections.emptyList();
+                if (method.getReturnType() == java.util.Map.class) return Collections.emptyMap();
+                return null;
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.models.cache.infinispan.entities.AbstractRevisioned;
+import org.keycloak.models.cache.infinispan.entities.Revisioned;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RealmCacheSnapshotTest {
+
+    private DefaultCacheManager cacheManager;
+    private RealmCacheManager realmCache;
+
+    @Before
+    public void before() {
+        cacheManager = CacheTestUtil.createCacheManager();
+        realmCache = new RealmCacheManager(CacheTestUtil.realmCache(cacheManager), CacheTestUtil.revisions(cacheManager), CacheMemoryAccounting.create(null));
+    }
+
+    @After
+    public void after() {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void withoutRemovesAllIdsInOneCopy() {
+        RealmCacheSnapshot snapshot = new RealmCacheSnapshot("r1").with(entries("r1", "c1", "c2", "c3"), Collections.<String, Set<String>>emptyMap());
+
+        RealmCacheSnapshot updated = snapshot.without(Arrays.asList("c1", "c3", "unknown"));
+
+        assertEquals(4, snapshot.size());
+        assertEquals(2, updated.size());
+        assertTrue(updated.contains("r1"));
+        assertTrue(updated.contains("c2"));
+        assertEquals(snapshot.getRolesVersion(), updated.getRolesVersion());
+
+        assertSame(updated, updated.without(Arrays.asList("c1", "unknown")));
+    }
+
+    @Test
+    public void withoutRoleDropsClosures() {
+        Map<String, Revisioned> added = entries("r1", "c1");
+        added.put("role1", CacheTestUtil.role(1L, "role1", "r1"));
+        added.put("role2", CacheTestUtil.role(1L, "role2", "r1"));
+        RealmCacheSnapshot snapshot = new RealmCacheSnapshot("r1").with(added,
+                Collections.singletonMap("role1", (Set<String>) new HashSet<>(Arrays.asList("role1", "role2"))));
+        assertNotNull(snapshot.getRoleClosure("role1"));
+
+        RealmCacheSnapshot withoutClient = snapshot.without(Collections.singleton("c1"));
+        assertNotNull(withoutClient.getRoleClosure("role1"));
+        assertEquals(snapshot.getRolesVersion(), withoutClient.getRolesVersion());
+
+        RealmCacheSnapshot withoutRole = snapshot.without(Arrays.asList("c1", "role2"));
+        assertNull(withoutRole.getRoleClosure("role1"));
+        assertEquals(snapshot.getRolesVersion() + 1, withoutRole.getRolesVersion());
+        assertEquals(2, withoutRole.size());
+        assertTrue(withoutRole.contains("role1"));
+    }
+
+    @Test
+    public void bulkInvalidationUpdatesAllSnapshots() {
+        publish("r1", "r1", "c1", "c2", "c3");
+        publish("r2", "r2", "c4", "c5");
+
+        realmCache.bumpVersions(new HashSet<>(Arrays.asList("c1", "c2", "c4")));
+
+        RealmCacheSnapshot r1 = realmCache.getSnapshot("r1");
+        assertEquals(2, r1.size());
+        assertTrue(r1.contains("r1"));
+        assertTrue(r1.contains("c3"));
+        RealmCacheSnapshot r2 = realmCache.getSnapshot("r2");
+        assertEquals(2, r2.size());
+        assertTrue(r2.contains("c5"));
+
+        realmCache.bumpVersions(Arrays.asList("r1", "c5"));
+        assertEquals(0, realmCache.getSnapshot("r1").size());
+        assertEquals(1, realmCache.getSnapshot("r2").size());
+    }
+
+    @Test
+    public void staleEntryNotPublishedAfterInvalidation() {
+        publish("r1", "r1", "c1");
+        Revisioned stale = realmCache.getSnapshot("r1").get("c1", Revisioned.class);
+
+        realmCache.bumpVersion("c1");
+        assertFalse(realmCache.getSnapshot("r1").contains("c1"));
+
+        realmCache.publishSnapshot("r1", Collections.singletonMap("c1", stale), 0L, Collections.<String, Set<String>>emptyMap());
+        assertFalse(realmCache.getSnapshot("r1").contains("c1"));
+    }
+
+    private void publish(String realmId, String... ids) {
+        Map<String, Revisioned> added = new HashMap<>();
+        for (String id : ids) {
+            long revision = realmCache.getCurrentCounter();
+            CacheTestUtil.revisions(cacheManager).put(id, revision);
+            added.put(id, new AbstractRevisioned(revision, id));
+        }
+        realmCache.publishSnapshot(realmId, added, 0L, Collections.<String, Set<String>>emptyMap());
+    }
+
+    private static Map<String, Revisioned> entries(String... ids) {
+        Map<String, Revisioned> entries = new HashMap<>();
+        for (String id : ids) {
+            entries.put(id, new AbstractRevisioned(1L, id));
+        }
+        return entries;
+    }
+
+}
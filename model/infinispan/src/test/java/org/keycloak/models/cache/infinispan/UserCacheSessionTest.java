@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.cache.infinispan;
+
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.models.KeycloakTransactionManager;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserFederationProviderModel;
+import org.keycloak.models.UserProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserCacheSessionTest {
+
+    private DefaultCacheManager cacheManager;
+    private UserCacheManager userCache;
+    private final Map<String, Integer> delegateCalls = new HashMap<>();
+
+    @Before
+    public void before() {
+        cacheManager = CacheTestUtil.createCacheManager();
+        userCache = new UserCacheManager(cacheManager.getCache(InfinispanConnectionProvider.USER_CACHE_NAME), CacheTestUtil.revisions(cacheManager),
+                CacheMemoryAccounting.create(null));
+    }
+
+    @After
+    public void after() {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void queriesCachedAcrossSessions() {
+        RealmModel realm = CacheTestUtil.model(RealmModel.class, "r1");
+        for (int i = 0; i < 3; i++) {
+            UserCacheSession session = createSession();
+            assertEquals(5, session.getUsersCount(realm));
+            assertEquals(0, session.searchForUser("john", realm, 0, 10).size());
+        }
+        assertEquals(1, (int) delegateCalls.get("getUsersCount"));
+        assertEquals(1, (int) delegateCalls.get("searchForUser"));
+    }
+
+    @Test
+    public void federatedRealmQueriesNotCached() {
+        RealmModel realm = federatedRealm("r1");
+        for (int i = 0; i < 3; i++) {
+            UserCacheSession session = createSession();
+            assertEquals(5, session.getUsersCount(realm));
+            assertEquals(0, session.searchForUser("john", realm, 0, 10).size());
+        }
+        assertEquals(3, (int) delegateCalls.get("getUsersCount"));
+        assertEquals(3, (int) delegateCalls.get("searchForUser"));
+    }
+
+    private UserCacheSession createSession() {
+        final UserProvider delegate = (UserProvider) Proxy.newProxyInstance(UserProvider.class.getClassLoader(), new Class[] { UserProvider.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Integer calls = delegateCalls.get(method.getName());
+                delegateCalls.put(method.getName(), calls == null ? 1 : calls + 1);
+                if (method.getName().equals("getUsersCount")) return 5;
+                if (method.getReturnType() == java.util.List.class) return Collections.emptyList();
+                return null;
+            }
+        });
+        final KeycloakTransaction[] transaction = new KeycloakTransaction[1];
+        final KeycloakTransactionManager transactionManager = (KeycloakTransactionManager) Proxy.newProxyInstance(KeycloakTransactionManager.class.getClassLoader(),
+                new Class[] { KeycloakTransactionManager.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("enlistAfterCompletion")) transaction[0] = (KeycloakTransaction) args[0];
+                return null;
+            }
+        });
+        KeycloakSession session = (KeycloakSession) Proxy.newProxyInstance(KeycloakSession.class.getClassLoader(), new Class[] { KeycloakSession.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getTransaction")) return transactionManager;
+                if (method.getName().equals("getProvider") && args[0] == UserProvider.class) return delegate;
+                return null;
+            }
+        });
+        UserCacheSession userSession = new UserCacheSession(userCache, session);
+        transaction[0].begin();
+        return userSession;
+    }
+
+    private static RealmModel federatedRealm(final String id) {
+        final RealmModel realm = CacheTestUtil.model(RealmModel.class, id);
+        return (RealmModel) Proxy.newProxyInstance(RealmModel.class.getClassLoader(), new Class[] { RealmModel.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getUserFederationProviders")) return Collections.singletonList(new UserFederationProviderModel());
+                return method.invoke(realm, args);
+            }
+        });
+    }
+
+}
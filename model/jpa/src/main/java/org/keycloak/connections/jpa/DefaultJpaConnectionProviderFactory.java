@@ -20,7 +20,6 @@ package org.keycloak.connections.jpa;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -148,7 +147,9 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
                     properties.put("hibernate.show_sql", config.getBoolean("showSql", false));
                     properties.put("hibernate.format_sql", config.getBoolean("formatSql", true));
 
+                    long start = System.currentTimeMillis();
                     connection = getConnection();
+                    long connected = System.currentTimeMillis();
                     try{ 
 	                    prepareOperationalInfo(connection);
 
@@ -157,6 +158,7 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
                             properties.put("hibernate.dialect", driverDialect);
                         }
 	                    
+                        long schemaStart = System.currentTimeMillis();
 	                    if (databaseSchema != null) {
 	                        logger.trace("Updating database");
 	
@@ -166,20 +168,7 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
 	                        }
 	
 	                        if (databaseSchema.equals("update")) {
-	                            String currentVersion = null;
-	                            try {
-	                                ResultSet resultSet = connection.createStatement().executeQuery(updater.getCurrentVersionSql(schema));
-	                                if (resultSet.next()) {
-	                                    currentVersion = resultSet.getString(1);
-	                                }
-	                            } catch (SQLException e) {
-	                            }
-	
-	                            if (currentVersion == null || !JpaUpdaterProvider.LAST_VERSION.equals(currentVersion)) {
-	                                updater.update(connection, schema);
-	                            } else {
-	                                logger.debug("Database is up to date");
-	                            }
+	                            updater.update(connection, schema);
 	                        } else if (databaseSchema.equals("validate")) {
 	                            updater.validate(connection, schema);
 	                        } else {
@@ -194,10 +183,16 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
                             properties.put("hibernate.generate_statistics", true);
                         }
 
+                        long schemaEnd = System.currentTimeMillis();
+
 	                    logger.trace("Creating EntityManagerFactory");
 	                    emf = JpaUtils.createEntityManagerFactory(unitName, properties, getClass().getClassLoader());
 	                    logger.trace("EntityManagerFactory created");
 
+                        long end = System.currentTimeMillis();
+                        logger.infof("Database initialized in %d ms (connection: %d ms, database info: %d ms, schema: %d ms, EntityManagerFactory: %d ms)",
+                                end - start, connected - start, schemaStart - connected, schemaEnd - schemaStart, end - schemaEnd);
+
                         if (globalStatsInterval != -1) {
                             startGlobalStats(session, globalStatsInterval);
                         }
@@ -23,16 +23,33 @@ import liquibase.changelog.ChangeSet;
 import liquibase.changelog.RanChangeSet;
 import liquibase.exception.LiquibaseException;
 import org.jboss.logging.Logger;
+import org.keycloak.common.util.Base64Url;
 import org.keycloak.connections.jpa.updater.JpaUpdaterProvider;
 import org.keycloak.connections.jpa.updater.liquibase.conn.LiquibaseConnectionProvider;
 import org.keycloak.models.KeycloakSession;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Updates or validates the database with Liquibase. Once the database is updated, a hash of the bundled changelogs is recorded as
+ * Liquibase tag of the last applied changeset. If the tag is found on startup, the database is known to be up to date and
+ * parsing of the changelogs is skipped completely. Otherwise the changelogs are checked by Liquibase as usual.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
@@ -42,17 +59,18 @@ public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
     public static final String CHANGELOG = "META-INF/jpa-changelog-master.xml";
     public static final String DB2_CHANGELOG = "META-INF/db2-jpa-changelog-master.xml";
 
+    public static final String CHANGELOG_HASH_PREFIX = "changelog-";
+
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("<include\\s+file=\"([^\"]+)\"");
+
+    private static volatile String changelogHash;
+
     private final KeycloakSession session;
 
     public LiquibaseJpaUpdaterProvider(KeycloakSession session) {
         this.session = session;
     }
 
-    @Override
-    public String getCurrentVersionSql(String defaultSchema) {
-        return "SELECT ID from " + getTable("DATABASECHANGELOG", defaultSchema) + " ORDER BY DATEEXECUTED DESC LIMIT 1";
-    }
-
     @Override
     public void update(Connection connection, String defaultSchema) {
         logger.debug("Starting database update");
@@ -61,9 +79,16 @@ public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
         ThreadLocalSessionContext.setCurrentSession(session);
 
         try {
+            if (isChangelogApplied(connection, defaultSchema)) {
+                logger.debug("Database is up to date");
+                return;
+            }
+
+            long start = System.currentTimeMillis();
             Liquibase liquibase = getLiquibase(connection, defaultSchema);
 
             List<ChangeSet> changeSets = liquibase.listUnrunChangeSets((Contexts) null);
+            logger.debugf("Changelogs checked in %d ms, %d changesets to run", System.currentTimeMillis() - start, changeSets.size());
             if (!changeSets.isEmpty()) {
                 if (changeSets.get(0).getId().equals(FIRST_VERSION)) {
                     Statement statement = connection.createStatement();
@@ -84,8 +109,12 @@ public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
                     }
                 }
 
+                start = System.currentTimeMillis();
                 liquibase.update((Contexts) null);
+                logger.debugf("Changesets applied in %d ms", System.currentTimeMillis() - start);
             }
+
+            liquibase.tag(getChangelogHash());
         } catch (Exception e) {
             throw new RuntimeException("Failed to update database", e);
         } finally {
@@ -99,6 +128,11 @@ public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
     public void validate(Connection connection, String defaultSchema) {
         logger.debug("Validating if database is updated");
 
+        if (isChangelogApplied(connection, defaultSchema)) {
+            logger.debug("Validation passed. Database is up-to-date");
+            return;
+        }
+
         try {
             Liquibase liquibase = getLiquibase(connection, defaultSchema);
 
@@ -117,6 +151,92 @@ public class LiquibaseJpaUpdaterProvider implements JpaUpdaterProvider {
         }
     }
 
+    /**
+     * Checks if the hash of the bundled changelogs was recorded by a previous update, without parsing the changelogs.
+     */
+    protected boolean isChangelogApplied(Connection connection, String defaultSchema) {
+        long start = System.currentTimeMillis();
+        String hash = getChangelogHash();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + getTable("DATABASECHANGELOG", defaultSchema) + " WHERE TAG = ?")) {
+            statement.setString(1, hash);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                boolean applied = resultSet.next() && resultSet.getInt(1) > 0;
+                logger.debugf("Changelog hash %s %s in %d ms", hash, applied ? "found" : "not found", System.currentTimeMillis() - start);
+                return applied;
+            }
+        } catch (SQLException e) {
+            // Changelog table doesn't exist yet. Some databases abort the whole transaction on failed statements
+            logger.debugf("Changelog hash not available: %s", e.getMessage());
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (SQLException e2) {
+                logger.warn("Can't rollback connection", e2);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return hash of the bundled master changelogs and all changelogs they include
+     */
+    public static String getChangelogHash() {
+        String hash = changelogHash;
+        if (hash == null) {
+            hash = getChangelogHash(LiquibaseJpaUpdaterProvider.class.getClassLoader(), CHANGELOG, DB2_CHANGELOG);
+            changelogHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * @return hash of given master changelogs and all changelogs they include, at any depth
+     */
+    public static String getChangelogHash(ClassLoader classLoader, String... masterChangelogs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            Set<String> visited = new HashSet<>();
+            for (String master : masterChangelogs) {
+                hashChangelog(digest, classLoader, master, visited);
+            }
+            return CHANGELOG_HASH_PREFIX + Base64Url.encode(digest.digest());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new RuntimeException("Failed to compute changelog hash", e);
+        }
+    }
+
+    private static void hashChangelog(MessageDigest digest, ClassLoader classLoader, String name, Set<String> visited) throws IOException {
+        // Changelogs included from both master changelogs are hashed once
+        if (!visited.add(name)) return;
+
+        byte[] content = readChangelog(classLoader, name);
+        digest.update(name.getBytes(Charset.forName("UTF-8")));
+        digest.update(content);
+
+        Matcher matcher = INCLUDE_PATTERN.matcher(new String(content, Charset.forName("UTF-8")));
+        while (matcher.find()) {
+            hashChangelog(digest, classLoader, matcher.group(1), visited);
+        }
+    }
+
+    private static byte[] readChangelog(ClassLoader classLoader, String name) throws IOException {
+        InputStream is = classLoader.getResourceAsStream(name);
+        if (is == null) {
+            throw new IOException("Changelog " + name + " not found");
+        }
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = is.read(buffer); read != -1; read = is.read(buffer)) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
     private Liquibase getLiquibase(Connection connection, String defaultSchema) throws LiquibaseException {
         LiquibaseConnectionProvider liquibaseProvider = session.getProvider(LiquibaseConnectionProvider.class);
         return liquibaseProvider.getLiquibase(connection, defaultSchema);
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.connections.jpa.updater.liquibase.custom;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import liquibase.exception.CustomChangeException;
+import liquibase.statement.core.InsertStatement;
+import liquibase.structure.core.Table;
+import org.keycloak.models.Constants;
+import org.keycloak.models.jpa.entities.RealmAttributes;
+
+/**
+ * Sets the default passiveKeyLifespan for existing realms, so keys replaced after the update are kept as passive keys
+ * like for new realms.
+ */
+public class AddRealmPassiveKeyLifespan extends CustomKeycloakTask {
+
+    @Override
+    protected void generateStatementsImpl() throws CustomChangeException {
+        String realmAttributeTableName = database.correctObjectName("REALM_ATTRIBUTE", Table.class);
+
+        try {
+            PreparedStatement statement = jdbcConnection.prepareStatement("select ID from " + getTableName("REALM") + " where ID not in (select REALM_ID from "
+                    + getTableName("REALM_ATTRIBUTE") + " where NAME = '" + RealmAttributes.PASSIVE_KEY_LIFESPAN + "')");
+
+            try {
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    while (resultSet.next()) {
+                        InsertStatement insertStatement = new InsertStatement(null, null, realmAttributeTableName)
+                                .addColumnValue("NAME", RealmAttributes.PASSIVE_KEY_LIFESPAN)
+                                .addColumnValue("VALUE", String.valueOf(Constants.DEFAULT_PASSIVE_KEY_LIFESPAN))
+                                .addColumnValue("REALM_ID", resultSet.getString(1));
+                        statements.add(insertStatement);
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+
+            confirmationMessage.append("Set passiveKeyLifespan of " + statements.size() + " realms");
+        } catch (Exception e) {
+            throw new CustomChangeException(getTaskId() + ": Exception when updating data from previous version", e);
+        }
+    }
+
+    @Override
+    protected String getTaskId() {
+        return "Add realm passiveKeyLifespan";
+    }
+}
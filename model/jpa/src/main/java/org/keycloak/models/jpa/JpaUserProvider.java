@@ -39,6 +39,7 @@ import org.keycloak.models.utils.KeycloakModelUtils;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -58,9 +59,40 @@ public class JpaUserProvider implements UserProvider {
     private final KeycloakSession session;
     protected EntityManager em;
 
+    private final boolean indexedSearch;
+    private final boolean batchFetch;
+
     public JpaUserProvider(KeycloakSession session, EntityManager em) {
+        this(session, em, false, false);
+    }
+
+    public JpaUserProvider(KeycloakSession session, EntityManager em, boolean indexedSearch, boolean batchFetch) {
         this.session = session;
         this.em = em;
+        this.indexedSearch = indexedSearch;
+        this.batchFetch = batchFetch;
+    }
+
+    protected UserModel toModel(RealmModel realm, UserEntity entity) {
+        return toModels(realm, Collections.singletonList(entity)).get(0);
+    }
+
+    /**
+     * Wraps the entities into adapters.  With batch fetch enabled, the sub-collections, role mappings and group memberships
+     * of all the users are loaded up front with {@link UserFetchPlan}, instead of lazily per user.
+     */
+    protected List<UserModel> toModels(RealmModel realm, List<UserEntity> entities) {
+        UserFetchPlan plan = batchFetch && !entities.isEmpty() ? UserFetchPlan.load(em, entities) : null;
+        List<UserModel> users = new ArrayList<UserModel>();
+        for (UserEntity entity : entities) {
+            UserAdapter adapter = new UserAdapter(session, realm, em, entity);
+            adapter.setSearchIndexed(indexedSearch);
+            if (plan != null) {
+                adapter.setFetchedMappings(plan.getRoleIds(entity.getId()), plan.getGroupIds(entity.getId()));
+            }
+            users.add(adapter);
+        }
+        return users;
     }
 
     @Override
@@ -75,8 +107,10 @@ public class JpaUserProvider implements UserProvider {
         entity.setUsername(username.toLowerCase());
         entity.setRealmId(realm.getId());
         em.persist(entity);
+        if (indexedSearch) UserSearchIndex.update(em, entity);
         em.flush();
         UserAdapter userModel = new UserAdapter(session, realm, em, entity);
+        userModel.setSearchIndexed(indexedSearch);
 
         if (addDefaultRoles) {
             for (String r : realm.getDefaultRoles()) {
@@ -120,6 +154,7 @@ public class JpaUserProvider implements UserProvider {
 
     private void removeUser(UserEntity user) {
         String id = user.getId();
+        UserSearchIndex.remove(em, id);
         em.createNamedQuery("deleteUserRoleMappingsByUser").setParameter("user", user).executeUpdate();
         em.createNamedQuery("deleteUserGroupMembershipsByUser").setParameter("user", user).executeUpdate();
         em.createNamedQuery("deleteFederatedIdentityByUser").setParameter("user", user).executeUpdate();
@@ -201,6 +236,8 @@ public class JpaUserProvider implements UserProvider {
                 .setParameter("realmId", realm.getId()).executeUpdate();
         num = em.createNamedQuery("deleteUserGroupMembershipByRealm")
                 .setParameter("realmId", realm.getId()).executeUpdate();
+        num = em.createNamedQuery("deleteSearchTokensByRealm")
+                .setParameter("realmId", realm.getId()).executeUpdate();
         num = em.createNamedQuery("deleteUsersByRealm")
                 .setParameter("realmId", realm.getId()).executeUpdate();
     }
@@ -227,6 +264,10 @@ public class JpaUserProvider implements UserProvider {
                 .setParameter("realmId", realm.getId())
                 .setParameter("link", link.getId())
                 .executeUpdate();
+        num = em.createNamedQuery("deleteSearchTokensByRealmAndLink")
+                .setParameter("realmId", realm.getId())
+                .setParameter("link", link.getId())
+                .executeUpdate();
         num = em.createNamedQuery("deleteUsersByRealmAndLink")
                 .setParameter("realmId", realm.getId())
                 .setParameter("link", link.getId())
@@ -258,12 +299,7 @@ public class JpaUserProvider implements UserProvider {
         TypedQuery<UserEntity> query = em.createNamedQuery("groupMembership", UserEntity.class);
         query.setParameter("groupId", group.getId());
         List<UserEntity> results = query.getResultList();
-
-        List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity user : results) {
-            users.add(new UserAdapter(session, realm, em, user));
-        }
-        return users;
+        return toModels(realm, results);
     }
 
     @Override
@@ -279,7 +315,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("realmId", realm.getId());
         List<UserEntity> entities = query.getResultList();
         if (entities.size() == 0) return null;
-        return new UserAdapter(session, realm, em, entities.get(0));
+        return toModel(realm, entities.get(0));
     }
 
     @Override
@@ -289,7 +325,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("realmId", realm.getId());
         List<UserEntity> results = query.getResultList();
         if (results.size() == 0) return null;
-        return new UserAdapter(session, realm, em, results.get(0));
+        return toModel(realm, results.get(0));
     }
 
     @Override
@@ -298,7 +334,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("email", email.toLowerCase());
         query.setParameter("realmId", realm.getId());
         List<UserEntity> results = query.getResultList();
-        return results.isEmpty() ? null : new UserAdapter(session, realm, em, results.get(0));
+        return results.isEmpty() ? null : toModel(realm, results.get(0));
     }
 
      @Override
@@ -319,7 +355,7 @@ public class JpaUserProvider implements UserProvider {
                     ", userId=" + identity.getUserId() + ", results=" + results);
         } else {
             UserEntity user = results.get(0);
-            return new UserAdapter(session, realm, em, user);
+            return toModel(realm, user);
         }
     }
 
@@ -336,7 +372,7 @@ public class JpaUserProvider implements UserProvider {
                     ", results=" + results);
         } else {
             UserEntity user = results.get(0);
-            return new UserAdapter(session, client.getRealm(), em, user);
+            return toModel(client.getRealm(), user);
         }
     }
 
@@ -366,9 +402,7 @@ public class JpaUserProvider implements UserProvider {
             query.setMaxResults(maxResults);
         }
         List<UserEntity> results = query.getResultList();
-        List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
-        return users;
+        return toModels(realm, results);
     }
 
     @Override
@@ -382,12 +416,7 @@ public class JpaUserProvider implements UserProvider {
             query.setMaxResults(maxResults);
         }
         List<UserEntity> results = query.getResultList();
-
-        List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity user : results) {
-            users.add(new UserAdapter(session, realm, em, user));
-        }
-        return users;
+        return toModels(realm, results);
     }
 
     @Override
@@ -397,6 +426,10 @@ public class JpaUserProvider implements UserProvider {
 
     @Override
     public List<UserModel> searchForUser(String search, RealmModel realm, int firstResult, int maxResults) {
+        if (indexedSearch) {
+            return searchForUserIndexed(search, realm, firstResult, maxResults);
+        }
+
         TypedQuery<UserEntity> query = em.createNamedQuery("searchForUser", UserEntity.class);
         query.setParameter("realmId", realm.getId());
         query.setParameter("search", "%" + search.toLowerCase() + "%");
@@ -407,9 +440,24 @@ public class JpaUserProvider implements UserProvider {
             query.setMaxResults(maxResults);
         }
         List<UserEntity> results = query.getResultList();
-        List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
-        return users;
+        return toModels(realm, results);
+    }
+
+    /**
+     * Prefix search over the USER_SEARCH_TOKEN index
+     */
+    protected List<UserModel> searchForUserIndexed(String search, RealmModel realm, int firstResult, int maxResults) {
+        TypedQuery<UserEntity> query = em.createNamedQuery("searchForUserIndexed", UserEntity.class);
+        query.setParameter("realmId", realm.getId());
+        query.setParameter("search", UserSearchIndex.normalize(search) + "%");
+        if (firstResult != -1) {
+            query.setFirstResult(firstResult);
+        }
+        if (maxResults != -1) {
+            query.setMaxResults(maxResults);
+        }
+        List<UserEntity> results = query.getResultList();
+        return toModels(realm, results);
     }
 
     @Override
@@ -465,9 +513,7 @@ public class JpaUserProvider implements UserProvider {
             query.setMaxResults(maxResults);
         }
         List<UserEntity> results = query.getResultList();
-        List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
-        return users;
+        return toModels(realm, results);
     }
 
     @Override
@@ -477,12 +523,11 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("value", attrValue);
         List<UserAttributeEntity> results = query.getResultList();
 
-        List<UserModel> users = new ArrayList<UserModel>();
+        List<UserEntity> users = new ArrayList<UserEntity>();
         for (UserAttributeEntity attr : results) {
-            UserEntity user = attr.getUser();
-            users.add(new UserAdapter(session, realm, em, user));
+            users.add(attr.getUser());
         }
-        return users;
+        return toModels(realm, users);
     }
 
     private FederatedIdentityEntity findFederatedIdentity(UserModel user, String identityProvider) {
@@ -21,24 +21,103 @@ import org.keycloak.Config;
 import org.keycloak.connections.jpa.JpaConnectionProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
 import org.keycloak.models.UserProvider;
 import org.keycloak.models.UserProviderFactory;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.PostMigrationEvent;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
 
 import javax.persistence.EntityManager;
 
 /**
+ * Config options:
+ * <ul>
+ *     <li>searchMode - <code>like</code> (default) matches the search string anywhere in username, email or full name with a
+ *     full scan of the realm users. <code>indexed</code> matches it as a prefix of the user search tokens (username, email,
+ *     email domain, names and their words) using the USER_SEARCH_TOKEN index.
+ *     The tokens are only maintained in indexed mode. They are dropped on startup in like mode and built for the users
+ *     which don't have any on startup in indexed mode.</li>
+ *     <li>fetchPlan - <code>lazy</code> (default) loads attributes, credentials, required actions, role mappings and groups of
+ *     a user on first access. <code>batch</code> loads them for a user or a whole page of users together in a fixed number
+ *     of queries, which avoids the N+1 queries when all users of a page are accessed.</li>
+ * </ul>
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class JpaUserProviderFactory implements UserProviderFactory {
 
+    public static final String SEARCH_MODE_LIKE = "like";
+    public static final String SEARCH_MODE_INDEXED = "indexed";
+
+    public static final String FETCH_PLAN_LAZY = "lazy";
+    public static final String FETCH_PLAN_BATCH = "batch";
+
+    private static final int INDEX_BATCH_SIZE = 1000;
+
+    private boolean indexedSearch;
+    private boolean batchFetch;
+
     @Override
     public void init(Config.Scope config) {
+        String searchMode = config.get("searchMode", SEARCH_MODE_LIKE);
+        if (!SEARCH_MODE_LIKE.equals(searchMode) && !SEARCH_MODE_INDEXED.equals(searchMode)) {
+            throw new RuntimeException("Invalid searchMode '" + searchMode + "', supported values are '" + SEARCH_MODE_LIKE + "' and '" + SEARCH_MODE_INDEXED + "'");
+        }
+        indexedSearch = SEARCH_MODE_INDEXED.equals(searchMode);
+
+        String fetchPlan = config.get("fetchPlan", FETCH_PLAN_LAZY);
+        if (!FETCH_PLAN_LAZY.equals(fetchPlan) && !FETCH_PLAN_BATCH.equals(fetchPlan)) {
+            throw new RuntimeException("Invalid fetchPlan '" + fetchPlan + "', supported values are '" + FETCH_PLAN_LAZY + "' and '" + FETCH_PLAN_BATCH + "'");
+        }
+        batchFetch = FETCH_PLAN_BATCH.equals(fetchPlan);
     }
 
     @Override
-    public void postInit(KeycloakSessionFactory factory) {
+    public void postInit(final KeycloakSessionFactory factory) {
+        factory.register(new ProviderEventListener() {
+
+            @Override
+            public void onEvent(ProviderEvent event) {
+                // Another user provider might be used, e.g. with Mongo
+                if (event instanceof PostMigrationEvent && factory.getProviderFactory(UserProvider.class) == JpaUserProviderFactory.this) {
+                    syncSearchIndex(factory);
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Tokens of users changed while running in like mode might be stale, so they are removed and built again once indexed
+     * mode is enabled.  Each batch of users is indexed in its own transaction.
+     */
+    protected void syncSearchIndex(KeycloakSessionFactory factory) {
+        if (!indexedSearch) {
+            KeycloakModelUtils.runJobInTransaction(factory, new KeycloakSessionTask() {
+
+                @Override
+                public void run(KeycloakSession session) {
+                    UserSearchIndex.clear(session.getProvider(JpaConnectionProvider.class).getEntityManager());
+                }
+
+            });
+            return;
+        }
+
+        final int[] indexed = new int[1];
+        do {
+            KeycloakModelUtils.runJobInTransaction(factory, new KeycloakSessionTask() {
+
+                @Override
+                public void run(KeycloakSession session) {
+                    indexed[0] = UserSearchIndex.indexMissing(session.getProvider(JpaConnectionProvider.class).getEntityManager(), INDEX_BATCH_SIZE);
+                }
 
+            });
+        } while (indexed[0] == INDEX_BATCH_SIZE);
     }
 
     @Override
@@ -49,7 +128,7 @@ public class JpaUserProviderFactory implements UserProviderFactory {
     @Override
     public UserProvider create(KeycloakSession session) {
         EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
-        return new JpaUserProvider(session, em);
+        return new JpaUserProvider(session, em, indexedSearch, batchFetch);
     }
 
     @Override
@@ -20,6 +20,7 @@ package org.keycloak.models.jpa;
 import org.jboss.logging.Logger;
 import org.keycloak.connections.jpa.util.JpaUtils;
 import org.keycloak.common.enums.SslRequired;
+import org.keycloak.common.util.Time;
 import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.AuthenticationFlowModel;
 import org.keycloak.models.AuthenticatorConfigModel;
@@ -33,6 +34,7 @@ import org.keycloak.models.ModelDuplicateException;
 import org.keycloak.models.ModelException;
 import org.keycloak.models.OTPPolicy;
 import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RequiredActionProviderModel;
 import org.keycloak.models.RequiredCredentialModel;
@@ -71,6 +73,7 @@ public class RealmAdapter implements RealmModel, JpaModel<RealmEntity> {
     protected RealmEntity realm;
     protected EntityManager em;
     protected volatile transient PublicKey publicKey;
+    protected volatile transient String keyId;
     protected volatile transient PrivateKey privateKey;
     protected volatile transient X509Certificate certificate;
     protected volatile transient Key codeSecretKey;
@@ -467,6 +470,8 @@ public class RealmAdapter implements RealmModel, JpaModel<RealmEntity> {
     @Override
     public void setPublicKeyPem(String publicKeyPem) {
         realm.setPublicKeyPem(publicKeyPem);
+        this.keyId = null;
+        this.publicKey = null;
         em.flush();
     }
 
@@ -516,9 +521,18 @@ public class RealmAdapter implements RealmModel, JpaModel<RealmEntity> {
 
     @Override
     public void setPublicKey(PublicKey publicKey) {
-        this.publicKey = publicKey;
         String publicKeyPem = KeycloakModelUtils.getPemFromKey(publicKey);
         setPublicKeyPem(publicKeyPem);
+        this.publicKey = publicKey;
+    }
+
+    @Override
+    public String getKeyId() {
+        if (keyId != null) return keyId;
+        PublicKey publicKey = getPublicKey();
+        if (publicKey == null) return null;
+        keyId = KeycloakModelUtils.getKeyId(publicKey);
+        return keyId;
     }
 
     @Override
@@ -535,6 +549,62 @@ public class RealmAdapter implements RealmModel, JpaModel<RealmEntity> {
         setPrivateKeyPem(privateKeyPem);
     }
 
+    @Override
+    public List<RealmKeyModel> getPassiveKeys() {
+        List<RealmKeyModel> keys = new LinkedList<>();
+        for (RealmKeyEntity entity : realm.getPassiveKeys()) {
+            keys.add(new RealmKeyModel(entity.getKid(), entity.getPublicKeyPem(), entity.getCertificatePem(), entity.getExpiration()));
+        }
+        return keys;
+    }
+
+    @Override
+    public void addPassiveKey(RealmKeyModel key) {
+        RealmKeyEntity entity = new RealmKeyEntity();
+        entity.setRealm(realm);
+        entity.setKid(key.getKid());
+        entity.setPublicKeyPem(key.getPublicKeyPem());
+        entity.setCertificatePem(key.getCertificatePem());
+        entity.setExpiration(key.getExpiration());
+        em.persist(entity);
+        realm.getPassiveKeys().add(entity);
+        em.flush();
+    }
+
+    @Override
+    public void removePassiveKey(String kid) {
+        Iterator<RealmKeyEntity> itr = realm.getPassiveKeys().iterator();
+        while (itr.hasNext()) {
+            RealmKeyEntity entity = itr.next();
+            if (entity.getKid().equals(kid)) {
+                itr.remove();
+                em.remove(entity);
+                em.flush();
+            }
+        }
+    }
+
+    @Override
+    public PublicKey getPassivePublicKey(String kid) {
+        int currentTime = Time.currentTime();
+        for (RealmKeyEntity entity : realm.getPassiveKeys()) {
+            if (entity.getKid().equals(kid) && entity.getExpiration() > currentTime) {
+                return KeycloakModelUtils.getPublicKey(entity.getPublicKeyPem());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getPassiveKeyLifespan() {
+        return getAttribute(RealmAttributes.PASSIVE_KEY_LIFESPAN, 0);
+    }
+
+    @Override
+    public void setPassiveKeyLifespan(int seconds) {
+        setAttribute(RealmAttributes.PASSIVE_KEY_LIFESPAN, seconds);
+    }
+
     @Override
     public String getCodeSecret() {
         return realm.getCodeSecret();
@@ -55,6 +55,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -70,6 +72,9 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     protected RealmModel realm;
     private final KeycloakSession session;
 
+    // search tokens are only maintained if the provider searches through them
+    private boolean searchIndexed;
+
     public UserAdapter(KeycloakSession session, RealmModel realm, EntityManager em, UserEntity user) {
         this.em = em;
         this.user = user;
@@ -81,6 +86,34 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
         return user;
     }
 
+    // role mapping and group ids loaded by UserFetchPlan, they stay null on the entity if not loaded
+    void setFetchedMappings(Set<String> roleIds, Set<String> groupIds) {
+        user.setRoleIds(roleIds);
+        user.setGroupIds(groupIds);
+    }
+
+    void setSearchIndexed(boolean searchIndexed) {
+        this.searchIndexed = searchIndexed;
+    }
+
+    // attributes of the user entity indexed by name, built on first access
+    private Map<String, List<UserAttributeEntity>> getAttributesByName() {
+        Map<String, List<UserAttributeEntity>> attributesByName = user.getAttributesByName();
+        if (attributesByName == null) {
+            attributesByName = new LinkedHashMap<>();
+            for (UserAttributeEntity attr : user.getAttributes()) {
+                List<UserAttributeEntity> values = attributesByName.get(attr.getName());
+                if (values == null) {
+                    values = new LinkedList<>();
+                    attributesByName.put(attr.getName(), values);
+                }
+                values.add(attr);
+            }
+            user.setAttributesByName(attributesByName);
+        }
+        return attributesByName;
+    }
+
     @Override
     public String getId() {
         return user.getId();
@@ -95,6 +128,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     public void setUsername(String username) {
         username = KeycloakModelUtils.toLowerCaseSafe(username);
         user.setUsername(username);
+        if (searchIndexed) UserSearchIndex.update(em, user);
     }
 
     @Override
@@ -124,29 +158,20 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
 
     @Override
     public void setSingleAttribute(String name, String value) {
-        boolean found = false;
-        List<UserAttributeEntity> toRemove = new ArrayList<>();
-        for (UserAttributeEntity attr : user.getAttributes()) {
-            if (attr.getName().equals(name)) {
-                if (!found) {
-                    attr.setValue(value);
-                    found = true;
-                } else {
-                    toRemove.add(attr);
-                }
-            }
+        List<UserAttributeEntity> values = getAttributesByName().get(name);
+        if (values == null || values.isEmpty()) {
+            persistAttributeValue(name, value);
+            return;
         }
 
-        for (UserAttributeEntity attr : toRemove) {
+        Iterator<UserAttributeEntity> it = values.iterator();
+        it.next().setValue(value);
+        while (it.hasNext()) {
+            UserAttributeEntity attr = it.next();
+            it.remove();
             em.remove(attr);
             user.getAttributes().remove(attr);
         }
-
-        if (found) {
-            return;
-        }
-
-        persistAttributeValue(name, value);
     }
 
     @Override
@@ -168,35 +193,38 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
         attr.setUser(user);
         em.persist(attr);
         user.getAttributes().add(attr);
+
+        Map<String, List<UserAttributeEntity>> byName = getAttributesByName();
+        List<UserAttributeEntity> values = byName.get(name);
+        if (values == null) {
+            values = new LinkedList<>();
+            byName.put(name, values);
+        }
+        values.add(attr);
     }
 
     @Override
     public void removeAttribute(String name) {
-        Iterator<UserAttributeEntity> it = user.getAttributes().iterator();
-        while (it.hasNext()) {
-            UserAttributeEntity attr = it.next();
-            if (attr.getName().equals(name)) {
-                it.remove();
-                em.remove(attr);
-            }
+        List<UserAttributeEntity> values = getAttributesByName().remove(name);
+        if (values == null) return;
+        for (UserAttributeEntity attr : values) {
+            user.getAttributes().remove(attr);
+            em.remove(attr);
         }
     }
 
     @Override
     public String getFirstAttribute(String name) {
-        for (UserAttributeEntity attr : user.getAttributes()) {
-            if (attr.getName().equals(name)) {
-                return attr.getValue();
-            }
-        }
-        return null;
+        List<UserAttributeEntity> values = getAttributesByName().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0).getValue();
     }
 
     @Override
     public List<String> getAttribute(String name) {
         List<String> result = new ArrayList<>();
-        for (UserAttributeEntity attr : user.getAttributes()) {
-            if (attr.getName().equals(name)) {
+        List<UserAttributeEntity> values = getAttributesByName().get(name);
+        if (values != null) {
+            for (UserAttributeEntity attr : values) {
                 result.add(attr.getValue());
             }
         }
@@ -206,8 +234,10 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     @Override
     public Map<String, List<String>> getAttributes() {
         MultivaluedHashMap<String, String> result = new MultivaluedHashMap<>();
-        for (UserAttributeEntity attr : user.getAttributes()) {
-            result.add(attr.getName(), attr.getValue());
+        for (Map.Entry<String, List<UserAttributeEntity>> entry : getAttributesByName().entrySet()) {
+            for (UserAttributeEntity attr : entry.getValue()) {
+                result.add(entry.getKey(), attr.getValue());
+            }
         }
         return result;
     }
@@ -267,6 +297,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     @Override
     public void setFirstName(String firstName) {
         user.setFirstName(firstName);
+        if (searchIndexed) UserSearchIndex.update(em, user);
     }
 
     @Override
@@ -277,6 +308,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     @Override
     public void setLastName(String lastName) {
         user.setLastName(lastName);
+        if (searchIndexed) UserSearchIndex.update(em, user);
     }
 
     @Override
@@ -288,6 +320,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
     public void setEmail(String email) {
         email = KeycloakModelUtils.toLowerCaseSafe(email);
         user.setEmail(email);
+        if (searchIndexed) UserSearchIndex.update(em, user);
     }
 
     @Override
@@ -500,11 +533,14 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
 
     @Override
     public Set<GroupModel> getGroups() {
-        // we query ids only as the group  might be cached and following the @ManyToOne will result in a load
-        // even if we're getting just the id.
-        TypedQuery<String> query = em.createNamedQuery("userGroupIds", String.class);
-        query.setParameter("user", getEntity());
-        List<String> ids = query.getResultList();
+        Collection<String> ids = user.getGroupIds();
+        if (ids == null) {
+            // we query ids only as the group  might be cached and following the @ManyToOne will result in a load
+            // even if we're getting just the id.
+            TypedQuery<String> query = em.createNamedQuery("userGroupIds", String.class);
+            query.setParameter("user", getEntity());
+            ids = query.getResultList();
+        }
         Set<GroupModel> groups = new HashSet<>();
         for (String groupId : ids) {
             GroupModel group = realm.getGroupById(groupId);
@@ -528,6 +564,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
         em.persist(entity);
         em.flush();
         em.detach(entity);
+        if (user.getGroupIds() != null) user.getGroupIds().add(group.getId());
 
     }
 
@@ -542,6 +579,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
             em.remove(entity);
         }
         em.flush();
+        if (user.getGroupIds() != null) user.getGroupIds().remove(group.getId());
 
     }
 
@@ -585,6 +623,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
         em.persist(entity);
         em.flush();
         em.detach(entity);
+        if (user.getRoleIds() != null) user.getRoleIds().add(role.getId());
     }
 
     @Override
@@ -604,11 +643,14 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
 
     @Override
     public Set<RoleModel> getRoleMappings() {
-        // we query ids only as the role might be cached and following the @ManyToOne will result in a load
-        // even if we're getting just the id.
-        TypedQuery<String> query = em.createNamedQuery("userRoleMappingIds", String.class);
-        query.setParameter("user", getEntity());
-        List<String> ids = query.getResultList();
+        Collection<String> ids = user.getRoleIds();
+        if (ids == null) {
+            // we query ids only as the role might be cached and following the @ManyToOne will result in a load
+            // even if we're getting just the id.
+            TypedQuery<String> query = em.createNamedQuery("userRoleMappingIds", String.class);
+            query.setParameter("user", getEntity());
+            ids = query.getResultList();
+        }
         Set<RoleModel> roles = new HashSet<RoleModel>();
         for (String roleId : ids) {
             RoleModel roleById = realm.getRoleById(roleId);
@@ -629,6 +671,7 @@ public class UserAdapter implements UserModel, JpaModel<UserEntity> {
             em.remove(entity);
         }
         em.flush();
+        if (user.getRoleIds() != null) user.getRoleIds().remove(role.getId());
     }
 
     @Override
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.jpa;
+
+import org.keycloak.models.jpa.entities.UserEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the whole graph of a page of users with a fixed number of queries per batch of users: attributes, credentials and
+ * required actions are fetch joined into the managed entities (one collection per query to avoid cartesian products),
+ * role mapping and group membership ids are loaded for all users at once.
+ */
+public class UserFetchPlan {
+
+    // Keeps the "in" lists below the limits of all supported databases
+    public static final int BATCH_SIZE = 100;
+
+    private final Map<String, Set<String>> roleIds = new HashMap<>();
+    private final Map<String, Set<String>> groupIds = new HashMap<>();
+
+    public static UserFetchPlan load(EntityManager em, List<UserEntity> users) {
+        UserFetchPlan plan = new UserFetchPlan();
+        for (int i = 0; i < users.size(); i += BATCH_SIZE) {
+            List<String> ids = new ArrayList<>();
+            for (UserEntity user : users.subList(i, Math.min(i + BATCH_SIZE, users.size()))) {
+                ids.add(user.getId());
+                plan.roleIds.put(user.getId(), new HashSet<String>());
+                plan.groupIds.put(user.getId(), new HashSet<String>());
+            }
+            plan.loadBatch(em, ids);
+        }
+        return plan;
+    }
+
+    private void loadBatch(EntityManager em, List<String> ids) {
+        em.createNamedQuery("fetchUserAttributes", UserEntity.class).setParameter("ids", ids).getResultList();
+        em.createNamedQuery("fetchUserCredentials", UserEntity.class).setParameter("ids", ids).getResultList();
+        em.createNamedQuery("fetchUserRequiredActions", UserEntity.class).setParameter("ids", ids).getResultList();
+
+        TypedQuery<Object[]> roleQuery = em.createNamedQuery("userRoleMappingIdsByUsers", Object[].class);
+        roleQuery.setParameter("userIds", ids);
+        for (Object[] mapping : roleQuery.getResultList()) {
+            roleIds.get((String) mapping[0]).add((String) mapping[1]);
+        }
+
+        TypedQuery<Object[]> groupQuery = em.createNamedQuery("userGroupIdsByUsers", Object[].class);
+        groupQuery.setParameter("userIds", ids);
+        for (Object[] membership : groupQuery.getResultList()) {
+            groupIds.get((String) membership[0]).add((String) membership[1]);
+        }
+    }
+
+    public Set<String> getRoleIds(String userId) {
+        return roleIds.get(userId);
+    }
+
+    public Set<String> getGroupIds(String userId) {
+        return groupIds.get(userId);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.jpa;
+
+import org.keycloak.models.jpa.entities.UserEntity;
+import org.keycloak.models.jpa.entities.UserSearchTokenEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the USER_SEARCH_TOKEN rows of users.  Every user has lower-cased tokens for username, email, email domain,
+ * first name, last name, full name and the single words of all of them.  A search string matches a user if it is a prefix
+ * of one of the tokens, which can be answered from the (REALM_ID, VALUE) index.  Tokens are only maintained while the
+ * <code>indexed</code> search mode is enabled, see {@link JpaUserProviderFactory}.
+ */
+public class UserSearchIndex {
+
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s.,_@+\\-]+");
+
+    public static Set<String> tokenize(String username, String email, String firstName, String lastName) {
+        Set<String> tokens = new LinkedHashSet<>();
+        addToken(tokens, username);
+        addToken(tokens, email);
+        if (email != null && email.indexOf('@') != -1) {
+            addToken(tokens, email.substring(email.indexOf('@') + 1));
+        }
+        addToken(tokens, firstName);
+        addToken(tokens, lastName);
+        if (firstName != null && lastName != null) {
+            addToken(tokens, firstName + " " + lastName);
+        }
+        addWords(tokens, username);
+        addWords(tokens, email);
+        addWords(tokens, firstName);
+        addWords(tokens, lastName);
+        return tokens;
+    }
+
+    /**
+     * Normalizes a search string the same way as the tokens, so it can be used as prefix in a like query
+     */
+    public static String normalize(String search) {
+        String normalized = search.trim().toLowerCase();
+        return normalized.length() > UserSearchTokenEntity.MAX_LENGTH ? normalized.substring(0, UserSearchTokenEntity.MAX_LENGTH) : normalized;
+    }
+
+    private static void addToken(Set<String> tokens, String value) {
+        if (value == null) return;
+        String token = normalize(value);
+        if (!token.isEmpty()) tokens.add(token);
+    }
+
+    private static void addWords(Set<String> tokens, String value) {
+        if (value == null) return;
+        for (String word : WORD_SEPARATORS.split(value)) {
+            addToken(tokens, word);
+        }
+    }
+
+    /**
+     * Brings the tokens of the user in sync with its current attributes.  Only the changed tokens are written.
+     */
+    public static void update(EntityManager em, UserEntity user) {
+        Set<String> tokens = tokenize(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName());
+
+        TypedQuery<UserSearchTokenEntity> query = em.createNamedQuery("getSearchTokensByUser", UserSearchTokenEntity.class);
+        query.setParameter("userId", user.getId());
+        List<UserSearchTokenEntity> existing = query.getResultList();
+
+        Map<String, UserSearchTokenEntity> stale = new HashMap<>();
+        for (UserSearchTokenEntity entity : existing) {
+            if (!tokens.remove(entity.getValue())) stale.put(entity.getValue(), entity);
+        }
+        for (UserSearchTokenEntity entity : stale.values()) {
+            em.remove(entity);
+        }
+        for (String token : tokens) {
+            UserSearchTokenEntity entity = new UserSearchTokenEntity();
+            entity.setUserId(user.getId());
+            entity.setRealmId(user.getRealmId());
+            entity.setValue(token);
+            em.persist(entity);
+        }
+    }
+
+    /**
+     * Adds tokens for at most given count of users, which don't have any yet
+     *
+     * @return count of indexed users
+     */
+    public static int indexMissing(EntityManager em, int maxUsers) {
+        TypedQuery<UserEntity> query = em.createNamedQuery("getUsersWithoutSearchTokens", UserEntity.class);
+        query.setMaxResults(maxUsers);
+        List<UserEntity> users = query.getResultList();
+        for (UserEntity user : users) {
+            update(em, user);
+        }
+        return users.size();
+    }
+
+    public static void clear(EntityManager em) {
+        em.createNamedQuery("deleteAllSearchTokens").executeUpdate();
+    }
+
+    public static void remove(EntityManager em, String userId) {
+        em.createNamedQuery("deleteSearchTokensByUser").setParameter("userId", userId).executeUpdate();
+    }
+
+}
@@ -26,4 +26,6 @@ public interface RealmAttributes {
 
     String DISPLAY_NAME_HTML = "displayNameHtml";
 
+    String PASSIVE_KEY_LIFESPAN = "passiveKeyLifespan";
+
 }
@@ -141,6 +141,9 @@ public class RealmEntity {
     @OneToMany(cascade ={CascadeType.REMOVE}, orphanRemoval = true, mappedBy = "realm")
     Collection<RequiredCredentialEntity> requiredCredentials = new ArrayList<RequiredCredentialEntity>();
 
+    @OneToMany(cascade ={CascadeType.REMOVE}, orphanRemoval = true, mappedBy = "realm")
+    Collection<RealmKeyEntity> passiveKeys = new ArrayList<RealmKeyEntity>();
+
     @OneToMany(cascade ={CascadeType.REMOVE}, orphanRemoval = true, mappedBy = "realm")
     List<UserFederationProviderEntity> userFederationProviders = new ArrayList<UserFederationProviderEntity>();
 
@@ -415,6 +418,15 @@ public class RealmEntity {
     public void setRequiredCredentials(Collection<RequiredCredentialEntity> requiredCredentials) {
         this.requiredCredentials = requiredCredentials;
     }
+
+    public Collection<RealmKeyEntity> getPassiveKeys() {
+        return passiveKeys;
+    }
+
+    public void setPassiveKeys(Collection<RealmKeyEntity> passiveKeys) {
+        this.passiveKeys = passiveKeys;
+    }
+
     public Map<String, String> getSmtpConfig() {
         return smtpConfig;
     }
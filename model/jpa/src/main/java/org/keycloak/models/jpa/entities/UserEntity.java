@@ -29,10 +29,14 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -43,12 +47,17 @@ import java.util.Collection;
         @NamedQuery(name="getAllUsersByRealmExcludeServiceAccount", query="select u from UserEntity u where u.realmId = :realmId and (u.serviceAccountClientLink is null) order by u.username"),
         @NamedQuery(name="searchForUser", query="select u from UserEntity u where u.realmId = :realmId and (u.serviceAccountClientLink is null) and " +
                 "( lower(u.username) like :search or lower(concat(u.firstName, ' ', u.lastName)) like :search or u.email like :search ) order by u.username"),
+        @NamedQuery(name="searchForUserIndexed", query="select u from UserEntity u where u.realmId = :realmId and (u.serviceAccountClientLink is null) and " +
+                "u.id in (select t.userId from UserSearchTokenEntity t where t.realmId = :realmId and t.value like :search) order by u.username"),
         @NamedQuery(name="getRealmUserById", query="select u from UserEntity u where u.id = :id and u.realmId = :realmId"),
         @NamedQuery(name="getRealmUserByUsername", query="select u from UserEntity u where u.username = :username and u.realmId = :realmId"),
         @NamedQuery(name="getRealmUserByEmail", query="select u from UserEntity u where u.email = :email and u.realmId = :realmId"),
         @NamedQuery(name="getRealmUserByLastName", query="select u from UserEntity u where u.lastName = :lastName and u.realmId = :realmId"),
         @NamedQuery(name="getRealmUserByFirstLastName", query="select u from UserEntity u where u.firstName = :first and u.lastName = :last and u.realmId = :realmId"),
         @NamedQuery(name="getRealmUserByServiceAccount", query="select u from UserEntity u where u.serviceAccountClientLink = :clientInternalId and u.realmId = :realmId"),
+        @NamedQuery(name="fetchUserAttributes", query="select distinct u from UserEntity u left join fetch u.attributes where u.id in :ids"),
+        @NamedQuery(name="fetchUserCredentials", query="select distinct u from UserEntity u left join fetch u.credentials where u.id in :ids"),
+        @NamedQuery(name="fetchUserRequiredActions", query="select distinct u from UserEntity u left join fetch u.requiredActions where u.id in :ids"),
         @NamedQuery(name="getRealmUserCount", query="select count(u) from UserEntity u where u.realmId = :realmId"),
         @NamedQuery(name="deleteUsersByRealm", query="delete from UserEntity u where u.realmId = :realmId"),
         @NamedQuery(name="deleteUsersByRealmAndLink", query="delete from UserEntity u where u.realmId = :realmId and u.federationLink=:link")
@@ -103,6 +112,14 @@ public class UserEntity {
     @Column(name="SERVICE_ACCOUNT_CLIENT_LINK")
     protected String serviceAccountClientLink;
 
+    // Indexes of the user adapters.  They are kept here, so all adapters of the managed entity see the same state
+    @Transient
+    protected Map<String, List<UserAttributeEntity>> attributesByName;
+    @Transient
+    protected Set<String> roleIds;
+    @Transient
+    protected Set<String> groupIds;
+
     public String getId() {
         return id;
     }
@@ -232,6 +249,30 @@ public class UserEntity {
         this.serviceAccountClientLink = serviceAccountClientLink;
     }
 
+    public Map<String, List<UserAttributeEntity>> getAttributesByName() {
+        return attributesByName;
+    }
+
+    public void setAttributesByName(Map<String, List<UserAttributeEntity>> attributesByName) {
+        this.attributesByName = attributesByName;
+    }
+
+    public Set<String> getRoleIds() {
+        return roleIds;
+    }
+
+    public void setRoleIds(Set<String> roleIds) {
+        this.roleIds = roleIds;
+    }
+
+    public Set<String> getGroupIds() {
+        return groupIds;
+    }
+
+    public void setGroupIds(Set<String> groupIds) {
+        this.groupIds = groupIds;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.jpa.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Lower-cased search token of a user (username, email, email domain, names and their words).  Tokens are matched by prefix,
+ * so searching doesn't need to scan the whole USER_ENTITY table.
+ */
+@NamedQueries({
+        @NamedQuery(name="getSearchTokensByUser", query="select t from UserSearchTokenEntity t where t.userId = :userId"),
+        @NamedQuery(name="deleteSearchTokensByUser", query="delete from UserSearchTokenEntity t where t.userId = :userId"),
+        @NamedQuery(name="deleteSearchTokensByRealm", query="delete from UserSearchTokenEntity t where t.realmId = :realmId"),
+        @NamedQuery(name="deleteAllSearchTokens", query="delete from UserSearchTokenEntity t"),
+        @NamedQuery(name="getUsersWithoutSearchTokens", query="select u from UserEntity u where not exists (select t from UserSearchTokenEntity t where t.userId = u.id)"),
+        @NamedQuery(name="deleteSearchTokensByRealmAndLink", query="delete from UserSearchTokenEntity t where t.userId IN (select u.id from UserEntity u where u.realmId=:realmId and u.federationLink=:link)")
+})
+@Entity
+@Table(name="USER_SEARCH_TOKEN")
+@IdClass(UserSearchTokenEntity.Key.class)
+public class UserSearchTokenEntity {
+
+    public static final int MAX_LENGTH = 255;
+
+    @Id
+    @Column(name="USER_ID")
+    protected String userId;
+
+    @Id
+    @Column(name="VALUE")
+    protected String value;
+
+    @Column(name="REALM_ID")
+    protected String realmId;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getRealmId() {
+        return realmId;
+    }
+
+    public void setRealmId(String realmId) {
+        this.realmId = realmId;
+    }
+
+    public static class Key implements Serializable {
+
+        protected String userId;
+
+        protected String value;
+
+        public Key() {
+        }
+
+        public Key(String userId, String value) {
+            this.userId = userId;
+            this.value = value;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (userId != null ? !userId.equals(key.userId) : key.userId != null) return false;
+            if (value != null ? !value.equals(key.value) : key.value != null) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = userId != null ? userId.hashCode() : 0;
+            result = 31 * result + (value != null ? value.hashCode() : 0);
+            return result;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        if (!(o instanceof UserSearchTokenEntity)) return false;
+
+        UserSearchTokenEntity that = (UserSearchTokenEntity) o;
+
+        if (userId != null ? !userId.equals(that.userId) : that.userId != null) return false;
+        if (value != null ? !value.equals(that.value) : that.value != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = userId != null ? userId.hashCode() : 0;
+        result = 31 * result + (value != null ? value.hashCode() : 0);
+        return result;
+    }
+}
@@ -45,16 +45,28 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
 
     private final KeycloakSession session;
     private final EntityManager em;
+    private final PersistentUserSessionUpdateBuffer updateBuffer;
+    private final boolean compactData;
 
     public JpaUserSessionPersisterProvider(KeycloakSession session, EntityManager em) {
+        this(session, em, null);
+    }
+
+    public JpaUserSessionPersisterProvider(KeycloakSession session, EntityManager em, PersistentUserSessionUpdateBuffer updateBuffer) {
+        this(session, em, updateBuffer, false);
+    }
+
+    public JpaUserSessionPersisterProvider(KeycloakSession session, EntityManager em, PersistentUserSessionUpdateBuffer updateBuffer, boolean compactData) {
         this.session = session;
         this.em = em;
+        this.updateBuffer = updateBuffer;
+        this.compactData = compactData;
     }
 
     @Override
     public void createUserSession(UserSessionModel userSession, boolean offline) {
         PersistentUserSessionAdapter adapter = new PersistentUserSessionAdapter(userSession);
-        PersistentUserSessionModel model = adapter.getUpdatedModel();
+        PersistentUserSessionModel model = adapter.getUpdatedModel(compactData);
 
         PersistentUserSessionEntity entity = new PersistentUserSessionEntity();
         entity.setUserSessionId(model.getUserSessionId());
@@ -71,7 +83,7 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
     @Override
     public void createClientSession(ClientSessionModel clientSession, boolean offline) {
         PersistentClientSessionAdapter adapter = new PersistentClientSessionAdapter(clientSession);
-        PersistentClientSessionModel model = adapter.getUpdatedModel();
+        PersistentClientSessionModel model = adapter.getUpdatedModel(compactData);
 
         PersistentClientSessionEntity entity = new PersistentClientSessionEntity();
         entity.setClientSessionId(clientSession.getId());
@@ -94,20 +106,51 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
             adapter = new PersistentUserSessionAdapter(userSession);
         }
 
-        PersistentUserSessionModel model = adapter.getUpdatedModel();
+        PersistentUserSessionModel model = adapter.getUpdatedModel(compactData);
 
         String offlineStr = offlineToString(offline);
+        if (updateBuffer != null) {
+            // A pending update means the session was already found, otherwise check it exists and get its stored data
+            PersistentUserSessionUpdateBuffer.PendingUpdate pending = updateBuffer.get(userSession.getId(), offlineStr);
+            String storedData;
+            if (pending != null) {
+                storedData = pending.getData();
+            } else {
+                List<String> data = em.createNamedQuery("findUserSessionData", String.class)
+                        .setParameter("userSessionId", userSession.getId())
+                        .setParameter("offline", offlineStr)
+                        .getResultList();
+                if (data.isEmpty()) {
+                    throw new ModelException("UserSession with ID " + userSession.getId() + ", offline: " + offline + " not found");
+                }
+                storedData = data.get(0);
+            }
+
+            boolean dataChanged = !model.getData().equals(storedData);
+            boolean full = updateBuffer.add(userSession.getId(), offlineStr, model.getLastSessionRefresh(), model.getData(), dataChanged);
+            if (full) {
+                em.flush();
+                updateBuffer.flush(session);
+            }
+            return;
+        }
+
         PersistentUserSessionEntity entity = em.find(PersistentUserSessionEntity.class, new PersistentUserSessionEntity.Key(userSession.getId(), offlineStr));
         if (entity == null) {
             throw new ModelException("UserSession with ID " + userSession.getId() + ", offline: " + offline + " not found");
         }
         entity.setLastSessionRefresh(model.getLastSessionRefresh());
-        entity.setData(model.getData());
+        if (!model.getData().equals(entity.getData())) {
+            entity.setData(model.getData());
+        }
     }
 
     @Override
     public void removeUserSession(String userSessionId, boolean offline) {
         String offlineStr = offlineToString(offline);
+        if (updateBuffer != null) {
+            updateBuffer.remove(userSessionId, offlineStr);
+        }
 
         em.createNamedQuery("deleteClientSessionsByUserSession")
                 .setParameter("userSessionId", userSessionId)
@@ -183,6 +226,9 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
 
     @Override
     public void updateAllTimestamps(int time) {
+        if (updateBuffer != null) {
+            updateBuffer.clear();
+        }
         int num = em.createNamedQuery("updateClientSessionsTimestamps").setParameter("timestamp", time).executeUpdate();
         num = em.createNamedQuery("updateUserSessionsTimestamps").setParameter("lastSessionRefresh", time).executeUpdate();
     }
@@ -253,6 +299,15 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
         model.setLastSessionRefresh(entity.getLastSessionRefresh());
         model.setData(entity.getData());
 
+        // Not yet flushed update is newer than the database row
+        PersistentUserSessionUpdateBuffer.PendingUpdate pending = updateBuffer != null ? updateBuffer.get(entity.getUserSessionId(), entity.getOffline()) : null;
+        if (pending != null) {
+            model.setLastSessionRefresh(Math.max(model.getLastSessionRefresh(), pending.getLastSessionRefresh()));
+            if (pending.isDataChanged()) {
+                model.setData(pending.getData());
+            }
+        }
+
         List<ClientSessionModel> clientSessions = new LinkedList<>();
         return new PersistentUserSessionAdapter(model, realm, user, clientSessions);
     }
@@ -19,39 +19,99 @@ package org.keycloak.models.jpa.session;
 
 import javax.persistence.EntityManager;
 
+import org.jboss.logging.Logger;
 import org.keycloak.Config;
 import org.keycloak.connections.jpa.JpaConnectionProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.PostMigrationEvent;
 import org.keycloak.models.session.UserSessionPersisterProvider;
 import org.keycloak.models.session.UserSessionPersisterProviderFactory;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
+import org.keycloak.timer.TimerProvider;
 
 /**
+ * Config options:
+ * <ul>
+ *     <li>writeBehindInterval - interval in seconds, in which coalesced updates of persisted user sessions are written to the
+ *     database with JDBC batches. 0 (default) writes every update immediately in the transaction of the caller.</li>
+ *     <li>writeBehindMaxPending - count of buffered sessions, which triggers an immediate flush, 10000 by default</li>
+ *     <li>dataFormat - format used for writing the serialized session data, "json" (default) or "compact". Data
+ *     in both formats are always readable</li>
+ * </ul>
+ *
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
  */
 public class JpaUserSessionPersisterProviderFactory implements UserSessionPersisterProviderFactory {
 
     public static final String ID = "jpa";
 
+    public static final String DATA_FORMAT_JSON = "json";
+    public static final String DATA_FORMAT_COMPACT = "compact";
+
+    private static final Logger logger = Logger.getLogger(JpaUserSessionPersisterProviderFactory.class);
+
+    private int writeBehindInterval;
+    private boolean compactData;
+    private PersistentUserSessionUpdateBuffer updateBuffer;
+    private KeycloakSessionFactory sessionFactory;
+
     @Override
     public UserSessionPersisterProvider create(KeycloakSession session) {
         EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
-        return new JpaUserSessionPersisterProvider(session, em);
+        return new JpaUserSessionPersisterProvider(session, em, updateBuffer, compactData);
     }
 
     @Override
     public void init(Config.Scope config) {
+        writeBehindInterval = config.getInt("writeBehindInterval", 0);
+        if (writeBehindInterval > 0) {
+            updateBuffer = new PersistentUserSessionUpdateBuffer(config.getInt("writeBehindMaxPending", 10000));
+        }
 
+        String dataFormat = config.get("dataFormat", DATA_FORMAT_JSON);
+        if (!DATA_FORMAT_JSON.equals(dataFormat) && !DATA_FORMAT_COMPACT.equals(dataFormat)) {
+            throw new RuntimeException("Invalid dataFormat '" + dataFormat + "', supported values are '" + DATA_FORMAT_JSON + "' and '" + DATA_FORMAT_COMPACT + "'");
+        }
+        compactData = DATA_FORMAT_COMPACT.equals(dataFormat);
     }
 
     @Override
-    public void postInit(KeycloakSessionFactory factory) {
+    public void postInit(final KeycloakSessionFactory factory) {
+        if (updateBuffer == null) return;
 
+        this.sessionFactory = factory;
+        factory.register(new ProviderEventListener() {
+
+            @Override
+            public void onEvent(ProviderEvent event) {
+                if (event instanceof PostMigrationEvent) {
+                    KeycloakModelUtils.runJobInTransaction(factory, new KeycloakSessionTask() {
+
+                        @Override
+                        public void run(KeycloakSession session) {
+                            TimerProvider timer = session.getProvider(TimerProvider.class);
+                            timer.scheduleTask(new PersistentUserSessionUpdateBuffer.FlushTask(updateBuffer), writeBehindInterval * 1000L, "PersistentUserSessionWriteBehind");
+                        }
+
+                    });
+                }
+            }
+        });
     }
 
     @Override
     public void close() {
-
+        if (updateBuffer != null && updateBuffer.size() > 0) {
+            try {
+                KeycloakModelUtils.runJobInTransaction(sessionFactory, new PersistentUserSessionUpdateBuffer.FlushTask(updateBuffer));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to flush pending updates of persistent user sessions", e);
+            }
+        }
     }
 
     @Override
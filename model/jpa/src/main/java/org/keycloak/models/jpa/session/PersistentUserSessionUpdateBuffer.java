@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.jpa.session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.jboss.logging.Logger;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
+import org.keycloak.connections.jpa.util.JpaUtils;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.timer.ScheduledTask;
+
+/**
+ * Write-behind buffer for updates of persisted user sessions.  Repeated updates of the same session are coalesced in
+ * memory and written with JDBC batch updates on {@link #flush(KeycloakSession)}.  The serialized data are only written
+ * if at least one of the coalesced updates changed them.
+ *
+ * Updates of sessions, which are removed before the flush, just don't match any row.  If the transaction of the flush
+ * fails, the updates are put back to the buffer and written by the next flush.
+ */
+public class PersistentUserSessionUpdateBuffer {
+
+    private static final Logger logger = Logger.getLogger(PersistentUserSessionUpdateBuffer.class);
+
+    public static class PendingUpdate {
+
+        private final int lastSessionRefresh;
+        private final String data;
+        private final boolean dataChanged;
+
+        private PendingUpdate(int lastSessionRefresh, String data, boolean dataChanged) {
+            this.lastSessionRefresh = lastSessionRefresh;
+            this.data = data;
+            this.dataChanged = dataChanged;
+        }
+
+        public int getLastSessionRefresh() {
+            return lastSessionRefresh;
+        }
+
+        // latest serialized data
+        public String getData() {
+            return data;
+        }
+
+        // true if the data differ from the stored ones
+        public boolean isDataChanged() {
+            return dataChanged;
+        }
+
+        private PendingUpdate merge(PendingUpdate newer) {
+            return new PendingUpdate(Math.max(lastSessionRefresh, newer.lastSessionRefresh), newer.data, dataChanged || newer.dataChanged);
+        }
+    }
+
+    public static class FlushTask implements KeycloakSessionTask, ScheduledTask {
+
+        private final PersistentUserSessionUpdateBuffer buffer;
+
+        public FlushTask(PersistentUserSessionUpdateBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run(KeycloakSession session) {
+            buffer.flush(session);
+        }
+    }
+
+    private final int maxPending;
+    private final ConcurrentMap<PersistentUserSessionEntity.Key, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+    public PersistentUserSessionUpdateBuffer(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param data current serialized data
+     * @param dataChanged true if the data differ from the stored ones
+     * @return true if the buffer is full and should be flushed
+     */
+    public boolean add(String userSessionId, String offline, int lastSessionRefresh, String data, boolean dataChanged) {
+        merge(new PersistentUserSessionEntity.Key(userSessionId, offline), new PendingUpdate(lastSessionRefresh, data, dataChanged), false);
+        return pending.size() >= maxPending;
+    }
+
+    private void merge(PersistentUserSessionEntity.Key key, PendingUpdate update, boolean older) {
+        while (true) {
+            PendingUpdate existing = pending.putIfAbsent(key, update);
+            if (existing == null) break;
+            PendingUpdate merged = older ? update.merge(existing) : existing.merge(update);
+            if (pending.replace(key, existing, merged)) break;
+        }
+    }
+
+    public PendingUpdate get(String userSessionId, String offline) {
+        return pending.get(new PersistentUserSessionEntity.Key(userSessionId, offline));
+    }
+
+    public void remove(String userSessionId, String offline) {
+        pending.remove(new PersistentUserSessionEntity.Key(userSessionId, offline));
+    }
+
+    public void clear() {
+        pending.clear();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Writes all pending updates in the current transaction of given session.  The batch updates bypass the persistence
+     * context, so pending changes of session entities need to be flushed before.  The updates are put back to the buffer
+     * if the transaction is rolled back.
+     *
+     * @return count of written sessions
+     */
+    public int flush(KeycloakSession session) {
+        final Map<PersistentUserSessionEntity.Key, PendingUpdate> updates = new HashMap<>();
+        for (PersistentUserSessionEntity.Key key : new ArrayList<>(pending.keySet())) {
+            PendingUpdate update = pending.remove(key);
+            if (update != null) updates.put(key, update);
+        }
+        if (updates.isEmpty()) return 0;
+
+        session.getTransaction().enlistAfterCompletion(new KeycloakTransaction() {
+
+            private boolean rollbackOnly;
+
+            @Override
+            public void begin() {
+            }
+
+            @Override
+            public void commit() {
+            }
+
+            @Override
+            public void rollback() {
+                logger.warnf("Failed to write %d updates of persistent user sessions, they will be written by the next flush", updates.size());
+                restore(updates);
+            }
+
+            @Override
+            public void setRollbackOnly() {
+                rollbackOnly = true;
+            }
+
+            @Override
+            public boolean getRollbackOnly() {
+                return rollbackOnly;
+            }
+
+            @Override
+            public boolean isActive() {
+                return true;
+            }
+        });
+
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+
+        final List<Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate>> refreshOnly = new ArrayList<>();
+        final List<Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate>> withData = new ArrayList<>();
+        for (Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate> entry : updates.entrySet()) {
+            if (!entry.getValue().isDataChanged()) {
+                refreshOnly.add(entry);
+            } else {
+                withData.add(entry);
+            }
+        }
+
+        final String table = JpaUtils.getTableNameForNativeQuery("OFFLINE_USER_SESSION", em);
+        em.unwrap(Session.class).doWork(new Work() {
+
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                if (!refreshOnly.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET LAST_SESSION_REFRESH = ? WHERE USER_SESSION_ID = ? AND OFFLINE_FLAG = ?")) {
+                        for (Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate> entry : refreshOnly) {
+                            statement.setInt(1, entry.getValue().getLastSessionRefresh());
+                            statement.setString(2, entry.getKey().getUserSessionId());
+                            statement.setString(3, entry.getKey().getOffline());
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                if (!withData.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET LAST_SESSION_REFRESH = ?, DATA = ? WHERE USER_SESSION_ID = ? AND OFFLINE_FLAG = ?")) {
+                        for (Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate> entry : withData) {
+                            statement.setInt(1, entry.getValue().getLastSessionRefresh());
+                            statement.setString(2, entry.getValue().getData());
+                            statement.setString(3, entry.getKey().getUserSessionId());
+                            statement.setString(4, entry.getKey().getOffline());
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+            }
+        });
+
+        logger.debugf("Flushed %d updates of persistent user sessions, %d of them with changed data", updates.size(), withData.size());
+        return updates.size();
+    }
+
+    // Failed updates are older than the ones added since the flush started
+    private void restore(Map<PersistentUserSessionEntity.Key, PendingUpdate> updates) {
+        for (Map.Entry<PersistentUserSessionEntity.Key, PendingUpdate> entry : updates.entrySet()) {
+            merge(entry.getKey(), entry.getValue(), true);
+        }
+    }
+
+}
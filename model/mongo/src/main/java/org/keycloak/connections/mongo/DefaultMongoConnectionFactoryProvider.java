@@ -62,6 +62,7 @@ public class DefaultMongoConnectionFactoryProvider implements MongoConnectionPro
             "org.keycloak.models.entities.IdentityProviderEntity",
             "org.keycloak.models.entities.ClientIdentityProviderMappingEntity",
             "org.keycloak.models.entities.RequiredCredentialEntity",
+            "org.keycloak.models.entities.RealmKeyEntity",
             "org.keycloak.models.entities.CredentialEntity",
             "org.keycloak.models.entities.FederatedIdentityEntity",
             "org.keycloak.models.entities.UserFederationProviderEntity",
@@ -144,7 +145,7 @@ public class DefaultMongoConnectionFactoryProvider implements MongoConnectionPro
                 if (state == STATE_BEFORE_UPDATE) {
                     try {
                         update(session);
-                        this.mongoStore = new MongoStoreImpl(db, getManagedEntities());
+                        this.mongoStore = new MongoStoreImpl(db, getManagedEntities(), config.getInt("batchSize", MongoStoreImpl.DEFAULT_BATCH_SIZE));
 
                         state = STATE_AFTER_UPDATE;
                     } catch (Exception e) {
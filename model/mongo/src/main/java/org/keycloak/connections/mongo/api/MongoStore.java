@@ -72,6 +72,29 @@ public interface MongoStore {
      */
     <T extends MongoIdentifiableEntity> List<T> loadEntities(Class<T> type, DBObject query, DBObject sort, int firstResult, int maxResults, MongoStoreInvocationContext context);
 
+    /**
+     * Iterates over entities matching the query. Entities are read from DB in batches and converted one by one as they are
+     * visited, so big results are never materialized in a list. Visited entities aren't cached in the invocation context,
+     * unless they were loaded already. Entities can be modified by the visitor.
+     *
+     * @param type
+     * @param query
+     * @param visitor
+     * @param context
+     */
+    <T extends MongoIdentifiableEntity> void iterateEntities(Class<T> type, DBObject query, MongoEntityVisitor<? super T> visitor, MongoStoreInvocationContext context);
+
+    /**
+     * Loads just IDs of entities without the rest of the fields. Useful if the caller needs just to lookup models by ID, which
+     * are typically cached.
+     *
+     * @param type
+     * @param query
+     * @param context
+     * @return IDs of entities matching the query or empty list if no results available for the query. Doesn't return null
+     */
+    <T extends MongoIdentifiableEntity> List<String> loadEntityIds(Class<T> type, DBObject query, MongoStoreInvocationContext context);
+
     <T extends MongoIdentifiableEntity> int countEntities(Class<T> type, DBObject query, MongoStoreInvocationContext context);
 
     boolean removeEntity(MongoIdentifiableEntity entity, MongoStoreInvocationContext context);
@@ -82,7 +105,8 @@ public interface MongoStore {
      *
      * @param type
      * @param query
-     * @param callback if true, then store will first load all entities, then call "afterRemove" for every entity. If false, the entities are removed directly without load and calling "afterRemove" callback
+     * @param callback if true, then store will read IDs with a cursor, load and remove entities in batches and call "afterRemove" for every entity. Only a
+     *                 single batch of entities is kept in memory. If false, the entities are removed directly without load and calling "afterRemove" callback
      *                 false has better performance (especially if we are going to remove big number of entities)
      * @param context
      * @return count of removed entities
@@ -17,9 +17,14 @@
 
 package org.keycloak.connections.mongo.impl;
 
+import org.keycloak.connections.mongo.api.MongoIdentifiableEntity;
 import org.keycloak.models.utils.reflection.Property;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,10 +38,28 @@ public class EntityInfo {
 
     private final Map<String, Property<Object>> properties;
 
+    private final Map<String, PropertyMapping> propertyMappings;
+
+    // Mappings of properties stored in DB object. The "id" property of identifiable entities is stored as "_id" instead
+    private final List<PropertyMapping> storedPropertyMappings;
+
     public EntityInfo(Class<?> entityClass, String dbCollectionName, Map<String, Property<Object>> properties) {
         this.entityClass = entityClass;
         this.dbCollectionName = dbCollectionName;
         this.properties = properties;
+
+        Map<String, PropertyMapping> propertyMappings = new HashMap<String, PropertyMapping>();
+        List<PropertyMapping> storedPropertyMappings = new ArrayList<PropertyMapping>();
+        boolean identifiable = MongoIdentifiableEntity.class.isAssignableFrom(entityClass);
+        for (Property<Object> property : properties.values()) {
+            PropertyMapping mapping = new PropertyMapping(property);
+            propertyMappings.put(property.getName(), mapping);
+            if (!identifiable || !"id".equals(property.getName())) {
+                storedPropertyMappings.add(mapping);
+            }
+        }
+        this.propertyMappings = propertyMappings;
+        this.storedPropertyMappings = Collections.unmodifiableList(storedPropertyMappings);
     }
 
     public Class<?> getEntityClass() {
@@ -54,4 +77,12 @@ public class EntityInfo {
     public Property<Object> getPropertyByName(String propertyName) {
         return properties.get(propertyName);
     }
+
+    public PropertyMapping getPropertyMapping(String propertyName) {
+        return propertyMappings.get(propertyName);
+    }
+
+    public List<PropertyMapping> getStoredPropertyMappings() {
+        return storedPropertyMappings;
+    }
 }
@@ -21,6 +21,7 @@ import com.mongodb.*;
 import org.jboss.logging.Logger;
 import org.keycloak.connections.mongo.api.MongoCollection;
 import org.keycloak.connections.mongo.api.MongoEntity;
+import org.keycloak.connections.mongo.api.MongoEntityVisitor;
 import org.keycloak.connections.mongo.api.MongoIdentifiableEntity;
 import org.keycloak.connections.mongo.api.MongoStore;
 import org.keycloak.connections.mongo.api.context.MongoStoreInvocationContext;
@@ -61,7 +62,12 @@ public class MongoStoreImpl implements MongoStore {
 
     private static final Class<?>[] SIMPLE_TYPES = { String.class, Integer.class, Boolean.class, Long.class, Double.class, Character.class, Date.class, byte[].class };
 
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final DBObject ID_PROJECTION = new BasicDBObject("_id", 1);
+
     private final DB database;
+    private final int batchSize;
     private static final Logger logger = Logger.getLogger(MongoStoreImpl.class);
 
     private final MapperRegistry mapperRegistry;
@@ -70,7 +76,16 @@ public class MongoStoreImpl implements MongoStore {
 
 
     public MongoStoreImpl(DB database, Class<?>[] managedEntityTypes) {
+        this(database, managedEntityTypes, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize count of documents fetched from DB in single batch by cursors and count of entities removed in single
+     *                  batch by {@link #removeEntities} with callback
+     */
+    public MongoStoreImpl(DB database, Class<?>[] managedEntityTypes, int batchSize) {
         this.database = database;
+        this.batchSize = batchSize;
 
         mapperRegistry = new MapperRegistry();
 
@@ -237,7 +252,7 @@ public class MongoStoreImpl implements MongoStore {
         context.beforeDBSearch(type);
 
         DBCollection dbCollection = getDBCollectionForType(type);
-        DBCursor cursor = dbCollection.find(query);
+        DBCursor cursor = dbCollection.find(query).batchSize(batchSize);
 
         return convertCursor(type, cursor, context);
     }
@@ -248,7 +263,7 @@ public class MongoStoreImpl implements MongoStore {
         context.beforeDBSearch(type);
 
         DBCollection dbCollection = getDBCollectionForType(type);
-        DBCursor cursor = dbCollection.find(query);
+        DBCursor cursor = dbCollection.find(query).batchSize(batchSize);
         if (firstResult != -1) {
             cursor.skip(firstResult);
         }
@@ -262,6 +277,40 @@ public class MongoStoreImpl implements MongoStore {
         return convertCursor(type, cursor, context);
     }
 
+    @Override
+    public <T extends MongoIdentifiableEntity> void iterateEntities(Class<T> type, DBObject query, MongoEntityVisitor<? super T> visitor, MongoStoreInvocationContext context) {
+        context.beforeDBSearch(type);
+
+        DBCollection dbCollection = getDBCollectionForType(type);
+        DBCursor cursor = dbCollection.find(query).batchSize(batchSize);
+        try {
+            while (cursor.hasNext()) {
+                // Visited entities aren't cached in the context, so the memory doesn't grow with the count of visited entities
+                visitor.visit(convertDBObjectToEntity(type, cursor.next(), context, false));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public <T extends MongoIdentifiableEntity> List<String> loadEntityIds(Class<T> type, DBObject query, MongoStoreInvocationContext context) {
+        context.beforeDBSearch(type);
+
+        DBCollection dbCollection = getDBCollectionForType(type);
+        DBCursor cursor = dbCollection.find(query, ID_PROJECTION).batchSize(batchSize);
+
+        List<String> result = new ArrayList<String>();
+        try {
+            while (cursor.hasNext()) {
+                result.add(cursor.next().get("_id").toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
     public <T extends MongoIdentifiableEntity> int countEntities(Class<T> type, DBObject query, MongoStoreInvocationContext context) {
         context.beforeDBSearch(type);
 
@@ -298,20 +347,28 @@ public class MongoStoreImpl implements MongoStore {
     @Override
     public int removeEntities(Class<? extends MongoIdentifiableEntity> type, DBObject query, boolean callback, MongoStoreInvocationContext context) {
         if (callback) {
-            List<? extends MongoIdentifiableEntity> foundObjects = loadEntities(type, query, context);
-            if (foundObjects.size() == 0) {
-                return 0;
-            } else {
-                DBCollection dbCollection = getDBCollectionForType(type);
-                dbCollection.remove(query);
-
-                logger.debugf("Removed %d entities of type: %s, query: %s", foundObjects.size(), type, query);
+            // IDs are read with a cursor. Entities are loaded and removed by ID in batches, so entities created in the meantime
+            // are never removed without callback. Removed entities are released from the context after their callback
+            context.beforeDBSearch(type);
 
-                for (MongoIdentifiableEntity found : foundObjects) {
-                    context.addRemovedEntity(found);;
+            DBCollection dbCollection = getDBCollectionForType(type);
+            DBCursor cursor = dbCollection.find(query, ID_PROJECTION).batchSize(batchSize);
+            int removedCount = 0;
+            try {
+                List<String> batchIds = new ArrayList<String>(batchSize);
+                while (cursor.hasNext()) {
+                    batchIds.add(cursor.next().get("_id").toString());
+                    if (batchIds.size() == batchSize || !cursor.hasNext()) {
+                        removedCount += removeEntitiesBatch(type, batchIds, context);
+                        batchIds.clear();
+                    }
                 }
-                return foundObjects.size();
+            } finally {
+                cursor.close();
             }
+
+            logger.debugf("Removed %d entities of type: %s, query: %s", removedCount, type, query);
+            return removedCount;
         } else {
 
             context.beforeDBBulkUpdateOrRemove(type);
@@ -325,6 +382,18 @@ public class MongoStoreImpl implements MongoStore {
         }
     }
 
+    private int removeEntitiesBatch(Class<? extends MongoIdentifiableEntity> type, List<String> ids, MongoStoreInvocationContext context) {
+        DBObject batchQuery = new BasicDBObject("_id", new BasicDBObject("$in", ids));
+
+        List<? extends MongoIdentifiableEntity> foundObjects = loadEntities(type, batchQuery, context);
+        getDBCollectionForType(type).remove(batchQuery);
+
+        for (MongoIdentifiableEntity found : foundObjects) {
+            context.addRemovedEntity(found);
+        }
+        return foundObjects.size();
+    }
+
     @Override
     public <S> boolean pushItemToList(final MongoIdentifiableEntity entity, final String listPropertyName, S itemToPush, boolean skipIfAlreadyPresent, MongoStoreInvocationContext context) {
         final Class<? extends MongoEntity> type = entity.getClass();
@@ -462,6 +531,10 @@ public class MongoStoreImpl implements MongoStore {
     }
 
     protected <T extends MongoIdentifiableEntity> T convertDBObjectToEntity(Class<T> type, DBObject dbObject, MongoStoreInvocationContext context) {
+        return convertDBObjectToEntity(type, dbObject, context, true);
+    }
+
+    protected <T extends MongoIdentifiableEntity> T convertDBObjectToEntity(Class<T> type, DBObject dbObject, MongoStoreInvocationContext context, boolean addToContext) {
         // First look if we already have loaded object cached. If yes, we will use cached instance
         String id = dbObject.get("_id").toString();
         T object = context.getLoadedEntity(type, id);
@@ -470,7 +543,9 @@ public class MongoStoreImpl implements MongoStore {
             // So convert and use fresh instance from DB
             MapperContext<Object, T> mapperContext = new MapperContext<Object, T>(dbObject, type, null);
             object = mapperRegistry.convertDBObjectToApplicationObject(mapperContext);
-            context.addLoadedEntity(object);
+            if (addToContext) {
+                context.addLoadedEntity(object);
+            }
         }
         return object;
     }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.mongo.impl;
+
+import org.keycloak.common.util.reflections.Types;
+import org.keycloak.connections.mongo.api.types.MapperContext;
+import org.keycloak.models.utils.reflection.Property;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mapping of single entity property to the field of DB object. Types needed to convert the field value are resolved once
+ * when the entity type is registered, rather than for every converted DB object.
+ */
+public class PropertyMapping {
+
+    private final Property<Object> property;
+
+    // Expected type of the converted application object, primitives are boxed
+    private final Class<?> expectedType;
+
+    // Generic arguments in case that property is parameterized type (like "List<String>")
+    private final List<Type> genericTypes;
+
+    private final Class<?> javaClass;
+
+    public PropertyMapping(Property<Object> property) {
+        this.property = property;
+
+        Type type = property.getBaseType();
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            this.expectedType = (Class<?>) parameterized.getRawType();
+            this.genericTypes = Collections.unmodifiableList(Arrays.asList(parameterized.getActualTypeArguments()));
+        } else {
+            this.expectedType = Types.boxedClass((Class<?>) type);
+            this.genericTypes = null;
+        }
+        this.javaClass = Types.boxedClass(property.getJavaClass());
+    }
+
+    public String getName() {
+        return property.getName();
+    }
+
+    public Property<Object> getProperty() {
+        return property;
+    }
+
+    public MapperContext<Object, Object> createMapperContext(Object valueFromDB) {
+        return new MapperContext<Object, Object>(valueFromDB, (Class<Object>) expectedType, genericTypes);
+    }
+
+    /**
+     * @return true if converted application object can be assigned to the property
+     */
+    public boolean isAssignable(Object appObject) {
+        return javaClass.isAssignableFrom(appObject.getClass());
+    }
+
+    public Object getValue(Object entity) {
+        return property.getValue(entity);
+    }
+
+    public void setValue(Object entity, Object value) {
+        property.setValue(entity, value);
+    }
+}
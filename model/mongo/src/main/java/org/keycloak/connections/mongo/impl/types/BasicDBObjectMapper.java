@@ -25,13 +25,7 @@ import org.keycloak.connections.mongo.api.types.MapperContext;
 import org.keycloak.connections.mongo.api.types.MapperRegistry;
 import org.keycloak.connections.mongo.impl.EntityInfo;
 import org.keycloak.connections.mongo.impl.MongoStoreImpl;
-import org.keycloak.models.utils.reflection.Property;
-import org.keycloak.common.util.reflections.Types;
-
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.util.Arrays;
-import java.util.List;
+import org.keycloak.connections.mongo.impl.PropertyMapping;
 
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
@@ -68,7 +62,7 @@ public class BasicDBObjectMapper<S> implements Mapper<BasicDBObject, S> {
 
         for (String key : dbObject.keySet()) {
             Object value = dbObject.get(key);
-            Property<Object> property;
+            PropertyMapping mapping;
 
             if ("_id".equals(key)) {
                 // Current property is "id"
@@ -76,9 +70,9 @@ public class BasicDBObjectMapper<S> implements Mapper<BasicDBObject, S> {
                     ((MongoIdentifiableEntity)entity).setId(value.toString());
                 }
 
-            } else if ((property = entityInfo.getPropertyByName(key)) != null) {
+            } else if ((mapping = entityInfo.getPropertyMapping(key)) != null) {
                 // It's declared property with @DBField annotation
-                setPropertyValue(entity, value, property);
+                setPropertyValue(entity, value, mapping);
 
             } else {
                 // Show warning if it's unknown
@@ -89,39 +83,20 @@ public class BasicDBObjectMapper<S> implements Mapper<BasicDBObject, S> {
         return entity;
     }
 
-    private void setPropertyValue(Object entity, Object valueFromDB, Property property) {
+    private void setPropertyValue(Object entity, Object valueFromDB, PropertyMapping mapping) {
         if (valueFromDB == null) {
-            property.setValue(entity, null);
+            mapping.setValue(entity, null);
             return;
         }
 
-        MapperContext<Object, Object> context;
-
-        Type type = property.getBaseType();
-
-        // This can be the case when we have parameterized type (like "List<String>")
-        if (type instanceof ParameterizedType) {
-            ParameterizedType parameterized = (ParameterizedType) type;
-            Type[] genericTypeArguments = parameterized.getActualTypeArguments();
-
-            List<Type> genericTypes = Arrays.asList(genericTypeArguments);
-
-            Class<?> expectedReturnType = (Class<?>)parameterized.getRawType();
-            context = new MapperContext<Object, Object>(valueFromDB, expectedReturnType, genericTypes);
-        } else {
-            Class<?> expectedReturnType = (Class<?>)type;
-            // handle primitives
-            expectedReturnType = Types.boxedClass(expectedReturnType);
-            context = new MapperContext<Object, Object>(valueFromDB, expectedReturnType, null);
-        }
-
+        MapperContext<Object, Object> context = mapping.createMapperContext(valueFromDB);
         Object appObject = mapperRegistry.convertDBObjectToApplicationObject(context);
 
-        if (Types.boxedClass(property.getJavaClass()).isAssignableFrom(appObject.getClass())) {
-            property.setValue(entity, appObject);
+        if (mapping.isAssignable(appObject)) {
+            mapping.setValue(entity, appObject);
         } else {
             throw new IllegalStateException("Converted object " + appObject + " is not of type " +  context.getExpectedReturnType() +
-                    ". So can't be assigned as property " + property.getName() + " of " + entity.getClass());
+                    ". So can't be assigned as property " + mapping.getName() + " of " + entity.getClass());
         }
     }
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.connections.mongo.updater.impl.updates;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import org.keycloak.models.Constants;
+import org.keycloak.models.KeycloakSession;
+
+public class Update2_0_0 extends Update {
+
+    @Override
+    public String getId() {
+        return "2.0.0";
+    }
+
+    @Override
+    public void update(KeycloakSession session) {
+        // Indexes for the filters of event queries, all queries are sorted by time
+        ensureIndex("events", new String[] { "realmId", "time" }, false, false);
+        ensureIndex("events", new String[] { "realmId", "userId", "time" }, false, false);
+        ensureIndex("events", new String[] { "realmId", "clientId", "time" }, false, false);
+        ensureIndex("events", new String[] { "realmId", "type", "time" }, false, false);
+        ensureIndex("adminEvents", new String[] { "realmId", "time" }, false, false);
+        ensureIndex("adminEvents", new String[] { "realmId", "operationType", "time" }, false, false);
+
+        // Events written with an expiration date are removed by MongoDB
+        DBCollection events = db.getCollection("events");
+        events.createIndex(new BasicDBObject("expiration", 1), new BasicDBObject("expireAfterSeconds", 0));
+        log.debugv("Created TTL index on events.expiration");
+
+        // Existing realms get the default lifespan of passive keys, like new realms
+        DBCollection realms = db.getCollection("realms");
+        BasicDBObject query = new BasicDBObject("passiveKeyLifespan", new BasicDBObject("$exists", false));
+        BasicDBObject update = new BasicDBObject("$set", new BasicDBObject("passiveKeyLifespan", Constants.DEFAULT_PASSIVE_KEY_LIFESPAN));
+        realms.update(query, update, false, true);
+        log.debugv("Set passiveKeyLifespan of existing realms");
+    }
+
+}
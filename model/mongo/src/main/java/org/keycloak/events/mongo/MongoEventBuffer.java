@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.events.mongo;
+
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.jboss.logging.Logger;
+import org.keycloak.connections.mongo.MongoConnectionProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.timer.ScheduledTask;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind buffer for events and admin events. Buffered events are written with unordered bulk inserts on
+ * {@link #flush(DB)}, so the order of events in the collection isn't preserved, which doesn't matter as queries sort by time.
+ *
+ * Events are written unacknowledged anyway, so buffering only widens the window in which events could be lost by a crash
+ * of the server.
+ */
+public class MongoEventBuffer {
+
+    private static final Logger logger = Logger.getLogger(MongoEventBuffer.class);
+
+    private static final int MAX_BULK_SIZE = 1000;
+
+    public static class FlushTask implements ScheduledTask {
+
+        private final MongoEventBuffer buffer;
+
+        public FlushTask(MongoEventBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run(KeycloakSession session) {
+            buffer.flush(session.getProvider(MongoConnectionProvider.class).getDB());
+        }
+    }
+
+    private final int maxPending;
+    private final Queue<DBObject> events = new ConcurrentLinkedQueue<>();
+    private final Queue<DBObject> adminEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public MongoEventBuffer(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @return true if the buffer is full and should be flushed
+     */
+    public boolean addEvent(DBObject event) {
+        events.add(event);
+        return size.incrementAndGet() >= maxPending;
+    }
+
+    /**
+     * @return true if the buffer is full and should be flushed
+     */
+    public boolean addAdminEvent(DBObject adminEvent) {
+        adminEvents.add(adminEvent);
+        return size.incrementAndGet() >= maxPending;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return count of written events and admin events
+     */
+    public int flush(DB db) {
+        if (size.get() == 0) return 0;
+
+        int count = insert(MongoEventStoreProviderFactory.getEventsCollection(db), events);
+        int adminCount = insert(MongoEventStoreProviderFactory.getAdminEventsCollection(db), adminEvents);
+
+        logger.debugf("Flushed %d events and %d admin events", count, adminCount);
+        return count + adminCount;
+    }
+
+    private int insert(DBCollection collection, Queue<DBObject> queue) {
+        int count = 0;
+        BulkWriteOperation bulk = null;
+        for (DBObject o = queue.poll(); o != null; o = queue.poll()) {
+            size.decrementAndGet();
+            if (bulk == null) {
+                bulk = collection.initializeUnorderedBulkOperation();
+            }
+            bulk.insert(o);
+            if (++count % MAX_BULK_SIZE == 0) {
+                bulk.execute();
+                bulk = null;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+        return count;
+    }
+
+}
@@ -18,9 +18,12 @@
 package org.keycloak.events.mongo;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 
+import org.keycloak.connections.mongo.MongoConnectionProvider;
+
 import org.keycloak.events.admin.AdminEvent;
 import org.keycloak.events.admin.AdminEventQuery;
 import org.keycloak.events.admin.AuthDetails;
@@ -29,40 +32,56 @@ import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.EventType;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Events are written with an expiration date if the realm of the current request has an events expiration set, which is
+ * removed by the TTL index on the events collection. Events sent outside of a request of their realm don't get an
+ * expiration date and are removed by the scheduled clear of expired events like with other stores. Admin events don't
+ * expire.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class MongoEventStoreProvider implements EventStoreProvider {
-    
+
+    private KeycloakSession session;
     private DBCollection events;
     private DBCollection adminEvents;
+    private MongoEventBuffer buffer;
 
-    public MongoEventStoreProvider(DBCollection events, DBCollection adminEvents) {
+    public MongoEventStoreProvider(KeycloakSession session, DBCollection events, DBCollection adminEvents, MongoEventBuffer buffer) {
+        this.session = session;
         this.events = events;
         this.adminEvents = adminEvents;
+        this.buffer = buffer;
     }
 
     @Override
     public EventQuery createQuery() {
+        flush();
         return new MongoEventQuery(events);
     }
 
     @Override
     public void clear() {
+        flush();
         events.remove(new BasicDBObject());
     }
 
     @Override
     public void clear(String realmId) {
+        flush();
         events.remove(new BasicDBObject("realmId", realmId));
     }
 
     @Override
     public void clear(String realmId, long olderThan) {
+        flush();
         BasicDBObject q = new BasicDBObject();
         q.put("realmId", realmId);
         q.put("time", new BasicDBObject("$lt", olderThan));
@@ -71,26 +90,42 @@ public class MongoEventStoreProvider implements EventStoreProvider {
 
     @Override
     public void onEvent(Event event) {
-        events.insert(convertEvent(event));
+        DBObject e = convertEvent(event);
+
+        // The realm of the request is used, so events don't need a realm lookup each
+        RealmModel realm = session.getContext().getRealm();
+        if (realm != null && realm.getId().equals(event.getRealmId()) && realm.getEventsExpiration() > 0) {
+            e.put("expiration", new Date(event.getTime() + realm.getEventsExpiration() * 1000));
+        }
+
+        if (buffer == null) {
+            events.insert(e);
+        } else if (buffer.addEvent(e)) {
+            flush();
+        }
     }
 
     @Override
     public AdminEventQuery createAdminQuery() {
+        flush();
         return new MongoAdminEventQuery(adminEvents);
     }
 
     @Override
     public void clearAdmin() {
+        flush();
         adminEvents.remove(new BasicDBObject());
     }
 
     @Override
     public void clearAdmin(String realmId) {
+        flush();
         adminEvents.remove(new BasicDBObject("realmId", realmId));
     }
 
     @Override
     public void clearAdmin(String realmId, long olderThan) {
+        flush();
         BasicDBObject q = new BasicDBObject();
         q.put("realmId", realmId);
         q.put("time", new BasicDBObject("$lt", olderThan));
@@ -99,7 +134,19 @@ public class MongoEventStoreProvider implements EventStoreProvider {
 
     @Override
     public void onEvent(AdminEvent adminEvent, boolean includeRepresentation) {
-        adminEvents.insert(convertAdminEvent(adminEvent, includeRepresentation));
+        DBObject e = convertAdminEvent(adminEvent, includeRepresentation);
+        if (buffer == null) {
+            adminEvents.insert(e);
+        } else if (buffer.addAdminEvent(e)) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (buffer != null) {
+            DB db = session.getProvider(MongoConnectionProvider.class).getDB();
+            buffer.flush(db);
+        }
     }
 
     @Override
@@ -17,6 +17,7 @@
 
 package org.keycloak.events.mongo;
 
+import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.WriteConcern;
 import org.jboss.logging.Logger;
@@ -26,8 +27,26 @@ import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.EventStoreProviderFactory;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.PostMigrationEvent;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
+import org.keycloak.timer.TimerProvider;
 
 /**
+ * Config options:
+ * <ul>
+ *     <li>writeBehindInterval - interval in seconds, in which buffered events and admin events are written to MongoDB
+ *     with unordered bulk inserts. 0 (default) writes every event immediately. Queries and clear operations of the
+ *     store always write buffered events of this node first</li>
+ *     <li>writeBehindMaxPending - count of buffered events, which triggers an immediate flush, 1000 by default</li>
+ * </ul>
+ *
+ * Buffered events are written when the factory is closed on shutdown. If the server crashes, or the write on shutdown
+ * fails, the buffered events are lost. That's at most writeBehindMaxPending events, or the events of the last
+ * writeBehindInterval seconds.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class MongoEventStoreProviderFactory implements EventStoreProviderFactory {
@@ -36,30 +55,77 @@ public class MongoEventStoreProviderFactory implements EventStoreProviderFactory
 
     public static final String ID = "mongo";
 
+    private int writeBehindInterval;
+    private MongoEventBuffer buffer;
+    private KeycloakSessionFactory sessionFactory;
+
     @Override
     public EventStoreProvider create(KeycloakSession session) {
-        MongoConnectionProvider connection = session.getProvider(MongoConnectionProvider.class);
+        DB db = session.getProvider(MongoConnectionProvider.class).getDB();
+        return new MongoEventStoreProvider(session, getEventsCollection(db), getAdminEventsCollection(db), buffer);
+    }
 
-        DBCollection collection = connection.getDB().getCollection("events");
-        DBCollection adminCollection = connection.getDB().getCollection("adminEvents");
-        
+    static DBCollection getEventsCollection(DB db) {
+        DBCollection collection = db.getCollection("events");
         collection.setWriteConcern(WriteConcern.UNACKNOWLEDGED);
-        adminCollection.setWriteConcern(WriteConcern.UNACKNOWLEDGED);
+        return collection;
+    }
 
-        return new MongoEventStoreProvider(collection, adminCollection);
+    static DBCollection getAdminEventsCollection(DB db) {
+        DBCollection collection = db.getCollection("adminEvents");
+        collection.setWriteConcern(WriteConcern.UNACKNOWLEDGED);
+        return collection;
     }
 
     @Override
     public void init(Config.Scope config) {
+        writeBehindInterval = config.getInt("writeBehindInterval", 0);
+        if (writeBehindInterval > 0) {
+            buffer = new MongoEventBuffer(config.getInt("writeBehindMaxPending", 1000));
+        }
     }
 
     @Override
-    public void postInit(KeycloakSessionFactory factory) {
+    public void postInit(final KeycloakSessionFactory factory) {
+        if (buffer == null) return;
 
+        this.sessionFactory = factory;
+        factory.register(new ProviderEventListener() {
+
+            @Override
+            public void onEvent(ProviderEvent event) {
+                if (event instanceof PostMigrationEvent) {
+                    KeycloakModelUtils.runJobInTransaction(factory, new KeycloakSessionTask() {
+
+                        @Override
+                        public void run(KeycloakSession session) {
+                            TimerProvider timer = session.getProvider(TimerProvider.class);
+                            timer.scheduleTask(new MongoEventBuffer.FlushTask(buffer), writeBehindInterval * 1000L, "MongoEventsWriteBehind");
+                        }
+
+                    });
+                }
+            }
+        });
     }
 
     @Override
     public void close() {
+        if (buffer != null && buffer.size() > 0) {
+            final int pending = buffer.size();
+            try {
+                KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+
+                    @Override
+                    public void run(KeycloakSession session) {
+                        new MongoEventBuffer.FlushTask(buffer).run(session);
+                    }
+
+                });
+            } catch (RuntimeException e) {
+                logger.warnf(e, "Failed to flush %d buffered events, they are lost", pending);
+            }
+        }
     }
 
     @Override
@@ -219,13 +219,11 @@ public class GroupAdapter extends AbstractMongoAdapter<MongoGroupEntity> impleme
                 .and("realmId").is(realm.getId())
                 .and("parentId").is(getId())
                 .get();
-        List<MongoGroupEntity> groups = getMongoStore().loadEntities(MongoGroupEntity.class, query, invocationContext);
+        List<String> groupIds = getMongoStore().loadEntityIds(MongoGroupEntity.class, query, invocationContext);
 
         Set<GroupModel> subGroups = new HashSet<>();
-
-        if (groups == null) return subGroups;
-        for (MongoGroupEntity group : groups) {
-            subGroups.add(realm.getGroupById(group.getId()));
+        for (String groupId : groupIds) {
+            subGroups.add(realm.getGroupById(groupId));
         }
 
         return subGroups;
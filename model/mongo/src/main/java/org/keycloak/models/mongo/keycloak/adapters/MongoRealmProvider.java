@@ -289,12 +289,12 @@ public class MongoRealmProvider implements RealmProvider {
         DBObject query = new QueryBuilder()
                 .and("realmId").is(realm.getId())
                 .get();
-        List<MongoClientEntity> clientEntities = getMongoStore().loadEntities(MongoClientEntity.class, query, invocationContext);
+        List<String> clientIds = getMongoStore().loadEntityIds(MongoClientEntity.class, query, invocationContext);
 
-        if (clientEntities.isEmpty()) return Collections.EMPTY_LIST;
+        if (clientIds.isEmpty()) return Collections.EMPTY_LIST;
         List<ClientModel> result = new ArrayList<ClientModel>();
-        for (MongoClientEntity clientEntity : clientEntities) {
-            result.add(session.realms().getClientById(clientEntity.getId(), realm));
+        for (String clientId : clientIds) {
+            result.add(session.realms().getClientById(clientId, realm));
         }
         return Collections.unmodifiableList(result);
     }
@@ -321,13 +321,11 @@ public class MongoRealmProvider implements RealmProvider {
         DBObject query = new QueryBuilder()
                 .and("realmId").is(realm.getId())
                 .get();
-        List<MongoRoleEntity> roles = getMongoStore().loadEntities(MongoRoleEntity.class, query, invocationContext);
+        List<String> roleIds = getMongoStore().loadEntityIds(MongoRoleEntity.class, query, invocationContext);
 
-
-        if (roles == null) return Collections.EMPTY_SET;
         Set<RoleModel> result = new HashSet<RoleModel>();
-        for (MongoRoleEntity role : roles) {
-            result.add(session.realms().getRoleById(role.getId(), realm));
+        for (String roleId : roleIds) {
+            result.add(session.realms().getRoleById(roleId, realm));
         }
 
         return Collections.unmodifiableSet(result);
@@ -339,11 +337,11 @@ public class MongoRealmProvider implements RealmProvider {
         DBObject query = new QueryBuilder()
                 .and("clientId").is(client.getId())
                 .get();
-        List<MongoRoleEntity> roles = getMongoStore().loadEntities(MongoRoleEntity.class, query, invocationContext);
+        List<String> roleIds = getMongoStore().loadEntityIds(MongoRoleEntity.class, query, invocationContext);
 
         Set<RoleModel> result = new HashSet<RoleModel>();
-        for (MongoRoleEntity role : roles) {
-            result.add(session.realms().getRoleById(role.getId(), realm));
+        for (String roleId : roleIds) {
+            result.add(session.realms().getRoleById(roleId, realm));
         }
 
         return result;
@@ -25,6 +25,7 @@ import java.util.List;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import com.mongodb.QueryBuilder;
+import org.keycloak.connections.mongo.api.MongoEntityVisitor;
 import org.keycloak.connections.mongo.api.MongoStore;
 import org.keycloak.connections.mongo.api.context.MongoStoreInvocationContext;
 import org.keycloak.models.ClientModel;
@@ -169,20 +170,20 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
     }
 
     @Override
-    public void onClientRemoved(RealmModel realm, ClientModel client) {
+    public void onClientRemoved(RealmModel realm, final ClientModel client) {
         DBObject query = new QueryBuilder()
                 .and("clientSessions.clientId").is(client.getId())
                 .get();
 
-        List<MongoOnlineUserSessionEntity> userSessions = getMongoStore().loadEntities(MongoOnlineUserSessionEntity.class, query, invocationContext);
-        for (MongoOnlineUserSessionEntity userSession : userSessions) {
-            removeClientSessionOfClient(userSession, client.getId());
-        }
+        MongoEntityVisitor<MongoUserSessionEntity> visitor = new MongoEntityVisitor<MongoUserSessionEntity>() {
 
-        List<MongoOfflineUserSessionEntity> userSessions2 = getMongoStore().loadEntities(MongoOfflineUserSessionEntity.class, query, invocationContext);
-        for (MongoOfflineUserSessionEntity userSession : userSessions2) {
-            removeClientSessionOfClient(userSession, client.getId());
-        }
+            @Override
+            public void visit(MongoUserSessionEntity userSession) {
+                removeClientSessionOfClient(userSession, client.getId());
+            }
+        };
+        getMongoStore().iterateEntities(MongoOnlineUserSessionEntity.class, query, visitor, invocationContext);
+        getMongoStore().iterateEntities(MongoOfflineUserSessionEntity.class, query, visitor, invocationContext);
     }
 
     private void removeClientSessionOfClient(MongoUserSessionEntity userSession, String clientId) {
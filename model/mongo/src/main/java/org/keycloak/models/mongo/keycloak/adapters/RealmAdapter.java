@@ -22,6 +22,7 @@ import com.mongodb.QueryBuilder;
 
 import org.keycloak.connections.mongo.api.context.MongoStoreInvocationContext;
 import org.keycloak.common.enums.SslRequired;
+import org.keycloak.common.util.Time;
 import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.AuthenticationFlowModel;
 import org.keycloak.models.AuthenticatorConfigModel;
@@ -35,6 +36,7 @@ import org.keycloak.models.ModelDuplicateException;
 import org.keycloak.models.ModelException;
 import org.keycloak.models.OTPPolicy;
 import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RequiredActionProviderModel;
@@ -48,6 +50,7 @@ import org.keycloak.models.entities.AuthenticationFlowEntity;
 import org.keycloak.models.entities.AuthenticatorConfigEntity;
 import org.keycloak.models.entities.IdentityProviderEntity;
 import org.keycloak.models.entities.IdentityProviderMapperEntity;
+import org.keycloak.models.entities.RealmKeyEntity;
 import org.keycloak.models.entities.RequiredActionProviderEntity;
 import org.keycloak.models.entities.RequiredCredentialEntity;
 import org.keycloak.models.entities.UserFederationMapperEntity;
@@ -84,6 +87,7 @@ public class RealmAdapter extends AbstractMongoAdapter<MongoRealmEntity> impleme
     private final RealmProvider model;
 
     protected volatile transient PublicKey publicKey;
+    protected volatile transient String keyId;
     protected volatile transient PrivateKey privateKey;
     protected volatile transient X509Certificate certificate;
     protected volatile transient Key codeSecretKey;
@@ -461,6 +465,7 @@ public class RealmAdapter extends AbstractMongoAdapter<MongoRealmEntity> impleme
     @Override
     public void setPublicKeyPem(String publicKeyPem) {
         realm.setPublicKeyPem(publicKeyPem);
+        this.keyId = null;
         this.publicKey = null;
         updateRealm();
     }
@@ -518,6 +523,15 @@ public class RealmAdapter extends AbstractMongoAdapter<MongoRealmEntity> impleme
         setPublicKeyPem(publicKeyPem);
     }
 
+    @Override
+    public String getKeyId() {
+        if (keyId != null) return keyId;
+        PublicKey publicKey = getPublicKey();
+        if (publicKey == null) return null;
+        keyId = KeycloakModelUtils.getKeyId(publicKey);
+        return keyId;
+    }
+
     @Override
     public PrivateKey getPrivateKey() {
         if (privateKey != null) return privateKey;
@@ -532,6 +546,59 @@ public class RealmAdapter extends AbstractMongoAdapter<MongoRealmEntity> impleme
         setPrivateKeyPem(privateKeyPem);
     }
 
+    @Override
+    public List<RealmKeyModel> getPassiveKeys() {
+        List<RealmKeyModel> keys = new LinkedList<>();
+        for (RealmKeyEntity entity : realm.getPassiveKeys()) {
+            keys.add(new RealmKeyModel(entity.getKid(), entity.getPublicKeyPem(), entity.getCertificatePem(), entity.getExpiration()));
+        }
+        return keys;
+    }
+
+    @Override
+    public void addPassiveKey(RealmKeyModel key) {
+        RealmKeyEntity entity = new RealmKeyEntity();
+        entity.setKid(key.getKid());
+        entity.setPublicKeyPem(key.getPublicKeyPem());
+        entity.setCertificatePem(key.getCertificatePem());
+        entity.setExpiration(key.getExpiration());
+        realm.getPassiveKeys().add(entity);
+        updateRealm();
+    }
+
+    @Override
+    public void removePassiveKey(String kid) {
+        Iterator<RealmKeyEntity> itr = realm.getPassiveKeys().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().getKid().equals(kid)) {
+                itr.remove();
+            }
+        }
+        updateRealm();
+    }
+
+    @Override
+    public PublicKey getPassivePublicKey(String kid) {
+        int currentTime = Time.currentTime();
+        for (RealmKeyEntity entity : realm.getPassiveKeys()) {
+            if (entity.getKid().equals(kid) && entity.getExpiration() > currentTime) {
+                return KeycloakModelUtils.getPublicKey(entity.getPublicKeyPem());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getPassiveKeyLifespan() {
+        return realm.getPassiveKeyLifespan();
+    }
+
+    @Override
+    public void setPassiveKeyLifespan(int seconds) {
+        realm.setPassiveKeyLifespan(seconds);
+        updateRealm();
+    }
+
     @Override
     public String getCodeSecret() {
         return realm.getCodeSecret();
@@ -21,14 +21,13 @@ import com.mongodb.DBObject;
 import com.mongodb.QueryBuilder;
 import org.jboss.logging.Logger;
 import org.keycloak.connections.mongo.api.MongoCollection;
+import org.keycloak.connections.mongo.api.MongoEntityVisitor;
 import org.keycloak.connections.mongo.api.MongoField;
 import org.keycloak.connections.mongo.api.MongoIdentifiableEntity;
 import org.keycloak.connections.mongo.api.MongoStore;
 import org.keycloak.connections.mongo.api.context.MongoStoreInvocationContext;
 import org.keycloak.models.entities.RoleEntity;
 
-import java.util.List;
-
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
  */
@@ -62,38 +61,37 @@ public class MongoRoleEntity extends RoleEntity implements MongoIdentifiableEnti
         DBObject query = new QueryBuilder()
                 .and("roleIds").is(getId())
                 .get();
-
-        List<MongoGroupEntity> groups = mongoStore.loadEntities(MongoGroupEntity.class, query, invContext);
-        for (MongoGroupEntity group : groups) {
-            mongoStore.pullItemFromList(group, "roleIds", getId(), invContext);
-        }
-
+        mongoStore.iterateEntities(MongoGroupEntity.class, query, new PullRoleVisitor<MongoGroupEntity>("roleIds", invContext), invContext);
 
         // Remove this scope from all clients, which has it
         query = new QueryBuilder()
                 .and("scopeIds").is(getId())
                 .get();
-
-        List<MongoClientEntity> clients = mongoStore.loadEntities(MongoClientEntity.class, query, invContext);
-        for (MongoClientEntity client : clients) {
-            //logger.info("Removing scope " + getName() + " from user " + user.getUsername());
-            mongoStore.pullItemFromList(client, "scopeIds", getId(), invContext);
-        }
+        mongoStore.iterateEntities(MongoClientEntity.class, query, new PullRoleVisitor<MongoClientEntity>("scopeIds", invContext), invContext);
 
         // Remove this scope from all clientTemplates, which has it
-        List<MongoClientTemplateEntity> clientTemplates = mongoStore.loadEntities(MongoClientTemplateEntity.class, query, invContext);
-        for (MongoClientTemplateEntity clientTemplate : clientTemplates) {
-            //logger.info("Removing scope " + getName() + " from user " + user.getUsername());
-            mongoStore.pullItemFromList(clientTemplate, "scopeIds", getId(), invContext);
-        }
+        mongoStore.iterateEntities(MongoClientTemplateEntity.class, query, new PullRoleVisitor<MongoClientTemplateEntity>("scopeIds", invContext), invContext);
 
         // Remove this role from others who has it as composite
         query = new QueryBuilder()
                 .and("compositeRoleIds").is(getId())
                 .get();
-        List<MongoRoleEntity> parentRoles = mongoStore.loadEntities(MongoRoleEntity.class, query, invContext);
-        for (MongoRoleEntity role : parentRoles) {
-            mongoStore.pullItemFromList(role, "compositeRoleIds", getId(), invContext);
+        mongoStore.iterateEntities(MongoRoleEntity.class, query, new PullRoleVisitor<MongoRoleEntity>("compositeRoleIds", invContext), invContext);
+    }
+
+    private class PullRoleVisitor<T extends MongoIdentifiableEntity> implements MongoEntityVisitor<T> {
+
+        private final String listPropertyName;
+        private final MongoStoreInvocationContext invContext;
+
+        private PullRoleVisitor(String listPropertyName, MongoStoreInvocationContext invContext) {
+            this.listPropertyName = listPropertyName;
+            this.invContext = invContext;
+        }
+
+        @Override
+        public void visit(T entity) {
+            invContext.getMongoStore().pullItemFromList(entity, listPropertyName, getId(), invContext);
         }
     }
 }
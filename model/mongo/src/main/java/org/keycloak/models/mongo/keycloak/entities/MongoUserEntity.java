@@ -39,11 +39,11 @@ public class MongoUserEntity extends UserEntity implements MongoIdentifiableEnti
 
     @Override
     public void afterRemove(MongoStoreInvocationContext context) {
-        // Remove all consents of this user
+        // Remove all consents of this user. Consents don't have any callback, so they can be removed directly
         DBObject query = new QueryBuilder()
                 .and("userId").is(getId())
                 .get();
 
-        context.getMongoStore().removeEntities(MongoUserConsentEntity.class, query, true, context);
+        context.getMongoStore().removeEntities(MongoUserConsentEntity.class, query, false, context);
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.proxy;
+
+import io.undertow.security.api.SecurityContext;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.CookieImpl;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import org.jboss.logging.Logger;
+import org.keycloak.adapters.undertow.KeycloakUndertowAccount;
+import org.keycloak.representations.AccessToken;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proxy client, which spreads requests across multiple targets with pooled upstream connections.  Requests of the same
+ * Keycloak session are routed to the same target as long as it is available.  Targets are optionally health checked and
+ * removed from the rotation until they respond again.
+ */
+public class LoadBalancingTargetClient extends LoadBalancingProxyClient {
+    protected static Logger log = Logger.getLogger(LoadBalancingTargetClient.class);
+
+    // Request cookie used internally to pass the route of the Keycloak session to the sticky host lookup, never sent upstream
+    public static final String ROUTE_COOKIE = "KEYCLOAK_PROXY_ROUTE";
+
+    // Session cookie Undertow checks for sticky routes by default
+    public static final String JSESSIONID = "JSESSIONID";
+
+    protected static final int HEALTH_CHECK_TIMEOUT = 5000;
+
+    public static class Target {
+        protected final URI uri;
+        protected final String route;
+        protected final AtomicLong requests = new AtomicLong();
+        protected volatile boolean available = true;
+
+        public Target(URI uri, String route) {
+            this.uri = uri;
+            this.route = route;
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+    }
+
+    protected final List<Target> targets = new CopyOnWriteArrayList<Target>();
+    protected final ConcurrentHashMap<URI, Target> targetsByUri = new ConcurrentHashMap<URI, Target>();
+    protected final boolean stickySession;
+    protected ScheduledExecutorService scheduler;
+
+    public LoadBalancingTargetClient(boolean stickySession) {
+        this.stickySession = stickySession;
+        if (stickySession) {
+            // The sticky host lookup uses the first session cookie present, so a JSESSIONID of the target application
+            // containing a '.' would win over the route of the Keycloak session and usually resolve to no host at all
+            removeSessionCookieName(JSESSIONID);
+            addSessionCookieName(ROUTE_COOKIE);
+        }
+    }
+
+    /**
+     * @param route route of the target, defaults to the index of the target
+     */
+    public synchronized LoadBalancingTargetClient addTarget(URI uri, String route) {
+        if (route == null) route = String.valueOf(targets.size());
+        Target target = new Target(uri, route);
+        targets.add(target);
+        targetsByUri.put(uri, target);
+        addHost(uri, route);
+        return this;
+    }
+
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    @Override
+    protected Host findStickyHost(HttpServerExchange exchange) {
+        if (stickySession && !targets.isEmpty()) {
+            String sessionState = getSessionState(exchange);
+            if (sessionState != null) {
+                Target target = targets.get((sessionState.hashCode() & Integer.MAX_VALUE) % targets.size());
+                exchange.getRequestCookies().put(ROUTE_COOKIE, new CookieImpl(ROUTE_COOKIE, sessionState + "." + target.getRoute()));
+            }
+        }
+        return super.findStickyHost(exchange);
+    }
+
+    @Override
+    protected Host selectHost(HttpServerExchange exchange) {
+        Host host = super.selectHost(exchange);
+        if (host != null) {
+            Target target = targetsByUri.get(host.getUri());
+            if (target != null) target.requests.incrementAndGet();
+        }
+        return host;
+    }
+
+    protected String getSessionState(HttpServerExchange exchange) {
+        SecurityContext securityContext = exchange.getSecurityContext();
+        if (securityContext == null || !(securityContext.getAuthenticatedAccount() instanceof KeycloakUndertowAccount)) return null;
+        KeycloakUndertowAccount account = (KeycloakUndertowAccount) securityContext.getAuthenticatedAccount();
+        AccessToken token = account.getKeycloakSecurityContext().getToken();
+        return token != null ? token.getSessionState() : null;
+    }
+
+    /**
+     * Periodically sends a GET request for the path to every target.  Targets, which fail to connect or respond with a server
+     * error, are removed from the rotation until they respond successfully again.  Checks run on the scheduler threads and
+     * never block requests, which only see the host being removed or added back.
+     */
+    public void startHealthCheck(final String path, int intervalSeconds) {
+        getScheduler().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (Target target : targets) {
+                    checkHealth(target, path);
+                }
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    protected void checkHealth(Target target, String path) {
+        // Don't hold the lock while waiting for the target, addHost and removeHost synchronize on the client too
+        boolean healthy = isHealthy(target.getUri().resolve(path), HEALTH_CHECK_TIMEOUT);
+        updateAvailability(target, healthy);
+    }
+
+    protected synchronized void updateAvailability(Target target, boolean healthy) {
+        if (healthy && !target.available) {
+            log.infov("Target {0} is available again", target.getUri());
+            addHost(target.getUri(), target.getRoute());
+            target.available = true;
+        } else if (!healthy && target.available) {
+            log.warnv("Target {0} failed health check, removing it from load balancing", target.getUri());
+            removeHost(target.getUri());
+            target.available = false;
+        }
+    }
+
+    protected boolean isHealthy(URI uri, int timeout) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) uri.toURL().openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setInstanceFollowRedirects(false);
+            return connection.getResponseCode() < 500;
+        } catch (IOException e) {
+            log.debugv("Health check of {0} failed: {1}", uri, e.getMessage());
+            return false;
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    /**
+     * Periodically logs the throughput of every target since the previous report.
+     */
+    public void startMetricsLog(final int intervalSeconds) {
+        getScheduler().scheduleAtFixedRate(new Runnable() {
+            private final long[] previous = new long[targets.size()];
+
+            @Override
+            public void run() {
+                StringBuilder sb = new StringBuilder("Proxy throughput:");
+                long total = 0;
+                for (int i = 0; i < previous.length; i++) {
+                    Target target = targets.get(i);
+                    long requests = target.getRequests();
+                    long delta = requests - previous[i];
+                    previous[i] = requests;
+                    total += delta;
+                    sb.append(' ').append(target.getUri()).append('=').append(delta / intervalSeconds).append("/s");
+                    if (!target.isAvailable()) sb.append(" (unavailable)");
+                }
+                sb.append(", total=").append(total / intervalSeconds).append("/s");
+                log.info(sb.toString());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    protected synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            // Separate threads for health checks and metrics, so a hanging target doesn't delay the throughput log
+            scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "keycloak-proxy-load-balancer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Stops the health checks and the metrics log.  Called when the proxy server is shut down.
+     */
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
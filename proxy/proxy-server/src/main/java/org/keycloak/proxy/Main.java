@@ -38,7 +38,19 @@ public class Main {
             return;
         }
         FileInputStream fis = new FileInputStream(file);
-        Undertow proxyServer = ProxyServerBuilder.build(fis);
+        final ProxyServerBuilder builder = ProxyServerBuilder.configure(ProxyServerBuilder.loadConfig(fis));
+        if (builder == null) {
+            System.exit(1);
+            return;
+        }
+        final Undertow proxyServer = builder.build();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                proxyServer.stop();
+                builder.close();
+            }
+        });
         proxyServer.start();
 
     }
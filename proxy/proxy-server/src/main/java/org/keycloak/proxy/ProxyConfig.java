@@ -51,6 +51,10 @@ public class ProxyConfig {
     protected Boolean directBuffers;
     @JsonProperty("target-url")
     protected String targetUrl;
+    @JsonProperty("targets")
+    protected List<Target> targets;
+    @JsonProperty("load-balancer")
+    protected LoadBalancer loadBalancer;
     @JsonProperty("send-access-token")
     protected boolean sendAccessToken;
     @JsonProperty("applications")
@@ -154,6 +158,22 @@ public class ProxyConfig {
         this.targetUrl = targetUrl;
     }
 
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(List<Target> targets) {
+        this.targets = targets;
+    }
+
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
     public List<Application> getApplications() {
         return applications;
     }
@@ -178,6 +198,122 @@ public class ProxyConfig {
         return headerNames;
     }
 
+    public static class Target {
+        @JsonProperty("url")
+        protected String url;
+        @JsonProperty("route")
+        protected String route;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public void setRoute(String route) {
+            this.route = route;
+        }
+    }
+
+    public static class LoadBalancer {
+        @JsonProperty("connections-per-thread")
+        protected Integer connectionsPerThread;
+        @JsonProperty("soft-max-connections-per-thread")
+        protected Integer softMaxConnectionsPerThread;
+        @JsonProperty("max-queue-size")
+        protected Integer maxQueueSize;
+        @JsonProperty("connection-ttl")
+        protected Integer connectionTtl;
+        @JsonProperty("problem-server-retry")
+        protected Integer problemServerRetry;
+        @JsonProperty("sticky-session")
+        protected boolean stickySession = true;
+        @JsonProperty("health-check-path")
+        protected String healthCheckPath;
+        @JsonProperty("health-check-interval")
+        protected int healthCheckInterval = 10;
+        @JsonProperty("metrics-log-interval")
+        protected int metricsLogInterval;
+
+        public Integer getConnectionsPerThread() {
+            return connectionsPerThread;
+        }
+
+        public void setConnectionsPerThread(Integer connectionsPerThread) {
+            this.connectionsPerThread = connectionsPerThread;
+        }
+
+        public Integer getSoftMaxConnectionsPerThread() {
+            return softMaxConnectionsPerThread;
+        }
+
+        public void setSoftMaxConnectionsPerThread(Integer softMaxConnectionsPerThread) {
+            this.softMaxConnectionsPerThread = softMaxConnectionsPerThread;
+        }
+
+        public Integer getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public void setMaxQueueSize(Integer maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        public Integer getConnectionTtl() {
+            return connectionTtl;
+        }
+
+        public void setConnectionTtl(Integer connectionTtl) {
+            this.connectionTtl = connectionTtl;
+        }
+
+        public Integer getProblemServerRetry() {
+            return problemServerRetry;
+        }
+
+        public void setProblemServerRetry(Integer problemServerRetry) {
+            this.problemServerRetry = problemServerRetry;
+        }
+
+        public boolean isStickySession() {
+            return stickySession;
+        }
+
+        public void setStickySession(boolean stickySession) {
+            this.stickySession = stickySession;
+        }
+
+        public String getHealthCheckPath() {
+            return healthCheckPath;
+        }
+
+        public void setHealthCheckPath(String healthCheckPath) {
+            this.healthCheckPath = healthCheckPath;
+        }
+
+        public int getHealthCheckInterval() {
+            return healthCheckInterval;
+        }
+
+        public void setHealthCheckInterval(int healthCheckInterval) {
+            this.healthCheckInterval = healthCheckInterval;
+        }
+
+        public int getMetricsLogInterval() {
+            return metricsLogInterval;
+        }
+
+        public void setMetricsLogInterval(int metricsLogInterval) {
+            this.metricsLogInterval = metricsLogInterval;
+        }
+    }
+
     public static class Application {
         @JsonProperty("base-path")
         protected String basePath;
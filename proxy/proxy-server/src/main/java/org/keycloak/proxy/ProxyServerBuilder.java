@@ -31,6 +31,7 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyClient;
 import io.undertow.server.handlers.proxy.ProxyHandler;
 import io.undertow.server.handlers.ProxyPeerAddressHandler;
 import io.undertow.server.handlers.proxy.SimpleProxyClientProvider;
@@ -89,6 +90,7 @@ public class ProxyServerBuilder {
 
     protected PathHandler root = new PathHandler(NOT_FOUND);
     protected HttpHandler proxyHandler;
+    protected LoadBalancingTargetClient loadBalancingClient;
     protected boolean sendAccessToken;
 
     protected Map<String, String> headerNameConfig;
@@ -100,15 +102,110 @@ public class ProxyServerBuilder {
         } catch (URISyntaxException e) {
             throw new RuntimeException(e);
         }
-        final HttpHandler handler = new ProxyHandler(provider, 30000, ResponseCodeHandler.HANDLE_404);
-        proxyHandler = new HttpHandler() {
+        proxyHandler = createProxyHandler(provider);
+        return this;
+    }
+
+    public LoadBalancerBuilder loadBalancer() {
+        return new LoadBalancerBuilder();
+    }
+
+    protected HttpHandler createProxyHandler(ProxyClient proxyClient) {
+        final HttpHandler handler = new ProxyHandler(proxyClient, 30000, ResponseCodeHandler.HANDLE_404);
+        return new HttpHandler() {
             @Override
             public void handleRequest(HttpServerExchange exchange) throws Exception {
                 exchange.setRelativePath(exchange.getRequestPath()); // need this otherwise proxy forwards to chopped off path
                 handler.handleRequest(exchange);
             }
         };
-        return this;
+    }
+
+    public class LoadBalancerBuilder {
+        protected List<URI> uris = new ArrayList<URI>();
+        protected List<String> routes = new ArrayList<String>();
+        protected Integer connectionsPerThread;
+        protected Integer softMaxConnectionsPerThread;
+        protected Integer maxQueueSize;
+        protected Integer connectionTtl;
+        protected Integer problemServerRetry;
+        protected boolean stickySession = true;
+        protected String healthCheckPath;
+        protected int healthCheckInterval = 10;
+        protected int metricsLogInterval;
+
+        public LoadBalancerBuilder target(String uri) {
+            return target(uri, null);
+        }
+
+        public LoadBalancerBuilder target(String uri, String route) {
+            try {
+                uris.add(new URI(uri));
+            } catch (URISyntaxException e) {
+                throw new RuntimeException(e);
+            }
+            routes.add(route);
+            return this;
+        }
+
+        public LoadBalancerBuilder connectionsPerThread(Integer connectionsPerThread) {
+            this.connectionsPerThread = connectionsPerThread;
+            return this;
+        }
+
+        public LoadBalancerBuilder softMaxConnectionsPerThread(Integer softMaxConnectionsPerThread) {
+            this.softMaxConnectionsPerThread = softMaxConnectionsPerThread;
+            return this;
+        }
+
+        public LoadBalancerBuilder maxQueueSize(Integer maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public LoadBalancerBuilder connectionTtl(Integer connectionTtl) {
+            this.connectionTtl = connectionTtl;
+            return this;
+        }
+
+        public LoadBalancerBuilder problemServerRetry(Integer problemServerRetry) {
+            this.problemServerRetry = problemServerRetry;
+            return this;
+        }
+
+        public LoadBalancerBuilder stickySession(boolean stickySession) {
+            this.stickySession = stickySession;
+            return this;
+        }
+
+        public LoadBalancerBuilder healthCheck(String path, int intervalSeconds) {
+            this.healthCheckPath = path;
+            this.healthCheckInterval = intervalSeconds;
+            return this;
+        }
+
+        public LoadBalancerBuilder metricsLogInterval(int metricsLogInterval) {
+            this.metricsLogInterval = metricsLogInterval;
+            return this;
+        }
+
+        public ProxyServerBuilder add() {
+            LoadBalancingTargetClient client = new LoadBalancingTargetClient(stickySession);
+            if (connectionsPerThread != null) client.setConnectionsPerThread(connectionsPerThread);
+            if (softMaxConnectionsPerThread != null) client.setSoftMaxConnectionsPerThread(softMaxConnectionsPerThread);
+            if (maxQueueSize != null) client.setMaxQueueSize(maxQueueSize);
+            if (connectionTtl != null) client.setTtl(connectionTtl);
+            if (problemServerRetry != null) client.setProblemServerRetry(problemServerRetry);
+            for (int i = 0; i < uris.size(); i++) {
+                client.addTarget(uris.get(i), routes.get(i));
+            }
+            if (healthCheckPath != null) client.startHealthCheck(healthCheckPath, healthCheckInterval);
+            if (metricsLogInterval > 0) client.startMetricsLog(metricsLogInterval);
+            log.debugv("load balancing across {0} targets", uris.size());
+            loadBalancingClient = client;
+            proxyHandler = createProxyHandler(client);
+            return ProxyServerBuilder.this;
+        }
     }
 
     public ProxyServerBuilder sendAccessToken(boolean flag) {
@@ -303,6 +400,17 @@ public class ProxyServerBuilder {
         return builder.build();
     }
 
+    public LoadBalancingTargetClient getLoadBalancingClient() {
+        return loadBalancingClient;
+    }
+
+    /**
+     * Releases resources of the proxy, which are not owned by the Undertow server.  Call it after the server is stopped.
+     */
+    public void close() {
+        if (loadBalancingClient != null) loadBalancingClient.close();
+    }
+
     public ProxyServerBuilder addHttpListener(int port, String host) {
         builder.addHttpListener(port, host);
         return this;
@@ -375,15 +483,28 @@ public class ProxyServerBuilder {
 
     }
 
+    /**
+     * Use {@link #configure(ProxyConfig)} instead and call {@link #close()} on shutdown, if the config load balances
+     * across multiple targets.
+     */
     public static Undertow build(ProxyConfig config) {
+        ProxyServerBuilder builder = configure(config);
+        return builder != null ? builder.build() : null;
+    }
+
+    public static ProxyServerBuilder configure(ProxyConfig config) {
         ProxyServerBuilder builder = new ProxyServerBuilder();
-        if (config.getTargetUrl() == null) {
-            log.error("Must set Target URL");
+        if (config.getTargets() != null && !config.getTargets().isEmpty()) {
+            initLoadBalancer(config, builder);
+        } else if (config.getTargetUrl() != null) {
+            builder.target(config.getTargetUrl());
+        } else {
+            log.error("Must set Target URL or targets");
             return null;
         }
-        builder.target(config.getTargetUrl());
         if (config.getApplications() == null || config.getApplications().size() == 0) {
             log.error("No applications defined");
+            builder.close();
             return null;
         }
         initConnections(config, builder);
@@ -416,7 +537,28 @@ public class ProxyServerBuilder {
             }
             applicationBuilder.add();
         }
-        return builder.build();
+        return builder;
+    }
+
+    public static void initLoadBalancer(ProxyConfig config, ProxyServerBuilder builder) {
+        LoadBalancerBuilder loadBalancerBuilder = builder.loadBalancer();
+        for (ProxyConfig.Target target : config.getTargets()) {
+            loadBalancerBuilder.target(target.getUrl(), target.getRoute());
+        }
+        ProxyConfig.LoadBalancer loadBalancer = config.getLoadBalancer();
+        if (loadBalancer != null) {
+            loadBalancerBuilder.connectionsPerThread(loadBalancer.getConnectionsPerThread())
+                    .softMaxConnectionsPerThread(loadBalancer.getSoftMaxConnectionsPerThread())
+                    .maxQueueSize(loadBalancer.getMaxQueueSize())
+                    .connectionTtl(loadBalancer.getConnectionTtl())
+                    .problemServerRetry(loadBalancer.getProblemServerRetry())
+                    .stickySession(loadBalancer.isStickySession())
+                    .metricsLogInterval(loadBalancer.getMetricsLogInterval());
+            if (loadBalancer.getHealthCheckPath() != null) {
+                loadBalancerBuilder.healthCheck(loadBalancer.getHealthCheckPath(), loadBalancer.getHealthCheckInterval());
+            }
+        }
+        loadBalancerBuilder.add();
     }
 
     public static void initOptions(ProxyConfig config, ProxyServerBuilder builder) {
@@ -18,106 +18,125 @@
 package org.keycloak.proxy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
+ * Security constraints of the paths of an application.  Constraints are compiled when built: exact and prefix patterns into
+ * a character trie and the merged constraints of every pattern into immutable results per HTTP method, so resolving the
+ * constraints of a request walks the path once and doesn't allocate.
+ *
  * @author Stuart Douglas
  */
 public class SecurityPathMatches {
 
-    private final boolean denyUncoveredHttpMethods;
-    private final PathSecurityInformation defaultPathSecurityInformation;
-    private final Map<String, PathSecurityInformation> exactPathRoleInformation;
-    private final Map<String, PathSecurityInformation> prefixPathRoleInformation;
-    private final Map<String, PathSecurityInformation> extensionRoleInformation;
+    private final boolean empty;
+    private final CompiledMatch defaultMatch;
+    private final Node root;
+    private final String[] extensions;
+    private final CompiledMatch[] extensionMatches;
 
     private SecurityPathMatches(final boolean denyUncoveredHttpMethods, final PathSecurityInformation defaultPathSecurityInformation, final Map<String, PathSecurityInformation> exactPathRoleInformation, final Map<String, PathSecurityInformation> prefixPathRoleInformation, final Map<String, PathSecurityInformation> extensionRoleInformation) {
-        this.denyUncoveredHttpMethods = denyUncoveredHttpMethods;
-        this.defaultPathSecurityInformation = defaultPathSecurityInformation;
-        this.exactPathRoleInformation = exactPathRoleInformation;
-        this.prefixPathRoleInformation = prefixPathRoleInformation;
-        this.extensionRoleInformation = extensionRoleInformation;
-    }
-
-    /**
-     *
-     * @return <code>true</code> If no security path information has been defined
-     */
-    public boolean isEmpty() {
-        return defaultPathSecurityInformation.excludedMethodRoles.isEmpty() &&
+        this.empty = defaultPathSecurityInformation.excludedMethodRoles.isEmpty() &&
                 defaultPathSecurityInformation.perMethodRequiredRoles.isEmpty() &&
                 defaultPathSecurityInformation.defaultRequiredRoles.isEmpty() &&
                 exactPathRoleInformation.isEmpty() &&
                 prefixPathRoleInformation.isEmpty() &&
                 extensionRoleInformation.isEmpty();
-    }
+        this.defaultMatch = new CompiledMatch(denyUncoveredHttpMethods, defaultPathSecurityInformation, null);
 
-    public SingleConstraintMatch getSecurityInfo(final String path, final String method) {
-        RuntimeMatch currentMatch = new RuntimeMatch();
-        handleMatch(method, defaultPathSecurityInformation, currentMatch);
-        PathSecurityInformation match = exactPathRoleInformation.get(path);
-        if (match != null) {
-            handleMatch(method, match, currentMatch);
-            return mergeConstraints(currentMatch);
+        NodeBuilder rootBuilder = new NodeBuilder();
+        for (Map.Entry<String, PathSecurityInformation> entry : exactPathRoleInformation.entrySet()) {
+            rootBuilder.get(entry.getKey()).exact = new CompiledMatch(denyUncoveredHttpMethods, defaultPathSecurityInformation, entry.getValue());
         }
+        for (Map.Entry<String, PathSecurityInformation> entry : prefixPathRoleInformation.entrySet()) {
+            rootBuilder.get(entry.getKey()).prefix = new CompiledMatch(denyUncoveredHttpMethods, defaultPathSecurityInformation, entry.getValue());
+        }
+        this.root = rootBuilder.build();
 
-        match = prefixPathRoleInformation.get(path);
-        if (match != null) {
-            handleMatch(method, match, currentMatch);
-            return mergeConstraints(currentMatch);
+        this.extensions = new String[extensionRoleInformation.size()];
+        this.extensionMatches = new CompiledMatch[extensionRoleInformation.size()];
+        int i = 0;
+        for (Map.Entry<String, PathSecurityInformation> entry : extensionRoleInformation.entrySet()) {
+            extensions[i] = entry.getKey();
+            extensionMatches[i++] = new CompiledMatch(denyUncoveredHttpMethods, defaultPathSecurityInformation, entry.getValue());
         }
+    }
+
+    /**
+     *
+     * @return <code>true</code> If no security path information has been defined
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
 
-        int qsPos = -1;
-        boolean extension = false;
-        for (int i = path.length() - 1; i >= 0; --i) {
+    /**
+     * Exact match of the whole path wins, then prefix match of the whole path.  Otherwise the match closest to the end of the
+     * path wins: exact match of the path before a query string, longest prefix match ending before a '/' or the extension of
+     * the last path segment.
+     */
+    public SingleConstraintMatch getSecurityInfo(final String path, final String method) {
+        Node node = root;
+        CompiledMatch match = defaultMatch;
+        int dot = -1;
+        for (int i = 0; i < path.length(); i++) {
             final char c = path.charAt(i);
-            if (c == '?') {
-                //there was a query string, check the exact matches again
-                final String part = path.substring(0, i);
-                match = exactPathRoleInformation.get(part);
-                if (match != null) {
-                    handleMatch(method, match, currentMatch);
-                    return mergeConstraints(currentMatch);
+            if (c == '/') {
+                dot = -1;
+                if (node != null && node.prefix != null) {
+                    match = node.prefix;
                 }
-                qsPos = i;
-                extension = false;
-            } else if (c == '/') {
-                extension = true;
-                final String part = path.substring(0, i);
-                match = prefixPathRoleInformation.get(part);
-                if (match != null) {
-                    handleMatch(method, match, currentMatch);
-                    return mergeConstraints(currentMatch);
-                }
-            } else if (c == '.') {
-                if (!extension) {
-                    extension = true;
-                    final String ext;
-                    if (qsPos == -1) {
-                        ext = path.substring(i + 1, path.length());
-                    } else {
-                        ext = path.substring(i + 1, qsPos);
-                    }
-                    match = extensionRoleInformation.get(ext);
-                    if (match != null) {
-                        handleMatch(method, match, currentMatch);
-                        return mergeConstraints(currentMatch);
+            } else if (c == '?') {
+                if (dot != -1) {
+                    CompiledMatch extensionMatch = findExtension(path, dot + 1, i);
+                    if (extensionMatch != null) {
+                        match = extensionMatch;
                     }
+                    dot = -1;
+                }
+                if (node != null && node.exact != null) {
+                    match = node.exact;
                 }
+            } else if (c == '.') {
+                dot = i;
+            }
+            if (node != null) {
+                node = node.child(c);
+            }
+        }
+
+        if (node != null) {
+            if (node.exact != null) return node.exact.get(method);
+            if (node.prefix != null) return node.prefix.get(method);
+        }
+        if (dot != -1) {
+            CompiledMatch extensionMatch = findExtension(path, dot + 1, path.length());
+            if (extensionMatch != null) return extensionMatch.get(method);
+        }
+        return match.get(method);
+    }
+
+    private CompiledMatch findExtension(String path, int start, int end) {
+        for (int i = 0; i < extensions.length; i++) {
+            String extension = extensions[i];
+            if (extension.length() == end - start && path.regionMatches(start, extension, 0, extension.length())) {
+                return extensionMatches[i];
             }
         }
-        return mergeConstraints(currentMatch);
+        return null;
     }
 
     /**
      * merge all constraints, as per 13.8.1 Combining Constraints
      */
-    private SingleConstraintMatch mergeConstraints(final RuntimeMatch currentMatch) {
+    private static SingleConstraintMatch mergeConstraints(final boolean denyUncoveredHttpMethods, final RuntimeMatch currentMatch) {
         if(currentMatch.uncovered && denyUncoveredHttpMethods) {
             return new SingleConstraintMatch(SecurityInfo.EmptyRoleSemantic.DENY, Collections.<String>emptySet());
         }
@@ -129,10 +148,10 @@ public class SecurityPathMatches {
                 allowedRoles.addAll(match.getRequiredRoles());
             }
         }
-        return new SingleConstraintMatch(SecurityInfo.EmptyRoleSemantic.PERMIT, allowedRoles);
+        return new SingleConstraintMatch(SecurityInfo.EmptyRoleSemantic.PERMIT, Collections.unmodifiableSet(allowedRoles));
     }
 
-    private void handleMatch(final String method, final PathSecurityInformation exact, RuntimeMatch currentMatch) {
+    private static void handleMatch(final String method, final PathSecurityInformation exact, RuntimeMatch currentMatch) {
         List<SecurityInformation> roles = exact.defaultRequiredRoles;
         for (SecurityInformation role : roles) {
             currentMatch.constraints.add(new SingleConstraintMatch(role.emptyRoleSemantic, role.roles));
@@ -242,6 +261,92 @@ public class SecurityPathMatches {
         }
     }
 
+    /**
+     * Merged constraints of the default and a matched pattern for every method named by them.  All other methods share the
+     * same constraints.
+     */
+    private static final class CompiledMatch {
+        final Map<String, SingleConstraintMatch> methodMatches = new HashMap<String, SingleConstraintMatch>();
+        final SingleConstraintMatch otherMethodsMatch;
+
+        CompiledMatch(boolean denyUncoveredHttpMethods, PathSecurityInformation defaultInfo, PathSecurityInformation info) {
+            Set<String> methods = new HashSet<String>();
+            addMethods(defaultInfo, methods);
+            if (info != null) addMethods(info, methods);
+            for (String method : methods) {
+                methodMatches.put(method, compile(denyUncoveredHttpMethods, defaultInfo, info, method));
+            }
+            otherMethodsMatch = compile(denyUncoveredHttpMethods, defaultInfo, info, null);
+        }
+
+        SingleConstraintMatch get(String method) {
+            SingleConstraintMatch match = methodMatches.get(method);
+            return match != null ? match : otherMethodsMatch;
+        }
+
+        private static void addMethods(PathSecurityInformation info, Set<String> methods) {
+            methods.addAll(info.perMethodRequiredRoles.keySet());
+            for (ExcludedMethodRoles excluded : info.excludedMethodRoles) {
+                methods.addAll(excluded.methods);
+            }
+        }
+
+        private static SingleConstraintMatch compile(boolean denyUncoveredHttpMethods, PathSecurityInformation defaultInfo, PathSecurityInformation info, String method) {
+            RuntimeMatch currentMatch = new RuntimeMatch();
+            handleMatch(method, defaultInfo, currentMatch);
+            if (info != null) handleMatch(method, info, currentMatch);
+            return mergeConstraints(denyUncoveredHttpMethods, currentMatch);
+        }
+    }
+
+    private static final class Node {
+        final char[] chars;
+        final Node[] children;
+        final CompiledMatch exact;
+        final CompiledMatch prefix;
+
+        Node(char[] chars, Node[] children, CompiledMatch exact, CompiledMatch prefix) {
+            this.chars = chars;
+            this.children = children;
+            this.exact = exact;
+            this.prefix = prefix;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return i >= 0 ? children[i] : null;
+        }
+    }
+
+    private static final class NodeBuilder {
+        final TreeMap<Character, NodeBuilder> children = new TreeMap<Character, NodeBuilder>();
+        CompiledMatch exact;
+        CompiledMatch prefix;
+
+        NodeBuilder get(String path) {
+            NodeBuilder node = this;
+            for (int i = 0; i < path.length(); i++) {
+                NodeBuilder child = node.children.get(path.charAt(i));
+                if (child == null) {
+                    node.children.put(path.charAt(i), child = new NodeBuilder());
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        Node build() {
+            char[] chars = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder> entry : children.entrySet()) {
+                chars[i] = entry.getKey();
+                nodes[i++] = entry.getValue().build();
+            }
+            return new Node(chars, nodes, exact, prefix);
+        }
+    }
+
     private static final class RuntimeMatch {
         final List<SingleConstraintMatch> constraints = new ArrayList<SingleConstraintMatch>();
         boolean uncovered = true;
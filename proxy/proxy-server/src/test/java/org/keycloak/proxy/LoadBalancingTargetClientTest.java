@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.proxy;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.server.handlers.CookieImpl;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LoadBalancingTargetClientTest {
+
+    static final String CONFIG = "{\n" +
+            "  \"bind-address\": \"localhost\",\n" +
+            "  \"http-port\": \"8080\",\n" +
+            "  \"targets\": [\n" +
+            "    { \"url\": \"http://node1:8080\", \"route\": \"node1\" },\n" +
+            "    { \"url\": \"http://node2:8080\" }\n" +
+            "  ],\n" +
+            "  \"load-balancer\": {\n" +
+            "    \"connections-per-thread\": 20,\n" +
+            "    \"max-queue-size\": 100,\n" +
+            "    \"connection-ttl\": 60000,\n" +
+            "    \"sticky-session\": false,\n" +
+            "    \"health-check-path\": \"/health\",\n" +
+            "    \"health-check-interval\": 3\n" +
+            "  },\n" +
+            "  \"applications\": [\n" +
+            "    {\n" +
+            "      \"base-path\": \"/\",\n" +
+            "      \"adapter-config\": {\n" +
+            "        \"realm\": \"demo\",\n" +
+            "        \"resource\": \"proxy\",\n" +
+            "        \"auth-server-url\": \"http://localhost:8081/auth\",\n" +
+            "        \"ssl-required\": \"external\",\n" +
+            "        \"credentials\": { \"secret\": \"password\" }\n" +
+            "      }\n" +
+            "    }\n" +
+            "  ]\n" +
+            "}";
+
+    static final URI NODE1 = URI.create("http://node1:8080");
+    static final URI NODE2 = URI.create("http://node2:8080");
+
+    TestClient client;
+
+    @After
+    public void close() {
+        if (client != null) client.close();
+    }
+
+    @Test
+    public void testConfig() {
+        ProxyConfig config = ProxyServerBuilder.loadConfig(new ByteArrayInputStream(CONFIG.getBytes()));
+        Assert.assertNull(config.getTargetUrl());
+        Assert.assertEquals(2, config.getTargets().size());
+        Assert.assertEquals("http://node1:8080", config.getTargets().get(0).getUrl());
+        Assert.assertEquals("node1", config.getTargets().get(0).getRoute());
+        Assert.assertNull(config.getTargets().get(1).getRoute());
+
+        ProxyConfig.LoadBalancer loadBalancer = config.getLoadBalancer();
+        Assert.assertEquals(Integer.valueOf(20), loadBalancer.getConnectionsPerThread());
+        Assert.assertNull(loadBalancer.getSoftMaxConnectionsPerThread());
+        Assert.assertEquals(Integer.valueOf(100), loadBalancer.getMaxQueueSize());
+        Assert.assertEquals(Integer.valueOf(60000), loadBalancer.getConnectionTtl());
+        Assert.assertFalse(loadBalancer.isStickySession());
+        Assert.assertEquals("/health", loadBalancer.getHealthCheckPath());
+        Assert.assertEquals(3, loadBalancer.getHealthCheckInterval());
+        Assert.assertEquals(0, loadBalancer.getMetricsLogInterval());
+
+        ProxyServerBuilder builder = ProxyServerBuilder.configure(config);
+        try {
+            LoadBalancingTargetClient client = builder.getLoadBalancingClient();
+            Assert.assertNotNull(client);
+            Assert.assertEquals(2, client.getTargets().size());
+            Assert.assertEquals(NODE1, client.getTargets().get(0).getUri());
+            Assert.assertEquals("node1", client.getTargets().get(0).getRoute());
+            // Route defaults to the index of the target
+            Assert.assertEquals(NODE2, client.getTargets().get(1).getUri());
+            Assert.assertEquals("1", client.getTargets().get(1).getRoute());
+            Assert.assertEquals(20, client.getConnectionsPerThread());
+            Assert.assertEquals(100, client.getMaxQueueSize());
+            Assert.assertNotNull(client.scheduler);
+        } finally {
+            builder.close();
+        }
+        Assert.assertNull(builder.getLoadBalancingClient().scheduler);
+    }
+
+    @Test
+    public void testDefaults() {
+        ProxyConfig.LoadBalancer loadBalancer = new ProxyConfig.LoadBalancer();
+        Assert.assertTrue(loadBalancer.isStickySession());
+        Assert.assertNull(loadBalancer.getHealthCheckPath());
+        Assert.assertEquals(10, loadBalancer.getHealthCheckInterval());
+    }
+
+    @Test
+    public void testStickySession() throws Exception {
+        client = new TestClient(true);
+
+        // Each session always maps to the same target
+        Set<URI> hosts = new HashSet<URI>();
+        for (int i = 0; i < 20; i++) {
+            String sessionState = "session-" + i;
+            URI host = findStickyHost(sessionState, null);
+            Assert.assertNotNull(host);
+            Assert.assertEquals(host, findStickyHost(sessionState, null));
+            hosts.add(host);
+        }
+        Assert.assertEquals(2, hosts.size());
+
+        // A JSESSIONID of the target application, which looks like a route, doesn't override the route of the session
+        String sessionState = sessionMappedTo(NODE2);
+        Assert.assertEquals(NODE2, findStickyHost(sessionState, new CookieImpl("JSESSIONID", "abc.node1")));
+        Assert.assertEquals(NODE2, findStickyHost(sessionState, new CookieImpl("JSESSIONID", "abc.unknown")));
+
+        // Without a Keycloak session there is no sticky host
+        Assert.assertNull(findStickyHost(null, null));
+    }
+
+    @Test
+    public void testNotSticky() throws Exception {
+        client = new TestClient(false);
+        Assert.assertNull(findStickyHost("session-1", null));
+    }
+
+    @Test
+    public void testHealthCheckFailover() throws Exception {
+        client = new TestClient(true);
+        String sessionState = sessionMappedTo(NODE1);
+        LoadBalancingTargetClient.Target node1 = client.getTargets().get(0);
+
+        client.healthy.put(NODE1.resolve("/health"), false);
+        client.checkHealth(node1, "/health");
+        Assert.assertFalse(node1.isAvailable());
+        // Route of the failed target is gone, so the session falls back to normal host selection
+        Assert.assertNull(findStickyHost(sessionState, null));
+
+        // Repeated failures don't change anything
+        client.checkHealth(node1, "/health");
+        Assert.assertFalse(node1.isAvailable());
+
+        client.healthy.put(NODE1.resolve("/health"), true);
+        client.checkHealth(node1, "/health");
+        Assert.assertTrue(node1.isAvailable());
+        Assert.assertEquals(NODE1, findStickyHost(sessionState, null));
+        Assert.assertTrue(client.getTargets().get(1).isAvailable());
+    }
+
+    @Test
+    public void testHealthCheckScheduled() throws Exception {
+        client = new TestClient(true);
+        client.healthy.put(NODE2.resolve("/health"), false);
+        client.startHealthCheck("/health", 1);
+
+        LoadBalancingTargetClient.Target node2 = client.getTargets().get(1);
+        for (int i = 0; i < 50 && node2.isAvailable(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertFalse(node2.isAvailable());
+        Assert.assertTrue(client.getTargets().get(0).isAvailable());
+
+        client.close();
+        Assert.assertNull(client.scheduler);
+    }
+
+    String sessionMappedTo(URI uri) throws Exception {
+        for (int i = 0; ; i++) {
+            String sessionState = "session-" + i;
+            if (uri.equals(findStickyHost(sessionState, null))) return sessionState;
+        }
+    }
+
+    URI findStickyHost(String sessionState, Cookie cookie) throws Exception {
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Map<String, Cookie> cookies = new HashMap<String, Cookie>();
+        if (cookie != null) cookies.put(cookie.getName(), cookie);
+        // Exchange without a connection can't parse the cookie header
+        Field field = HttpServerExchange.class.getDeclaredField("requestCookies");
+        field.setAccessible(true);
+        field.set(exchange, cookies);
+
+        client.sessionState = sessionState;
+        LoadBalancingProxyClient.Host host = client.findStickyHost(exchange);
+        return host != null ? host.getUri() : null;
+    }
+
+    static class TestClient extends LoadBalancingTargetClient {
+        final Map<URI, Boolean> healthy = new ConcurrentHashMap<URI, Boolean>();
+        String sessionState;
+
+        TestClient(boolean stickySession) {
+            super(stickySession);
+            addTarget(NODE1, "node1");
+            addTarget(NODE2, "node2");
+        }
+
+        @Override
+        protected String getSessionState(HttpServerExchange exchange) {
+            return sessionState;
+        }
+
+        @Override
+        protected boolean isHealthy(URI uri, int timeout) {
+            Boolean result = healthy.get(uri);
+            return result == null || result;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.proxy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures constraint resolution throughput and allocation over the rule set of {@link SecurityPathMatchesTest}. Not
+ * executed as part of the build, run the main method with an optional count of iterations.
+ */
+public class SecurityPathMatchesBenchmark {
+
+    private static final String[][] REQUESTS = {
+            { "/", "GET" },
+            { "/index.html", "GET" },
+            { "/public/images/logo.png", "GET" },
+            { "/resources/css/styles.css", "GET" },
+            { "/app/js/vendor/angular.min.js", "GET" },
+            { "/admin/users/8a7e5c52-51f7-4f4b-a4c0-7b4dc7a2d8f1", "GET" },
+            { "/admin/audit", "GET" },
+            { "/api/customers/42/addresses", "GET" },
+            { "/api/orders/1234", "DELETE" },
+            { "/api/orders/1234/items/5", "PUT" },
+            { "/api/readonly/report", "POST" },
+            { "/internal/metrics", "GET" }
+    };
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+
+        SecurityPathMatches matches = SecurityPathMatchesTest.realisticRules();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+        long threadId = Thread.currentThread().getId();
+
+        int hash = 0;
+        for (int round = 0; round < 2; round++) {
+            // First round is warm up
+            int count = round == 0 ? iterations / 10 : iterations;
+
+            long allocated = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                String[] request = REQUESTS[i % REQUESTS.length];
+                hash += matches.getSecurityInfo(request[0], request[1]).getEmptyRoleSemantic().ordinal();
+            }
+            long time = System.nanoTime() - start;
+            allocated = allocations != null ? allocations.getThreadAllocatedBytes(threadId) - allocated : -1;
+
+            if (round > 0) {
+                System.out.println(String.format("resolve: %4d ns/op, allocated: %.2f bytes/op (%d)", time / count, (double) allocated / count, hash));
+            }
+        }
+    }
+
+}
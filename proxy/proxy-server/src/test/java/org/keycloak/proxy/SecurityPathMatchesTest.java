@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class SecurityPathMatchesTest {
+
+    static SecurityPathMatches realisticRules() {
+        SecurityPathMatches.Builder builder = new SecurityPathMatches.Builder();
+        add(builder, "/*", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE);
+        add(builder, "/public/*", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        add(builder, "/resources/*", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        add(builder, "*.css", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        add(builder, "*.js", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        add(builder, "/admin/*", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE, "admin");
+        add(builder, "/admin/audit", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE, "auditor");
+        add(builder, "/api/customers/*", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE, "user");
+        add(builder, "/api/orders/*", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE, "user");
+        add(builder, "/internal/*", SecurityInfo.EmptyRoleSemantic.DENY);
+        builder.addSecurityConstraint(set("manager"), SecurityInfo.EmptyRoleSemantic.AUTHENTICATE, "/api/orders/*", set("DELETE"), Collections.<String>emptySet());
+        builder.addSecurityConstraint(Collections.<String>emptySet(), SecurityInfo.EmptyRoleSemantic.DENY, "/api/readonly/*", Collections.<String>emptySet(), set("GET", "HEAD"));
+        return builder.build();
+    }
+
+    @Test
+    public void testMatches() {
+        SecurityPathMatches matches = realisticRules();
+        Assert.assertFalse(matches.isEmpty());
+        Assert.assertTrue(new SecurityPathMatches.Builder().build().isEmpty());
+
+        assertMatch(matches, "/", "GET", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE);
+        assertMatch(matches, "/public/index.html", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        assertMatch(matches, "/public", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        assertMatch(matches, "/publicity", "GET", SecurityInfo.EmptyRoleSemantic.AUTHENTICATE);
+        assertMatch(matches, "/admin/js/app.js", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        assertMatch(matches, "/admin/users", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT, "admin");
+        assertMatch(matches, "/admin/audit", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT, "auditor");
+        assertMatch(matches, "/admin/audit/2016", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT, "admin");
+        assertMatch(matches, "/admin/audit?from=2016", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT, "auditor");
+        assertMatch(matches, "/api/orders/1", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT, "user");
+        assertMatch(matches, "/api/orders/1", "DELETE", SecurityInfo.EmptyRoleSemantic.PERMIT, "user", "manager");
+        assertMatch(matches, "/api/readonly/1", "GET", SecurityInfo.EmptyRoleSemantic.PERMIT);
+        assertMatch(matches, "/api/readonly/1", "POST", SecurityInfo.EmptyRoleSemantic.DENY);
+        assertMatch(matches, "/internal/metrics", "GET", SecurityInfo.EmptyRoleSemantic.DENY);
+    }
+
+    @Test
+    public void testResultsCached() {
+        SecurityPathMatches matches = realisticRules();
+        Assert.assertSame(matches.getSecurityInfo("/api/orders/1", "GET"), matches.getSecurityInfo("/api/orders/2", "GET"));
+        Assert.assertSame(matches.getSecurityInfo("/api/orders/1", "PATCH"), matches.getSecurityInfo("/api/orders/1", "OPTIONS"));
+        Assert.assertNotSame(matches.getSecurityInfo("/api/orders/1", "GET"), matches.getSecurityInfo("/api/orders/1", "DELETE"));
+
+        try {
+            matches.getSecurityInfo("/admin/users", "GET").getRequiredRoles().add("user");
+            Assert.fail("Expected immutable roles");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    private static void assertMatch(SecurityPathMatches matches, String path, String method, SecurityInfo.EmptyRoleSemantic semantic, String... roles) {
+        SingleConstraintMatch match = matches.getSecurityInfo(path, method);
+        Assert.assertEquals(path, semantic, match.getEmptyRoleSemantic());
+        Assert.assertEquals(path, set(roles), match.getRequiredRoles());
+    }
+
+    private static void add(SecurityPathMatches.Builder builder, String pattern, SecurityInfo.EmptyRoleSemantic semantic, String... roles) {
+        builder.addSecurityConstraint(set(roles), semantic, pattern, Collections.<String>emptySet(), Collections.<String>emptySet());
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+}
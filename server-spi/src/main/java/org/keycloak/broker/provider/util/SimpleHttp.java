@@ -17,6 +17,21 @@
 
 package org.keycloak.broker.provider.util;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.keycloak.connections.httpclient.HttpClientProvider;
+import org.keycloak.models.KeycloakSession;
+
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
@@ -28,11 +43,19 @@ import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 /**
+ * Simple HTTP client for requests to external servers like identity providers.
+ *
+ * Requests created with a {@link KeycloakSession} are sent with the pooled client of the {@link HttpClientProvider}, so
+ * connections are kept alive and reused and the truststore of the server is used. Other requests open a new connection
+ * each time.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  * @author Vlastimil Elias (velias at redhat dot com)
  */
@@ -47,11 +70,21 @@ public class SimpleHttp {
     private SSLSocketFactory sslFactory;
     private HostnameVerifier hostnameVerifier;
 
+    private HttpClient client;
+    private int connectTimeout = -1;
+    private int socketTimeout = -1;
+    private SimpleHttpLimiter limiter;
+
     protected SimpleHttp(String url, String method) {
         this.url = url;
         this.method = method;
     }
 
+    protected SimpleHttp(String url, String method, HttpClient client) {
+        this(url, method);
+        this.client = client;
+    }
+
     public static SimpleHttp doGet(String url) {
         return new SimpleHttp(url, "GET");
     }
@@ -60,6 +93,14 @@ public class SimpleHttp {
         return new SimpleHttp(url, "POST");
     }
 
+    public static SimpleHttp doGet(String url, KeycloakSession session) {
+        return new SimpleHttp(url, "GET", session.getProvider(HttpClientProvider.class).getHttpClient());
+    }
+
+    public static SimpleHttp doPost(String url, KeycloakSession session) {
+        return new SimpleHttp(url, "POST", session.getProvider(HttpClientProvider.class).getHttpClient());
+    }
+
     public SimpleHttp header(String name, String value) {
         if (headers == null) {
             headers = new HashMap<String, String>();
@@ -76,182 +117,228 @@ public class SimpleHttp {
         return this;
     }
 
+    /**
+     * Only used for requests, which are not sent with the pooled client
+     */
     public SimpleHttp sslFactory(SSLSocketFactory factory) {
         sslFactory = factory;
         return this;
     }
 
+    /**
+     * Only used for requests, which are not sent with the pooled client
+     */
     public SimpleHttp hostnameVerifier(HostnameVerifier verifier) {
         hostnameVerifier = verifier;
         return this;
     }
 
-    public String asString() throws IOException {
-        boolean get = method.equals("GET");
-        boolean post = method.equals("POST");
+    /**
+     * @param millis timeout for establishing the connection or -1 to use the default of the client
+     */
+    public SimpleHttp connectTimeout(int millis) {
+        connectTimeout = millis;
+        return this;
+    }
 
-        StringBuilder sb = new StringBuilder();
-        if (get) {
-            sb.append(url);
-        }
+    /**
+     * @param millis timeout for waiting for data or -1 to use the default of the client
+     */
+    public SimpleHttp socketTimeout(int millis) {
+        socketTimeout = millis;
+        return this;
+    }
 
-        if (params != null) {
-            boolean f = true;
-            for (Map.Entry<String, String> p : params.entrySet()) {
-                if (f) {
-                    f = false;
-                    if (get) {
-                        sb.append("?");
-                    }
-                } else {
-                    sb.append("&");
-                }
-                sb.append(URLEncoder.encode(p.getKey(), "UTF-8"));
-                sb.append("=");
-                sb.append(URLEncoder.encode(p.getValue(), "UTF-8"));
-            }
-        }
+    public SimpleHttp limiter(SimpleHttpLimiter limiter) {
+        this.limiter = limiter;
+        return this;
+    }
 
-        if (get) {
-            url = sb.toString();
+    public String asString() throws IOException {
+        long start = limiter != null ? limiter.acquire(url) : 0;
+        boolean success = false;
+        try {
+            String response = client != null ? executeAsString() : connectionAsString();
+            success = true;
+            return response;
+        } finally {
+            if (limiter != null) limiter.release(start, success);
         }
+    }
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        setupTruststoreIfApplicable(connection);
-        OutputStream os = null;
-        InputStream is = null;
-
+    public int asStatus() throws IOException {
+        long start = limiter != null ? limiter.acquire(url) : 0;
+        boolean success = false;
         try {
-            connection.setRequestMethod(method);
+            int status = client != null ? executeAsStatus() : connectionAsStatus();
+            success = true;
+            return status;
+        } finally {
+            if (limiter != null) limiter.release(start, success);
+        }
+    }
 
-            if (headers != null) {
-                for (Map.Entry<String, String> h : headers.entrySet()) {
-                    connection.setRequestProperty(h.getKey(), h.getValue());
-                }
+    private String executeAsString() throws IOException {
+        HttpResponse response = client.execute(createRequest());
+        HttpEntity entity = response.getEntity();
+        try {
+            int status = response.getStatusLine().getStatusCode();
+            if (status >= 400) {
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
             }
+            return entity != null ? EntityUtils.toString(entity, "UTF-8") : null;
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
 
-            if (post) {
-                String data = sb.toString();
-
-                connection.setDoOutput(true);
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                connection.setRequestProperty("Content-Length", String.valueOf(data.length()));
+    private int executeAsStatus() throws IOException {
+        HttpResponse response = client.execute(createRequest());
+        EntityUtils.consumeQuietly(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
 
-                os = connection.getOutputStream();
-                os.write(data.getBytes());
-            } else {
-                connection.setDoOutput(false);
+    private HttpRequestBase createRequest() throws IOException {
+        HttpRequestBase request;
+        if (method.equals("POST")) {
+            HttpPost post = new HttpPost(url);
+            if (params != null) {
+                List<NameValuePair> formParams = new ArrayList<NameValuePair>(params.size());
+                for (Map.Entry<String, String> p : params.entrySet()) {
+                    formParams.add(new BasicNameValuePair(p.getKey(), p.getValue()));
+                }
+                post.setEntity(new UrlEncodedFormEntity(formParams, "UTF-8"));
             }
+            request = post;
+        } else {
+            request = new HttpGet(params != null ? url + "?" + encodeParams() : url);
+        }
 
-            String ce = connection.getHeaderField("Content-Encoding");
-            is = connection.getInputStream();
-            if ("gzip".equals(ce)) {
-              is = new GZIPInputStream(is);
-	          }
-            return toString(is);
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e) {
-                }
+        if (headers != null) {
+            for (Map.Entry<String, String> h : headers.entrySet()) {
+                request.setHeader(h.getKey(), h.getValue());
             }
+        }
 
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                }
+        if (connectTimeout != -1 || socketTimeout != -1) {
+            // Per request config replaces the default config of the client, so start with a copy of it
+            RequestConfig defaultConfig = client instanceof Configurable ? ((Configurable) client).getConfig() : null;
+            RequestConfig.Builder config = defaultConfig != null ? RequestConfig.copy(defaultConfig) : RequestConfig.custom();
+            if (connectTimeout != -1) {
+                config.setConnectTimeout(connectTimeout).setConnectionRequestTimeout(connectTimeout);
             }
-            if (connection != null) {
-                try {
-                    connection.disconnect();
-                } catch (Exception e) {
-                }
+            if (socketTimeout != -1) {
+                config.setSocketTimeout(socketTimeout);
             }
+            request.setConfig(config.build());
         }
+        return request;
     }
 
-    public int asStatus() throws IOException {
-        boolean get = method.equals("GET");
-        boolean post = method.equals("POST");
-
+    private String encodeParams() throws IOException {
         StringBuilder sb = new StringBuilder();
-        if (get) {
-            sb.append(url);
+        for (Map.Entry<String, String> p : params.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append("&");
+            }
+            sb.append(URLEncoder.encode(p.getKey(), "UTF-8"));
+            sb.append("=");
+            sb.append(URLEncoder.encode(p.getValue(), "UTF-8"));
         }
+        return sb.toString();
+    }
 
-        if (params != null) {
-            boolean f = true;
-            for (Map.Entry<String, String> p : params.entrySet()) {
-                if (f) {
-                    f = false;
-                    if (get) {
-                        sb.append("?");
-                    }
-                } else {
-                    sb.append("&");
-                }
-                sb.append(URLEncoder.encode(p.getKey(), "UTF-8"));
-                sb.append("=");
-                sb.append(URLEncoder.encode(p.getValue(), "UTF-8"));
+    private HttpURLConnection openConnection() throws IOException {
+        boolean get = method.equals("GET");
+        HttpURLConnection connection = (HttpURLConnection) new URL(get && params != null ? url + "?" + encodeParams() : url).openConnection();
+        setupTruststoreIfApplicable(connection);
+        if (connectTimeout != -1) {
+            connection.setConnectTimeout(connectTimeout);
+        }
+        if (socketTimeout != -1) {
+            connection.setReadTimeout(socketTimeout);
+        }
+        return connection;
+    }
+
+    private OutputStream writeRequest(HttpURLConnection connection) throws IOException {
+        connection.setRequestMethod(method);
+
+        if (headers != null) {
+            for (Map.Entry<String, String> h : headers.entrySet()) {
+                connection.setRequestProperty(h.getKey(), h.getValue());
             }
         }
 
-        if (get) {
-            url = sb.toString();
+        if (method.equals("POST")) {
+            String data = params != null ? encodeParams() : "";
+
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            connection.setRequestProperty("Content-Length", String.valueOf(data.length()));
+
+            OutputStream os = connection.getOutputStream();
+            os.write(data.getBytes());
+            return os;
+        } else {
+            connection.setDoOutput(false);
+            return null;
         }
+    }
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        setupTruststoreIfApplicable(connection);
+    private String connectionAsString() throws IOException {
+        HttpURLConnection connection = openConnection();
         OutputStream os = null;
         InputStream is = null;
 
         try {
-            connection.setRequestMethod(method);
+            os = writeRequest(connection);
 
-            if (headers != null) {
-                for (Map.Entry<String, String> h : headers.entrySet()) {
-                    connection.setRequestProperty(h.getKey(), h.getValue());
-                }
+            String ce = connection.getHeaderField("Content-Encoding");
+            is = connection.getInputStream();
+            if ("gzip".equals(ce)) {
+                is = new GZIPInputStream(is);
             }
+            return toString(is);
+        } finally {
+            close(connection, os, is);
+        }
+    }
 
-            if (post) {
-                String data = sb.toString();
-
-                connection.setDoOutput(true);
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                connection.setRequestProperty("Content-Length", String.valueOf(data.length()));
+    private int connectionAsStatus() throws IOException {
+        HttpURLConnection connection = openConnection();
+        OutputStream os = null;
+        InputStream is = null;
 
-                os = connection.getOutputStream();
-                os.write(data.getBytes());
-            } else {
-                connection.setDoOutput(false);
-            }
+        try {
+            os = writeRequest(connection);
 
             is = connection.getInputStream();
             return connection.getResponseCode();
         } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e) {
-                }
+            close(connection, os, is);
+        }
+    }
+
+    private void close(HttpURLConnection connection, OutputStream os, InputStream is) {
+        if (os != null) {
+            try {
+                os.close();
+            } catch (IOException e) {
             }
+        }
 
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                }
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException e) {
             }
-            if (connection != null) {
-                try {
-                    connection.disconnect();
-                } catch (Exception e) {
-                }
+        }
+        if (connection != null) {
+            try {
+                connection.disconnect();
+            } catch (Exception e) {
             }
         }
     }
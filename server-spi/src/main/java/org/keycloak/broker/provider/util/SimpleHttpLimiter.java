@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.broker.provider.util;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the count of concurrent requests to an external server and collects latency metrics of the requests. Limiters
+ * are shared by id, so all requests to the same identity provider are limited together, even though the identity
+ * provider instances are created per request. Limiters of removed identity providers are removed with
+ * {@link #remove(String)}, limiters which weren't used for an hour are expired, which also covers the identity providers
+ * removed on other cluster nodes.
+ */
+public class SimpleHttpLimiter {
+
+    private static final Logger logger = Logger.getLogger(SimpleHttpLimiter.class);
+
+    private static final long IDLE_EXPIRATION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long EXPIRATION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ConcurrentMap<String, SimpleHttpLimiter> limiters = new ConcurrentHashMap<>();
+    private static final AtomicLong lastExpiration = new AtomicLong(System.currentTimeMillis());
+
+    private final String id;
+    private volatile String name;
+    private volatile long lastUsed = System.currentTimeMillis();
+    private final int maxConcurrentRequests;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param maxConcurrentRequests max count of concurrent requests or -1 for unlimited
+     * @param maxWaitMillis max time to wait until a request can be sent if the limit is reached
+     */
+    public SimpleHttpLimiter(String id, String name, int maxConcurrentRequests, long maxWaitMillis) {
+        this.id = id;
+        this.name = name;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests, true) : null;
+    }
+
+    /**
+     * Returns the shared limiter with given id. The limiter is replaced if the limits were changed, metrics are
+     * reset in that case.
+     *
+     * @param id stable id of the server, e.g. the internal id of the identity provider, which doesn't change on rename
+     * @param name name of the server shown in the metrics, e.g. the alias of the identity provider
+     */
+    public static SimpleHttpLimiter get(String id, String name, int maxConcurrentRequests, long maxWaitMillis) {
+        expireIdle();
+
+        SimpleHttpLimiter limiter = limiters.get(id);
+        if (limiter != null && limiter.maxConcurrentRequests == maxConcurrentRequests && limiter.maxWaitMillis == maxWaitMillis) {
+            limiter.name = name;
+            return limiter;
+        }
+
+        SimpleHttpLimiter created = new SimpleHttpLimiter(id, name, maxConcurrentRequests, maxWaitMillis);
+        if (limiter == null) {
+            limiter = limiters.putIfAbsent(id, created);
+            return limiter != null ? limiter : created;
+        }
+        // Requests already holding a permit of the old limiter release it there
+        limiters.replace(id, limiter, created);
+        SimpleHttpLimiter current = limiters.get(id);
+        return current != null ? current : created;
+    }
+
+    /**
+     * Removes the limiter with given id, e.g. when the identity provider is removed
+     */
+    public static void remove(String id) {
+        limiters.remove(id);
+    }
+
+    public static Collection<SimpleHttpLimiter> getLimiters() {
+        return Collections.unmodifiableCollection(limiters.values());
+    }
+
+    private static void expireIdle() {
+        long now = System.currentTimeMillis();
+        long last = lastExpiration.get();
+        if (now - last < EXPIRATION_INTERVAL_MILLIS || !lastExpiration.compareAndSet(last, now)) {
+            return;
+        }
+
+        Iterator<SimpleHttpLimiter> itr = limiters.values().iterator();
+        while (itr.hasNext()) {
+            SimpleHttpLimiter limiter = itr.next();
+            if (now - limiter.lastUsed > IDLE_EXPIRATION_MILLIS && limiter.getActiveRequests() <= 0) {
+                logger.debugv("Expiring idle limiter of {0}", limiter.name);
+                itr.remove();
+            }
+        }
+    }
+
+    /**
+     * @return start time of the request to pass to {@link #release(long, boolean)}
+     * @throws IOException if the limit was reached and no request finished within the max wait time
+     */
+    public long acquire(String url) throws IOException {
+        lastUsed = System.currentTimeMillis();
+        if (permits != null) {
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for request to " + url);
+            }
+            if (!acquired) {
+                rejected.incrementAndGet();
+                logger.warnv("Too many concurrent requests to {0}, rejected request to {1}", name, url);
+                throw new IOException("Too many concurrent requests to " + name);
+            }
+        }
+        return System.nanoTime();
+    }
+
+    public void release(long start, boolean success) {
+        if (permits != null) {
+            permits.release();
+        }
+
+        long nanos = System.nanoTime() - start;
+        long count = requests.incrementAndGet();
+        long total = totalNanos.addAndGet(nanos);
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debugf("Request to %s took %d ms, %d requests with average %d ms", name,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), count, TimeUnit.NANOSECONDS.toMillis(total / count));
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public int getActiveRequests() {
+        return permits != null ? maxConcurrentRequests - permits.availablePermits() : -1;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getAverageMillis() {
+        long count = requests.get();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / count) : 0;
+    }
+
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return name + ": requests=" + getRequests() + ", failures=" + getFailures() + ", rejected=" + getRejected()
+                + ", averageMillis=" + getAverageMillis() + ", maxMillis=" + getMaxMillis();
+    }
+
+}
@@ -63,4 +63,15 @@ public interface ClusterProvider extends Provider {
      * @param event
      */
     void notify(String taskKey, ClusterEvent event);
+
+
+    /**
+     * Notify registered listeners on all cluster nodes and wait until they were notified. The event isn't kept in the
+     * cluster afterwards. It's meant for cache invalidations, which must be applied on all nodes before the transaction
+     * which changed the data completes.
+     *
+     * @param taskKey
+     * @param event
+     */
+    void notifySync(String taskKey, ClusterEvent event);
 }
@@ -43,6 +43,8 @@ public interface Constants {
     int DEFAULT_ACCESS_TOKEN_LIFESPAN_FOR_IMPLICIT_FLOW_TIMEOUT = 900;
     // 30 days
     int DEFAULT_OFFLINE_SESSION_IDLE_TIMEOUT = 2592000;
+    // 10 hours, same as the default SSO Session Max, so replacing the realm keys doesn't log out users
+    int DEFAULT_PASSIVE_KEY_LIFESPAN = 36000;
 
     String VERIFY_EMAIL_KEY = "VERIFY_EMAIL_KEY";
     String KEY = "key";
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models;
+
+import java.io.Serializable;
+
+/**
+ * Passive key of a realm. Passive keys aren't used for signing anymore, but tokens signed by them are still valid until
+ * the key expires.
+ */
+public class RealmKeyModel implements Serializable {
+
+    protected String kid;
+    protected String publicKeyPem;
+    protected String certificatePem;
+    protected int expiration;
+
+    public RealmKeyModel() {
+    }
+
+    public RealmKeyModel(String kid, String publicKeyPem, String certificatePem, int expiration) {
+        this.kid = kid;
+        this.publicKeyPem = publicKeyPem;
+        this.certificatePem = certificatePem;
+        this.expiration = expiration;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public void setKid(String kid) {
+        this.kid = kid;
+    }
+
+    public String getPublicKeyPem() {
+        return publicKeyPem;
+    }
+
+    public void setPublicKeyPem(String publicKeyPem) {
+        this.publicKeyPem = publicKeyPem;
+    }
+
+    public String getCertificatePem() {
+        return certificatePem;
+    }
+
+    public void setCertificatePem(String certificatePem) {
+        this.certificatePem = certificatePem;
+    }
+
+    /**
+     * @return time in seconds when the key expires
+     */
+    public int getExpiration() {
+        return expiration;
+    }
+
+    public void setExpiration(int expiration) {
+        this.expiration = expiration;
+    }
+
+}
@@ -168,6 +168,32 @@ public interface RealmModel extends RoleContainerModel {
 
     void setPrivateKey(PrivateKey privateKey);
 
+    /**
+     * @return key id of the active public key, which is set as kid of the tokens signed by the realm
+     */
+    String getKeyId();
+
+    /**
+     * Keys that were replaced by a newer key pair. Tokens signed by a passive key are valid until the key expires.
+     */
+    List<RealmKeyModel> getPassiveKeys();
+
+    void addPassiveKey(RealmKeyModel key);
+
+    void removePassiveKey(String kid);
+
+    /**
+     * @return public key of the passive key with given kid, or null if there's no such key or it already expired
+     */
+    PublicKey getPassivePublicKey(String kid);
+
+    /**
+     * @return how long in seconds a replaced key is kept as passive key
+     */
+    int getPassiveKeyLifespan();
+
+    void setPassiveKeyLifespan(int seconds);
+
     List<RequiredCredentialModel> getRequiredCredentials();
 
     void addRequiredCredential(String cred);
@@ -17,6 +17,8 @@
 
 package org.keycloak.models;
 
+import org.keycloak.provider.ProviderEvent;
+
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +27,25 @@ import java.util.Map;
  */
 public interface UserSessionModel {
 
+    /**
+     * Published after the transaction, which removed user sessions, was committed.  Sessions removed because they expired
+     * are not reported.
+     */
+    interface UserSessionsRemovedEvent extends ProviderEvent {
+        KeycloakSession getKeycloakSession();
+        String getRealmId();
+
+        /**
+         * @return the user, whose sessions were removed, or null if sessions of multiple users were removed
+         */
+        String getUserId();
+
+        /**
+         * @return the removed session or null if all sessions of the user or of the realm were removed
+         */
+        String getUserSessionId();
+    }
+
     String getId();
     RealmModel getRealm();
 
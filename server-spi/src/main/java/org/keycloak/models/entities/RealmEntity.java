@@ -62,6 +62,7 @@ public class RealmEntity extends AbstractIdentifiableEntity {
     private int ssoSessionIdleTimeout;
     private int ssoSessionMaxLifespan;
     private int offlineSessionIdleTimeout;
+    private int passiveKeyLifespan;
     private int accessTokenLifespan;
     private int accessTokenLifespanForImplicitFlow;
     private int accessCodeLifespan;
@@ -84,6 +85,7 @@ public class RealmEntity extends AbstractIdentifiableEntity {
     private List<String> defaultGroups = new ArrayList<String>();
 
     private List<RequiredCredentialEntity> requiredCredentials = new ArrayList<RequiredCredentialEntity>();
+    private List<RealmKeyEntity> passiveKeys = new ArrayList<RealmKeyEntity>();
     private List<UserFederationProviderEntity> userFederationProviders = new ArrayList<UserFederationProviderEntity>();
     private List<UserFederationMapperEntity> userFederationMappers = new ArrayList<UserFederationMapperEntity>();
     private List<IdentityProviderEntity> identityProviders = new ArrayList<IdentityProviderEntity>();
@@ -300,6 +302,14 @@ public class RealmEntity extends AbstractIdentifiableEntity {
         this.offlineSessionIdleTimeout = offlineSessionIdleTimeout;
     }
 
+    public int getPassiveKeyLifespan() {
+        return passiveKeyLifespan;
+    }
+
+    public void setPassiveKeyLifespan(int passiveKeyLifespan) {
+        this.passiveKeyLifespan = passiveKeyLifespan;
+    }
+
     public int getAccessTokenLifespan() {
         return accessTokenLifespan;
     }
@@ -419,6 +429,14 @@ public class RealmEntity extends AbstractIdentifiableEntity {
         this.requiredCredentials = requiredCredentials;
     }
 
+    public List<RealmKeyEntity> getPassiveKeys() {
+        return passiveKeys;
+    }
+
+    public void setPassiveKeys(List<RealmKeyEntity> passiveKeys) {
+        this.passiveKeys = passiveKeys;
+    }
+
     public Map<String, String> getBrowserSecurityHeaders() {
         return browserSecurityHeaders;
     }
@@ -17,7 +17,6 @@
 
 package org.keycloak.models.session;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,11 +26,9 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
-import org.keycloak.models.ModelException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
-import org.keycloak.util.JsonSerialization;
 
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
@@ -80,11 +77,7 @@ public class PersistentClientSessionAdapter implements ClientSessionModel {
     // Lazily init data
     private PersistentClientSessionData getData() {
         if (data == null) {
-            try {
-                data = JsonSerialization.readValue(model.getData(), PersistentClientSessionData.class);
-            } catch (IOException ioe) {
-                throw new ModelException(ioe);
-            }
+            data = PersistentSessionDataCodec.readClientSessionData(model.getData());
         }
 
         return data;
@@ -92,13 +85,11 @@ public class PersistentClientSessionAdapter implements ClientSessionModel {
 
     // Write updated model with latest serialized data
     public PersistentClientSessionModel getUpdatedModel() {
-        try {
-            String updatedData = JsonSerialization.writeValueAsString(getData());
-            this.model.setData(updatedData);
-        } catch (IOException ioe) {
-            throw new ModelException(ioe);
-        }
+        return getUpdatedModel(false);
+    }
 
+    public PersistentClientSessionModel getUpdatedModel(boolean compactData) {
+        this.model.setData(PersistentSessionDataCodec.writeClientSessionData(getData(), compactData));
         return this.model;
     }
 
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.session;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.keycloak.common.util.Base64;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * Reads and writes the serialized data of persistent user and client sessions.
+ *
+ * Data are either JSON (legacy format, always starting with '{') or the compact format. Compact data start with
+ * {@link #COMPACT_PREFIX} and the format version, followed by all fields in fixed order without any field names. Ints and
+ * lengths are varints of URL-safe characters, strings are written once and referenced by index when repeated in the same
+ * payload. The DATA columns are character columns, so the compact format is text as well rather than Base64 armored bytes,
+ * which would cost more in encoding than it saves. Both formats are always readable, the format used for writing is chosen
+ * by the persister provider.
+ */
+public class PersistentSessionDataCodec {
+
+    public static final String COMPACT_PREFIX = "~";
+
+    public static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // First half of the alphabet terminates a varint, second half marks 5 more bits to follow
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVabcdefghijklmnopqrstuvwxyzWXYZ-_".toCharArray();
+    private static final int[] DIGIT_VALUES = new int[128];
+
+    static {
+        Arrays.fill(DIGIT_VALUES, -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            DIGIT_VALUES[DIGITS[i]] = i;
+        }
+    }
+
+    // String tags, higher values are references to already written strings
+    private static final int STRING_NULL = 0;
+    private static final int STRING_RAW = 1;
+    private static final int STRING_ENCODED = 2; // Strings with NUL characters, which some databases reject in text columns
+    private static final int STRING_REFERENCE = 3;
+
+    private static final int FLAG_REMEMBER_ME = 1;
+
+    public static boolean isCompact(String data) {
+        return data != null && data.startsWith(COMPACT_PREFIX);
+    }
+
+    public static String writeUserSessionData(PersistentUserSessionAdapter.PersistentUserSessionData data, boolean compact) {
+        if (!compact) return writeJson(data);
+
+        Writer writer = new Writer(128);
+        writer.writeString(data.getBrokerSessionId());
+        writer.writeString(data.getBrokerUserId());
+        writer.writeString(data.getIpAddress());
+        writer.writeString(data.getAuthMethod());
+        writer.writeVarInt(data.isRememberMe() ? FLAG_REMEMBER_ME : 0);
+        writer.writeVarInt(data.getStarted());
+        writer.writeMap(data.getNotes());
+        writer.writeString(data.getState() == null ? null : data.getState().name());
+        return writer.toString();
+    }
+
+    public static PersistentUserSessionAdapter.PersistentUserSessionData readUserSessionData(String data) {
+        if (!isCompact(data)) return readJson(data, PersistentUserSessionAdapter.PersistentUserSessionData.class);
+
+        Reader reader = new Reader(data);
+        PersistentUserSessionAdapter.PersistentUserSessionData result = new PersistentUserSessionAdapter.PersistentUserSessionData();
+        result.setBrokerSessionId(reader.readString());
+        result.setBrokerUserId(reader.readString());
+        result.setIpAddress(reader.readString());
+        result.setAuthMethod(reader.readString());
+        result.setRememberMe((reader.readVarInt() & FLAG_REMEMBER_ME) != 0);
+        result.setStarted(reader.readVarInt());
+        result.setNotes(reader.readMap());
+        String state = reader.readString();
+        result.setState(state == null ? null : UserSessionModel.State.valueOf(state));
+        return result;
+    }
+
+    public static String writeClientSessionData(PersistentClientSessionAdapter.PersistentClientSessionData data, boolean compact) {
+        if (!compact) return writeJson(data);
+
+        Writer writer = new Writer(256);
+        writer.writeString(data.getAuthMethod());
+        writer.writeString(data.getRedirectUri());
+        writer.writeSet(data.getProtocolMappers());
+        writer.writeSet(data.getRoles());
+        writer.writeMap(data.getNotes());
+        writer.writeMap(data.getUserSessionNotes());
+        Map<String, ClientSessionModel.ExecutionStatus> executionStatus = data.getExecutionStatus();
+        if (executionStatus == null) {
+            writer.writeVarInt(0);
+        } else {
+            writer.writeVarInt(executionStatus.size() + 1);
+            for (Map.Entry<String, ClientSessionModel.ExecutionStatus> entry : executionStatus.entrySet()) {
+                writer.writeString(entry.getKey());
+                writer.writeString(entry.getValue() == null ? null : entry.getValue().name());
+            }
+        }
+        writer.writeString(data.getAction());
+        writer.writeSet(data.getRequiredActions());
+        return writer.toString();
+    }
+
+    public static PersistentClientSessionAdapter.PersistentClientSessionData readClientSessionData(String data) {
+        if (!isCompact(data)) return readJson(data, PersistentClientSessionAdapter.PersistentClientSessionData.class);
+
+        Reader reader = new Reader(data);
+        PersistentClientSessionAdapter.PersistentClientSessionData result = new PersistentClientSessionAdapter.PersistentClientSessionData();
+        result.setAuthMethod(reader.readString());
+        result.setRedirectUri(reader.readString());
+        result.setProtocolMappers(reader.readSet());
+        result.setRoles(reader.readSet());
+        result.setNotes(reader.readMap());
+        result.setUserSessionNotes(reader.readMap());
+        int executionStatusSize = reader.readVarInt() - 1;
+        if (executionStatusSize < 0) {
+            result.setExecutionStatus(null);
+        } else {
+            Map<String, ClientSessionModel.ExecutionStatus> executionStatus = new HashMap<>();
+            for (int i = 0; i < executionStatusSize; i++) {
+                String authenticator = reader.readString();
+                String status = reader.readString();
+                executionStatus.put(authenticator, status == null ? null : ClientSessionModel.ExecutionStatus.valueOf(status));
+            }
+            result.setExecutionStatus(executionStatus);
+        }
+        result.setAction(reader.readString());
+        result.setRequiredActions(reader.readSet());
+        return result;
+    }
+
+    private static String writeJson(Object data) {
+        try {
+            return JsonSerialization.writeValueAsString(data);
+        } catch (IOException ioe) {
+            throw new ModelException(ioe);
+        }
+    }
+
+    private static <T> T readJson(String data, Class<T> type) {
+        try {
+            return JsonSerialization.readValue(data, type);
+        } catch (IOException ioe) {
+            throw new ModelException(ioe);
+        }
+    }
+
+    // Collections are written as size + 1, 0 for null
+    private static class Writer {
+
+        private final StringBuilder out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Writer(int capacity) {
+            out = new StringBuilder(capacity);
+            out.append(COMPACT_PREFIX);
+            writeVarInt(VERSION);
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x1F) != 0) {
+                out.append(DIGITS[(value & 0x1F) | 0x20]);
+                value >>>= 5;
+            }
+            out.append(DIGITS[value]);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + STRING_REFERENCE);
+                return;
+            }
+            strings.put(value, strings.size());
+            if (value.indexOf('\0') == -1) {
+                writeVarInt(STRING_RAW);
+                writeVarInt(value.length());
+                out.append(value);
+            } else {
+                String encoded = Base64.encodeBytes(value.getBytes(UTF_8));
+                writeVarInt(STRING_ENCODED);
+                writeVarInt(encoded.length());
+                out.append(encoded);
+            }
+        }
+
+        private void writeSet(Set<String> values) {
+            if (values == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(values.size() + 1);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeMap(Map<String, String> values) {
+            if (values == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(values.size() + 1);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+
+    private static class Reader {
+
+        private final String data;
+        private final List<String> strings = new ArrayList<>();
+        private int position = COMPACT_PREFIX.length();
+
+        private Reader(String data) {
+            this.data = data;
+            int version = readVarInt();
+            if (version != VERSION) {
+                throw new ModelException("Unsupported version " + version + " of session data");
+            }
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 5) {
+                if (position >= data.length()) {
+                    throw new ModelException("Truncated session data");
+                }
+                char c = data.charAt(position++);
+                int digit = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+                if (digit == -1) {
+                    throw new ModelException("Malformed session data");
+                }
+                value |= (digit & 0x1F) << shift;
+                if ((digit & 0x20) == 0) return value;
+            }
+            throw new ModelException("Malformed session data");
+        }
+
+        private String readString() {
+            int tag = readVarInt();
+            if (tag == STRING_NULL) return null;
+            if (tag >= STRING_REFERENCE) {
+                if (tag - STRING_REFERENCE >= strings.size()) {
+                    throw new ModelException("Invalid string reference in session data");
+                }
+                return strings.get(tag - STRING_REFERENCE);
+            }
+            int length = readVarInt();
+            if (length < 0 || position + length > data.length()) {
+                throw new ModelException("Truncated session data");
+            }
+            String value = data.substring(position, position + length);
+            position += length;
+            if (tag == STRING_ENCODED) {
+                try {
+                    value = new String(Base64.decode(value), UTF_8);
+                } catch (IOException ioe) {
+                    throw new ModelException("Malformed session data", ioe);
+                }
+            }
+            strings.add(value);
+            return value;
+        }
+
+        private Set<String> readSet() {
+            int size = readVarInt() - 1;
+            if (size < 0) return null;
+            Set<String> values = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private Map<String, String> readMap() {
+            int size = readVarInt() - 1;
+            if (size < 0) return null;
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                values.put(key, readString());
+            }
+            return values;
+        }
+    }
+
+}
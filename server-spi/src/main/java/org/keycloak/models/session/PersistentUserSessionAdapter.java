@@ -17,18 +17,15 @@
 
 package org.keycloak.models.session;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.keycloak.models.ClientSessionModel;
-import org.keycloak.models.ModelException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
-import org.keycloak.util.JsonSerialization;
 
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
@@ -42,6 +39,10 @@ public class PersistentUserSessionAdapter implements UserSessionModel {
 
     private PersistentUserSessionData data;
 
+    // True if data were changed through this adapter after they were serialized to the model. Data of a wrapped session
+    // are serialized on first getUpdatedModel(), as there's nothing to compare them with
+    private boolean dataChanged;
+
     public PersistentUserSessionAdapter(UserSessionModel other) {
         this.data = new PersistentUserSessionData();
         data.setAuthMethod(other.getAuthMethod());
@@ -72,28 +73,30 @@ public class PersistentUserSessionAdapter implements UserSessionModel {
     // Lazily init data
     private PersistentUserSessionData getData() {
         if (data == null) {
-            try {
-                data = JsonSerialization.readValue(model.getData(), PersistentUserSessionData.class);
-            } catch (IOException ioe) {
-                throw new ModelException(ioe);
-            }
+            data = PersistentSessionDataCodec.readUserSessionData(model.getData());
         }
 
         return data;
     }
 
-    // Write updated model with latest serialized data
+    // Write updated model with latest serialized data. Data are serialized again only if they were changed through this adapter
     public PersistentUserSessionModel getUpdatedModel() {
-        try {
-            String updatedData = JsonSerialization.writeValueAsString(getData());
-            this.model.setData(updatedData);
-        } catch (IOException ioe) {
-            throw new ModelException(ioe);
+        return getUpdatedModel(false);
+    }
+
+    public PersistentUserSessionModel getUpdatedModel(boolean compactData) {
+        if (dataChanged || model.getData() == null) {
+            this.model.setData(PersistentSessionDataCodec.writeUserSessionData(getData(), compactData));
+            this.dataChanged = false;
         }
 
         return this.model;
     }
 
+    public boolean isDataChanged() {
+        return dataChanged;
+    }
+
     @Override
     public String getId() {
         return model.getUserSessionId();
@@ -170,14 +173,18 @@ public class PersistentUserSessionAdapter implements UserSessionModel {
         if (data.getNotes() == null) {
             data.setNotes(new HashMap<String, String>());
         }
-        data.getNotes().put(name, value);
+        String previous = data.getNotes().put(name, value);
+        if (previous == null ? value != null : !previous.equals(value)) {
+            dataChanged = true;
+        }
 
     }
 
     @Override
     public void removeNote(String name) {
-        if (getData().getNotes() != null) {
+        if (getData().getNotes() != null && getData().getNotes().containsKey(name)) {
             getData().getNotes().remove(name);
+            dataChanged = true;
         }
     }
 
@@ -194,6 +201,7 @@ public class PersistentUserSessionAdapter implements UserSessionModel {
     @Override
     public void setState(State state) {
         getData().setState(state);
+        dataChanged = true;
     }
 
     @Override
@@ -19,6 +19,8 @@ package org.keycloak.models.utils;
 
 import org.bouncycastle.openssl.PEMWriter;
 import org.keycloak.common.util.Base64Url;
+import org.keycloak.common.util.Time;
+import org.keycloak.jose.jwk.JWKBuilder;
 import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.AuthenticationFlowModel;
 import org.keycloak.models.ClientModel;
@@ -31,6 +33,7 @@ import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.KeycloakSessionTask;
 import org.keycloak.models.KeycloakTransaction;
 import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
@@ -165,6 +168,7 @@ public final class KeycloakModelUtils {
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
+        retireRealmKey(realm);
         realm.setPrivateKey(keyPair.getPrivate());
         realm.setPublicKey(keyPair.getPublic());
         X509Certificate certificate = null;
@@ -178,6 +182,45 @@ public final class KeycloakModelUtils {
         realm.setCodeSecret(generateCodeSecret());
     }
 
+    /**
+     * Keeps the current key of the realm as passive key, so tokens signed by it stay valid after the realm keys are replaced.
+     * Expired passive keys are removed.
+     */
+    public static void retireRealmKey(RealmModel realm) {
+        int currentTime = Time.currentTime();
+        PublicKey publicKey = realm.getPublicKey();
+        String kid = publicKey != null ? realm.getKeyId() : null;
+
+        // A key, which was made active again, is still stored as passive key. It's replaced, so kids stay unique
+        for (RealmKeyModel key : realm.getPassiveKeys()) {
+            if (key.getExpiration() <= currentTime || key.getKid().equals(kid)) {
+                realm.removePassiveKey(key.getKid());
+            }
+        }
+
+        if (publicKey != null && realm.getPassiveKeyLifespan() > 0) {
+            realm.addPassiveKey(new RealmKeyModel(kid, realm.getPublicKeyPem(), realm.getCertificatePem(), currentTime + realm.getPassiveKeyLifespan()));
+        }
+    }
+
+    public static String getKeyId(PublicKey publicKey) {
+        return JWKBuilder.createKeyId(publicKey);
+    }
+
+    /**
+     * Returns the key with given kid, which is either the active key of the realm or one of the passive keys, which didn't
+     * expire yet. Tokens without kid and tokens with unknown kid are verified with the active key.
+     */
+    public static PublicKey getPublicKey(RealmModel realm, String kid) {
+        PublicKey publicKey = realm.getPublicKey();
+        if (kid == null || publicKey == null || kid.equals(realm.getKeyId())) {
+            return publicKey;
+        }
+
+        PublicKey passiveKey = realm.getPassivePublicKey(kid);
+        return passiveKey != null ? passiveKey : publicKey;
+    }
+
     public static void generateRealmCertificate(RealmModel realm) {
         X509Certificate certificate = null;
         try {
@@ -140,6 +140,8 @@ public class RepresentationToModel {
         else newRealm.setSsoSessionMaxLifespan(36000);
         if (rep.getOfflineSessionIdleTimeout() != null) newRealm.setOfflineSessionIdleTimeout(rep.getOfflineSessionIdleTimeout());
         else newRealm.setOfflineSessionIdleTimeout(Constants.DEFAULT_OFFLINE_SESSION_IDLE_TIMEOUT);
+        if (rep.getPassiveKeyLifespan() != null) newRealm.setPassiveKeyLifespan(rep.getPassiveKeyLifespan());
+        else newRealm.setPassiveKeyLifespan(Constants.DEFAULT_PASSIVE_KEY_LIFESPAN);
 
         if (rep.getAccessCodeLifespan() != null) newRealm.setAccessCodeLifespan(rep.getAccessCodeLifespan());
         else newRealm.setAccessCodeLifespan(60);
@@ -687,6 +689,7 @@ public class RepresentationToModel {
         if (rep.getSsoSessionIdleTimeout() != null) realm.setSsoSessionIdleTimeout(rep.getSsoSessionIdleTimeout());
         if (rep.getSsoSessionMaxLifespan() != null) realm.setSsoSessionMaxLifespan(rep.getSsoSessionMaxLifespan());
         if (rep.getOfflineSessionIdleTimeout() != null) realm.setOfflineSessionIdleTimeout(rep.getOfflineSessionIdleTimeout());
+        if (rep.getPassiveKeyLifespan() != null) realm.setPassiveKeyLifespan(rep.getPassiveKeyLifespan());
         if (rep.getRequiredCredentials() != null) {
             realm.updateRequiredCredentials(rep.getRequiredCredentials());
         }
@@ -728,6 +731,9 @@ public class RepresentationToModel {
             KeycloakModelUtils.generateRealmKeys(realm);
         } else {
             if (rep.getPrivateKey() != null && rep.getPublicKey() != null) {
+                if (!rep.getPublicKey().equals(realm.getPublicKeyPem())) {
+                    KeycloakModelUtils.retireRealmKey(realm);
+                }
                 realm.setPrivateKeyPem(rep.getPrivateKey());
                 realm.setPublicKeyPem(rep.getPublicKey());
                 realm.setCodeSecret(KeycloakModelUtils.generateCodeSecret());
@@ -28,12 +28,23 @@ import org.keycloak.common.util.Base64Url;
 import org.keycloak.common.util.Time;
 
 import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 /**
+ * Codes are either compact or legacy. Compact codes are the Base64Url encoded bytes of the client session id followed by
+ * the hash, used if the client session id is a UUID. Legacy codes are the Base64Url encoded hash and the client session id
+ * separated by a dot. Both formats are accepted when parsing.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
@@ -41,6 +52,25 @@ public class ClientSessionCode {
 
     private static final byte[] HASH_SEPERATOR = "//".getBytes();
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int UUID_LENGTH = 16;
+
+    // Macs are cached per thread and realm, as getting and initializing a Mac is more expensive than computing the hash
+    private static final int MAX_CACHED_MACS = 16;
+
+    private static final ThreadLocal<Map<String, CachedMac>> MACS = new ThreadLocal<Map<String, CachedMac>>() {
+        @Override
+        protected Map<String, CachedMac> initialValue() {
+            return new LinkedHashMap<String, CachedMac>(MAX_CACHED_MACS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedMac> eldest) {
+                    return size() > MAX_CACHED_MACS;
+                }
+            };
+        }
+    };
+
     private final RealmModel realm;
     private final ClientSessionModel clientSession;
 
@@ -57,16 +87,17 @@ public class ClientSessionCode {
 
     public static ClientSessionCode parse(String code, KeycloakSession session) {
         try {
-            String[] parts = code.split("\\.");
-            String id = parts[1];
+            DecodedCode decoded = decode(code);
+            if (decoded == null) {
+                return null;
+            }
 
-            ClientSessionModel clientSession = session.sessions().getClientSession(id);
+            ClientSessionModel clientSession = session.sessions().getClientSession(decoded.clientSessionId);
             if (clientSession == null) {
                 return null;
             }
 
-            String hash = createHash(clientSession.getRealm(), clientSession);
-            if (!hash.equals(parts[0])) {
+            if (!verifyHash(clientSession.getRealm(), clientSession, decoded.hash)) {
                 return null;
             }
 
@@ -106,17 +137,19 @@ public class ClientSessionCode {
             return result;
         }
         try {
-            String[] parts = code.split("\\.");
-            String id = parts[1];
+            DecodedCode decoded = decode(code);
+            if (decoded == null) {
+                result.illegalHash = true;
+                return result;
+            }
 
-            result.clientSession = session.sessions().getClientSession(realm, id);
+            result.clientSession = session.sessions().getClientSession(realm, decoded.clientSessionId);
             if (result.clientSession == null) {
                 result.clientSessionNotFound = true;
                 return result;
             }
 
-            String hash = createHash(realm, result.clientSession);
-            if (!hash.equals(parts[0])) {
+            if (!verifyHash(realm, result.clientSession, decoded.hash)) {
                 result.illegalHash = true;
                 return result;
             }
@@ -133,16 +166,17 @@ public class ClientSessionCode {
 
     public static ClientSessionCode parse(String code, KeycloakSession session, RealmModel realm) {
         try {
-            String[] parts = code.split("\\.");
-            String id = parts[1];
+            DecodedCode decoded = decode(code);
+            if (decoded == null) {
+                return null;
+            }
 
-            ClientSessionModel clientSession = session.sessions().getClientSession(realm, id);
+            ClientSessionModel clientSession = session.sessions().getClientSession(realm, decoded.clientSessionId);
             if (clientSession == null) {
                 return null;
             }
 
-            String hash = createHash(realm, clientSession);
-            if (!hash.equals(parts[0])) {
+            if (!verifyHash(realm, clientSession, decoded.hash)) {
                 return null;
             }
 
@@ -233,29 +267,142 @@ public class ClientSessionCode {
         return generateCode(realm, clientSession);
     }
 
+    /**
+     * @return the id of the client session the code was issued for, or null if the code is malformed. The code is not verified.
+     */
+    public static String getClientSessionId(String code) {
+        DecodedCode decoded = decode(code);
+        return decoded != null ? decoded.clientSessionId : null;
+    }
+
     private static String generateCode(RealmModel realm, ClientSessionModel clientSession) {
-        String hash = createHash(realm, clientSession);
+        byte[] hash = createHash(realm, clientSession);
+        String id = clientSession.getId();
+
+        UUID uuid = toUUID(id);
+        if (uuid != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(UUID_LENGTH + hash.length);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.put(hash);
+            return Base64Url.encode(buffer.array());
+        }
 
         StringBuilder sb = new StringBuilder();
-        sb.append(hash);
+        sb.append(Base64Url.encode(hash));
         sb.append(".");
-        sb.append(clientSession.getId());
+        sb.append(id);
 
         return sb.toString();
     }
 
-    private static String createHash(RealmModel realm, ClientSessionModel clientSession) {
+    private static DecodedCode decode(String code) {
+        if (code == null) {
+            return null;
+        }
         try {
-            Key codeSecretKey = realm.getCodeSecretKey();
-            Mac mac = Mac.getInstance(codeSecretKey.getAlgorithm());
-            mac.init(codeSecretKey);
-            mac.update(clientSession.getId().getBytes());
+            int separator = code.indexOf('.');
+            if (separator != -1) {
+                if (code.indexOf('.', separator + 1) != -1) {
+                    return null;
+                }
+                return new DecodedCode(code.substring(separator + 1), Base64Url.decode(code.substring(0, separator)));
+            }
+
+            byte[] bytes = Base64Url.decode(code);
+            if (bytes.length <= UUID_LENGTH) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            String id = new UUID(buffer.getLong(), buffer.getLong()).toString();
+            return new DecodedCode(id, Arrays.copyOfRange(bytes, UUID_LENGTH, bytes.length));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Only ids in the canonical form of UUID.toString can be encoded in compact codes. Parsed by hand, as UUID.fromString
+    // accepts other forms as well and is slower than computing the hash
+    private static UUID toUUID(String id) {
+        if (id.length() != 36 || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return null;
+        }
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        for (int i = 0; i < 36; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            int digit = Character.digit(id.charAt(i), 16);
+            if (digit == -1 || Character.isUpperCase(id.charAt(i))) {
+                return null;
+            }
+            if (i < 19) {
+                mostSigBits = (mostSigBits << 4) | digit;
+            } else {
+                leastSigBits = (leastSigBits << 4) | digit;
+            }
+        }
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static boolean verifyHash(RealmModel realm, ClientSessionModel clientSession, byte[] hash) {
+        return MessageDigest.isEqual(createHash(realm, clientSession), hash);
+    }
+
+    private static byte[] createHash(RealmModel realm, ClientSessionModel clientSession) {
+        try {
+            // Everything that can fail is done before updating the shared Mac
+            byte[] id = clientSession.getId().getBytes(UTF_8);
+            byte[] action = clientSession.getNote(ClientSessionModel.ACTION_KEY).getBytes(UTF_8);
+
+            Mac mac = getMac(realm);
+            mac.update(id);
             mac.update(HASH_SEPERATOR);
-            mac.update(clientSession.getNote(ClientSessionModel.ACTION_KEY).getBytes());
-            return Base64Url.encode(mac.doFinal());
+            mac.update(action);
+            return mac.doFinal();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static Mac getMac(RealmModel realm) throws GeneralSecurityException {
+        Key codeSecretKey = realm.getCodeSecretKey();
+        byte[] secret = codeSecretKey.getEncoded();
+
+        Map<String, CachedMac> macs = MACS.get();
+        CachedMac cached = macs.get(realm.getId());
+        if (cached == null || !cached.algorithm.equals(codeSecretKey.getAlgorithm()) || !Arrays.equals(cached.secret, secret)) {
+            Mac mac = Mac.getInstance(codeSecretKey.getAlgorithm());
+            mac.init(codeSecretKey);
+            cached = new CachedMac(codeSecretKey.getAlgorithm(), secret, mac);
+            macs.put(realm.getId(), cached);
+        }
+        return cached.mac;
+    }
+
+    private static class DecodedCode {
+
+        private final String clientSessionId;
+        private final byte[] hash;
+
+        private DecodedCode(String clientSessionId, byte[] hash) {
+            this.clientSessionId = clientSessionId;
+            this.hash = hash;
+        }
+    }
+
+    private static class CachedMac {
+
+        private final String algorithm;
+        private final byte[] secret;
+        private final Mac mac;
+
+        private CachedMac(String algorithm, byte[] secret, Mac mac) {
+            this.algorithm = algorithm;
+            this.secret = secret;
+            this.mac = mac;
+        }
+    }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.session;
+
+/**
+ * Compares encode/decode speed and size of the JSON and compact format of persistent session data. Not executed as part
+ * of the build, run the main method with an optional count of iterations.
+ */
+public class PersistentSessionDataCodecBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        PersistentUserSessionAdapter.PersistentUserSessionData userSession = PersistentSessionDataCodecTest.createUserSessionData();
+        PersistentClientSessionAdapter.PersistentClientSessionData clientSession = PersistentSessionDataCodecTest.createClientSessionData();
+
+        for (boolean compact : new boolean[] { false, true }) {
+            String format = compact ? "compact" : "json";
+
+            // Warm up
+            run(userSession, clientSession, compact, iterations / 10);
+
+            String userData = PersistentSessionDataCodec.writeUserSessionData(userSession, compact);
+            String clientData = PersistentSessionDataCodec.writeClientSessionData(clientSession, compact);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                PersistentSessionDataCodec.writeUserSessionData(userSession, compact);
+                PersistentSessionDataCodec.writeClientSessionData(clientSession, compact);
+            }
+            long encode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                PersistentSessionDataCodec.readUserSessionData(userData);
+                PersistentSessionDataCodec.readClientSessionData(clientData);
+            }
+            long decode = System.nanoTime() - start;
+
+            System.out.println(String.format("%-7s user session: %4d chars, client session: %4d chars, encode: %6d ns/op, decode: %6d ns/op",
+                    format, userData.length(), clientData.length(), encode / iterations, decode / iterations));
+        }
+    }
+
+    private static void run(PersistentUserSessionAdapter.PersistentUserSessionData userSession, PersistentClientSessionAdapter.PersistentClientSessionData clientSession,
+                            boolean compact, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            PersistentSessionDataCodec.readUserSessionData(PersistentSessionDataCodec.writeUserSessionData(userSession, compact));
+            PersistentSessionDataCodec.readClientSessionData(PersistentSessionDataCodec.writeClientSessionData(clientSession, compact));
+        }
+    }
+}
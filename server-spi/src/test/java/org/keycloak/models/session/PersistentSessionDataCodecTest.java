@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.models.session;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.UserSessionModel;
+
+public class PersistentSessionDataCodecTest {
+
+    static PersistentUserSessionAdapter.PersistentUserSessionData createUserSessionData() {
+        PersistentUserSessionAdapter.PersistentUserSessionData data = new PersistentUserSessionAdapter.PersistentUserSessionData();
+        data.setBrokerSessionId("broker-session");
+        data.setBrokerUserId("broker-user");
+        data.setIpAddress("127.0.0.1");
+        data.setAuthMethod("openid-connect");
+        data.setRememberMe(true);
+        data.setStarted(1464171000);
+        Map<String, String> notes = new HashMap<>();
+        notes.put("AUTH_TIME", "1464171000");
+        notes.put("KC_DEVICE_NOTE", "openid-connect");
+        notes.put("empty", null);
+        notes.put("unicode", "žluťoučký kůň");
+        data.setNotes(notes);
+        data.setState(UserSessionModel.State.LOGGED_IN);
+        return data;
+    }
+
+    static PersistentClientSessionAdapter.PersistentClientSessionData createClientSessionData() {
+        PersistentClientSessionAdapter.PersistentClientSessionData data = new PersistentClientSessionAdapter.PersistentClientSessionData();
+        data.setAuthMethod("openid-connect");
+        data.setRedirectUri("http://localhost:8081/app/*");
+        data.setProtocolMappers(new HashSet<>(Arrays.asList("8d0bba5a-4b4f-4c27-b8b7-5f1b2a3c7f9e", "29a0d6b5-90a6-4d63-8d47-1c5b1e3a4ef1")));
+        data.setRoles(new HashSet<>(Arrays.asList("d6a1b1c5-7c1e-4d4b-9d8a-1e6f4f7f2b3a", "5f0f4b4e-2b2d-4a7f-8f37-4c4c3f0d1e2b")));
+        Map<String, String> notes = new HashMap<>();
+        notes.put("iss", "http://localhost:8081/auth/realms/test");
+        notes.put("response_type", "code");
+        notes.put("redirect_uri", "http://localhost:8081/app/*");
+        data.setNotes(notes);
+        data.setUserSessionNotes(null);
+        data.getExecutionStatus().put("auth-cookie", ClientSessionModel.ExecutionStatus.ATTEMPTED);
+        data.getExecutionStatus().put("auth-username-password-form", ClientSessionModel.ExecutionStatus.SUCCESS);
+        data.setAction("CODE_TO_TOKEN");
+        return data;
+    }
+
+    @Test
+    public void testUserSessionData() {
+        PersistentUserSessionAdapter.PersistentUserSessionData data = createUserSessionData();
+
+        String compact = PersistentSessionDataCodec.writeUserSessionData(data, true);
+        Assert.assertTrue(PersistentSessionDataCodec.isCompact(compact));
+        assertUserSessionData(data, PersistentSessionDataCodec.readUserSessionData(compact));
+
+        // Legacy JSON is still readable
+        String json = PersistentSessionDataCodec.writeUserSessionData(data, false);
+        Assert.assertFalse(PersistentSessionDataCodec.isCompact(json));
+        Assert.assertTrue(json.startsWith("{"));
+        assertUserSessionData(data, PersistentSessionDataCodec.readUserSessionData(json));
+
+        Assert.assertTrue(compact.length() < json.length());
+    }
+
+    @Test
+    public void testEmptyUserSessionData() {
+        PersistentUserSessionAdapter.PersistentUserSessionData data = new PersistentUserSessionAdapter.PersistentUserSessionData();
+        assertUserSessionData(data, PersistentSessionDataCodec.readUserSessionData(PersistentSessionDataCodec.writeUserSessionData(data, true)));
+    }
+
+    @Test
+    public void testClientSessionData() {
+        PersistentClientSessionAdapter.PersistentClientSessionData data = createClientSessionData();
+
+        String compact = PersistentSessionDataCodec.writeClientSessionData(data, true);
+        assertClientSessionData(data, PersistentSessionDataCodec.readClientSessionData(compact));
+
+        String json = PersistentSessionDataCodec.writeClientSessionData(data, false);
+        assertClientSessionData(data, PersistentSessionDataCodec.readClientSessionData(json));
+
+        Assert.assertTrue(compact.length() < json.length());
+    }
+
+    @Test
+    public void testRepeatedStringsWrittenOnce() {
+        PersistentClientSessionAdapter.PersistentClientSessionData data = createClientSessionData();
+        String single = PersistentSessionDataCodec.writeClientSessionData(data, true);
+
+        Map<String, String> userSessionNotes = new HashMap<>(data.getNotes());
+        data.setUserSessionNotes(userSessionNotes);
+        String repeated = PersistentSessionDataCodec.writeClientSessionData(data, true);
+
+        // Only the references to the already written strings are added
+        Assert.assertTrue(repeated.length() - single.length() < 16);
+        assertClientSessionData(data, PersistentSessionDataCodec.readClientSessionData(repeated));
+    }
+
+    @Test
+    public void testNulCharacter() {
+        PersistentUserSessionAdapter.PersistentUserSessionData data = createUserSessionData();
+        data.getNotes().put("nul", "foo\0bar");
+
+        String compact = PersistentSessionDataCodec.writeUserSessionData(data, true);
+        Assert.assertEquals(-1, compact.indexOf('\0'));
+        assertUserSessionData(data, PersistentSessionDataCodec.readUserSessionData(compact));
+    }
+
+    @Test
+    public void testUnsupportedVersion() {
+        try {
+            PersistentSessionDataCodec.readUserSessionData(PersistentSessionDataCodec.COMPACT_PREFIX + "2");
+            Assert.fail("Expected unsupported version");
+        } catch (ModelException expected) {
+        }
+
+        try {
+            PersistentSessionDataCodec.readUserSessionData(PersistentSessionDataCodec.COMPACT_PREFIX + "11");
+            Assert.fail("Expected truncated data");
+        } catch (ModelException expected) {
+        }
+    }
+
+    private void assertUserSessionData(PersistentUserSessionAdapter.PersistentUserSessionData expected, PersistentUserSessionAdapter.PersistentUserSessionData actual) {
+        Assert.assertEquals(expected.getBrokerSessionId(), actual.getBrokerSessionId());
+        Assert.assertEquals(expected.getBrokerUserId(), actual.getBrokerUserId());
+        Assert.assertEquals(expected.getIpAddress(), actual.getIpAddress());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.isRememberMe(), actual.isRememberMe());
+        Assert.assertEquals(expected.getStarted(), actual.getStarted());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+        Assert.assertEquals(expected.getState(), actual.getState());
+    }
+
+    private void assertClientSessionData(PersistentClientSessionAdapter.PersistentClientSessionData expected, PersistentClientSessionAdapter.PersistentClientSessionData actual) {
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.getRedirectUri(), actual.getRedirectUri());
+        Assert.assertEquals(expected.getProtocolMappers(), actual.getProtocolMappers());
+        Assert.assertEquals(expected.getRoles(), actual.getRoles());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+        Assert.assertEquals(expected.getUserSessionNotes(), actual.getUserSessionNotes());
+        Assert.assertEquals(expected.getExecutionStatus(), actual.getExecutionStatus());
+        Assert.assertEquals(expected.getAction(), actual.getAction());
+        Assert.assertEquals(expected.getRequiredActions(), actual.getRequiredActions());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.services.managers;
+
+import org.keycloak.common.util.Base64Url;
+import org.keycloak.models.ClientSessionModel;
+
+import javax.crypto.Mac;
+import java.security.Key;
+import java.util.UUID;
+
+/**
+ * Measures generate and parse throughput of client session codes, compared to creating and initializing a new Mac for
+ * every hash as done before. Not executed as part of the build, run the main method with an optional count of iterations.
+ */
+public class ClientSessionCodeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+        ClientSessionCodeTest.TestRealm realm = new ClientSessionCodeTest.TestRealm("realm", UUID.randomUUID().toString());
+        ClientSessionModel clientSession = realm.addClientSession(UUID.randomUUID().toString(), "AUTHENTICATE");
+        ClientSessionCode clientSessionCode = new ClientSessionCode(realm.model, clientSession);
+
+        for (int round = 0; round < 2; round++) {
+            // First round is warm up
+            int count = round == 0 ? iterations / 10 : iterations;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                legacyGenerate(realm, clientSession);
+            }
+            long legacy = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            String code = null;
+            for (int i = 0; i < count; i++) {
+                code = clientSessionCode.getCode();
+            }
+            long generate = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                if (ClientSessionCode.parse(code, realm.session, realm.model) == null) {
+                    throw new IllegalStateException("Failed to parse code");
+                }
+            }
+            long parse = System.nanoTime() - start;
+
+            if (round > 0) {
+                System.out.println(String.format("legacy generate: %5d ns/op, generate: %5d ns/op, parse: %5d ns/op, code length: %d",
+                        legacy / count, generate / count, parse / count, code.length()));
+            }
+        }
+    }
+
+    private static String legacyGenerate(ClientSessionCodeTest.TestRealm realm, ClientSessionModel clientSession) throws Exception {
+        Key codeSecretKey = realm.model.getCodeSecretKey();
+        Mac mac = Mac.getInstance(codeSecretKey.getAlgorithm());
+        mac.init(codeSecretKey);
+        mac.update(clientSession.getId().getBytes());
+        mac.update("//".getBytes());
+        mac.update(clientSession.getNote(ClientSessionModel.ACTION_KEY).getBytes());
+        return Base64Url.encode(mac.doFinal()) + "." + clientSession.getId();
+    }
+
+}
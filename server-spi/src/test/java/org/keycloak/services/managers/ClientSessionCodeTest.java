@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.services.managers;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.common.util.Base64Url;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import javax.crypto.Mac;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class ClientSessionCodeTest {
+
+    @Test
+    public void testCompactCode() {
+        TestRealm realm = new TestRealm("realm", "secret");
+        ClientSessionModel clientSession = realm.addClientSession(UUID.randomUUID().toString(), "AUTHENTICATE");
+
+        String code = new ClientSessionCode(realm.model, clientSession).getCode();
+        Assert.assertEquals(-1, code.indexOf('.'));
+        Assert.assertEquals(64, code.length());
+        Assert.assertEquals(clientSession.getId(), ClientSessionCode.getClientSessionId(code));
+
+        ClientSessionCode.ParseResult result = ClientSessionCode.parseResult(code, realm.session, realm.model);
+        Assert.assertNotNull(result.getCode());
+        Assert.assertSame(clientSession, result.getClientSession());
+        Assert.assertSame(clientSession, ClientSessionCode.parse(code, realm.session, realm.model).getClientSession());
+        Assert.assertSame(clientSession, ClientSessionCode.parse(code, realm.session).getClientSession());
+    }
+
+    @Test
+    public void testLegacyCode() throws Exception {
+        TestRealm realm = new TestRealm("realm", "secret");
+
+        // Ids that aren't UUIDs are always written in the legacy format
+        ClientSessionModel other = realm.addClientSession("custom-id", "AUTHENTICATE");
+        String code = new ClientSessionCode(realm.model, other).getCode();
+        Assert.assertTrue(code.endsWith(".custom-id"));
+        Assert.assertEquals("custom-id", ClientSessionCode.getClientSessionId(code));
+        Assert.assertNotNull(ClientSessionCode.parse(code, realm.session, realm.model));
+
+        String upperCaseId = UUID.randomUUID().toString().toUpperCase();
+        code = new ClientSessionCode(realm.model, realm.addClientSession(upperCaseId, "AUTHENTICATE")).getCode();
+        Assert.assertTrue(code.endsWith("." + upperCaseId));
+        Assert.assertNotNull(ClientSessionCode.parse(code, realm.session, realm.model));
+
+        // Codes issued before the compact format was introduced
+        ClientSessionModel clientSession = realm.addClientSession(UUID.randomUUID().toString(), "AUTHENTICATE");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(KeycloakModelUtils.getSecretKey("secret"));
+        mac.update(clientSession.getId().getBytes());
+        mac.update("//".getBytes());
+        mac.update("AUTHENTICATE".getBytes());
+        String legacyCode = Base64Url.encode(mac.doFinal()) + "." + clientSession.getId();
+
+        Assert.assertEquals(clientSession.getId(), ClientSessionCode.getClientSessionId(legacyCode));
+        Assert.assertSame(clientSession, ClientSessionCode.parse(legacyCode, realm.session, realm.model).getClientSession());
+    }
+
+    @Test
+    public void testInvalidCode() {
+        TestRealm realm = new TestRealm("realm", "secret");
+        ClientSessionModel clientSession = realm.addClientSession(UUID.randomUUID().toString(), "AUTHENTICATE");
+        String code = new ClientSessionCode(realm.model, clientSession).getCode();
+
+        // Action changed since the code was issued
+        clientSession.setNote(ClientSessionModel.ACTION_KEY, "CODE_TO_TOKEN");
+        ClientSessionCode.ParseResult result = ClientSessionCode.parseResult(code, realm.session, realm.model);
+        Assert.assertTrue(result.isIllegalHash());
+        Assert.assertNull(result.getCode());
+        clientSession.setNote(ClientSessionModel.ACTION_KEY, "AUTHENTICATE");
+        Assert.assertNotNull(ClientSessionCode.parse(code, realm.session, realm.model));
+
+        // Secret of the realm changed
+        TestRealm rotated = new TestRealm("realm", "other-secret");
+        rotated.clientSessions.put(clientSession.getId(), clientSession);
+        Assert.assertNull(ClientSessionCode.parse(code, rotated.session, rotated.model));
+
+        // Tampered code
+        char[] chars = code.toCharArray();
+        chars[chars.length - 1] = chars[chars.length - 1] == 'A' ? 'B' : 'A';
+        Assert.assertNull(ClientSessionCode.parse(new String(chars), realm.session, realm.model));
+
+        // Unknown client session
+        String unknown = new ClientSessionCode(realm.model, new TestRealm("realm", "secret").addClientSession(UUID.randomUUID().toString(), "AUTHENTICATE")).getCode();
+        Assert.assertTrue(ClientSessionCode.parseResult(unknown, realm.session, realm.model).isClientSessionNotFound());
+
+        // Malformed codes
+        Assert.assertTrue(ClientSessionCode.parseResult(null, realm.session, realm.model).isIllegalHash());
+        Assert.assertTrue(ClientSessionCode.parseResult("a.b.c", realm.session, realm.model).isIllegalHash());
+        Assert.assertTrue(ClientSessionCode.parseResult("abc", realm.session, realm.model).isIllegalHash());
+        Assert.assertTrue(ClientSessionCode.parseResult("*", realm.session, realm.model).isIllegalHash());
+        Assert.assertNull(ClientSessionCode.getClientSessionId("abc"));
+    }
+
+    /**
+     * Realm, client sessions and Keycloak session backed by dynamic proxies, which only implement the methods used by
+     * {@link ClientSessionCode}.
+     */
+    static class TestRealm {
+
+        final RealmModel model;
+        final KeycloakSession session;
+        final Map<String, ClientSessionModel> clientSessions = new HashMap<>();
+
+        TestRealm(final String id, final String codeSecret) {
+            model = proxy(RealmModel.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getId":
+                            return id;
+                        case "getCodeSecretKey":
+                            return KeycloakModelUtils.getSecretKey(codeSecret);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+            });
+
+            final UserSessionProvider sessions = proxy(UserSessionProvider.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getClientSession")) {
+                        return clientSessions.get((String) args[args.length - 1]);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+            session = proxy(KeycloakSession.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("sessions")) {
+                        return sessions;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        ClientSessionModel addClientSession(final String id, String action) {
+            final Map<String, String> notes = new HashMap<>();
+            notes.put(ClientSessionModel.ACTION_KEY, action);
+            ClientSessionModel clientSession = proxy(ClientSessionModel.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getId":
+                            return id;
+                        case "getRealm":
+                            return model;
+                        case "getNote":
+                            return notes.get((String) args[0]);
+                        case "setNote":
+                            return notes.put((String) args[0], (String) args[1]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+            });
+            clientSessions.put(id, clientSession);
+            return clientSession;
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(ClientSessionCodeTest.class.getClassLoader(), new Class<?>[] { type }, handler));
+        }
+    }
+
+}
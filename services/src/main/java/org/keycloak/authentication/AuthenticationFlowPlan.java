@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.authentication;
+
+import org.keycloak.models.AuthenticationExecutionModel;
+import org.keycloak.models.AuthenticationFlowModel;
+import org.keycloak.models.AuthenticatorConfigModel;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled execution plan of a basic authentication flow. Contains the executions of the flow with their resolved
+ * authenticator factories and configs, the plans of basic subflows and the requirement of each authenticator category.
+ *
+ * Plans are cached per flow. A cached plan is used as long as the realm returns the same list of executions it was
+ * compiled from, which is the case until the cached realm is invalidated. Realms that aren't cached return a new list
+ * for every call, so plans are compiled for every use in that case.
+ */
+public class AuthenticationFlowPlan {
+
+    // Plans of removed flows are never used again, so the cache is just cleared when it grows too large
+    private static final int MAX_CACHED_PLANS = 1000;
+
+    private static final ConcurrentHashMap<String, AuthenticationFlowPlan> plans = new ConcurrentHashMap<>();
+
+    private final KeycloakSessionFactory sessionFactory;
+    private final AuthenticationFlowModel flow;
+    private final List<AuthenticationExecutionModel> executions;
+    private final List<Step> steps;
+    private final Map<String, AuthenticationExecutionModel.Requirement> categoryRequirements;
+
+    public static AuthenticationFlowPlan get(RealmModel realm, KeycloakSessionFactory sessionFactory, AuthenticationFlowModel flow) {
+        AuthenticationFlowPlan plan = plans.get(flow.getId());
+        if (plan != null && plan.isCurrent(realm, sessionFactory, flow)) {
+            return plan;
+        }
+
+        plan = new AuthenticationFlowPlan(realm, sessionFactory, flow, new HashSet<String>());
+        if (plans.size() >= MAX_CACHED_PLANS) {
+            plans.clear();
+        }
+        plans.put(flow.getId(), plan);
+        return plan;
+    }
+
+    private AuthenticationFlowPlan(RealmModel realm, KeycloakSessionFactory sessionFactory, AuthenticationFlowModel flow, Set<String> compiling) {
+        this.sessionFactory = sessionFactory;
+        this.flow = flow;
+        this.executions = realm.getAuthenticationExecutions(flow.getId());
+
+        compiling.add(flow.getId());
+
+        List<Step> steps = new ArrayList<>(executions.size());
+        Map<String, AuthenticationExecutionModel.Requirement> categoryRequirements = new HashMap<>();
+        for (AuthenticationExecutionModel execution : executions) {
+            if (execution.isAuthenticatorFlow()) {
+                AuthenticationFlowPlan subflow = null;
+                AuthenticationFlowModel subflowModel = realm.getAuthenticationFlowById(execution.getFlowId());
+                // Recursive flows are left to be resolved when they are executed
+                if (subflowModel != null && isBasicFlow(subflowModel) && !compiling.contains(subflowModel.getId())) {
+                    subflow = new AuthenticationFlowPlan(realm, sessionFactory, subflowModel, compiling);
+                }
+                steps.add(new Step(execution, null, null, subflow));
+            } else {
+                AuthenticatorFactory factory = (AuthenticatorFactory) sessionFactory.getProviderFactory(Authenticator.class, execution.getAuthenticator());
+                AuthenticatorConfigModel config = execution.getAuthenticatorConfig() != null ? realm.getAuthenticatorConfigById(execution.getAuthenticatorConfig()) : null;
+                steps.add(new Step(execution, factory, config, null));
+
+                if (factory != null && factory.getReferenceCategory() != null && !categoryRequirements.containsKey(factory.getReferenceCategory())) {
+                    categoryRequirements.put(factory.getReferenceCategory(), execution.getRequirement());
+                }
+            }
+        }
+
+        compiling.remove(flow.getId());
+
+        this.steps = Collections.unmodifiableList(steps);
+        this.categoryRequirements = categoryRequirements;
+    }
+
+    static boolean isBasicFlow(AuthenticationFlowModel flow) {
+        return flow.getProviderId() == null || flow.getProviderId().equals(AuthenticationFlow.BASIC_FLOW);
+    }
+
+    private boolean isCurrent(RealmModel realm, KeycloakSessionFactory sessionFactory, AuthenticationFlowModel flow) {
+        return this.sessionFactory == sessionFactory && this.flow == flow && this.executions == realm.getAuthenticationExecutions(flow.getId());
+    }
+
+    public AuthenticationFlowModel getFlow() {
+        return flow;
+    }
+
+    public List<AuthenticationExecutionModel> getExecutions() {
+        return executions;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return requirement of the first execution in this flow with an authenticator of given category, or null if there's none
+     */
+    public AuthenticationExecutionModel.Requirement getCategoryRequirement(String authenticatorCategory) {
+        return categoryRequirements.get(authenticatorCategory);
+    }
+
+    public static class Step {
+
+        private final AuthenticationExecutionModel execution;
+        private final AuthenticatorFactory factory;
+        private final AuthenticatorConfigModel config;
+        private final AuthenticationFlowPlan subflow;
+
+        private Step(AuthenticationExecutionModel execution, AuthenticatorFactory factory, AuthenticatorConfigModel config, AuthenticationFlowPlan subflow) {
+            this.execution = execution;
+            this.factory = factory;
+            this.config = config;
+            this.subflow = subflow;
+        }
+
+        public AuthenticationExecutionModel getExecution() {
+            return execution;
+        }
+
+        /**
+         * @return factory of the authenticator, or null if the execution is a flow or the authenticator is not deployed
+         */
+        public AuthenticatorFactory getFactory() {
+            return factory;
+        }
+
+        public AuthenticatorConfigModel getConfig() {
+            return config;
+        }
+
+        /**
+         * @return plan of the subflow, or null if the execution isn't a basic flow
+         */
+        public AuthenticationFlowPlan getSubflow() {
+            return subflow;
+        }
+    }
+
+}
@@ -251,6 +251,7 @@ public class AuthenticationProcessor {
         Response challenge;
         AuthenticationFlowError error;
         List<AuthenticationExecutionModel> currentExecutions;
+        AuthenticationFlowPlan currentPlan;
         FormMessage errorMessage;
         FormMessage successMessage;
 
@@ -273,6 +274,9 @@ public class AuthenticationProcessor {
 
         @Override
         public AuthenticationExecutionModel.Requirement getCategoryRequirementFromCurrentFlow(String authenticatorCategory) {
+            if (currentPlan != null && currentPlan.getFlow().getId().equals(execution.getParentFlow())) {
+                return currentPlan.getCategoryRequirement(authenticatorCategory);
+            }
             List<AuthenticationExecutionModel> executions = realm.getAuthenticationExecutions(execution.getParentFlow());
             for (AuthenticationExecutionModel exe : executions) {
                 AuthenticatorFactory factory = (AuthenticatorFactory) getSession().getKeycloakSessionFactory().getProviderFactory(Authenticator.class, exe.getAuthenticator());
@@ -645,8 +649,8 @@ public class AuthenticationProcessor {
             logger.error("Unknown flow to execute with");
             throw new AuthenticationFlowException(AuthenticationFlowError.INTERNAL_ERROR);
         }
-        if (flow.getProviderId() == null || flow.getProviderId().equals(AuthenticationFlow.BASIC_FLOW)) {
-            DefaultAuthenticationFlow flowExecution = new DefaultAuthenticationFlow(this, flow);
+        if (AuthenticationFlowPlan.isBasicFlow(flow)) {
+            DefaultAuthenticationFlow flowExecution = new DefaultAuthenticationFlow(this, AuthenticationFlowPlan.get(realm, session.getKeycloakSessionFactory(), flow));
             return flowExecution;
 
         } else if (flow.getProviderId().equals(AuthenticationFlow.FORM_FLOW)) {
@@ -875,6 +879,13 @@ public class AuthenticationProcessor {
         return new Result(model, authenticator, executions);
     }
 
+    public AuthenticationProcessor.Result createAuthenticatorContext(AuthenticationFlowPlan.Step step, Authenticator authenticator, AuthenticationFlowPlan plan) {
+        Result result = new Result(step.getExecution(), authenticator, plan.getExecutions());
+        result.authenticatorConfig = step.getConfig();
+        result.currentPlan = plan;
+        return result;
+    }
+
     public AuthenticationProcessor.Result createClientAuthenticatorContext(AuthenticationExecutionModel model, ClientAuthenticator clientAuthenticator, List<AuthenticationExecutionModel> executions) {
         return new Result(model, clientAuthenticator, executions);
     }
@@ -37,15 +37,36 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
     AuthenticationExecutionModel challengedAlternativeExecution = null;
     boolean alternativeSuccessful = false;
     List<AuthenticationExecutionModel> executions;
-    Iterator<AuthenticationExecutionModel> executionIterator;
+    Iterator<AuthenticationFlowPlan.Step> stepIterator;
     AuthenticationProcessor processor;
     AuthenticationFlowModel flow;
+    AuthenticationFlowPlan plan;
 
     public DefaultAuthenticationFlow(AuthenticationProcessor processor, AuthenticationFlowModel flow) {
+        this(processor, AuthenticationFlowPlan.get(processor.getRealm(), processor.getSession().getKeycloakSessionFactory(), flow));
+    }
+
+    public DefaultAuthenticationFlow(AuthenticationProcessor processor, AuthenticationFlowPlan plan) {
         this.processor = processor;
-        this.flow = flow;
-        this.executions = processor.getRealm().getAuthenticationExecutions(flow.getId());
-        this.executionIterator = executions.iterator();
+        this.plan = plan;
+        this.flow = plan.getFlow();
+        this.executions = plan.getExecutions();
+        this.stepIterator = plan.getSteps().iterator();
+    }
+
+    protected AuthenticationFlow createSubflowExecution(AuthenticationFlowPlan.Step step) {
+        if (step.getSubflow() != null) {
+            return new DefaultAuthenticationFlow(processor, step.getSubflow());
+        }
+        return processor.createFlowExecution(step.getExecution().getFlowId(), step.getExecution());
+    }
+
+    protected AuthenticatorFactory getFactory(AuthenticationFlowPlan.Step step) {
+        AuthenticatorFactory factory = step.getFactory();
+        if (factory == null) {
+            throw new RuntimeException("Unable to find factory for AuthenticatorFactory: " + step.getExecution().getAuthenticator() + " did you forget to declare it in a META-INF/services file?");
+        }
+        return factory;
     }
 
     protected boolean isProcessed(AuthenticationExecutionModel model) {
@@ -61,8 +82,9 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
     @Override
     public Response processAction(String actionExecution) {
         logger.debugv("processAction: {0}", actionExecution);
-        while (executionIterator.hasNext()) {
-            AuthenticationExecutionModel model = executionIterator.next();
+        while (stepIterator.hasNext()) {
+            AuthenticationFlowPlan.Step step = stepIterator.next();
+            AuthenticationExecutionModel model = step.getExecution();
             logger.debugv("check: {0} requirement: {1}", model.getAuthenticator(), model.getRequirement().toString());
             if (isProcessed(model)) {
                 logger.debug("execution is processed");
@@ -71,15 +93,12 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
                 continue;
             }
             if (model.isAuthenticatorFlow()) {
-                AuthenticationFlow authenticationFlow = processor.createFlowExecution(model.getFlowId(), model);
+                AuthenticationFlow authenticationFlow = createSubflowExecution(step);
                 return authenticationFlow.processAction(actionExecution);
             } else if (model.getId().equals(actionExecution)) {
-                AuthenticatorFactory factory = (AuthenticatorFactory) processor.getSession().getKeycloakSessionFactory().getProviderFactory(Authenticator.class, model.getAuthenticator());
-                if (factory == null) {
-                    throw new RuntimeException("Unable to find factory for AuthenticatorFactory: " + model.getAuthenticator() + " did you forget to declare it in a META-INF/services file?");
-                }
+                AuthenticatorFactory factory = getFactory(step);
                 Authenticator authenticator = factory.create(processor.getSession());
-                AuthenticationProcessor.Result result = processor.createAuthenticatorContext(model, authenticator, executions);
+                AuthenticationProcessor.Result result = processor.createAuthenticatorContext(step, authenticator, plan);
                 logger.debugv("action: {0}", model.getAuthenticator());
                 authenticator.action(result);
                 Response response = processResult(result);
@@ -99,8 +118,9 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
     @Override
     public Response processFlow() {
         logger.debug("processFlow");
-        while (executionIterator.hasNext()) {
-            AuthenticationExecutionModel model = executionIterator.next();
+        while (stepIterator.hasNext()) {
+            AuthenticationFlowPlan.Step step = stepIterator.next();
+            AuthenticationExecutionModel model = step.getExecution();
             logger.debugv("check execution: {0} requirement: {1}", model.getAuthenticator(), model.getRequirement().toString());
 
             if (isProcessed(model)) {
@@ -116,7 +136,7 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
             }
             if (model.isAuthenticatorFlow()) {
                 logger.debug("execution is flow");
-                AuthenticationFlow authenticationFlow = processor.createFlowExecution(model.getFlowId(), model);
+                AuthenticationFlow authenticationFlow = createSubflowExecution(step);
                 Response flowChallenge = authenticationFlow.processFlow();
                 if (flowChallenge == null) {
                     processor.getClientSession().setExecutionStatus(model.getId(), ClientSessionModel.ExecutionStatus.SUCCESS);
@@ -140,10 +160,7 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
                 }
             }
 
-            AuthenticatorFactory factory = (AuthenticatorFactory) processor.getSession().getKeycloakSessionFactory().getProviderFactory(Authenticator.class, model.getAuthenticator());
-            if (factory == null) {
-                throw new RuntimeException("Unable to find factory for AuthenticatorFactory: " + model.getAuthenticator() + " did you forget to declare it in a META-INF/services file?");
-            }
+            AuthenticatorFactory factory = getFactory(step);
             Authenticator authenticator = factory.create(processor.getSession());
             logger.debugv("authenticator: {0}", factory.getId());
             UserModel authUser = processor.getClientSession().getAuthenticatedUser();
@@ -178,7 +195,7 @@ public class DefaultAuthenticationFlow implements AuthenticationFlow {
             Response redirect = processor.checkWasSuccessfulBrowserAction();
             if (redirect != null) return redirect;
 
-            AuthenticationProcessor.Result context = processor.createAuthenticatorContext(model, authenticator, executions);
+            AuthenticationProcessor.Result context = processor.createAuthenticatorContext(step, authenticator, plan);
             logger.debug("invoke authenticator.authenticate");
             authenticator.authenticate(context);
             Response response = processResult(context);
@@ -19,9 +19,11 @@ package org.keycloak.broker.oidc;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.common.ClientConnection;
 import org.keycloak.OAuth2Constants;
 import org.keycloak.broker.provider.util.SimpleHttp;
+import org.keycloak.broker.provider.util.SimpleHttpLimiter;
 import org.keycloak.broker.provider.AbstractIdentityProvider;
 import org.keycloak.broker.provider.AuthenticationRequest;
 import org.keycloak.broker.provider.BrokeredIdentityContext;
@@ -72,6 +74,9 @@ public abstract class AbstractOAuth2IdentityProvider<C extends OAuth2IdentityPro
     public static final String OAUTH2_PARAMETER_CLIENT_SECRET = "client_secret";
     public static final String OAUTH2_PARAMETER_GRANT_TYPE = "grant_type";
 
+    // Max time to wait for a request slot if the max concurrent requests are reached and no connect timeout is set
+    private static final int DEFAULT_LIMITER_MAX_WAIT = 10000;
+
 
     public AbstractOAuth2IdentityProvider(C config) {
         super(config);
@@ -180,6 +185,35 @@ public abstract class AbstractOAuth2IdentityProvider<C extends OAuth2IdentityPro
         return null;
     }
 
+    /**
+     * Creates a GET request to the identity provider. Requests are sent with the pooled http client if called within a
+     * Keycloak request and use the timeouts and the limit of concurrent requests of the identity provider.
+     */
+    protected SimpleHttp httpGet(String url) {
+        KeycloakSession session = ResteasyProviderFactory.getContextData(KeycloakSession.class);
+        return configure(session != null ? SimpleHttp.doGet(url, session) : SimpleHttp.doGet(url));
+    }
+
+    /**
+     * Creates a POST request to the identity provider, see {@link #httpGet(String)}
+     */
+    protected SimpleHttp httpPost(String url) {
+        KeycloakSession session = ResteasyProviderFactory.getContextData(KeycloakSession.class);
+        return configure(session != null ? SimpleHttp.doPost(url, session) : SimpleHttp.doPost(url));
+    }
+
+    private SimpleHttp configure(SimpleHttp request) {
+        C config = getConfig();
+        request.connectTimeout(config.getConnectTimeout()).socketTimeout(config.getSocketTimeout());
+
+        // Identity providers are created for each request, so limiters are shared by the internal id of the identity provider,
+        // which doesn't change on rename. Aliases are only unique within a realm, so the name contains both.
+        String id = config.getInternalId() != null ? config.getInternalId() : config.getAlias();
+        String name = config.getInternalId() != null ? config.getAlias() + "/" + config.getInternalId() : config.getAlias();
+        long maxWait = config.getConnectTimeout() > 0 ? config.getConnectTimeout() : DEFAULT_LIMITER_MAX_WAIT;
+        return request.limiter(SimpleHttpLimiter.get(id, name, config.getMaxConcurrentRequests(), maxWait));
+    }
+
     public JsonNode asJsonNode(String json) throws IOException {
         return mapper.readTree(json);
     }
@@ -249,7 +283,7 @@ public abstract class AbstractOAuth2IdentityProvider<C extends OAuth2IdentityPro
 
         public SimpleHttp generateTokenRequest(String authorizationCode) {
             JSSETruststoreConfigurator configurator = new JSSETruststoreConfigurator(session);
-            return SimpleHttp.doPost(getConfig().getTokenUrl())
+            return httpPost(getConfig().getTokenUrl())
                     .param(OAUTH2_PARAMETER_CODE, authorizationCode)
                     .param(OAUTH2_PARAMETER_CLIENT_ID, getConfig().getClientId())
                     .param(OAUTH2_PARAMETER_CLIENT_SECRET, getConfig().getClientSecret())
@@ -17,6 +17,7 @@
 
 package org.keycloak.broker.oidc;
 
+import org.keycloak.broker.provider.IdentityBrokerException;
 import org.keycloak.broker.provider.util.SimpleHttp;
 import org.keycloak.broker.provider.BrokeredIdentityContext;
 import org.keycloak.constants.AdapterConstants;
@@ -76,12 +77,15 @@ public class KeycloakOIDCIdentityProvider extends OIDCIdentityProvider {
                 logger.warn("Failed to verify logout request");
                 return Response.status(400).build();
             }
-            PublicKey key = getExternalIdpKey();
-            if (key != null) {
-                if (!verify(token, key)) {
+            try {
+                if (!verify(token, getExternalIdpKey())) {
                     logger.warn("Failed to verify logout request");
                     return Response.status(400).build();
                 }
+            } catch (IdentityBrokerException e) {
+                // No key of the external IDP matches the token
+                logger.warn("Failed to verify logout request: " + e.getMessage());
+                return Response.status(400).build();
             }
             LogoutAction action = null;
             try {
@@ -16,6 +16,7 @@
  */
 package org.keycloak.broker.oidc;
 
+import org.jboss.logging.Logger;
 import org.keycloak.models.IdentityProviderModel;
 
 /**
@@ -23,6 +24,8 @@ import org.keycloak.models.IdentityProviderModel;
  */
 public class OAuth2IdentityProviderConfig extends IdentityProviderModel {
 
+    private static final Logger logger = Logger.getLogger(OAuth2IdentityProviderConfig.class);
+
     public OAuth2IdentityProviderConfig(IdentityProviderModel model) {
         super(model);
     }
@@ -74,4 +77,51 @@ public class OAuth2IdentityProviderConfig extends IdentityProviderModel {
     public void setDefaultScope(String defaultScope) {
         getConfig().put("defaultScope", defaultScope);
     }
-}
\ No newline at end of file
+
+    /**
+     * @return timeout in milliseconds for connecting to the identity provider or -1 for the default of the http client
+     */
+    public int getConnectTimeout() {
+        return getInt("connectTimeout");
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        getConfig().put("connectTimeout", String.valueOf(connectTimeout));
+    }
+
+    /**
+     * @return timeout in milliseconds for responses of the identity provider or -1 for the default of the http client
+     */
+    public int getSocketTimeout() {
+        return getInt("socketTimeout");
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        getConfig().put("socketTimeout", String.valueOf(socketTimeout));
+    }
+
+    /**
+     * @return max count of concurrent requests to the identity provider or -1 for unlimited
+     */
+    public int getMaxConcurrentRequests() {
+        return getInt("maxConcurrentRequests");
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        getConfig().put("maxConcurrentRequests", String.valueOf(maxConcurrentRequests));
+    }
+
+    private int getInt(String name) {
+        String value = getConfig().get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            // Don't fail the login because of an invalid config value
+            logger.warnf("Invalid value '%s' of %s for identity provider %s, using default", value, name, getAlias());
+            return -1;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.keycloak.broker.oidc;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.broker.oidc.mappers.AbstractJsonUserAttributeMapper;
 import org.keycloak.broker.oidc.util.JsonSimpleHttp;
 import org.keycloak.broker.provider.util.SimpleHttp;
@@ -45,7 +46,6 @@ import org.keycloak.services.resources.IdentityBrokerService;
 import org.keycloak.services.resources.RealmsResource;
 import org.keycloak.truststore.JSSETruststoreConfigurator;
 import org.keycloak.util.JsonSerialization;
-import org.keycloak.common.util.PemUtils;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -86,13 +86,19 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
         return new OIDCEndpoint(callback, realm, event);
     }
 
+    /**
+     * @return the configured key of the external IDP or null if there's none or keys are resolved by kid from the JWKS URL
+     */
     protected PublicKey getExternalIdpKey() {
+        if (isUseJwks()) {
+            return null;
+        }
         String signingCert = getConfig().getCertificateSignatureVerifier();
         try {
             if (signingCert != null && !signingCert.trim().equals("")) {
-                return PemUtils.decodeCertificate(signingCert).getPublicKey();
+                return OIDCIdentityProviderKeyCache.getPemKey(signingCert, true);
             } else if (getConfig().getPublicKeySignatureVerifier() != null && !getConfig().getPublicKeySignatureVerifier().trim().equals("")) {
-                return PemUtils.decodePublicKey(getConfig().getPublicKeySignatureVerifier());
+                return OIDCIdentityProviderKeyCache.getPemKey(getConfig().getPublicKeySignatureVerifier(), false);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -101,6 +107,21 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
 
     }
 
+    /**
+     * @return the key from the JWKS URL, which matches the kid of the token, or null if the JWKS URL isn't configured
+     */
+    protected PublicKey getExternalIdpKey(JWSInput jws) {
+        if (!isUseJwks()) {
+            return null;
+        }
+        KeycloakSession session = ResteasyProviderFactory.getContextData(KeycloakSession.class);
+        return OIDCIdentityProviderKeyCache.getJwksKey(session, getConfig().getJwksUrl(), jws.getHeader().getKeyId());
+    }
+
+    private boolean isUseJwks() {
+        return getConfig().getJwksUrl() != null && !getConfig().getJwksUrl().trim().equals("");
+    }
+
     protected class OIDCEndpoint extends Endpoint {
         public OIDCEndpoint(AuthenticationCallback callback, RealmModel realm, EventBuilder event) {
             super(callback, realm, event);
@@ -147,7 +168,7 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
         logoutUri.queryParam("id_token_hint", idToken);
         String url = logoutUri.build().toString();
         try {
-            int status = JsonSimpleHttp.doGet(url).asStatus();
+            int status = httpGet(url).asStatus();
             boolean success = status >=200 && status < 400;
             if (!success) {
                 logger.warn("Failed backchannel broker logout to: " + url);
@@ -191,7 +212,7 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
         String refreshToken = userSession.getNote(FEDERATED_REFRESH_TOKEN);
         JSSETruststoreConfigurator configurator = new JSSETruststoreConfigurator(session);
         try {
-            return SimpleHttp.doPost(getConfig().getTokenUrl())
+            return httpPost(getConfig().getTokenUrl())
                     .param("refresh_token", refreshToken)
                     .param(OAUTH2_PARAMETER_GRANT_TYPE, OAUTH2_GRANT_TYPE_REFRESH_TOKEN)
                     .param(OAUTH2_PARAMETER_CLIENT_ID, getConfig().getClientId())
@@ -262,7 +283,7 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
             String email = (String)idToken.getOtherClaims().get(IDToken.EMAIL);
 
             if (getConfig().getUserInfoUrl() != null && (id == null || name == null || preferredUsername == null || email == null) ) {
-                SimpleHttp request = JsonSimpleHttp.doGet(getConfig().getUserInfoUrl())
+                SimpleHttp request = httpGet(getConfig().getUserInfoUrl())
                         .header("Authorization", "Bearer " + accessToken);
                 JsonNode userInfo = JsonSimpleHttp.asJson(request);
 
@@ -315,8 +336,9 @@ public class OIDCIdentityProvider extends AbstractOAuth2IdentityProvider<OIDCIde
     }
 
     protected boolean verify(JWSInput jws, PublicKey key) {
-        if (key == null) return true;
         if (!getConfig().isValidateSignature()) return true;
+        if (key == null) key = getExternalIdpKey(jws);
+        if (key == null) return true;
         return RSAProvider.verify(jws, key);
 
     }
@@ -61,6 +61,14 @@ public class OIDCIdentityProviderConfig extends OAuth2IdentityProviderConfig {
         getConfig().put("publicKeySignatureVerifier", signingCertificate);
     }
 
+    public String getJwksUrl() {
+        return getConfig().get("jwksUrl");
+    }
+
+    public void setJwksUrl(String jwksUrl) {
+        getConfig().put("jwksUrl", jwksUrl);
+    }
+
     public boolean isValidateSignature() {
         return Boolean.valueOf(getConfig().get("validateSignature"));
     }
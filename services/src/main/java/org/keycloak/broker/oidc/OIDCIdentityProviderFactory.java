@@ -16,13 +16,14 @@
  */
 package org.keycloak.broker.oidc;
 
+import org.keycloak.Config;
 import org.keycloak.broker.provider.util.SimpleHttp;
 import org.keycloak.broker.provider.AbstractIdentityProviderFactory;
 import org.keycloak.jose.jwk.JWK;
 import org.keycloak.jose.jwk.JWKParser;
 import org.keycloak.models.IdentityProviderModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
-import org.keycloak.protocol.oidc.representations.JSONWebKeySet;
+import org.keycloak.jose.jwk.JSONWebKeySet;
 import org.keycloak.protocol.oidc.representations.OIDCConfigurationRepresentation;
 import org.keycloak.util.JsonSerialization;
 
@@ -43,6 +44,12 @@ public class OIDCIdentityProviderFactory extends AbstractIdentityProviderFactory
         return "OpenID Connect v1.0";
     }
 
+    @Override
+    public void init(Config.Scope config) {
+        OIDCIdentityProviderKeyCache.setTimeouts(config.getInt("jwksCacheTtl", OIDCIdentityProviderKeyCache.DEFAULT_TTL),
+                config.getInt("jwksMinTimeBetweenRequests", OIDCIdentityProviderKeyCache.DEFAULT_MIN_TIME_BETWEEN_REQUESTS));
+    }
+
     @Override
     public OIDCIdentityProvider create(IdentityProviderModel model) {
         return new OIDCIdentityProvider(new OIDCIdentityProviderConfig(model));
@@ -73,6 +80,7 @@ public class OIDCIdentityProviderFactory extends AbstractIdentityProviderFactory
         config.setUserInfoUrl(rep.getUserinfoEndpoint());
         if (rep.getJwksUri() != null) {
             String uri = rep.getJwksUri();
+            config.setJwksUrl(uri);
             String keySetString = null;
             try {
                 keySetString = SimpleHttp.doGet(uri).asString();
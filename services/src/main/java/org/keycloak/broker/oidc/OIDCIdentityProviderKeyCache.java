@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.broker.oidc;
+
+import org.jboss.logging.Logger;
+import org.keycloak.broker.provider.IdentityBrokerException;
+import org.keycloak.common.util.PemUtils;
+import org.keycloak.common.util.Time;
+import org.keycloak.connections.httpclient.HttpClientProvider;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKParser;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the public keys of external identity providers, so brokered logins don't parse keys. Keys configured in PEM format
+ * are cached by their encoded form. Keys of a JWKS URL are cached by kid: the key set is fetched again when it's older than
+ * the TTL or when a token is signed with an unknown kid, but not more often than once per min time between requests. If
+ * fetching fails, the previously fetched keys are used.
+ */
+public class OIDCIdentityProviderKeyCache {
+
+    private static final Logger logger = Logger.getLogger(OIDCIdentityProviderKeyCache.class);
+
+    public static final int DEFAULT_TTL = 3600;
+    public static final int DEFAULT_MIN_TIME_BETWEEN_REQUESTS = 10;
+
+    private static final int MAX_PEM_KEYS = 1000;
+
+    private static final ConcurrentHashMap<String, KeySet> keySets = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, PublicKey> pemKeys = new ConcurrentHashMap<>();
+
+    private static volatile int ttl = DEFAULT_TTL;
+    private static volatile int minTimeBetweenRequests = DEFAULT_MIN_TIME_BETWEEN_REQUESTS;
+
+    /**
+     * Configured by the init of {@link OIDCIdentityProviderFactory}, the cache is shared by all OIDC based providers.
+     */
+    public static void setTimeouts(int ttlSeconds, int minTimeBetweenRequestsSeconds) {
+        ttl = ttlSeconds;
+        minTimeBetweenRequests = minTimeBetweenRequestsSeconds;
+    }
+
+    /**
+     * @param kid key id from the header of the token, or null if the token doesn't specify one
+     * @return the key, never null
+     * @throws IdentityBrokerException if the key set doesn't contain the key
+     */
+    public static PublicKey getJwksKey(KeycloakSession session, String jwksUrl, String kid) {
+        KeySet keySet = keySets.get(jwksUrl);
+        if (keySet == null) {
+            keySets.putIfAbsent(jwksUrl, new KeySet());
+            keySet = keySets.get(jwksUrl);
+        }
+
+        PublicKey key = keySet.getKey(kid);
+        if (key == null || keySet.isExpired()) {
+            synchronized (keySet) {
+                key = keySet.getKey(kid);
+                if ((key == null || keySet.isExpired()) && keySet.mayRequest()) {
+                    keySet.refresh(session, jwksUrl);
+                    key = keySet.getKey(kid);
+                }
+            }
+        }
+
+        if (key == null) {
+            throw new IdentityBrokerException(kid != null ? "No key with kid '" + kid + "' in key set " + jwksUrl : "No key id in token and key set " + jwksUrl + " doesn't contain exactly one key");
+        }
+        return key;
+    }
+
+    public static PublicKey getPemKey(String pem, boolean certificate) throws Exception {
+        PublicKey key = pemKeys.get(pem);
+        if (key == null) {
+            key = certificate ? PemUtils.decodeCertificate(pem).getPublicKey() : PemUtils.decodePublicKey(pem);
+            if (pemKeys.size() >= MAX_PEM_KEYS) {
+                pemKeys.clear();
+            }
+            pemKeys.put(pem, key);
+        }
+        return key;
+    }
+
+    public static void clear() {
+        keySets.clear();
+        pemKeys.clear();
+    }
+
+    private static class KeySet {
+
+        private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+        private volatile PublicKey singleKey;
+        private volatile int lastRequest;
+        private volatile int expires;
+
+        private PublicKey getKey(String kid) {
+            return kid != null ? keys.get(kid) : singleKey;
+        }
+
+        private boolean isExpired() {
+            return Time.currentTime() >= expires;
+        }
+
+        private boolean mayRequest() {
+            return Time.currentTime() >= lastRequest + minTimeBetweenRequests;
+        }
+
+        private void refresh(KeycloakSession session, String jwksUrl) {
+            lastRequest = Time.currentTime();
+            try {
+                JSONWebKeySet keySet;
+                InputStream is = session.getProvider(HttpClientProvider.class).get(jwksUrl);
+                if (is == null) {
+                    throw new IOException("Empty response");
+                }
+                try {
+                    keySet = JsonSerialization.readValue(is, JSONWebKeySet.class);
+                } finally {
+                    is.close();
+                }
+
+                Map<String, PublicKey> keys = new HashMap<>();
+                PublicKey lastKey = null;
+                int count = 0;
+                if (keySet.getKeys() != null) {
+                    for (JWK jwk : keySet.getKeys()) {
+                        if ((jwk.getPublicKeyUse() == null || jwk.getPublicKeyUse().equals(JWK.SIG_USE)) && OIDCIdentityProviderFactory.keyTypeSupported(jwk.getKeyType())) {
+                            lastKey = JWKParser.create(jwk).toPublicKey();
+                            count++;
+                            if (jwk.getKeyId() != null) {
+                                keys.put(jwk.getKeyId(), lastKey);
+                            }
+                        }
+                    }
+                }
+
+                this.keys = keys;
+                this.singleKey = count == 1 ? lastKey : null;
+                this.expires = lastRequest + ttl;
+                logger.debugf("Fetched %d keys from %s", count, jwksUrl);
+            } catch (Exception e) {
+                logger.warnf(e, "Failed to fetch keys from %s, using previously fetched keys", jwksUrl);
+            }
+        }
+    }
+
+}
@@ -27,6 +27,8 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.broker.provider.util.SimpleHttpLimiter;
+import org.keycloak.provider.ServerInfoAwareProviderFactory;
 import org.keycloak.truststore.TruststoreProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
@@ -36,12 +38,14 @@ import org.keycloak.common.util.KeystoreUtil;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class DefaultHttpClientFactory implements HttpClientFactory {
+public class DefaultHttpClientFactory implements HttpClientFactory, ServerInfoAwareProviderFactory {
 
     private static final Logger logger = Logger.getLogger(DefaultHttpClientFactory.class);
 
@@ -177,6 +181,27 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 
     }
 
+    /**
+     * Request metrics of the identity providers, which send their requests through the pooled client
+     */
+    @Override
+    public Map<String, String> getOperationalInfo() {
+        Map<String, String> info = new TreeMap<>();
+        for (SimpleHttpLimiter limiter : SimpleHttpLimiter.getLimiters()) {
+            String prefix = "limiter." + limiter.getName() + ".";
+            info.put(prefix + "requests", Long.toString(limiter.getRequests()));
+            info.put(prefix + "failures", Long.toString(limiter.getFailures()));
+            info.put(prefix + "rejected", Long.toString(limiter.getRejected()));
+            info.put(prefix + "averageMillis", Long.toString(limiter.getAverageMillis()));
+            info.put(prefix + "maxMillis", Long.toString(limiter.getMaxMillis()));
+            if (limiter.getMaxConcurrentRequests() > 0) {
+                info.put(prefix + "maxConcurrentRequests", Integer.toString(limiter.getMaxConcurrentRequests()));
+                info.put(prefix + "activeRequests", Integer.toString(limiter.getActiveRequests()));
+            }
+        }
+        return info;
+    }
+
 
 
 }
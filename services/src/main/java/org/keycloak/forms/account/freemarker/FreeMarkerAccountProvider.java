@@ -208,7 +208,8 @@ public class FreeMarkerAccountProvider implements AccountProvider {
         }
 
         try {
-            String result = freeMarker.processTemplate(attributes, Templates.getTemplate(page), theme);
+            String templateName = Templates.getTemplate(page);
+            Object result = freeMarker.isRenderTemplatesToBytes() ? freeMarker.renderTemplateToBytes(attributes, templateName, theme) : freeMarker.processTemplate(attributes, templateName, theme);
             Response.ResponseBuilder builder = Response.status(status).type(MediaType.TEXT_HTML_UTF_8_TYPE).language(locale).entity(result);
             BrowserSecurityHeaderSetup.headers(builder, realm);
             return builder.build();
@@ -311,7 +311,7 @@ public class FreeMarkerLoginFormsProvider implements LoginFormsProvider {
         }
 
         try {
-            String result = freeMarker.processTemplate(attributes, Templates.getTemplate(page), theme);
+            Object result = processTemplate(attributes, Templates.getTemplate(page), theme);
             Response.ResponseBuilder builder = Response.status(status).type(MediaType.TEXT_HTML_UTF_8).entity(result);
             BrowserSecurityHeaderSetup.headers(builder, realm);
             for (Map.Entry<String, String> entry : httpResponseHeaders.entrySet()) {
@@ -412,7 +412,7 @@ public class FreeMarkerLoginFormsProvider implements LoginFormsProvider {
             attributes.put("authenticatorConfigured", new AuthenticatorConfiguredMethod(realm, user, session));
         }
         try {
-            String result = freeMarker.processTemplate(attributes, form, theme);
+            Object result = processTemplate(attributes, form, theme);
             Response.ResponseBuilder builder = Response.status(status).type(MediaType.TEXT_HTML_UTF_8_TYPE).language(locale).entity(result);
             BrowserSecurityHeaderSetup.headers(builder, realm);
             for (Map.Entry<String, String> entry : httpResponseHeaders.entrySet()) {
@@ -426,6 +426,14 @@ public class FreeMarkerLoginFormsProvider implements LoginFormsProvider {
     }
 
 
+    private Object processTemplate(Map<String, Object> attributes, String templateName, Theme theme) throws FreeMarkerException {
+        if (freeMarker.isRenderTemplatesToBytes()) {
+            return freeMarker.renderTemplateToBytes(attributes, templateName, theme);
+        } else {
+            return freeMarker.processTemplate(attributes, templateName, theme);
+        }
+    }
+
     @Override
     public Response createLogin() {
         return createResponse(LoginFormsPages.LOGIN);
@@ -28,6 +28,7 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.managers.AuthenticationManager;
+import org.keycloak.services.managers.ClientSessionCode;
 import org.keycloak.services.util.CookieHelper;
 
 import javax.crypto.SecretKey;
@@ -168,9 +169,8 @@ public class RestartLoginCookie {
             return null;
         }
         RestartLoginCookie cookie = input.readJsonContent(RestartLoginCookie.class);
-        String[] parts = code.split("\\.");
-        String clientSessionId = parts[1];
-        if (!clientSessionId.equals(cookie.getClientSession())) {
+        String clientSessionId = ClientSessionCode.getClientSessionId(code);
+        if (clientSessionId == null || !clientSessionId.equals(cookie.getClientSession())) {
             logger.debug("RestartLoginCookie clientSession does not match code's clientSession");
             return null;
         }
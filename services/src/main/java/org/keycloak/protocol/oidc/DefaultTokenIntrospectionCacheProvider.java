@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.representations.AccessToken;
+
+public class DefaultTokenIntrospectionCacheProvider implements TokenIntrospectionCacheProvider {
+
+    private final KeycloakSession session;
+    private final TokenIntrospectionCache cache;
+
+    public DefaultTokenIntrospectionCacheProvider(KeycloakSession session, TokenIntrospectionCache cache) {
+        this.session = session;
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return cache.getMaxBatchSize();
+    }
+
+    @Override
+    public byte[] get(RealmModel realm, String tokenType, String token) {
+        return cache.get(realm, tokenType, token);
+    }
+
+    @Override
+    public void put(RealmModel realm, String tokenType, String token, AccessToken parsed, byte[] response) {
+        cache.put(realm, tokenType, token, parsed, response);
+    }
+
+    @Override
+    public void invalidateUser(RealmModel realm, String userId) {
+        cache.invalidateAfterCommit(session, new SessionResponseCache.InvalidationEvent(realm.getId(), userId, null));
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.events.admin.AdminEvent;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserSessionModel;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class DefaultUserInfoCacheProvider implements UserInfoCacheProvider {
+
+    private static final String USERS_PATH = "users/";
+
+    private final KeycloakSession session;
+    private final UserInfoCache cache;
+
+    // Requests often send several admin events for the same user or realm, each of them is invalidated once
+    private final Set<String> invalidations = new HashSet<>();
+
+    public DefaultUserInfoCacheProvider(KeycloakSession session, UserInfoCache cache) {
+        this.session = session;
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    @Override
+    public UserInfoCache.Entry get(RealmModel realm, String userSessionId, String clientId) {
+        return cache.get(realm, userSessionId, clientId);
+    }
+
+    @Override
+    public void put(RealmModel realm, UserSessionModel userSession, ClientModel client, UserModel user, byte[] response) {
+        cache.put(realm, userSession, client, user, response);
+    }
+
+    @Override
+    public void invalidateUser(RealmModel realm, String userId) {
+        invalidate(realm.getId(), userId);
+    }
+
+    @Override
+    public void invalidate(AdminEvent event) {
+        String path = event.getResourcePath();
+        if (path != null && path.startsWith(USERS_PATH)) {
+            int end = path.indexOf('/', USERS_PATH.length());
+            invalidate(event.getRealmId(), end != -1 ? path.substring(USERS_PATH.length(), end) : path.substring(USERS_PATH.length()));
+        } else {
+            invalidate(event.getRealmId(), null);
+        }
+    }
+
+    private void invalidate(String realmId, String userId) {
+        if (!cache.isEnabled() || realmId == null || !invalidations.add(realmId + ":" + userId)) {
+            return;
+        }
+        cache.invalidateAfterCommit(session, new SessionResponseCache.InvalidationEvent(realmId, userId, null));
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
+
+/**
+ * The cache is shared by all sessions of the server.  It's disabled unless "cacheTtl" is set.
+ */
+public class DefaultUserInfoCacheProviderFactory implements UserInfoCacheProviderFactory {
+
+    private volatile UserInfoCache cache;
+    private volatile boolean listenerRegistered;
+
+    @Override
+    public UserInfoCacheProvider create(KeycloakSession session) {
+        lazyInit(session);
+        return new DefaultUserInfoCacheProvider(session, cache);
+    }
+
+    private void lazyInit(KeycloakSession session) {
+        if (!listenerRegistered) {
+            synchronized (this) {
+                if (!listenerRegistered) {
+                    cache.registerListener(session);
+                    listenerRegistered = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        cache = new UserInfoCache(config.getInt("cacheTtl", 0), config.getInt("cacheMaxSize", 10000));
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        factory.register(new ProviderEventListener() {
+            @Override
+            public void onEvent(ProviderEvent event) {
+                if (event instanceof UserSessionModel.UserSessionsRemovedEvent && cache.isEnabled()) {
+                    cache.onUserSessionsRemoved((UserSessionModel.UserSessionsRemovedEvent) event);
+                }
+            }
+        });
+    }
+
+    public UserInfoCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        cache.clear();
+    }
+
+    @Override
+    public String getId() {
+        return "default";
+    }
+
+}
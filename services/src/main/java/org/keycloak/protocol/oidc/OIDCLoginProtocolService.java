@@ -21,17 +21,18 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.OAuth2Constants;
 import org.keycloak.events.EventBuilder;
+import org.keycloak.jose.jwk.JSONWebKeySet;
 import org.keycloak.jose.jwk.JWK;
 import org.keycloak.jose.jwk.JWKBuilder;
 import org.keycloak.forms.login.LoginFormsProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.protocol.oidc.endpoints.AuthorizationEndpoint;
 import org.keycloak.protocol.oidc.endpoints.LoginStatusIframeEndpoint;
 import org.keycloak.protocol.oidc.endpoints.LogoutEndpoint;
 import org.keycloak.protocol.oidc.endpoints.TokenEndpoint;
 import org.keycloak.protocol.oidc.endpoints.UserInfoEndpoint;
-import org.keycloak.protocol.oidc.representations.JSONWebKeySet;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.resources.RealmsResource;
 
@@ -45,6 +46,9 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import java.security.PublicKey;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Resource class for the oauth/openid connect token service
@@ -165,8 +169,19 @@ public class OIDCLoginProtocolService {
     @Produces(MediaType.APPLICATION_JSON)
     @NoCache
     public JSONWebKeySet certs() {
+        List<JWK> keys = new LinkedList<>();
+        keys.add(JWKBuilder.create().rs256(realm.getPublicKey()));
+
+        // Tokens signed by passive keys are still valid, so clients need them until they expire
+        for (RealmKeyModel key : realm.getPassiveKeys()) {
+            PublicKey publicKey = realm.getPassivePublicKey(key.getKid());
+            if (publicKey != null) {
+                keys.add(JWKBuilder.create().rs256(publicKey));
+            }
+        }
+
         JSONWebKeySet keySet = new JSONWebKeySet();
-        keySet.setKeys(new JWK[]{JWKBuilder.create().rs256(realm.getPublicKey())});
+        keySet.setKeys(keys.toArray(new JWK[keys.size()]));
         return keySet;
     }
 
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.protocol.oidc;
+
+import org.jboss.logging.Logger;
+import org.keycloak.cluster.ClusterEvent;
+import org.keycloak.cluster.ClusterListener;
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.common.util.Time;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.models.UserSessionModel;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short lived cache of responses, which belong to a user session.
+ *
+ * Entries expire at the expiration set by the subclass, which is at most the configured TTL. Invalidations are sent
+ * through the {@link ClusterProvider}, so they apply to all cluster nodes. Removal of user sessions, published by the
+ * user session provider after commit, invalidates the entries of the removed sessions. Sessions removed because they
+ * expired are not reported, so their entries live until the TTL at the latest, as do entries computed concurrently with
+ * an invalidation.
+ *
+ * The cache is disabled unless the TTL is set.
+ */
+public abstract class SessionResponseCache<E extends SessionResponseCache.Entry> {
+
+    private static final Logger logger = Logger.getLogger(SessionResponseCache.class);
+
+    private final ConcurrentHashMap<String, E> entries = new ConcurrentHashMap<>();
+    private final String clusterTaskKey;
+    protected final int ttl;
+    private final int maxSize;
+
+    protected SessionResponseCache(String clusterTaskKey, int ttl, int maxSize) {
+        this.clusterTaskKey = clusterTaskKey;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Registers the listener for invalidations sent by this and other cluster nodes.
+     */
+    void registerListener(KeycloakSession session) {
+        if (isEnabled()) {
+            session.getProvider(ClusterProvider.class).registerListener(clusterTaskKey, new InvalidationListener(this));
+            logger.debugf("Cache %s enabled with TTL %d seconds", clusterTaskKey, ttl);
+        }
+    }
+
+    public boolean isEnabled() {
+        return ttl > 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the entry or null if there is none or it expired
+     */
+    protected E getEntry(String key) {
+        E entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiration <= Time.currentTime()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    protected void removeEntry(String key, E entry) {
+        entries.remove(key, entry);
+    }
+
+    /**
+     * Adds the entry unless it already expired or the cache is full.
+     */
+    protected void putEntry(String key, E entry) {
+        int currentTime = Time.currentTime();
+        if (entry.expiration <= currentTime) {
+            return;
+        }
+
+        if (entries.size() >= maxSize) {
+            removeExpired(currentTime);
+            if (entries.size() >= maxSize) {
+                return;
+            }
+        }
+
+        entries.put(key, entry);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    void onUserSessionsRemoved(UserSessionModel.UserSessionsRemovedEvent event) {
+        notify(event.getKeycloakSession(), new InvalidationEvent(event.getRealmId(), event.getUserId(), event.getUserSessionId()));
+    }
+
+    /**
+     * Invalidates the matching entries on all cluster nodes once the transaction of the session is committed.
+     */
+    void invalidateAfterCommit(final KeycloakSession session, final InvalidationEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        session.getTransaction().enlistAfterCompletion(new KeycloakTransaction() {
+            @Override
+            public void begin() {
+            }
+
+            @Override
+            public void commit() {
+                SessionResponseCache.this.notify(session, event);
+            }
+
+            @Override
+            public void rollback() {
+            }
+
+            @Override
+            public void setRollbackOnly() {
+            }
+
+            @Override
+            public boolean getRollbackOnly() {
+                return false;
+            }
+
+            @Override
+            public boolean isActive() {
+                return false;
+            }
+        });
+    }
+
+    void notify(KeycloakSession session, InvalidationEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        // Listeners are notified on this node as well
+        session.getProvider(ClusterProvider.class).notify(clusterTaskKey, event);
+    }
+
+    void invalidate(InvalidationEvent event) {
+        int removed = 0;
+        for (Iterator<E> itr = entries.values().iterator(); itr.hasNext(); ) {
+            E entry = itr.next();
+            if (entry.realmId.equals(event.getRealmId())
+                    && (event.getUserId() == null || event.getUserId().equals(entry.userId))
+                    && (event.getUserSessionId() == null || event.getUserSessionId().equals(entry.userSessionId))) {
+                itr.remove();
+                removed++;
+            }
+        }
+        logger.tracef("Invalidated %d entries of %s of realm %s, user %s, user session %s", removed, clusterTaskKey,
+                event.getRealmId(), event.getUserId(), event.getUserSessionId());
+    }
+
+    private void removeExpired(int currentTime) {
+        for (Iterator<E> itr = entries.values().iterator(); itr.hasNext(); ) {
+            if (itr.next().expiration <= currentTime) {
+                itr.remove();
+            }
+        }
+    }
+
+    public static class Entry {
+
+        final String realmId;
+        final String userId;
+        final String userSessionId;
+        final int expiration;
+        private final byte[] response;
+
+        protected Entry(String realmId, String userId, String userSessionId, int expiration, byte[] response) {
+            this.realmId = realmId;
+            this.userId = userId;
+            this.userSessionId = userSessionId;
+            this.expiration = expiration;
+            this.response = response;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUserSessionId() {
+            return userSessionId;
+        }
+
+        /**
+         * @return the serialized response
+         */
+        public byte[] getResponse() {
+            return response;
+        }
+    }
+
+    private static class InvalidationListener implements ClusterListener {
+
+        private final SessionResponseCache<?> cache;
+
+        private InvalidationListener(SessionResponseCache<?> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public void run(ClusterEvent event) {
+            cache.invalidate((InvalidationEvent) event);
+        }
+    }
+
+    // Null user id and user session id invalidate all entries of the realm
+    public static class InvalidationEvent implements ClusterEvent {
+
+        private String realmId;
+        private String userId;
+        private String userSessionId;
+
+        public InvalidationEvent() {
+        }
+
+        public InvalidationEvent(String realmId, String userId, String userSessionId) {
+            this.realmId = realmId;
+            this.userId = userId;
+            this.userSessionId = userSessionId;
+        }
+
+        public String getRealmId() {
+            return realmId;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUserSessionId() {
+            return userSessionId;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.common.util.Time;
+import org.keycloak.models.RealmModel;
+import org.keycloak.representations.AccessToken;
+
+/**
+ * Short lived cache of token introspection responses.
+ *
+ * Entries are keyed by the realm, the token type and the encoded token, so a cache hit implies the token was already
+ * verified with the realm key and verification can be skipped. Entries expire after the configured TTL or when the token
+ * expires, whatever comes first, and are ignored if the token was issued before the not-before of the realm. Removal of
+ * user sessions and disabling users invalidate the affected entries, see {@link SessionResponseCache}.
+ *
+ * Owned by {@link DefaultTokenIntrospectionCacheProviderFactory}.
+ */
+public class TokenIntrospectionCache extends SessionResponseCache<TokenIntrospectionCache.Entry> {
+
+    public static final String CLUSTER_TASK_KEY = "token-introspection-invalidation";
+
+    private final int maxBatchSize;
+
+    public TokenIntrospectionCache(int ttl, int maxSize, int maxBatchSize) {
+        super(CLUSTER_TASK_KEY, ttl, maxSize);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the cached response or null
+     */
+    public byte[] get(RealmModel realm, String tokenType, String token) {
+        String key = key(realm, tokenType, token);
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.issuedAt < realm.getNotBefore()) {
+            removeEntry(key, entry);
+            return null;
+        }
+        return entry.getResponse();
+    }
+
+    public void put(RealmModel realm, String tokenType, String token, AccessToken parsed, byte[] response) {
+        int expiration = Time.currentTime() + ttl;
+        if (parsed.getExpiration() > 0 && parsed.getExpiration() < expiration) {
+            expiration = parsed.getExpiration();
+        }
+
+        putEntry(key(realm, tokenType, token), new Entry(realm.getId(), parsed.getSubject(), parsed.getSessionState(),
+                parsed.getIssuedAt(), expiration, response));
+    }
+
+    private static String key(RealmModel realm, String tokenType, String token) {
+        return realm.getId() + ":" + tokenType + ":" + token;
+    }
+
+    static class Entry extends SessionResponseCache.Entry {
+
+        private final int issuedAt;
+
+        private Entry(String realmId, String userId, String userSessionId, int issuedAt, int expiration, byte[] response) {
+            super(realmId, userId, userSessionId, expiration, response);
+            this.issuedAt = issuedAt;
+        }
+    }
+
+}
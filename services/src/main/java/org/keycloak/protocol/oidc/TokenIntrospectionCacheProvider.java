@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.models.RealmModel;
+import org.keycloak.provider.Provider;
+import org.keycloak.representations.AccessToken;
+
+/**
+ * Cache of token introspection responses.  Entries of removed user sessions are invalidated when the removal is committed.
+ */
+public interface TokenIntrospectionCacheProvider extends Provider {
+
+    boolean isEnabled();
+
+    int getMaxBatchSize();
+
+    /**
+     * @return the cached response or null
+     */
+    byte[] get(RealmModel realm, String tokenType, String token);
+
+    void put(RealmModel realm, String tokenType, String token, AccessToken parsed, byte[] response);
+
+    /**
+     * Invalidates the entries of the user on all cluster nodes once the current transaction is committed.
+     */
+    void invalidateUser(RealmModel realm, String userId);
+
+}
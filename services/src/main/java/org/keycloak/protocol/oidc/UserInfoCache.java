@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.common.util.Time;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserSessionModel;
+
+/**
+ * Short lived cache of userinfo responses.
+ *
+ * Entries are keyed by the realm, the user session and the client, so all access tokens of a client session share the
+ * same entry. The token itself is still verified on every request, but a cache hit skips loading the sessions and the user
+ * and running the protocol mappers. Entries expire after the configured TTL or when the user session would expire without
+ * being refreshed, whatever comes first. Removal of user sessions and admin changes invalidate the affected entries, see
+ * {@link SessionResponseCache} and {@link UserInfoCacheProvider}. Other changes of the claims, for example by user
+ * federation providers, are visible after the TTL at the latest.
+ *
+ * Owned by {@link DefaultUserInfoCacheProviderFactory}.
+ */
+public class UserInfoCache extends SessionResponseCache<UserInfoCache.Entry> {
+
+    public static final String CLUSTER_TASK_KEY = "user-info-invalidation";
+
+    public UserInfoCache(int ttl, int maxSize) {
+        super(CLUSTER_TASK_KEY, ttl, maxSize);
+    }
+
+    /**
+     * @return the cached entry or null
+     */
+    public Entry get(RealmModel realm, String userSessionId, String clientId) {
+        if (userSessionId == null || clientId == null) {
+            return null;
+        }
+        return getEntry(key(realm, userSessionId, clientId));
+    }
+
+    public void put(RealmModel realm, UserSessionModel userSession, ClientModel client, UserModel user, byte[] response) {
+        int expiration = Math.min(Time.currentTime() + ttl, Math.min(userSession.getLastSessionRefresh() + realm.getSsoSessionIdleTimeout(),
+                userSession.getStarted() + realm.getSsoSessionMaxLifespan()));
+
+        putEntry(key(realm, userSession.getId(), client.getClientId()), new Entry(realm.getId(), user.getId(), user.getUsername(),
+                userSession.getId(), client.getClientId(), expiration, response));
+    }
+
+    private static String key(RealmModel realm, String userSessionId, String clientId) {
+        return realm.getId() + ":" + userSessionId + ":" + clientId;
+    }
+
+    public static class Entry extends SessionResponseCache.Entry {
+
+        private final String username;
+        private final String clientId;
+
+        private Entry(String realmId, String userId, String username, String userSessionId, String clientId, int expiration, byte[] response) {
+            super(realmId, userId, userSessionId, expiration, response);
+            this.username = username;
+            this.clientId = clientId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+    }
+
+}
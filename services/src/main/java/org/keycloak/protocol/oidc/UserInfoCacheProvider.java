@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.protocol.oidc;
+
+import org.keycloak.events.admin.AdminEvent;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.provider.Provider;
+
+/**
+ * Cache of userinfo responses.  Entries of removed user sessions are invalidated when the removal is committed.
+ */
+public interface UserInfoCacheProvider extends Provider {
+
+    boolean isEnabled();
+
+    /**
+     * @return the cached entry or null
+     */
+    UserInfoCache.Entry get(RealmModel realm, String userSessionId, String clientId);
+
+    void put(RealmModel realm, UserSessionModel userSession, ClientModel client, UserModel user, byte[] response);
+
+    /**
+     * Invalidates the entries of the user on all cluster nodes once the current transaction is committed.
+     */
+    void invalidateUser(RealmModel realm, String userId);
+
+    /**
+     * Invalidates the entries affected by a successful admin operation on all cluster nodes once the current transaction
+     * is committed. Operations on a user only invalidate the entries of the user, any other operation invalidates the
+     * entries of the realm, as roles, groups and protocol mappers may apply to any number of users.
+     */
+    void invalidate(AdminEvent event);
+
+}
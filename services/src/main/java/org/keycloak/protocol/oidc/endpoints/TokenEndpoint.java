@@ -202,12 +202,9 @@ public class TokenEndpoint {
 
         ClientSessionCode accessCode = ClientSessionCode.parse(code, session, realm);
         if (accessCode == null) {
-            String[] parts = code.split("\\.");
-            if (parts.length == 2) {
-                try {
-                    event.detail(Details.CODE_ID, new String(parts[1]));
-                } catch (Throwable t) {
-                }
+            String clientSessionId = ClientSessionCode.getClientSessionId(code);
+            if (clientSessionId != null) {
+                event.detail(Details.CODE_ID, clientSessionId);
             }
             event.error(Errors.INVALID_CODE);
             throw new ErrorResponseException("invalid_grant", "Code not found", Response.Status.BAD_REQUEST);
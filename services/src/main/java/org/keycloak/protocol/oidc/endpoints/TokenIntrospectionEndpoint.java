@@ -26,10 +26,13 @@ import org.keycloak.common.VerificationException;
 import org.keycloak.events.Errors;
 import org.keycloak.events.EventBuilder;
 import org.keycloak.events.EventType;
+import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.JWSInputException;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.protocol.oidc.TokenIntrospectionCacheProvider;
 import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.protocol.oidc.TokenManager.TokenValidation;
 import org.keycloak.protocol.oidc.utils.AuthorizeClientUtil;
@@ -38,12 +41,16 @@ import org.keycloak.services.ErrorResponseException;
 import org.keycloak.util.JsonSerialization;
 
 import javax.ws.rs.POST;
+import javax.ws.rs.Path;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
 
 /**
  * A token introspection endpoint based on RFC-7662.
@@ -56,6 +63,7 @@ public class TokenIntrospectionEndpoint {
     private static final String TOKEN_TYPE_REFRESH_TOKEN = "refresh_token";
     private static final String PARAM_TOKEN_TYPE_HINT = "token_type_hint";
     private static final String PARAM_TOKEN = "token";
+    private static final byte[] INACTIVE = "{\"active\":false}".getBytes();
 
     @Context
     private KeycloakSession session;
@@ -104,28 +112,104 @@ public class TokenIntrospectionEndpoint {
         }
 
         try {
-            AccessToken toIntrospect = toAccessToken(tokenTypeHint, token);
-            ObjectNode tokenMetadata;
-
-            boolean active = tokenManager.isTokenValid(session, realm, toIntrospect);
-            if (active) {
-                tokenMetadata = JsonSerialization.createObjectNode(toIntrospect);
-                tokenMetadata.put("client_id", toIntrospect.getIssuedFor());
-                tokenMetadata.put("username", toIntrospect.getPreferredUsername());
-            } else {
-                tokenMetadata = JsonSerialization.createObjectNode();
-            }
-
-            tokenMetadata.put("active", active);
+            byte[] tokenMetadata = introspect(tokenTypeHint, token);
 
             this.event.success();
 
-            return Response.ok(JsonSerialization.writeValueAsBytes(tokenMetadata)).build();
+            return Response.ok(tokenMetadata).build();
         } catch (Exception e) {
             throw throwErrorResponseException(Errors.INVALID_REQUEST, "Failed to introspect token.", Status.BAD_REQUEST);
         }
     }
 
+    /**
+     * Introspects all tokens given in the repeated "token" parameter with the same token type hint. Returns a JSON array
+     * with the introspection result of each token in the order of the parameters. Tokens, which can't be parsed or
+     * verified, are reported as not active instead of failing the whole request.
+     */
+    @Path("batch")
+    @POST
+    @NoCache
+    public Response introspectBatch() {
+        event.event(EventType.INTROSPECT_TOKEN);
+
+        checkSsl();
+        checkRealm();
+        authorizeClient();
+
+        MultivaluedMap<String, String> formParams = request.getDecodedFormParameters();
+        String tokenTypeHint = formParams.getFirst(PARAM_TOKEN_TYPE_HINT);
+
+        if (tokenTypeHint == null) {
+            tokenTypeHint = TOKEN_TYPE_ACCESS_TOKEN;
+        }
+
+        if (!TOKEN_TYPE_ACCESS_TOKEN.equals(tokenTypeHint) && !TOKEN_TYPE_REFRESH_TOKEN.equals(tokenTypeHint)) {
+            throw throwErrorResponseException(Errors.INVALID_REQUEST, "Unsupported token type [" + tokenTypeHint + "].", Status.BAD_REQUEST);
+        }
+
+        List<String> tokens = formParams.get(PARAM_TOKEN);
+
+        if (tokens == null || tokens.isEmpty()) {
+            throw throwErrorResponseException(Errors.INVALID_REQUEST, "Token not provided.", Status.BAD_REQUEST);
+        }
+
+        if (tokens.size() > session.getProvider(TokenIntrospectionCacheProvider.class).getMaxBatchSize()) {
+            throw throwErrorResponseException(Errors.INVALID_REQUEST, "Too many tokens.", Status.BAD_REQUEST);
+        }
+
+        // Results are already serialized, so the array is written directly
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tokens.size() * 512);
+        out.write('[');
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            byte[] tokenMetadata;
+            try {
+                tokenMetadata = introspect(tokenTypeHint, tokens.get(i));
+            } catch (Exception e) {
+                tokenMetadata = INACTIVE;
+            }
+            out.write(tokenMetadata, 0, tokenMetadata.length);
+        }
+        out.write(']');
+
+        this.event.detail("tokens", String.valueOf(tokens.size())).success();
+
+        return Response.ok(out.toByteArray(), MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    private byte[] introspect(String tokenTypeHint, String token) throws Exception {
+        TokenIntrospectionCacheProvider cache = session.getProvider(TokenIntrospectionCacheProvider.class);
+        if (cache.isEnabled()) {
+            byte[] cached = cache.get(realm, tokenTypeHint, token);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        AccessToken toIntrospect = toAccessToken(tokenTypeHint, token);
+        ObjectNode tokenMetadata;
+
+        boolean active = tokenManager.isTokenValid(session, realm, toIntrospect);
+        if (active) {
+            tokenMetadata = JsonSerialization.createObjectNode(toIntrospect);
+            tokenMetadata.put("client_id", toIntrospect.getIssuedFor());
+            tokenMetadata.put("username", toIntrospect.getPreferredUsername());
+        } else {
+            tokenMetadata = JsonSerialization.createObjectNode();
+        }
+
+        tokenMetadata.put("active", active);
+
+        byte[] response = JsonSerialization.writeValueAsBytes(tokenMetadata);
+        if (cache.isEnabled()) {
+            cache.put(realm, tokenTypeHint, token, toIntrospect, response);
+        }
+        return response;
+    }
+
     private AccessToken toAccessToken(String tokenTypeHint, String token) throws JWSInputException, OAuthErrorException {
         if (TOKEN_TYPE_ACCESS_TOKEN.equals(tokenTypeHint)) {
             return toAccessToken(token);
@@ -155,7 +239,8 @@ public class TokenIntrospectionEndpoint {
 
     private AccessToken toAccessToken(String tokenString) {
         try {
-            return RSATokenVerifier.toAccessToken(tokenString, realm.getPublicKey());
+            JWSInput input = RSATokenVerifier.toJWSInput(tokenString);
+            return RSATokenVerifier.toAccessToken(input, KeycloakModelUtils.getPublicKey(realm, input.getHeader().getKeyId()));
         } catch (VerificationException e) {
             throw new ErrorResponseException("invalid_request", "Invalid token.", Status.UNAUTHORIZED);
         }
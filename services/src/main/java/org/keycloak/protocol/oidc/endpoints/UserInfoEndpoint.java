@@ -26,19 +26,24 @@ import org.keycloak.common.VerificationException;
 import org.keycloak.events.Details;
 import org.keycloak.events.EventBuilder;
 import org.keycloak.events.EventType;
+import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.protocol.oidc.TokenManager;
+import org.keycloak.protocol.oidc.UserInfoCache;
+import org.keycloak.protocol.oidc.UserInfoCacheProvider;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.services.ErrorResponseException;
 import org.keycloak.services.managers.AppAuthManager;
 import org.keycloak.services.managers.AuthenticationManager;
 import org.keycloak.services.resources.Cors;
 import org.keycloak.services.Urls;
+import org.keycloak.util.JsonSerialization;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
@@ -53,6 +58,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -118,11 +124,27 @@ public class UserInfoEndpoint {
 
         AccessToken token = null;
         try {
-            token = RSATokenVerifier.verifyToken(tokenString, realm.getPublicKey(), Urls.realmIssuer(uriInfo.getBaseUri(), realm.getName()), true, true);
+            JWSInput input = RSATokenVerifier.toJWSInput(tokenString);
+            token = RSATokenVerifier.verifyToken(input, KeycloakModelUtils.getPublicKey(realm, input.getHeader().getKeyId()), Urls.realmIssuer(uriInfo.getBaseUri(), realm.getName()), true, true);
         } catch (VerificationException e) {
             throw new ErrorResponseException(OAuthErrorException.INVALID_GRANT, "Token invalid: " + e.getMessage(), Status.FORBIDDEN);
         }
 
+        UserInfoCacheProvider cache = session.getProvider(UserInfoCacheProvider.class);
+        if (cache.isEnabled()) {
+            UserInfoCache.Entry cached = cache.get(realm, token.getSessionState(), token.getIssuedFor());
+            if (cached != null && cached.getUserId().equals(token.getSubject())) {
+                event
+                    .detail(Details.USERNAME, cached.getUsername())
+                    .client(cached.getClientId())
+                    .session(cached.getUserSessionId())
+                    .user(cached.getUserId())
+                    .success();
+
+                return Cors.add(request, Response.ok(cached.getResponse(), MediaType.APPLICATION_JSON_TYPE)).auth().allowedOrigins(token).build();
+            }
+        }
+
         UserSessionModel userSession = session.sessions().getUserSession(realm, token.getSessionState());
         ClientSessionModel clientSession = session.sessions().getClientSession(token.getClientSession());
         if (userSession == null || clientSession == null || !AuthenticationManager.isSessionValid(realm, userSession)) {
@@ -144,6 +166,18 @@ public class UserInfoEndpoint {
         Map<String, Object> claims = new HashMap<String, Object>();
         claims.putAll(userInfo.getOtherClaims());
         claims.put("sub", userModel.getId());
+
+        if (cache.isEnabled() && clientModel != null) {
+            byte[] response;
+            try {
+                response = JsonSerialization.writeValueAsBytes(claims);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            cache.put(realm, userSession, clientModel, userModel, response);
+            return Cors.add(request, Response.ok(response, MediaType.APPLICATION_JSON_TYPE)).auth().allowedOrigins(token).build();
+        }
+
         return Cors.add(request, Response.ok(claims)).auth().allowedOrigins(token).build();
     }
 
@@ -14,26 +14,11 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.keycloak.protocol.oidc.representations;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import org.keycloak.jose.jwk.JWK;
-
 /**
- * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
+ * @deprecated moved to {@link org.keycloak.jose.jwk.JSONWebKeySet}, so adapters can read the certs endpoint
  */
-public class JSONWebKeySet {
-
-    @JsonProperty("keys")
-    private JWK[] keys;
-
-    public JWK[] getKeys() {
-        return keys;
-    }
-
-    public void setKeys(JWK[] keys) {
-        this.keys = keys;
-    }
-
+@Deprecated
+public class JSONWebKeySet extends org.keycloak.jose.jwk.JSONWebKeySet {
 }
@@ -64,7 +64,7 @@ public class ClientRegistrationTokenUtils {
             return null;
         }
 
-        if (!RSAProvider.verify(input, realm.getPublicKey())) {
+        if (!RSAProvider.verify(input, KeycloakModelUtils.getPublicKey(realm, input.getHeader().getKeyId()))) {
             return null;
         }
 
@@ -104,7 +104,7 @@ public class ClientRegistrationTokenUtils {
         jwt.issuer(issuer);
         jwt.audience(issuer);
 
-        String token = new JWSBuilder().jsonContent(jwt).rsa256(realm.getPrivateKey());
+        String token = new JWSBuilder().kid(realm.getKeyId()).jsonContent(jwt).rsa256(realm.getPrivateKey());
         return token;
     }
 
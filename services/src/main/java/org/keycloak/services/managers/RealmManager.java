@@ -216,6 +216,7 @@ public class RealmManager implements RealmImporter {
         realm.setFailureFactor(30);
         realm.setSslRequired(SslRequired.EXTERNAL);
         realm.setOTPPolicy(OTPPolicy.DEFAULT_POLICY);
+        realm.setPassiveKeyLifespan(Constants.DEFAULT_PASSIVE_KEY_LIFESPAN);
 
         realm.setEventsListeners(Collections.singleton("jboss-logging"));
     }
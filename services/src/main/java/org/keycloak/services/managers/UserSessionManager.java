@@ -133,6 +133,11 @@ public class UserSessionManager {
         persister.removeUserSession(userSession.getId(), true);
     }
 
+    // Persister might coalesce the updates of frequently refreshed sessions, see its writeBehindInterval option
+    public void updateOfflineUserSession(UserSessionModel userSession) {
+        persister.updateUserSession(userSession, true);
+    }
+
     public boolean isOfflineTokenAllowed(ClientSessionModel clientSession) {
         RoleModel offlineAccessRole = clientSession.getRealm().getRole(Constants.OFFLINE_ACCESS_ROLE);
         if (offlineAccessRole == null) {
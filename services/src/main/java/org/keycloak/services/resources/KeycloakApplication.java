@@ -34,6 +34,7 @@ import org.keycloak.representations.idm.UserRepresentation;
 import org.keycloak.services.DefaultKeycloakSessionFactory;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.filters.KeycloakTransactionCommitter;
+import org.keycloak.services.filters.PrecompressedContentInterceptor;
 import org.keycloak.services.managers.ApplianceBootstrap;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.managers.UsersSyncManager;
@@ -88,6 +89,7 @@ public class KeycloakApplication extends Application {
         classes.add(JsResource.class);
 
         classes.add(KeycloakTransactionCommitter.class);
+        classes.add(PrecompressedContentInterceptor.class);
 
         singletons.add(new ObjectMapperResolver(Boolean.parseBoolean(System.getProperty("keycloak.jsonPrettyPrint", "false"))));
 
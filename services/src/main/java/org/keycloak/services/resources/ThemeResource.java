@@ -17,19 +17,25 @@
 package org.keycloak.services.resources;
 
 import org.keycloak.common.Version;
+import org.keycloak.theme.ExtendingThemeManager;
 import org.keycloak.theme.Theme;
 import org.keycloak.theme.ThemeProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.common.util.MimeTypeUtil;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.util.CacheControlUtil;
+import org.keycloak.services.util.PrecompressedContent;
+import org.keycloak.theme.ThemeResourceCache;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * Theme resource
@@ -44,6 +50,9 @@ public class ThemeResource {
     @Context
     private KeycloakSession session;
 
+    @Context
+    private HttpHeaders headers;
+
     /**
      * Get theme content
      *
@@ -62,6 +71,14 @@ public class ThemeResource {
         try {
             ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
             Theme theme = themeProvider.getTheme(themeName, Theme.Type.valueOf(themType.toUpperCase()));
+
+            if (themeProvider instanceof ExtendingThemeManager) {
+                ThemeResourceCache.Resource cached = ((ExtendingThemeManager) themeProvider).getResource(theme, path);
+                if (cached != null) {
+                    return getCachedResource(cached);
+                }
+            }
+
             InputStream resource = theme.getResourceAsStream(path);
             if (resource != null) {
                 return Response.ok(resource).type(MimeTypeUtil.getContentType(path)).cacheControl(CacheControlUtil.getDefaultCacheControl()).build();
@@ -74,4 +91,61 @@ public class ThemeResource {
         }
     }
 
+    private Response getCachedResource(ThemeResourceCache.Resource resource) {
+        boolean gzip = resource.getGzipContent() != null && acceptsGzip();
+        EntityTag etag = new EntityTag(gzip ? resource.getGzipEtag() : resource.getEtag());
+
+        Response.ResponseBuilder builder;
+        List<String> ifNoneMatch = headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, resource)) {
+            builder = Response.notModified();
+        } else if (gzip) {
+            builder = Response.ok(new PrecompressedContent(resource.getGzipContent())).type(resource.getContentType()).header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        } else {
+            builder = Response.ok(resource.getContent()).type(resource.getContentType());
+        }
+
+        if (resource.getGzipContent() != null) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder.tag(etag).cacheControl(CacheControlUtil.getDefaultCacheControl()).build();
+    }
+
+    private boolean acceptsGzip() {
+        List<String> acceptEncoding = headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null) {
+            for (String header : acceptEncoding) {
+                for (String encoding : header.split(",")) {
+                    String[] params = encoding.trim().split(";");
+                    if (params[0].trim().equalsIgnoreCase("gzip")) {
+                        return params.length == 1 || !params[1].replace(" ", "").matches("q=0(\\.0*)?");
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Weak comparison as recommended for If-None-Match, either variant matches as both have the same content
+    private static boolean matches(List<String> ifNoneMatch, ThemeResourceCache.Resource resource) {
+        for (String header : ifNoneMatch) {
+            for (String tag : header.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*")) {
+                    return true;
+                }
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                    tag = tag.substring(1, tag.length() - 1);
+                }
+                if (tag.equals(resource.getEtag()) || tag.equals(resource.getGzipEtag())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
 }
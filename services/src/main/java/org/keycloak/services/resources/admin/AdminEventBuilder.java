@@ -30,6 +30,7 @@ import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.protocol.oidc.UserInfoCacheProvider;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.util.JsonSerialization;
 import org.keycloak.common.util.Time;
@@ -42,12 +43,14 @@ public class AdminEventBuilder {
 
     private EventStoreProvider store;
     private List<EventListenerProvider> listeners;
+    private UserInfoCacheProvider userInfoCache;
     private RealmModel realm;
     private AdminEvent adminEvent;
 
     public AdminEventBuilder(RealmModel realm, AdminAuth auth, KeycloakSession session, ClientConnection clientConnection) {
         this.realm = realm;
         adminEvent = new AdminEvent();
+        userInfoCache = session.getProvider(UserInfoCacheProvider.class);
 
         if (realm.isAdminEventsEnabled()) {
             EventStoreProvider store = session.getProvider(EventStoreProvider.class);
@@ -201,6 +204,8 @@ public class AdminEventBuilder {
     }
 
     public void success() {
+        // All admin changes are sent here, so this is where cached userinfo responses are invalidated
+        userInfoCache.invalidate(adminEvent);
         send();
     }
 
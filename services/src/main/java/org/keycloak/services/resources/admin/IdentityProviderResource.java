@@ -21,6 +21,7 @@ import org.jboss.resteasy.spi.NotFoundException;
 import org.keycloak.broker.provider.IdentityProvider;
 import org.keycloak.broker.provider.IdentityProviderFactory;
 import org.keycloak.broker.provider.IdentityProviderMapper;
+import org.keycloak.broker.provider.util.SimpleHttpLimiter;
 import org.keycloak.events.admin.OperationType;
 import org.keycloak.models.FederatedIdentityModel;
 import org.keycloak.models.IdentityProviderMapperModel;
@@ -119,6 +120,7 @@ public class IdentityProviderResource {
         }
 
         this.realm.removeIdentityProviderByAlias(this.identityProviderModel.getAlias());
+        SimpleHttpLimiter.remove(this.identityProviderModel.getInternalId());
 
         adminEvent.operation(OperationType.DELETE).resourcePath(uriInfo).success();
 
@@ -46,6 +46,7 @@ import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.utils.ModelToRepresentation;
 import org.keycloak.models.utils.RepresentationToModel;
 import org.keycloak.protocol.oidc.OIDCLoginProtocol;
+import org.keycloak.protocol.oidc.TokenIntrospectionCacheProvider;
 import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.protocol.oidc.utils.RedirectUtils;
 import org.keycloak.provider.ProviderFactory;
@@ -174,6 +175,9 @@ public class UsersResource {
             }
 
             updateUserFromRep(user, rep, attrsToRemove, realm, session, true);
+            if (rep.isEnabled() != null && !rep.isEnabled()) {
+                session.getProvider(TokenIntrospectionCacheProvider.class).invalidateUser(realm, user.getId());
+            }
             adminEvent.operation(OperationType.UPDATE).resourcePath(uriInfo).representation(rep).success();
 
             if (session.getTransaction().isActive()) {
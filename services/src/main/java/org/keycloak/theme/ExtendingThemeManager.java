@@ -37,12 +37,18 @@ public class ExtendingThemeManager implements ThemeProvider {
 
     private final KeycloakSession session;
     private final ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache;
+    private final ThemeResourceCache resourceCache;
     private List<ThemeProvider> providers;
     private String defaultTheme;
 
     public ExtendingThemeManager(KeycloakSession session, ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache) {
+        this(session, themeCache, null);
+    }
+
+    public ExtendingThemeManager(KeycloakSession session, ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache, ThemeResourceCache resourceCache) {
         this.session = session;
         this.themeCache = themeCache;
+        this.resourceCache = resourceCache;
         this.defaultTheme = Config.scope("theme").get("default", Version.NAME.toLowerCase());
     }
 
@@ -101,10 +107,24 @@ public class ExtendingThemeManager implements ThemeProvider {
         }
     }
 
+    /**
+     * Returns a resource of the theme from the resource cache.
+     *
+     * @return the cached resource, or null if resources are not cached, the theme doesn't contain the resource or the
+     * resource is too large to be cached
+     */
+    public ThemeResourceCache.Resource getResource(Theme theme, String path) throws IOException {
+        if (resourceCache == null) {
+            return null;
+        }
+        return resourceCache.get(theme, path);
+    }
+
     private Theme loadTheme(String name, Theme.Type type) throws IOException {
         Theme theme = findTheme(name, type);
-        if (theme != null && (theme.getParentName() != null || theme.getImportName() != null)) {
-            List<Theme> themes = new LinkedList<>();
+        // Themes without parents are wrapped as well, so their messages are only loaded once
+        if (theme != null) {
+            List<Theme> themes = new ArrayList<>();
             themes.add(theme);
 
             if (theme.getImportName() != null) {
@@ -167,13 +187,17 @@ public class ExtendingThemeManager implements ThemeProvider {
         return null;
     }
 
+    /**
+     * Theme made of a theme, its parents and imported themes. Merged messages and properties are computed once and kept
+     * as immutable snapshots, which are safe to share between requests.
+     */
     public static class ExtendingTheme implements Theme {
 
         private List<Theme> themes;
 
-        private Properties properties;
+        private volatile Properties properties;
 
-        private ConcurrentHashMap<String, ConcurrentHashMap<Locale, Properties>> messages = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, ConcurrentHashMap<Locale, Properties>> messages = new ConcurrentHashMap<>();
 
         public ExtendingTheme(List<Theme> themes) {
             this.themes = themes;
@@ -251,46 +275,56 @@ public class ExtendingThemeManager implements ThemeProvider {
 
         @Override
         public Properties getMessages(String baseBundlename, Locale locale) throws IOException {
-            if (messages.get(baseBundlename) == null || messages.get(baseBundlename).get(locale) == null) {
-                Properties messages = new Properties();
+            ConcurrentHashMap<Locale, Properties> bundle = messages.get(baseBundlename);
+            if (bundle == null) {
+                bundle = new ConcurrentHashMap<>();
+                ConcurrentHashMap<Locale, Properties> existing = messages.putIfAbsent(baseBundlename, bundle);
+                if (existing != null) {
+                    bundle = existing;
+                }
+            }
+
+            Properties snapshot = bundle.get(locale);
+            if (snapshot == null) {
+                Map<Object, Object> merged = new HashMap<>();
 
                 if (!Locale.ENGLISH.equals(locale)) {
-                    messages.putAll(getMessages(baseBundlename, Locale.ENGLISH));
+                    merged.putAll(getMessages(baseBundlename, Locale.ENGLISH));
                 }
 
                 ListIterator<Theme> itr = themes.listIterator(themes.size());
                 while (itr.hasPrevious()) {
                     Properties m = itr.previous().getMessages(baseBundlename, locale);
                     if (m != null) {
-                        messages.putAll(m);
+                        merged.putAll(m);
                     }
                 }
 
-                this.messages.putIfAbsent(baseBundlename, new ConcurrentHashMap<Locale, Properties>());
-                this.messages.get(baseBundlename).putIfAbsent(locale, messages);
-
-                return messages;
-            } else {
-                return messages.get(baseBundlename).get(locale);
+                snapshot = new ImmutableProperties(merged);
+                Properties existing = bundle.putIfAbsent(locale, snapshot);
+                if (existing != null) {
+                    snapshot = existing;
+                }
             }
+            return snapshot;
         }
 
         @Override
         public Properties getProperties() throws IOException {
-            if (properties == null) {
-                Properties properties = new Properties();
+            Properties snapshot = properties;
+            if (snapshot == null) {
+                Map<Object, Object> merged = new HashMap<>();
                 ListIterator<Theme> itr = themes.listIterator(themes.size());
                 while (itr.hasPrevious()) {
                     Properties p = itr.previous().getProperties();
                     if (p != null) {
-                        properties.putAll(p);
+                        merged.putAll(p);
                     }
                 }
-                this.properties = properties;
-                return properties;
-            } else {
-                return properties;
+                snapshot = new ImmutableProperties(merged);
+                properties = snapshot;
             }
+            return snapshot;
         }
 
     }
@@ -29,16 +29,24 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ExtendingThemeManagerFactory implements ThemeProviderFactory {
 
     private ConcurrentHashMap<ThemeKey, Theme> themeCache;
+    private ThemeResourceCache resourceCache;
 
     @Override
     public ThemeProvider create(KeycloakSession session) {
-        return new ExtendingThemeManager(session, themeCache);
+        return new ExtendingThemeManager(session, themeCache, resourceCache);
     }
 
     @Override
     public void init(Config.Scope config) {
-        if(Config.scope("theme").getBoolean("cacheThemes", true)) {
+        Config.Scope themeConfig = Config.scope("theme");
+        if(themeConfig.getBoolean("cacheThemes", true)) {
             themeCache = new ConcurrentHashMap<>();
+
+            if (themeConfig.getBoolean("cacheResources", true)) {
+                long maxSize = themeConfig.getLong("resourceCacheMaxSize", 32L * 1024 * 1024);
+                int maxResourceSize = themeConfig.getInt("resourceCacheMaxResourceSize", 1024 * 1024);
+                resourceCache = new ThemeResourceCache(maxSize, maxResourceSize);
+            }
         }
     }
 
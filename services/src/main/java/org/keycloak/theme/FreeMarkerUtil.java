@@ -17,58 +17,116 @@
 
 package org.keycloak.theme;
 
+import freemarker.cache.StrongCacheStorage;
 import freemarker.cache.URLTemplateLoader;
 import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.ObjectWrapper;
 import freemarker.template.Template;
 import org.keycloak.Config;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Processes FreeMarker templates of themes. If templates are cached there's one shared configuration per theme, which
+ * holds the parsed templates in FreeMarker's template cache. All configurations share the same object wrapper, so
+ * introspection of the classes used in templates is done only once.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class FreeMarkerUtil {
 
-    private ConcurrentHashMap<String, Template> cache;
+    private static final ObjectWrapper OBJECT_WRAPPER = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_0).build();
+
+    private ConcurrentHashMap<String, Configuration> configurations;
+    private boolean renderTemplatesToBytes;
 
     public FreeMarkerUtil() {
-        if (Config.scope("theme").getBoolean("cacheTemplates", true)) {
-            cache = new ConcurrentHashMap<>();
+        Config.Scope themeConfig = Config.scope("theme");
+        if (themeConfig.getBoolean("cacheTemplates", true)) {
+            configurations = new ConcurrentHashMap<>();
         }
+        renderTemplatesToBytes = themeConfig.getBoolean("renderTemplatesToBytes", false);
+    }
+
+    /**
+     * @return true if pages should be rendered with {@link #renderTemplateToBytes(Object, String, Theme)}
+     */
+    public boolean isRenderTemplatesToBytes() {
+        return renderTemplatesToBytes;
     }
 
     public String processTemplate(Object data, String templateName, Theme theme) throws FreeMarkerException {
+        Writer out = new StringWriter();
+        processTemplate(data, templateName, theme, out);
+        return out.toString();
+    }
+
+    public void processTemplate(Object data, String templateName, Theme theme, Writer out) throws FreeMarkerException {
+        Template template = getTemplate(templateName, theme);
         try {
-            Template template;
-            if (cache != null) {
-                String key = theme.getName() + "/" + templateName;
-                template = cache.get(key);
-                if (template == null) {
-                    template = getTemplate(templateName, theme);
-                    if (cache.putIfAbsent(key, template) != null) {
-                        template = cache.get(key);
+            template.process(data, out);
+        } catch (Exception e) {
+            throw new FreeMarkerException("Failed to process template " + templateName, e);
+        }
+    }
+
+    /**
+     * Renders the template straight into UTF-8 encoded bytes, without building the page as a String first. Rendering is
+     * done by the caller, so templates can still access the models of the current session and errors can be turned into
+     * an error page.
+     */
+    public byte[] renderTemplateToBytes(Object data, String templateName, Theme theme) throws FreeMarkerException {
+        Template template = getTemplate(templateName, theme);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try {
+            Writer out = new OutputStreamWriter(bytes, "UTF-8");
+            template.process(data, out);
+            out.flush();
+        } catch (Exception e) {
+            throw new FreeMarkerException("Failed to process template " + templateName, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Template getTemplate(String templateName, Theme theme) throws FreeMarkerException {
+        try {
+            Configuration cfg;
+            if (configurations != null) {
+                String key = theme.getType() + "/" + theme.getName();
+                cfg = configurations.get(key);
+                if (cfg == null) {
+                    cfg = createConfiguration(theme, true);
+                    Configuration existing = configurations.putIfAbsent(key, cfg);
+                    if (existing != null) {
+                        cfg = existing;
                     }
                 }
             } else {
-                template = getTemplate(templateName, theme);
+                cfg = createConfiguration(theme, false);
             }
-
-            Writer out = new StringWriter();
-            template.process(data, out);
-            return out.toString();
+            return cfg.getTemplate(templateName);
         } catch (Exception e) {
             throw new FreeMarkerException("Failed to process template " + templateName, e);
         }
     }
 
-    private Template getTemplate(String templateName, Theme theme) throws IOException {
-        Configuration cfg = new Configuration();
+    private Configuration createConfiguration(Theme theme, boolean cacheTemplates) {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
         cfg.setTemplateLoader(new ThemeTemplateLoader(theme));
-        return cfg.getTemplate(templateName);
+        cfg.setObjectWrapper(OBJECT_WRAPPER);
+        if (cacheTemplates) {
+            // Templates of a theme don't change while it's cached, so keep them and never check for updates
+            cfg.setCacheStorage(new StrongCacheStorage());
+            cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        }
+        return cfg;
     }
 
     class ThemeTemplateLoader extends URLTemplateLoader {
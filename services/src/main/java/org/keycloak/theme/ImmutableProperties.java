@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.theme;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Read-only snapshot of properties. Reads are served from an unmodifiable map rather than from the synchronized
+ * Hashtable of {@link Properties}, so reads from many threads don't contend on a lock. The Hashtable holds the same
+ * entries, so inherited methods like store, list, clone or serialization see them too. All modifications, including the
+ * Map default methods, throw {@link UnsupportedOperationException}.
+ */
+public class ImmutableProperties extends Properties {
+
+    private final Map<Object, Object> entries;
+
+    public ImmutableProperties(Map<?, ?> entries) {
+        this.entries = Collections.unmodifiableMap(new HashMap<Object, Object>(entries));
+        for (Map.Entry<Object, Object> e : this.entries.entrySet()) {
+            super.put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = entries.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public String getProperty(String key, String defaultValue) {
+        String value = getProperty(key);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return entries.get(key);
+    }
+
+    // Not annotated with @Override, as the Map default methods are only available from Java 8
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = entries.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        for (Map.Entry<Object, Object> e : entries.entrySet()) {
+            action.accept(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return entries.containsValue(value);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return entries.containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return entries.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return entries.values();
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return entries.entrySet();
+    }
+
+    @Override
+    public Enumeration<Object> keys() {
+        return Collections.enumeration(entries.keySet());
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        return Collections.enumeration(entries.values());
+    }
+
+    @Override
+    public Enumeration<?> propertyNames() {
+        return Collections.enumeration(stringPropertyNames());
+    }
+
+    @Override
+    public Set<String> stringPropertyNames() {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<Object, Object> e : entries.entrySet()) {
+            if (e.getKey() instanceof String && e.getValue() instanceof String) {
+                names.add((String) e.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<?, ?> t) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object putIfAbsent(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object replace(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object setProperty(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void load(Reader reader) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void load(InputStream inStream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void loadFromXML(InputStream in) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof Map && entries.equals(o));
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.theme;
+
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Base64Url;
+import org.keycloak.common.util.MimeTypeUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory cache of theme resources. Resources are cached with a strong ETag and, for compressible content types, a
+ * precomputed gzip variant. Resources larger than the max resource size are not cached, and nothing more is cached
+ * once the cache holds max size bytes.
+ */
+public class ThemeResourceCache {
+
+    private static final Logger log = Logger.getLogger(ThemeResourceCache.class);
+
+    // Smaller resources don't gain anything from compression
+    private static final int MIN_GZIP_SIZE = 256;
+
+    private final ConcurrentHashMap<String, Resource> resources = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final long maxSize;
+    private final int maxResourceSize;
+
+    public ThemeResourceCache(long maxSize, int maxResourceSize) {
+        this.maxSize = maxSize;
+        this.maxResourceSize = maxResourceSize;
+    }
+
+    /**
+     * @return the cached resource, or null if the theme doesn't contain the resource or the resource is not cacheable
+     */
+    public Resource get(Theme theme, String path) throws IOException {
+        String key = theme.getType() + "/" + theme.getName() + "/" + path;
+        Resource resource = resources.get(key);
+        if (resource != null) {
+            return resource;
+        }
+
+        if (size.get() >= maxSize) {
+            return null;
+        }
+
+        InputStream is = theme.getResourceAsStream(path);
+        if (is == null) {
+            return null;
+        }
+
+        byte[] content;
+        try {
+            content = read(is);
+        } finally {
+            is.close();
+        }
+        if (content == null) {
+            log.debugv("Not caching theme resource {0}, larger than {1} bytes", key, maxResourceSize);
+            return null;
+        }
+
+        resource = new Resource(content, MimeTypeUtil.getContentType(path));
+        if (size.addAndGet(resource.getSize()) > maxSize) {
+            size.addAndGet(-resource.getSize());
+            return resource;
+        }
+
+        Resource existing = resources.putIfAbsent(key, resource);
+        if (existing != null) {
+            size.addAndGet(-resource.getSize());
+            return existing;
+        }
+        return resource;
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    public void clear() {
+        resources.clear();
+        size.set(0);
+    }
+
+    // Returns null if the resource is larger than max resource size
+    private byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read = is.read(buffer); read != -1; read = is.read(buffer)) {
+            os.write(buffer, 0, read);
+            if (os.size() > maxResourceSize) {
+                return null;
+            }
+        }
+        return os.toByteArray();
+    }
+
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        return contentType.startsWith("text/") || contentType.equals("application/javascript") || contentType.equals("application/x-javascript")
+                || contentType.equals("application/json") || contentType.endsWith("+xml") || contentType.equals("application/xml")
+                || contentType.equals("application/vnd.ms-fontobject") || contentType.equals("application/x-font-ttf");
+    }
+
+    public static class Resource {
+
+        private final byte[] content;
+        private final byte[] gzipContent;
+        private final String contentType;
+        private final String etag;
+
+        Resource(byte[] content, String contentType) throws IOException {
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = computeEtag(content);
+            this.gzipContent = isCompressible(contentType) && content.length >= MIN_GZIP_SIZE ? gzip(content) : null;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return gzip compressed content or null if the content is not compressible
+         */
+        public byte[] getGzipContent() {
+            return gzipContent;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return the value of the strong ETag of the uncompressed content without quotes
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the value of the strong ETag of the gzip compressed content without quotes
+         */
+        public String getGzipEtag() {
+            return etag + "-gzip";
+        }
+
+        long getSize() {
+            return content.length + (gzipContent != null ? gzipContent.length : 0);
+        }
+
+        private static String computeEtag(byte[] content) {
+            try {
+                return Base64Url.encode(MessageDigest.getInstance("SHA-1").digest(content));
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static byte[] gzip(byte[] content) throws IOException {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(content.length / 2);
+            GZIPOutputStream gzip = new GZIPOutputStream(os);
+            gzip.write(content);
+            gzip.close();
+            byte[] compressed = os.toByteArray();
+            return compressed.length < content.length ? compressed : null;
+        }
+
+    }
+
+}
@@ -53,6 +53,26 @@ public class AbstractOAuth2IdentityProviderTest {
 		
 	}
 
+	@Test
+	public void config_requestLimits() {
+		IdentityProviderModel model = new IdentityProviderModel();
+		model.setAlias("myalias");
+		OAuth2IdentityProviderConfig config = new OAuth2IdentityProviderConfig(model);
+
+		//not configured limits are unlimited
+		Assert.assertEquals(-1, config.getConnectTimeout());
+		Assert.assertEquals(-1, config.getMaxConcurrentRequests());
+
+		config.setSocketTimeout(10000);
+		Assert.assertEquals(10000, config.getSocketTimeout());
+
+		//invalid values fall back to unlimited instead of failing the login
+		config.getConfig().put("socketTimeout", "10s");
+		config.getConfig().put("maxConcurrentRequests", "invalid");
+		Assert.assertEquals(-1, config.getSocketTimeout());
+		Assert.assertEquals(-1, config.getMaxConcurrentRequests());
+	}
+
 	@Test
 	public void getJsonProperty_asJsonNode() throws IOException {
 		TestProvider tested = getTested();
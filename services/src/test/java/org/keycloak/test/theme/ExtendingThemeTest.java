@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.test.theme;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.theme.ExtendingThemeManager;
+import org.keycloak.theme.Theme;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Unit test for {@link org.keycloak.theme.ExtendingThemeManager.ExtendingTheme}
+ */
+public class ExtendingThemeTest {
+
+    @Test
+    public void testMergedMessages() throws Exception {
+        TestTheme child = new TestTheme("child");
+        child.addMessage(Locale.ENGLISH, "title", "Child title");
+        child.addMessage(Locale.GERMAN, "login", "Anmelden");
+
+        TestTheme parent = new TestTheme("parent");
+        parent.addMessage(Locale.ENGLISH, "title", "Parent title");
+        parent.addMessage(Locale.ENGLISH, "login", "Log in");
+        parent.addMessage(Locale.ENGLISH, "logout", "Log out");
+
+        ExtendingThemeManager.ExtendingTheme theme = new ExtendingThemeManager.ExtendingTheme(Arrays.<Theme>asList(child, parent));
+
+        Properties english = theme.getMessages(Locale.ENGLISH);
+        Assert.assertEquals("Child title", english.getProperty("title"));
+        Assert.assertEquals("Log in", english.getProperty("login"));
+        Assert.assertEquals(3, english.size());
+
+        Properties german = theme.getMessages(Locale.GERMAN);
+        Assert.assertEquals("Child title", german.getProperty("title"));
+        Assert.assertEquals("Anmelden", german.getProperty("login"));
+        Assert.assertEquals("Log out", german.get("logout"));
+        Assert.assertEquals("default", german.getProperty("missing", "default"));
+        Assert.assertTrue(german.containsKey("logout"));
+        Assert.assertEquals(3, german.stringPropertyNames().size());
+
+        // Snapshots are computed once
+        Assert.assertSame(english, theme.getMessages(Locale.ENGLISH));
+        Assert.assertSame(german, theme.getMessages("messages", Locale.GERMAN));
+        Assert.assertEquals(2, child.loaded);
+    }
+
+    @Test
+    public void testMergedProperties() throws Exception {
+        TestTheme child = new TestTheme("child");
+        child.properties.setProperty("locales", "en,de");
+
+        TestTheme parent = new TestTheme("parent");
+        parent.properties.setProperty("locales", "en");
+        parent.properties.setProperty("styles", "css/login.css");
+
+        ExtendingThemeManager.ExtendingTheme theme = new ExtendingThemeManager.ExtendingTheme(Arrays.<Theme>asList(child, parent));
+
+        Properties properties = theme.getProperties();
+        Assert.assertEquals("en,de", properties.getProperty("locales"));
+        Assert.assertEquals("css/login.css", properties.getProperty("styles"));
+        Assert.assertSame(properties, theme.getProperties());
+    }
+
+    @Test
+    public void testSnapshotsAreImmutable() throws Exception {
+        TestTheme child = new TestTheme("child");
+        child.addMessage(Locale.ENGLISH, "title", "Child title");
+
+        ExtendingThemeManager.ExtendingTheme theme = new ExtendingThemeManager.ExtendingTheme(Arrays.<Theme>asList(child));
+
+        Properties messages = theme.getMessages(Locale.ENGLISH);
+        try {
+            messages.setProperty("title", "Changed");
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            messages.entrySet().clear();
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+        }
+        Assert.assertEquals("Child title", theme.getMessages(Locale.ENGLISH).getProperty("title"));
+    }
+
+    private static class TestTheme implements Theme {
+
+        private final String name;
+        private final Map<Locale, Properties> messages = new HashMap<>();
+        private final Properties properties = new Properties();
+        private int loaded;
+
+        private TestTheme(String name) {
+            this.name = name;
+        }
+
+        private void addMessage(Locale locale, String key, String value) {
+            if (!messages.containsKey(locale)) {
+                messages.put(locale, new Properties());
+            }
+            messages.get(locale).setProperty(key, value);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getParentName() {
+            return null;
+        }
+
+        @Override
+        public String getImportName() {
+            return null;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LOGIN;
+        }
+
+        @Override
+        public URL getTemplate(String name) {
+            return null;
+        }
+
+        @Override
+        public InputStream getTemplateAsStream(String name) {
+            return null;
+        }
+
+        @Override
+        public URL getResource(String path) {
+            return null;
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String path) {
+            return null;
+        }
+
+        @Override
+        public Properties getMessages(Locale locale) {
+            return getMessages("messages", locale);
+        }
+
+        @Override
+        public Properties getMessages(String baseBundlename, Locale locale) {
+            loaded++;
+            return messages.get(locale);
+        }
+
+        @Override
+        public Properties getProperties() {
+            return properties;
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.test.theme;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.theme.ImmutableProperties;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Unit test for {@link ImmutableProperties}
+ */
+public class ImmutablePropertiesTest {
+
+    @Test
+    public void testReads() throws Exception {
+        Properties properties = create();
+
+        Assert.assertEquals(2, properties.size());
+        Assert.assertEquals("1", properties.getProperty("a"));
+        Assert.assertEquals("2", properties.get("b"));
+        Assert.assertEquals("default", properties.getProperty("c", "default"));
+        Assert.assertEquals("default", properties.getOrDefault("c", "default"));
+        Assert.assertTrue(properties.containsKey("a"));
+        Assert.assertTrue(properties.containsValue("2"));
+        Assert.assertEquals(2, properties.stringPropertyNames().size());
+        Assert.assertEquals(2, Collections.list(properties.keys()).size());
+        Assert.assertEquals(2, Collections.list(properties.propertyNames()).size());
+
+        final Map<Object, Object> iterated = new HashMap<>();
+        properties.forEach(new BiConsumer<Object, Object>() {
+            @Override
+            public void accept(Object key, Object value) {
+                iterated.put(key, value);
+            }
+        });
+        Assert.assertEquals(properties, iterated);
+
+        StringWriter writer = new StringWriter();
+        properties.store(writer, null);
+        Assert.assertTrue(writer.toString().contains("a=1"));
+        Assert.assertTrue(writer.toString().contains("b=2"));
+
+        Properties copy = (Properties) properties.clone();
+        Assert.assertEquals("1", copy.getProperty("a"));
+    }
+
+    @Test
+    public void testModificationsRejected() throws Exception {
+        final Properties properties = create();
+
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.put("c", "3");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.setProperty("c", "3");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.putAll(Collections.singletonMap("c", "3"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.putIfAbsent("c", "3");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.remove("a");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.clear();
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.replace("a", "3");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.computeIfAbsent("c", new Function<Object, Object>() {
+                    @Override
+                    public Object apply(Object key) {
+                        return "3";
+                    }
+                });
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.computeIfPresent("a", replaceWith("3"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.compute("a", replaceWith("3"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.merge("a", "3", replaceWith("3"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.replaceAll(replaceWith("3"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.keySet().remove("a");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                properties.entrySet().iterator().next().setValue("3");
+            }
+        });
+
+        Assert.assertEquals(create(), properties);
+        Assert.assertNull(properties.get("c"));
+    }
+
+    private static Properties create() {
+        Map<String, String> entries = new HashMap<>();
+        entries.put("a", "1");
+        entries.put("b", "2");
+        return new ImmutableProperties(entries);
+    }
+
+    private static BiFunction<Object, Object, Object> replaceWith(final Object value) {
+        return new BiFunction<Object, Object, Object>() {
+            @Override
+            public Object apply(Object key, Object oldValue) {
+                return value;
+            }
+        };
+    }
+
+    private static void assertUnsupported(Runnable modification) {
+        try {
+            modification.run();
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+}
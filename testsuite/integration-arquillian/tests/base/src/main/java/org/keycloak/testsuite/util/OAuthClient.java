@@ -189,16 +189,26 @@ public class OAuthClient {
     }
 
     public String introspectTokenWithClientCredential(String clientId, String clientSecret, String tokenType, String tokenToIntrospect) {
+        return introspectTokensWithClientCredential(getTokenIntrospectionUrl(), clientId, clientSecret, tokenType, tokenToIntrospect);
+    }
+
+    public String introspectTokenBatchWithClientCredential(String clientId, String clientSecret, String tokenType, String... tokensToIntrospect) {
+        return introspectTokensWithClientCredential(getTokenIntrospectionUrl() + "/batch", clientId, clientSecret, tokenType, tokensToIntrospect);
+    }
+
+    private String introspectTokensWithClientCredential(String url, String clientId, String clientSecret, String tokenType, String... tokensToIntrospect) {
         CloseableHttpClient client = new DefaultHttpClient();
         try {
-            HttpPost post = new HttpPost(getTokenIntrospectionUrl());
+            HttpPost post = new HttpPost(url);
 
             String authorization = BasicAuthHelper.createHeader(clientId, clientSecret);
             post.setHeader("Authorization", authorization);
 
             List<NameValuePair> parameters = new LinkedList<>();
 
-            parameters.add(new BasicNameValuePair("token", tokenToIntrospect));
+            for (String tokenToIntrospect : tokensToIntrospect) {
+                parameters.add(new BasicNameValuePair("token", tokenToIntrospect));
+            }
             parameters.add(new BasicNameValuePair("token_type_hint", tokenType));
 
             UrlEncodedFormEntity formEntity;
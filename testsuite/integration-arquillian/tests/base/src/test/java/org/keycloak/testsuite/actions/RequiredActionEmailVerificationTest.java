@@ -40,6 +40,7 @@ import java.io.IOException;
 import org.jboss.arquillian.graphene.page.Page;
 import org.keycloak.representations.idm.EventRepresentation;
 import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.services.managers.ClientSessionCode;
 import org.keycloak.testsuite.TestRealmKeycloakTest;
 import org.keycloak.testsuite.util.GreenMailRule;
 import org.keycloak.testsuite.util.MailUtils;
@@ -103,7 +104,7 @@ public class RequiredActionEmailVerificationTest extends TestRealmKeycloakTest {
 
         String mailCodeId = sendEvent.getDetails().get(Details.CODE_ID);
 
-        Assert.assertEquals(mailCodeId, verificationUrl.split("code=")[1].split("\\&")[0].split("\\.")[1]);
+        Assert.assertEquals(mailCodeId, getCodeId(verificationUrl));
 
         driver.navigate().to(verificationUrl.trim());
 
@@ -196,7 +197,7 @@ public class RequiredActionEmailVerificationTest extends TestRealmKeycloakTest {
 
         String mailCodeId = sendEvent.getDetails().get(Details.CODE_ID);
 
-        Assert.assertEquals(mailCodeId, verificationUrl.split("code=")[1].split("\\&")[0].split("\\.")[1]);
+        Assert.assertEquals(mailCodeId, getCodeId(verificationUrl));
 
         driver.manage().deleteAllCookies();
 
@@ -270,4 +271,10 @@ public class RequiredActionEmailVerificationTest extends TestRealmKeycloakTest {
         return htmlChangePwdUrl;
     }
 
+    // The code is opaque, the client session id is decoded the same way the server does it
+    private static String getCodeId(String verificationUrl) {
+        String code = verificationUrl.split("code=")[1].split("\\&")[0].trim();
+        return ClientSessionCode.getClientSessionId(code);
+    }
+
 }
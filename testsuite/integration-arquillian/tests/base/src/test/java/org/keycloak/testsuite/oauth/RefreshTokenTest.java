@@ -21,11 +21,15 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.RSATokenVerifier;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.common.enums.SslRequired;
 import org.keycloak.common.util.Time;
 import org.keycloak.events.Details;
 import org.keycloak.events.Errors;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWKParser;
+import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.protocol.oidc.OIDCLoginProtocolService;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.RefreshToken;
@@ -38,6 +42,7 @@ import org.keycloak.testsuite.util.OAuthClient;
 import org.keycloak.testsuite.util.RealmBuilder;
 import org.keycloak.testsuite.util.RealmManager;
 import org.keycloak.util.BasicAuthHelper;
+import org.keycloak.util.JsonSerialization;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -47,6 +52,7 @@ import javax.ws.rs.core.Form;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 
@@ -292,8 +298,8 @@ public class RefreshTokenTest extends AbstractKeycloakTest {
         events.expectCodeToToken(codeId, sessionId).assertEvent();
 
         try {
-
-            RealmManager.realm(adminClient.realm("test")).generateKeys();
+            // Tokens signed by the replaced keys are only invalidated if passive keys are disabled
+            RealmManager.realm(adminClient.realm("test")).passiveKeyLifespan(0).generateKeys();
 
             response = oauth.doRefreshTokenRequest(refreshTokenString, "password");
 
@@ -306,6 +312,51 @@ public class RefreshTokenTest extends AbstractKeycloakTest {
         }
     }
 
+    @Test
+    public void refreshTokenRealmKeysRotated() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+
+        EventRepresentation loginEvent = events.expectLogin().assertEvent();
+
+        String sessionId = loginEvent.getSessionId();
+        String codeId = loginEvent.getDetails().get(Details.CODE_ID);
+
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+
+        OAuthClient.AccessTokenResponse response = oauth.doAccessTokenRequest(code, "password");
+        String refreshTokenString = response.getRefreshToken();
+        RefreshToken refreshToken = oauth.verifyRefreshToken(refreshTokenString);
+        String kid = new JWSInput(response.getAccessToken()).getHeader().getKeyId();
+        Assert.assertNotNull(kid);
+
+        EventRepresentation tokenEvent = events.expectCodeToToken(codeId, sessionId).assertEvent();
+
+        RealmManager.realm(adminClient.realm("test")).generateKeys();
+
+        // The replaced key is still published, so clients can verify tokens signed by it
+        JSONWebKeySet keySet = getCerts();
+        assertEquals(2, keySet.getKeys().length);
+        assertEquals(kid, keySet.getKeys()[1].getKeyId());
+
+        response = oauth.doRefreshTokenRequest(refreshTokenString, "password");
+        assertEquals(200, response.getStatusCode());
+        assertEquals(keySet.getKeys()[0].getKeyId(), new JWSInput(response.getAccessToken()).getHeader().getKeyId());
+        AccessToken refreshedToken = RSATokenVerifier.toAccessToken(response.getAccessToken(), JWKParser.create(keySet.getKeys()[0]).toPublicKey());
+        assertEquals(sessionId, refreshedToken.getSessionState());
+
+        events.expectRefresh(tokenEvent.getDetails().get(Details.REFRESH_TOKEN_ID), sessionId).assertEvent();
+    }
+
+    private JSONWebKeySet getCerts() throws IOException {
+        Client client = ClientBuilder.newClient();
+        try {
+            String certs = client.target(AUTH_SERVER_ROOT).path("/realms/test/protocol/openid-connect/certs").request().get(String.class);
+            return JsonSerialization.readValue(certs, JSONWebKeySet.class);
+        } finally {
+            client.close();
+        }
+    }
+
     @Test
     public void refreshTokenClientDisabled() throws Exception {
         oauth.doLogin("test-user@localhost", "password");
@@ -250,4 +250,56 @@ public class TokenIntrospectionTest extends TestRealmKeycloakTest {
         assertNull(rep.getClientId());
         assertNull(rep.getSubject());
     }
+
+    @Test
+    public void testIntrospectAccessTokenRepeatedAfterLogout() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+        AccessTokenResponse accessTokenResponse = oauth.doAccessTokenRequest(code, "password");
+
+        for (int i = 0; i < 3; i++) {
+            String tokenResponse = oauth.introspectAccessTokenWithClientCredential("confidential-cli", "secret1", accessTokenResponse.getAccessToken());
+            TokenMetadataRepresentation rep = JsonSerialization.readValue(tokenResponse, TokenMetadataRepresentation.class);
+            assertTrue(rep.isActive());
+            assertEquals("test-user@localhost", rep.getUserName());
+        }
+
+        oauth.doLogout(accessTokenResponse.getRefreshToken(), "password");
+
+        String tokenResponse = oauth.introspectAccessTokenWithClientCredential("confidential-cli", "secret1", accessTokenResponse.getAccessToken());
+        TokenMetadataRepresentation rep = JsonSerialization.readValue(tokenResponse, TokenMetadataRepresentation.class);
+
+        assertFalse(rep.isActive());
+        assertNull(rep.getUserName());
+    }
+
+    @Test
+    public void testIntrospectAccessTokenBatch() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+        AccessTokenResponse accessTokenResponse = oauth.doAccessTokenRequest(code, "password");
+
+        String tokenResponse = oauth.introspectTokenBatchWithClientCredential("confidential-cli", "secret1", "access_token",
+                accessTokenResponse.getAccessToken(), "invalid", accessTokenResponse.getAccessToken());
+        TokenMetadataRepresentation[] reps = JsonSerialization.readValue(tokenResponse, TokenMetadataRepresentation[].class);
+
+        assertEquals(3, reps.length);
+        assertTrue(reps[0].isActive());
+        assertEquals("test-user@localhost", reps[0].getUserName());
+        assertEquals("test-app", reps[0].getClientId());
+        assertFalse(reps[1].isActive());
+        assertNull(reps[1].getUserName());
+        assertTrue(reps[2].isActive());
+        assertEquals(reps[0].getId(), reps[2].getId());
+    }
+
+    @Test
+    public void testIntrospectBatchPublicClientCredentialsNotAllowed() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+        AccessTokenResponse accessTokenResponse = oauth.doAccessTokenRequest(code, "password");
+        String tokenResponse = oauth.introspectTokenBatchWithClientCredential("public-cli", "it_doesnt_matter", "access_token", accessTokenResponse.getAccessToken());
+
+        assertEquals("{\"error_description\":\"Client not allowed.\",\"error\":\"invalid_request\"}", tokenResponse);
+    }
 }
@@ -85,6 +85,13 @@ public class RealmManager {
         realm.update(rep);
     }
 
+    public RealmManager passiveKeyLifespan(int passiveKeyLifespan) {
+        RealmRepresentation rep = realm.toRepresentation();
+        rep.setPassiveKeyLifespan(passiveKeyLifespan);
+        realm.update(rep);
+        return this;
+    }
+
     public void ssoSessionMaxLifespan(int ssoSessionMaxLifespan) {
         RealmRepresentation rep = realm.toRepresentation();
         rep.setSsoSessionMaxLifespan(ssoSessionMaxLifespan);
@@ -20,9 +20,13 @@ package org.keycloak.testsuite.broker;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.keycloak.admin.client.Keycloak;
+import org.keycloak.common.util.Time;
+import org.keycloak.constants.AdapterConstants;
+import org.keycloak.jose.jws.JWSBuilder;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.adapters.action.LogoutAction;
 import org.keycloak.representations.idm.IdentityProviderRepresentation;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.services.Urls;
@@ -36,10 +40,19 @@ import org.keycloak.util.JsonSerialization;
 import org.openqa.selenium.NoSuchElementException;
 
 import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Map;
 
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -146,6 +159,81 @@ public class OIDCKeyCloakServerBrokerBasicTest extends AbstractKeycloakIdentityP
         keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
     }
 
+    @Test
+    public void testSuccessfulAuthenticationWithJwks() {
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", org.keycloak.models.Constants.ADMIN_CLI_CLIENT_ID);
+        IdentityProviderRepresentation idp = keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").toRepresentation();
+        idp.getConfig().put("validateSignature", "true");
+        idp.getConfig().put("jwksUrl", "http://localhost:8082/auth/realms/realm-with-oidc-identity-provider/protocol/openid-connect/certs");
+        keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        try {
+            super.testSuccessfulAuthentication();
+        } finally {
+            idp.getConfig().remove("validateSignature");
+            idp.getConfig().remove("jwksUrl");
+            keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        }
+    }
+
+    @Test
+    public void testBackchannelLogoutWithUnknownKid() throws Exception {
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", org.keycloak.models.Constants.ADMIN_CLI_CLIENT_ID);
+        IdentityProviderRepresentation idp = keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").toRepresentation();
+        idp.getConfig().put("validateSignature", "true");
+        idp.getConfig().put("jwksUrl", "http://localhost:8082/auth/realms/realm-with-oidc-identity-provider/protocol/openid-connect/certs");
+        keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        try {
+            KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+            LogoutAction action = new LogoutAction("id", Time.currentTime() + 30, "broker-app", null, 0, null);
+            String token = new JWSBuilder().kid("unknown-kid").jsonContent(action).rsa256(keyPair.getPrivate());
+
+            Client client = ClientBuilder.newClient();
+            try {
+                Response response = client.target("http://localhost:8081/auth/realms/realm-with-broker/broker/kc-oidc-idp/endpoint/" + AdapterConstants.K_LOGOUT)
+                        .request().post(Entity.text(token));
+                assertEquals(400, response.getStatus());
+                response.close();
+            } finally {
+                client.close();
+            }
+        } finally {
+            idp.getConfig().remove("validateSignature");
+            idp.getConfig().remove("jwksUrl");
+            keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        }
+    }
+
+    @Test
+    public void testSuccessfulAuthenticationWithRequestLimits() {
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", org.keycloak.models.Constants.ADMIN_CLI_CLIENT_ID);
+        IdentityProviderRepresentation idp = keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").toRepresentation();
+        idp.getConfig().put("connectTimeout", "5000");
+        idp.getConfig().put("socketTimeout", "10000");
+        idp.getConfig().put("maxConcurrentRequests", "2");
+        keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        try {
+            super.testSuccessfulAuthentication();
+
+            // metrics are shown on the server info of the pooled http client
+            Map<String, String> info = keycloak.serverInfo().getInfo().getProviders().get("connectionsHttpClient").getProviders().get("default").getOperationalInfo();
+            String prefix = null;
+            for (String key : info.keySet()) {
+                if (key.startsWith("limiter.kc-oidc-idp/") && key.endsWith(".maxConcurrentRequests") && info.get(key).equals("2")) {
+                    prefix = key.substring(0, key.length() - "maxConcurrentRequests".length());
+                }
+            }
+            assertNotNull(prefix);
+            assertTrue(Long.parseLong(info.get(prefix + "requests")) > 0);
+            assertEquals("0", info.get(prefix + "rejected"));
+            assertEquals("0", info.get(prefix + "activeRequests"));
+        } finally {
+            idp.getConfig().remove("connectTimeout");
+            idp.getConfig().remove("socketTimeout");
+            idp.getConfig().remove("maxConcurrentRequests");
+            keycloak.realm("realm-with-broker").identityProviders().get("kc-oidc-idp").update(idp);
+        }
+    }
+
     @Test
     public void testSuccessfulAuthenticationWithoutUpdateProfile() {
         super.testSuccessfulAuthenticationWithoutUpdateProfile();
@@ -23,6 +23,7 @@ import java.util.Set;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.keycloak.authentication.AuthenticationFlowPlan;
 import org.keycloak.models.*;
 import org.keycloak.models.cache.infinispan.ClientAdapter;
 import org.keycloak.models.cache.infinispan.RealmAdapter;
@@ -157,4 +158,60 @@ public class CacheTest {
         }
     }
 
+    @Test
+    public void testAuthenticationFlowPlan() throws Exception {
+        AuthenticationFlowPlan plan;
+        AuthenticationExecutionModel cookie = null;
+        {
+            KeycloakSession session = kc.startSession();
+            RealmModel realm = session.realms().getRealmByName("test");
+            plan = AuthenticationFlowPlan.get(realm, session.getKeycloakSessionFactory(), realm.getBrowserFlow());
+            Assert.assertSame(plan, AuthenticationFlowPlan.get(realm, session.getKeycloakSessionFactory(), realm.getBrowserFlow()));
+
+            AuthenticationFlowPlan forms = null;
+            for (AuthenticationFlowPlan.Step step : plan.getSteps()) {
+                if (step.getExecution().isAuthenticatorFlow()) {
+                    Assert.assertNull(step.getFactory());
+                    if (step.getSubflow() != null) forms = step.getSubflow();
+                } else {
+                    assertNotNull(step.getFactory());
+                    Assert.assertEquals(step.getExecution().getAuthenticator(), step.getFactory().getId());
+                    if (step.getExecution().getAuthenticator().equals("auth-cookie")) cookie = step.getExecution();
+                }
+            }
+            assertNotNull(cookie);
+            assertNotNull(forms);
+            Assert.assertEquals(AuthenticationExecutionModel.Requirement.REQUIRED, forms.getCategoryRequirement(UserCredentialModel.PASSWORD));
+            Assert.assertNull(forms.getCategoryRequirement("unknown"));
+            kc.stopSession(session, true);
+        }
+        {
+            // plan is reused while the realm is cached, and compiled again once the realm is changed
+            KeycloakSession session = kc.startSession();
+            RealmModel realm = session.realms().getRealmByName("test");
+            Assert.assertSame(plan, AuthenticationFlowPlan.get(realm, session.getKeycloakSessionFactory(), realm.getBrowserFlow()));
+
+            AuthenticationExecutionModel execution = realm.getAuthenticationExecutionById(cookie.getId());
+            execution.setRequirement(AuthenticationExecutionModel.Requirement.DISABLED);
+            realm.updateAuthenticatorExecution(execution);
+            kc.stopSession(session, true);
+        }
+        {
+            KeycloakSession session = kc.startSession();
+            RealmModel realm = session.realms().getRealmByName("test");
+            AuthenticationFlowPlan updated = AuthenticationFlowPlan.get(realm, session.getKeycloakSessionFactory(), realm.getBrowserFlow());
+            Assert.assertNotSame(plan, updated);
+            for (AuthenticationFlowPlan.Step step : updated.getSteps()) {
+                if (step.getExecution().getId().equals(cookie.getId())) {
+                    Assert.assertTrue(step.getExecution().isDisabled());
+                }
+            }
+
+            AuthenticationExecutionModel execution = realm.getAuthenticationExecutionById(cookie.getId());
+            execution.setRequirement(cookie.getRequirement());
+            realm.updateAuthenticatorExecution(execution);
+            kc.stopSession(session, true);
+        }
+    }
+
 }
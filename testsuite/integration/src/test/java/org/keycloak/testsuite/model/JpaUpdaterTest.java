@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.testsuite.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
+import org.keycloak.connections.jpa.JpaConnectionProviderFactory;
+import org.keycloak.connections.jpa.updater.JpaUpdaterProvider;
+import org.keycloak.connections.jpa.updater.liquibase.LiquibaseJpaUpdaterProvider;
+
+public class JpaUpdaterTest extends AbstractModelTest {
+
+    @Test
+    public void testChangelogHash() throws Exception {
+        JpaConnectionProviderFactory factory = (JpaConnectionProviderFactory) session.getKeycloakSessionFactory().getProviderFactory(JpaConnectionProvider.class);
+        String schema = factory.getSchema();
+        String hash = LiquibaseJpaUpdaterProvider.getChangelogHash();
+        Assert.assertEquals(hash, LiquibaseJpaUpdaterProvider.getChangelogHash());
+
+        Connection connection = factory.getConnection();
+        try {
+            // Recorded by the update on startup
+            Assert.assertEquals(1, countTags(connection, schema, hash));
+
+            JpaUpdaterProvider updater = session.getProvider(JpaUpdaterProvider.class);
+            updater.validate(connection, schema);
+
+            // Without the hash the changelogs are checked and the hash is recorded again
+            try (PreparedStatement statement = connection.prepareStatement("UPDATE " + LiquibaseJpaUpdaterProvider.getTable("DATABASECHANGELOG", schema) + " SET TAG = NULL WHERE TAG = ?")) {
+                statement.setString(1, hash);
+                statement.executeUpdate();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            Assert.assertEquals(0, countTags(connection, schema, hash));
+
+            updater.validate(connection, schema);
+            Assert.assertEquals(0, countTags(connection, schema, hash));
+
+            updater.update(connection, schema);
+            Assert.assertEquals(1, countTags(connection, schema, hash));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testChangelogHashFollowsNestedIncludes() {
+        Map<String, String> changelogs = new HashMap<>();
+        changelogs.put("master.xml", "<databaseChangeLog><include file=\"level1.xml\"/></databaseChangeLog>");
+        changelogs.put("level1.xml", "<databaseChangeLog><include file=\"level2.xml\"/></databaseChangeLog>");
+        changelogs.put("level2.xml", "<databaseChangeLog><changeSet id=\"1\"/></databaseChangeLog>");
+        String hash = LiquibaseJpaUpdaterProvider.getChangelogHash(new ChangelogClassLoader(changelogs), "master.xml");
+
+        changelogs.put("level2.xml", "<databaseChangeLog><changeSet id=\"1\"/><changeSet id=\"2\"/></databaseChangeLog>");
+        Assert.assertNotEquals(hash, LiquibaseJpaUpdaterProvider.getChangelogHash(new ChangelogClassLoader(changelogs), "master.xml"));
+    }
+
+    private static class ChangelogClassLoader extends ClassLoader {
+
+        private final Map<String, String> changelogs;
+
+        private ChangelogClassLoader(Map<String, String> changelogs) {
+            super(null);
+            this.changelogs = changelogs;
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            String changelog = changelogs.get(name);
+            return changelog != null ? new ByteArrayInputStream(changelog.getBytes(Charset.forName("UTF-8"))) : null;
+        }
+    }
+
+    private int countTags(Connection connection, String schema, String hash) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + LiquibaseJpaUpdaterProvider.getTable("DATABASECHANGELOG", schema) + " WHERE TAG = ?")) {
+            statement.setString(1, hash);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+}
@@ -20,15 +20,20 @@ package org.keycloak.testsuite.model;
 import org.junit.Assert;
 import org.junit.Test;
 import org.keycloak.common.enums.SslRequired;
+import org.keycloak.common.util.Time;
 import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmKeyModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.ModelToRepresentation;
 import org.keycloak.representations.idm.RealmRepresentation;
 
+import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class ModelTest extends AbstractModelTest {
 
@@ -45,6 +50,7 @@ public class ModelTest extends AbstractModelTest {
         realm.setPasswordPolicy(new PasswordPolicy("length"));
         realm.setAccessCodeLifespan(1001);
         realm.setAccessCodeLifespanUserAction(1002);
+        realm.setPassiveKeyLifespan(1003);
         KeycloakModelUtils.generateRealmKeys(realm);
         realm.addDefaultRole("default-role");
 
@@ -69,6 +75,99 @@ public class ModelTest extends AbstractModelTest {
         assertEquals(realm, copy);
     }
 
+    @Test
+    public void rotateRealmKeys() {
+        RealmModel realm = realmManager.createRealm("rotate");
+        realm.setPassiveKeyLifespan(100);
+        KeycloakModelUtils.generateRealmKeys(realm);
+        PublicKey oldKey = realm.getPublicKey();
+        String oldKid = KeycloakModelUtils.getKeyId(oldKey);
+
+        KeycloakModelUtils.generateRealmKeys(realm);
+        commit();
+
+        realm = realmManager.getRealm(realm.getId());
+        PublicKey newKey = realm.getPublicKey();
+        String newKid = KeycloakModelUtils.getKeyId(newKey);
+        Assert.assertNotEquals(oldKid, newKid);
+
+        List<RealmKeyModel> passiveKeys = realm.getPassiveKeys();
+        Assert.assertEquals(1, passiveKeys.size());
+        Assert.assertEquals(oldKid, passiveKeys.get(0).getKid());
+
+        Assert.assertEquals(newKey, KeycloakModelUtils.getPublicKey(realm, newKid));
+        Assert.assertEquals(oldKey, KeycloakModelUtils.getPublicKey(realm, oldKid));
+        Assert.assertEquals(newKey, KeycloakModelUtils.getPublicKey(realm, null));
+        Assert.assertEquals(newKey, KeycloakModelUtils.getPublicKey(realm, "unknown"));
+
+        // Expired passive keys aren't used anymore and are removed when the keys are replaced again
+        Time.setOffset(101);
+        try {
+            Assert.assertEquals(newKey, KeycloakModelUtils.getPublicKey(realm, oldKid));
+
+            KeycloakModelUtils.generateRealmKeys(realm);
+            commit();
+
+            realm = realmManager.getRealm(realm.getId());
+            passiveKeys = realm.getPassiveKeys();
+            Assert.assertEquals(1, passiveKeys.size());
+            Assert.assertEquals(newKid, passiveKeys.get(0).getKid());
+        } finally {
+            Time.setOffset(0);
+        }
+    }
+
+    @Test
+    public void rotateRealmKeysPassiveKeysDisabled() {
+        RealmModel realm = realmManager.createRealm("rotate");
+        realm.setPassiveKeyLifespan(0);
+        KeycloakModelUtils.generateRealmKeys(realm);
+        String oldKid = KeycloakModelUtils.getKeyId(realm.getPublicKey());
+
+        KeycloakModelUtils.generateRealmKeys(realm);
+        commit();
+
+        realm = realmManager.getRealm(realm.getId());
+        Assert.assertTrue(realm.getPassiveKeys().isEmpty());
+        Assert.assertEquals(realm.getPublicKey(), KeycloakModelUtils.getPublicKey(realm, oldKid));
+    }
+
+    @Test
+    public void rotateRealmKeysReactivatedKey() {
+        RealmModel realm = realmManager.createRealm("rotate");
+        realm.setPassiveKeyLifespan(100);
+        KeycloakModelUtils.generateRealmKeys(realm);
+        PublicKey oldKey = realm.getPublicKey();
+        String oldKid = realm.getKeyId();
+        String oldPublicKeyPem = realm.getPublicKeyPem();
+        String oldPrivateKeyPem = realm.getPrivateKeyPem();
+
+        KeycloakModelUtils.generateRealmKeys(realm);
+        commit();
+
+        // The old key is uploaded again while it's still a passive key
+        realm = realmManager.getRealm(realm.getId());
+        String newKid = realm.getKeyId();
+        KeycloakModelUtils.retireRealmKey(realm);
+        realm.setPrivateKeyPem(oldPrivateKeyPem);
+        realm.setPublicKeyPem(oldPublicKeyPem);
+        commit();
+
+        realm = realmManager.getRealm(realm.getId());
+        Assert.assertEquals(oldKid, realm.getKeyId());
+
+        KeycloakModelUtils.generateRealmKeys(realm);
+        commit();
+
+        realm = realmManager.getRealm(realm.getId());
+        Set<String> passiveKids = new HashSet<String>();
+        for (RealmKeyModel key : realm.getPassiveKeys()) {
+            passiveKids.add(key.getKid());
+        }
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(oldKid, newKid)), passiveKids);
+        Assert.assertEquals(oldKey, KeycloakModelUtils.getPublicKey(realm, oldKid));
+    }
+
     public static void assertEquals(RealmModel expected, RealmModel actual) {
         Assert.assertEquals(expected.isRegistrationAllowed(), actual.isRegistrationAllowed());
         Assert.assertEquals(expected.isRegistrationEmailAsUsername(), actual.isRegistrationEmailAsUsername());
@@ -80,6 +179,7 @@ public class ModelTest extends AbstractModelTest {
 
         Assert.assertEquals(expected.getAccessCodeLifespan(), actual.getAccessCodeLifespan());
         Assert.assertEquals(expected.getAccessCodeLifespanUserAction(), actual.getAccessCodeLifespanUserAction());
+        Assert.assertEquals(expected.getPassiveKeyLifespan(), actual.getPassiveKeyLifespan());
         Assert.assertEquals(expected.getPublicKeyPem(), actual.getPublicKeyPem());
         Assert.assertEquals(expected.getPrivateKeyPem(), actual.getPrivateKeyPem());
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.testsuite.model;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.connections.mongo.MongoConnectionProvider;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.GroupModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Removal of entities with callbacks in the Mongo store, with a batch size smaller than the count of removed entities
+ */
+public class MongoBatchRemovalTest extends AbstractModelTest {
+
+    static {
+        System.setProperty("keycloak.connectionsMongo.batchSize", "2");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty("keycloak.connectionsMongo.batchSize");
+    }
+
+    @Before
+    public void assumeMongo() {
+        Assume.assumeTrue("mongo".equals(Config.getProvider("realm")));
+    }
+
+    @Test
+    public void removeClientRoles() {
+        RealmModel realm = realmManager.createRealm("batch");
+        ClientModel client = realm.addClient("app");
+        ClientModel other = realm.addClient("other");
+        GroupModel group = realm.createGroup("group");
+        for (int i = 0; i < 5; i++) {
+            RoleModel role = client.addRole("role-" + i);
+            other.addScopeMapping(role);
+            group.grantRole(role);
+        }
+        String clientId = client.getId();
+        commit();
+
+        realm = realmManager.getRealmByName("batch");
+        Assert.assertTrue(realm.removeClient(clientId));
+        commit();
+
+        // Callbacks of all removed roles pulled them from the scope and role mappings
+        realm = realmManager.getRealmByName("batch");
+        Assert.assertNull(realm.getClientById(clientId));
+        Assert.assertTrue(realm.getClientByClientId("other").getScopeMappings().isEmpty());
+        Assert.assertTrue(realm.getGroupById(group.getId()).getRoleMappings().isEmpty());
+        Assert.assertEquals(0, getDB().getCollection("roles").count(new BasicDBObject("clientId", clientId)));
+    }
+
+    @Test
+    public void removeRealm() {
+        RealmModel realm = realmManager.createRealm("batch");
+        List<String> clientIds = new LinkedList<String>();
+        for (int i = 0; i < 5; i++) {
+            ClientModel client = realm.addClient("app-" + i);
+            client.addRole("role");
+            clientIds.add(client.getId());
+            realm.addRole("role-" + i);
+            realm.createGroup("group-" + i);
+        }
+        String realmId = realm.getId();
+        commit();
+
+        Assert.assertTrue(realmManager.removeRealm(realmManager.getRealm(realmId)));
+        commit();
+
+        DB db = getDB();
+        Assert.assertEquals(0, db.getCollection("clients").count(new BasicDBObject("realmId", realmId)));
+        Assert.assertEquals(0, db.getCollection("roles").count(new BasicDBObject("realmId", realmId)));
+        Assert.assertEquals(0, db.getCollection("groups").count(new BasicDBObject("realmId", realmId)));
+        Assert.assertEquals(0, db.getCollection("roles").count(new BasicDBObject("clientId", new BasicDBObject("$in", clientIds))));
+    }
+
+    private DB getDB() {
+        return session.getProvider(MongoConnectionProvider.class).getDB();
+    }
+
+}
@@ -19,19 +19,27 @@ package org.keycloak.testsuite.model;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
 import org.keycloak.models.ClientModel;
+import org.keycloak.models.GroupModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserModel.RequiredAction;
+import org.keycloak.models.UserProvider;
+import org.keycloak.models.jpa.JpaUserProvider;
+import org.keycloak.models.jpa.UserSearchIndex;
 import org.keycloak.services.managers.ClientManager;
 
+import javax.persistence.EntityManager;
+
 import static org.junit.Assert.assertNotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -222,6 +230,160 @@ public class UserModelTest extends AbstractModelTest {
         Assert.assertTrue(users.contains(user1));
     }
 
+    @Test
+    public void testSearchByStringIndexed() {
+        RealmModel realm = realmManager.createRealm("original");
+        UserModel user1 = session.users().addUser(realm, "user1");
+        user1.setFirstName("John");
+        user1.setLastName("Doe");
+        user1.setEmail("john.doe@redhat.com");
+        UserModel user2 = session.users().addUser(realm, "user2");
+        user2.setFirstName("Mary");
+        user2.setLastName("Doe-Smith");
+        UserModel user3 = session.users().addUser(realm, "user3");
+
+        commit();
+
+        // tokens aren't maintained in like mode, they're built on startup once indexed mode is enabled
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        Assert.assertEquals(0L, (long) em.createQuery("select count(t) from UserSearchTokenEntity t where t.realmId = :realmId", Long.class)
+                .setParameter("realmId", realm.getId()).getSingleResult());
+        Assert.assertTrue(UserSearchIndex.indexMissing(em, 1000) >= 3);
+        Assert.assertEquals(0, UserSearchIndex.indexMissing(em, 1000));
+
+        realm = realmManager.getRealmByName("original");
+        UserProvider indexed = new JpaUserProvider(session, em, true, false);
+
+        Assert.assertEquals(3, indexed.searchForUser("USER", realm).size());
+        assertUsernames(indexed.searchForUser("doe", realm), "user1", "user2");
+        assertUsernames(indexed.searchForUser("John D", realm), "user1");
+        assertUsernames(indexed.searchForUser("redhat.c", realm), "user1");
+        assertUsernames(indexed.searchForUser("smi", realm), "user2");
+        Assert.assertEquals(0, indexed.searchForUser("oe", realm).size());
+
+        assertUsernames(indexed.searchForUser("user", realm, 0, 2), "user1", "user2");
+        assertUsernames(indexed.searchForUser("user", realm, 2, 2), "user3");
+        assertUsernames(indexed.searchForUser("user", realm, 1, 2), "user2", "user3");
+
+        // tokens follow updates
+        UserModel user = indexed.getUserByUsername("user1", realm);
+        user.setLastName("Brown");
+        user.setEmail(null);
+        assertUsernames(indexed.searchForUser("doe", realm), "user2");
+        assertUsernames(indexed.searchForUser("brown", realm), "user1");
+        Assert.assertEquals(0, indexed.searchForUser("redhat", realm).size());
+
+        UserModel user4 = indexed.addUser(realm, "user4");
+        user4.setFirstName("Jane");
+        assertUsernames(indexed.searchForUser("jan", realm), "user4");
+
+        indexed.removeUser(realm, indexed.getUserByUsername("user2", realm));
+        Assert.assertEquals(0, indexed.searchForUser("doe", realm).size());
+    }
+
+    @Test
+    public void testBatchFetch() {
+        RealmModel realm = realmManager.createRealm("original");
+        RoleModel role = realm.addRole("role");
+        GroupModel group = realm.createGroup("group");
+        for (int i = 0; i < 3; i++) {
+            UserModel user = session.users().addUser(realm, "user" + i);
+            user.setSingleAttribute("key", "value" + i);
+            user.setAttribute("multi", Arrays.asList("a" + i, "b" + i));
+            user.addRequiredAction(RequiredAction.UPDATE_PASSWORD);
+            user.grantRole(role);
+            if (i > 0) user.joinGroup(group);
+        }
+
+        commit();
+
+        realm = realmManager.getRealmByName("original");
+        role = realm.getRole("role");
+        group = realm.getGroupById(group.getId());
+        UserProvider batch = new JpaUserProvider(session, session.getProvider(JpaConnectionProvider.class).getEntityManager(), false, true);
+
+        List<UserModel> users = batch.getUsers(realm, false);
+        Assert.assertEquals(3, users.size());
+        for (int i = 0; i < 3; i++) {
+            UserModel user = users.get(i);
+            Assert.assertEquals("value" + i, user.getFirstAttribute("key"));
+            Assert.assertEquals(new HashSet<String>(Arrays.asList("a" + i, "b" + i)), new HashSet<String>(user.getAttribute("multi")));
+            Assert.assertEquals(2, user.getAttributes().size());
+            Assert.assertTrue(user.getRequiredActions().contains(RequiredAction.UPDATE_PASSWORD.name()));
+            Assert.assertTrue(user.hasRole(role));
+            Assert.assertEquals(i > 0, user.isMemberOf(group));
+        }
+
+        // fetched mappings follow updates done through the adapter
+        UserModel user = users.get(0);
+        user.deleteRoleMapping(role);
+        user.joinGroup(group);
+        user.setSingleAttribute("multi", "c");
+        user.removeAttribute("key");
+        Assert.assertFalse(user.hasRole(role));
+        Assert.assertTrue(user.isMemberOf(group));
+        Assert.assertEquals(Arrays.asList("c"), user.getAttribute("multi"));
+        Assert.assertNull(user.getFirstAttribute("key"));
+
+        commit();
+
+        realm = realmManager.getRealmByName("original");
+        user = session.users().getUserByUsername("user0", realm);
+        Assert.assertFalse(user.getRoleMappings().contains(realm.getRole("role")));
+        Assert.assertEquals(1, user.getGroups().size());
+        Assert.assertEquals(Arrays.asList("c"), user.getAttribute("multi"));
+        Assert.assertNull(user.getFirstAttribute("key"));
+    }
+
+    @Test
+    public void testAdaptersOfSameUser() {
+        RealmModel realm = realmManager.createRealm("original");
+        RoleModel role = realm.addRole("role");
+        GroupModel group = realm.createGroup("group");
+        UserModel user = session.users().addUser(realm, "user");
+        user.setSingleAttribute("key", "value");
+
+        commit();
+
+        realm = realmManager.getRealmByName("original");
+        role = realm.getRole("role");
+        group = realm.getGroupById(group.getId());
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        UserModel batch = new JpaUserProvider(session, em, false, true).getUsers(realm, false).get(0);
+        UserModel lazy = new JpaUserProvider(session, em).getUserByUsername("user", realm);
+
+        // both adapters read the attributes and mappings first, so they are indexed, then update them through each other
+        Assert.assertEquals("value", batch.getFirstAttribute("key"));
+        Assert.assertEquals("value", lazy.getFirstAttribute("key"));
+        Assert.assertFalse(batch.hasRole(role));
+        Assert.assertFalse(batch.isMemberOf(group));
+
+        lazy.setSingleAttribute("key", "value2");
+        lazy.setSingleAttribute("other", "value3");
+        lazy.grantRole(role);
+        lazy.joinGroup(group);
+        Assert.assertEquals("value2", batch.getFirstAttribute("key"));
+        Assert.assertEquals("value3", batch.getFirstAttribute("other"));
+        Assert.assertTrue(batch.hasRole(role));
+        Assert.assertTrue(batch.isMemberOf(group));
+
+        batch.removeAttribute("key");
+        batch.deleteRoleMapping(role);
+        batch.leaveGroup(group);
+        Assert.assertNull(lazy.getFirstAttribute("key"));
+        Assert.assertEquals(1, lazy.getAttributes().size());
+        Assert.assertFalse(lazy.hasRole(role));
+        Assert.assertFalse(lazy.isMemberOf(group));
+        Assert.assertFalse(batch.hasRole(role));
+        Assert.assertFalse(batch.isMemberOf(group));
+    }
+
+    private static void assertUsernames(List<UserModel> users, String... expected) {
+        List<String> usernames = new ArrayList<String>();
+        for (UserModel user : users) usernames.add(user.getUsername());
+        Assert.assertEquals(Arrays.asList(expected), usernames);
+    }
+
     @Test
     public void testSearchByUserAttribute() throws Exception {
         RealmModel realm = realmManager.createRealm("original");
@@ -22,17 +22,25 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.persistence.EntityManager;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.ModelException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.jpa.session.JpaUserSessionPersisterProvider;
+import org.keycloak.models.jpa.session.PersistentUserSessionEntity;
+import org.keycloak.models.jpa.session.PersistentUserSessionUpdateBuffer;
+import org.keycloak.models.session.PersistentSessionDataCodec;
 import org.keycloak.models.session.UserSessionPersisterProvider;
 import org.keycloak.protocol.oidc.OIDCLoginProtocol;
 import org.keycloak.services.managers.ClientManager;
@@ -222,6 +230,137 @@ public class UserSessionPersisterProviderTest {
         }
     }
 
+    @Test
+    public void testCompactData() {
+        int started = Time.currentTime();
+        UserSessionModel[] origSessions = createSessions();
+
+        resetSession();
+
+        // Session 0 in legacy JSON, session 1 in compact format
+        persistUserSession(session.sessions().getUserSession(realm, origSessions[0].getId()), true);
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        persister = new JpaUserSessionPersisterProvider(session, em, null, true);
+        persistUserSession(session.sessions().getUserSession(realm, origSessions[1].getId()), true);
+
+        Assert.assertFalse(PersistentSessionDataCodec.isCompact(em.find(PersistentUserSessionEntity.class, new PersistentUserSessionEntity.Key(origSessions[0].getId(), "1")).getData()));
+        Assert.assertTrue(PersistentSessionDataCodec.isCompact(em.find(PersistentUserSessionEntity.class, new PersistentUserSessionEntity.Key(origSessions[1].getId(), "1")).getData()));
+
+        resetSession();
+
+        // Both formats are readable
+        List<UserSessionModel> loadedSessions = loadPersistedSessionsPaginated(true, 10, 1, 2);
+        assertSessionLoaded(loadedSessions, origSessions[0].getId(), session.users().getUserByUsername("user1", realm), "127.0.0.1", started, started, "test-app", "third-party");
+        assertSessionLoaded(loadedSessions, origSessions[1].getId(), session.users().getUserByUsername("user1", realm), "127.0.0.2", started, started, "test-app");
+
+        // Changed legacy data are rewritten in compact format
+        em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        persister = new JpaUserSessionPersisterProvider(session, em, null, true);
+        UserSessionModel legacySession = origSessions[0].getId().equals(loadedSessions.get(0).getId()) ? loadedSessions.get(0) : loadedSessions.get(1);
+        legacySession.setNote("foo", "bar");
+        persister.updateUserSession(legacySession, true);
+
+        resetSession();
+
+        em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        Assert.assertTrue(PersistentSessionDataCodec.isCompact(em.find(PersistentUserSessionEntity.class, new PersistentUserSessionEntity.Key(origSessions[0].getId(), "1")).getData()));
+        loadedSessions = loadPersistedSessionsPaginated(true, 10, 1, 2);
+        assertSessionLoaded(loadedSessions, origSessions[0].getId(), session.users().getUserByUsername("user1", realm), "127.0.0.1", started, started, "test-app", "third-party");
+        for (UserSessionModel loaded : loadedSessions) {
+            if (loaded.getId().equals(origSessions[0].getId())) {
+                Assert.assertEquals("bar", loaded.getNote("foo"));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteBehindUpdate() {
+        int started = Time.currentTime();
+        UserSessionModel[] origSessions = createSessions();
+
+        resetSession();
+
+        UserSessionModel userSession = session.sessions().getUserSession(realm, origSessions[1].getId());
+        persistUserSession(userSession, true);
+
+        resetSession();
+
+        PersistentUserSessionUpdateBuffer buffer = new PersistentUserSessionUpdateBuffer(100);
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        UserSessionPersisterProvider writeBehind = new JpaUserSessionPersisterProvider(session, em, buffer);
+
+        // Repeated refreshes are coalesced into one write
+        UserSessionModel persistedSession = loadPersistedSessionsPaginated(true, 10, 1, 1).get(0);
+        for (int i = 1; i <= 3; i++) {
+            persistedSession.setLastSessionRefresh(started + i * 5);
+            writeBehind.updateUserSession(persistedSession, true);
+        }
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertFalse(buffer.get(persistedSession.getId(), "1").isDataChanged());
+
+        // Pending update is visible to the loading, but not written yet
+        Assert.assertEquals(started + 15, writeBehind.loadUserSessions(0, 10, true).get(0).getLastSessionRefresh());
+        Assert.assertEquals(started, loadPersistedSessionsPaginated(true, 10, 1, 1).get(0).getLastSessionRefresh());
+
+        Assert.assertEquals(1, buffer.flush(session));
+        Assert.assertEquals(0, buffer.size());
+
+        resetSession();
+
+        persistedSession = loadPersistedSessionsPaginated(true, 10, 1, 1).get(0);
+        UserSessionProviderTest.assertSession(persistedSession, session.users().getUserByUsername("user1", realm), "127.0.0.2", started, started + 15, "test-app");
+
+        // Data are written only when they were changed
+        em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        writeBehind = new JpaUserSessionPersisterProvider(session, em, buffer);
+        persistedSession.setNote("foo", "bar");
+        writeBehind.updateUserSession(persistedSession, true);
+        Assert.assertTrue(buffer.get(persistedSession.getId(), "1").isDataChanged());
+        buffer.flush(session);
+
+        resetSession();
+
+        persistedSession = loadPersistedSessionsPaginated(true, 10, 1, 1).get(0);
+        Assert.assertEquals("bar", persistedSession.getNote("foo"));
+        Assert.assertEquals(started + 15, persistedSession.getLastSessionRefresh());
+
+        // Wrapped session with the same data only updates the refresh time
+        em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        writeBehind = new JpaUserSessionPersisterProvider(session, em, buffer);
+        UserSessionModel offlineSession = session.sessions().getUserSession(realm, origSessions[1].getId());
+        offlineSession.setNote("foo", "bar");
+        offlineSession.setLastSessionRefresh(started + 20);
+        writeBehind.updateUserSession(offlineSession, true);
+        Assert.assertEquals(started + 20, buffer.get(persistedSession.getId(), "1").getLastSessionRefresh());
+        Assert.assertFalse(buffer.get(persistedSession.getId(), "1").isDataChanged());
+
+        // Updates are kept if the transaction of the flush fails
+        buffer.flush(session);
+        Assert.assertEquals(0, buffer.size());
+        session.getTransaction().rollback();
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertEquals(started + 20, buffer.get(persistedSession.getId(), "1").getLastSessionRefresh());
+        session.close();
+        session = kc.startSession();
+        realm = session.realms().getRealm("test");
+
+        Assert.assertEquals(1, buffer.flush(session));
+
+        resetSession();
+
+        Assert.assertEquals(started + 20, loadPersistedSessionsPaginated(true, 10, 1, 1).get(0).getLastSessionRefresh());
+
+        // Unknown session isn't buffered
+        em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+        writeBehind = new JpaUserSessionPersisterProvider(session, em, buffer);
+        try {
+            writeBehind.updateUserSession(session.sessions().getUserSession(realm, origSessions[0].getId()), true);
+            Assert.fail("Expected ModelException");
+        } catch (ModelException expected) {
+        }
+        Assert.assertEquals(0, buffer.size());
+    }
+
     @Test
     public void testOnRealmRemoved() {
         RealmModel fooRealm = session.realms().createRealm("foo", "foo");
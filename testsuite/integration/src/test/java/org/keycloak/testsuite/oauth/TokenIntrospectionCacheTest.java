@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.testsuite.oauth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.models.Constants;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.protocol.oidc.DefaultTokenIntrospectionCacheProviderFactory;
+import org.keycloak.protocol.oidc.TokenIntrospectionCacheProvider;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.testsuite.OAuthClient;
+import org.keycloak.testsuite.rule.KeycloakRule;
+import org.keycloak.testsuite.rule.WebResource;
+import org.keycloak.testsuite.rule.WebRule;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * Token introspection with the introspection cache enabled
+ */
+public class TokenIntrospectionCacheTest {
+
+    static {
+        System.setProperty("keycloak.tokenIntrospection.cacheTtl", "60");
+    }
+
+    @ClassRule
+    public static KeycloakRule keycloakRule = new KeycloakRule();
+
+    @Rule
+    public WebRule webRule = new WebRule(this);
+
+    @WebResource
+    protected OAuthClient oauth;
+
+    @AfterClass
+    public static void after() {
+        System.clearProperty("keycloak.tokenIntrospection.cacheTtl");
+    }
+
+    @Test
+    public void cachedUntilLogout() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+        int size = cacheSize();
+
+        Assert.assertTrue(isActive(tokenResponse.getAccessToken()));
+        Assert.assertEquals(size + 1, cacheSize());
+        Assert.assertTrue(isActive(tokenResponse.getAccessToken()));
+        Assert.assertEquals(size + 1, cacheSize());
+
+        oauth.doLogout(tokenResponse.getRefreshToken(), "password");
+
+        Assert.assertFalse(isActive(tokenResponse.getAccessToken()));
+    }
+
+    @Test
+    public void invalidatedOnUserSessionRemoval() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+        Assert.assertTrue(isActive(tokenResponse.getAccessToken()));
+
+        keycloakRule.removeUserSession(oauth.verifyToken(tokenResponse.getAccessToken()).getSessionState());
+
+        Assert.assertFalse(isActive(tokenResponse.getAccessToken()));
+    }
+
+    @Test
+    public void invalidatedOnUserDisabled() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+        Assert.assertTrue(isActive(tokenResponse.getAccessToken()));
+
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", Constants.ADMIN_CLI_CLIENT_ID);
+        UserResource user = keycloak.realm("test").users().get(oauth.verifyToken(tokenResponse.getAccessToken()).getSubject());
+        UserRepresentation rep = user.toRepresentation();
+        rep.setEnabled(false);
+        user.update(rep);
+        try {
+            Assert.assertFalse(isActive(tokenResponse.getAccessToken()));
+        } finally {
+            rep.setEnabled(true);
+            user.update(rep);
+        }
+    }
+
+    private OAuthClient.AccessTokenResponse login() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+        return oauth.doAccessTokenRequest(code, "password");
+    }
+
+    private boolean isActive(String token) throws Exception {
+        String response = oauth.introspectAccessTokenWithClientCredential("test-app", "password", token);
+        JsonNode node = JsonSerialization.readValue(response, JsonNode.class);
+        return node.get("active").asBoolean();
+    }
+
+    private int cacheSize() {
+        KeycloakSession session = keycloakRule.startSession();
+        try {
+            DefaultTokenIntrospectionCacheProviderFactory factory = (DefaultTokenIntrospectionCacheProviderFactory) session.getKeycloakSessionFactory()
+                    .getProviderFactory(TokenIntrospectionCacheProvider.class);
+            return factory.getCache().size();
+        } finally {
+            keycloakRule.stopSession(session, false);
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.testsuite.oauth;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.models.Constants;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.protocol.oidc.DefaultUserInfoCacheProviderFactory;
+import org.keycloak.protocol.oidc.OIDCLoginProtocolService;
+import org.keycloak.protocol.oidc.UserInfoCacheProvider;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.UserInfo;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.testsuite.OAuthClient;
+import org.keycloak.testsuite.rule.KeycloakRule;
+import org.keycloak.testsuite.rule.WebResource;
+import org.keycloak.testsuite.rule.WebRule;
+import org.keycloak.util.JsonSerialization;
+
+import javax.ws.rs.core.UriBuilder;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Userinfo requests with the userinfo cache enabled
+ */
+public class UserInfoCacheTest {
+
+    static {
+        System.setProperty("keycloak.userInfo.cacheTtl", "60");
+    }
+
+    @ClassRule
+    public static KeycloakRule keycloakRule = new KeycloakRule();
+
+    @Rule
+    public WebRule webRule = new WebRule(this);
+
+    @WebResource
+    protected OAuthClient oauth;
+
+    @AfterClass
+    public static void after() {
+        System.clearProperty("keycloak.userInfo.cacheTtl");
+    }
+
+    @Test
+    public void cachedUntilLogout() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+
+        Assert.assertEquals(200, getUserInfo(tokenResponse.getAccessToken()).getStatusLine().getStatusCode());
+        Assert.assertTrue(isCached(tokenResponse.getAccessToken()));
+        Assert.assertEquals(200, getUserInfo(tokenResponse.getAccessToken()).getStatusLine().getStatusCode());
+
+        oauth.doLogout(tokenResponse.getRefreshToken(), "password");
+
+        Assert.assertFalse(isCached(tokenResponse.getAccessToken()));
+        Assert.assertEquals(403, getUserInfo(tokenResponse.getAccessToken()).getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void invalidatedOnUserUpdate() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+        Assert.assertEquals("Brady", readUserInfo(tokenResponse.getAccessToken()).getFamilyName());
+        Assert.assertTrue(isCached(tokenResponse.getAccessToken()));
+
+        UserResource user = userResource(tokenResponse.getAccessToken());
+        UserRepresentation rep = user.toRepresentation();
+        rep.setLastName("Updated");
+        user.update(rep);
+        try {
+            Assert.assertFalse(isCached(tokenResponse.getAccessToken()));
+            Assert.assertEquals("Updated", readUserInfo(tokenResponse.getAccessToken()).getFamilyName());
+        } finally {
+            rep.setLastName("Brady");
+            user.update(rep);
+        }
+    }
+
+    @Test
+    public void invalidatedOnRoleMappingChange() throws Exception {
+        OAuthClient.AccessTokenResponse tokenResponse = login();
+        readUserInfo(tokenResponse.getAccessToken());
+        Assert.assertTrue(isCached(tokenResponse.getAccessToken()));
+
+        UserResource user = userResource(tokenResponse.getAccessToken());
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", Constants.ADMIN_CLI_CLIENT_ID);
+        List<RoleRepresentation> roles = Collections.singletonList(keycloak.realm("test").roles().get("admin").toRepresentation());
+        user.roles().realmLevel().add(roles);
+        try {
+            Assert.assertFalse(isCached(tokenResponse.getAccessToken()));
+        } finally {
+            user.roles().realmLevel().remove(roles);
+        }
+    }
+
+    private OAuthClient.AccessTokenResponse login() throws Exception {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+        return oauth.doAccessTokenRequest(code, "password");
+    }
+
+    private UserResource userResource(String accessToken) {
+        Keycloak keycloak = Keycloak.getInstance("http://localhost:8081/auth", "master", "admin", "admin", Constants.ADMIN_CLI_CLIENT_ID);
+        return keycloak.realm("test").users().get(oauth.verifyToken(accessToken).getSubject());
+    }
+
+    private HttpResponse getUserInfo(String accessToken) throws Exception {
+        CloseableHttpClient client = new DefaultHttpClient();
+        try {
+            HttpResponse response = client.execute(userInfoRequest(accessToken));
+            response.getEntity().getContent().close();
+            return response;
+        } finally {
+            oauth.closeClient(client);
+        }
+    }
+
+    private UserInfo readUserInfo(String accessToken) throws Exception {
+        CloseableHttpClient client = new DefaultHttpClient();
+        try {
+            HttpResponse response = client.execute(userInfoRequest(accessToken));
+            Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+            return JsonSerialization.readValue(response.getEntity().getContent(), UserInfo.class);
+        } finally {
+            oauth.closeClient(client);
+        }
+    }
+
+    private HttpGet userInfoRequest(String accessToken) {
+        String url = OIDCLoginProtocolService.tokenServiceBaseUrl(UriBuilder.fromUri("http://localhost:8081/auth"))
+                .path(OIDCLoginProtocolService.class, "issueUserInfo").build("test").toString();
+        HttpGet get = new HttpGet(url);
+        get.setHeader("Authorization", "Bearer " + accessToken);
+        return get;
+    }
+
+    private boolean isCached(String accessToken) {
+        AccessToken token = oauth.verifyToken(accessToken);
+        KeycloakSession session = keycloakRule.startSession();
+        try {
+            RealmModel realm = session.realms().getRealmByName("test");
+            DefaultUserInfoCacheProviderFactory factory = (DefaultUserInfoCacheProviderFactory) session.getKeycloakSessionFactory()
+                    .getProviderFactory(UserInfoCacheProvider.class);
+            return factory.getCache().get(realm, token.getSessionState(), token.getIssuedFor()) != null;
+        } finally {
+            keycloakRule.stopSession(session, false);
+        }
+    }
+
+}
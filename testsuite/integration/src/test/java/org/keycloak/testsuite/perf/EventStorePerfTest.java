@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.testsuite.perf;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventStoreProvider;
+import org.keycloak.events.EventType;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.testsuite.rule.KeycloakRule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of the configured event store. Run with -Dkeycloak.eventsStore.provider=mongo to measure the
+ * Mongo store.
+ */
+public class EventStorePerfTest {
+
+    private static final String REALM_ID = "perf-realm";
+
+    private static final int EVENTS_PER_TRANSACTION = 100;
+
+    @ClassRule
+    public static KeycloakRule kc = new KeycloakRule();
+
+    private final AtomicLong count = new AtomicLong();
+
+    @After
+    public void after() {
+        KeycloakSession session = kc.startSession();
+        session.getProvider(EventStoreProvider.class).clear(REALM_ID);
+        kc.stopSession(session, true);
+    }
+
+    @Test
+    public void singleThread() {
+        long start = System.currentTimeMillis();
+        store(2000);
+        long end = System.currentTimeMillis() - start;
+        System.out.println(count.toString() + " took: " + end);
+        System.out.println(count.floatValue() / ((float) end) * 1000 + " events/s");
+
+        assertStored(count.get());
+    }
+
+    @Test
+    public void multiThread() throws Exception {
+        int num_threads = 10;
+        Thread[] threads = new Thread[num_threads];
+        for (int i = 0; i < num_threads; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    store(500);
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < num_threads; i++) {
+            threads[i].start();
+        }
+        for (int i = 0; i < num_threads; i++) {
+            threads[i].join();
+        }
+        long end = System.currentTimeMillis() - start;
+        System.out.println(count.toString() + " took: " + end);
+        System.out.println(count.floatValue() / ((float) end) * 1000 + " events/s");
+
+        assertStored(count.get());
+    }
+
+    private void store(int events) {
+        for (int i = 0; i < events; i += EVENTS_PER_TRANSACTION) {
+            KeycloakSession session = kc.startSession();
+            EventStoreProvider eventStore = session.getProvider(EventStoreProvider.class);
+            for (int j = 0; j < EVENTS_PER_TRANSACTION; j++) {
+                eventStore.onEvent(create("user-" + (j % 10)));
+            }
+            kc.stopSession(session, true);
+            count.addAndGet(EVENTS_PER_TRANSACTION);
+        }
+    }
+
+    private void assertStored(long expected) {
+        KeycloakSession session = kc.startSession();
+        try {
+            long start = System.currentTimeMillis();
+            int found = session.getProvider(EventStoreProvider.class).createQuery().realm(REALM_ID).user("user-1").maxResults((int) expected).getResultList().size();
+            System.out.println("query took: " + (System.currentTimeMillis() - start));
+
+            // Mongo writes events unacknowledged, so not all events may be visible yet
+            Assert.assertTrue(found <= expected / 10);
+        } finally {
+            kc.stopSession(session, false);
+        }
+    }
+
+    private Event create(String userId) {
+        Event e = new Event();
+        e.setTime(System.currentTimeMillis());
+        e.setType(EventType.LOGIN);
+        e.setRealmId(REALM_ID);
+        e.setClientId("perf-client");
+        e.setUserId(userId);
+        e.setSessionId("perf-session");
+        e.setIpAddress("127.0.0.1");
+
+        Map<String, String> details = new HashMap<String, String>();
+        details.put("auth_method", "openid-connect");
+        details.put("username", userId);
+        e.setDetails(details);
+
+        return e;
+    }
+
+}
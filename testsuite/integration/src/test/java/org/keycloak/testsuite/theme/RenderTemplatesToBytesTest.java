@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.keycloak.testsuite.theme;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.testsuite.pages.AccountUpdateProfilePage;
+import org.keycloak.testsuite.pages.LoginPage;
+import org.keycloak.testsuite.rule.KeycloakRule;
+import org.keycloak.testsuite.rule.WebResource;
+import org.keycloak.testsuite.rule.WebRule;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Login and account pages rendered with the renderTemplatesToBytes theme option
+ */
+public class RenderTemplatesToBytesTest {
+
+    static {
+        System.setProperty("keycloak.theme.renderTemplatesToBytes", "true");
+    }
+
+    @ClassRule
+    public static KeycloakRule keycloakRule = new KeycloakRule();
+
+    @Rule
+    public WebRule webRule = new WebRule(this);
+
+    @WebResource
+    protected WebDriver driver;
+
+    @WebResource
+    protected LoginPage loginPage;
+
+    @WebResource
+    protected AccountUpdateProfilePage profilePage;
+
+    @AfterClass
+    public static void after() {
+        System.clearProperty("keycloak.theme.renderTemplatesToBytes");
+    }
+
+    @Test
+    public void loginPage() {
+        loginPage.open();
+        loginPage.openLanguage("Deutsch");
+        loginPage.login("test-user@localhost", "invalid");
+
+        Assert.assertTrue(loginPage.isCurrent());
+        Assert.assertEquals("Ung\u00FCltiger Benutzername oder Passwort.", loginPage.getError());
+    }
+
+    @Test
+    public void accountPage() {
+        profilePage.open();
+        loginPage.login("test-user@localhost", "password");
+
+        Assert.assertTrue(profilePage.isCurrent());
+        Assert.assertEquals("test-user@localhost", profilePage.getUsername());
+    }
+
+}
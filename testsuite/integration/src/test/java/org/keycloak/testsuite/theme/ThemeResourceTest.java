@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.keycloak.testsuite.theme;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.keycloak.adapters.HttpClientBuilder;
+import org.keycloak.common.Version;
+import org.keycloak.common.util.StreamUtil;
+import org.keycloak.testsuite.rule.KeycloakRule;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+public class ThemeResourceTest {
+
+    private static final String CSS_URL = "http://localhost:8081/auth/resources/" + Version.RESOURCES_VERSION + "/login/keycloak/css/login.css";
+
+    @ClassRule
+    public static KeycloakRule keycloakRule = new KeycloakRule();
+
+    private static HttpClient client;
+
+    @BeforeClass
+    public static void before() {
+        client = new HttpClientBuilder().build();
+    }
+
+    @AfterClass
+    public static void after() {
+        client.getConnectionManager().shutdown();
+    }
+
+    @Test
+    public void etag() throws Exception {
+        HttpResponse response = get(null, null);
+        Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("text/css", response.getFirstHeader("Content-Type").getValue());
+        Assert.assertNull(response.getFirstHeader("Content-Encoding"));
+        String etag = response.getFirstHeader("ETag").getValue();
+        String css = EntityUtils.toString(response.getEntity());
+        Assert.assertTrue(css.contains("login-pf"));
+
+        response = get(etag, null);
+        Assert.assertEquals(304, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(etag, response.getFirstHeader("ETag").getValue());
+        Assert.assertNull(response.getEntity());
+
+        response = get("\"other\"", null);
+        Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(css, EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        HttpResponse response = get(null, null);
+        String etag = response.getFirstHeader("ETag").getValue();
+        String css = EntityUtils.toString(response.getEntity());
+
+        response = get(null, "deflate, gzip");
+        Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("gzip", response.getFirstHeader("Content-Encoding").getValue());
+        Assert.assertEquals("Accept-Encoding", response.getFirstHeader("Vary").getValue());
+        String gzipEtag = response.getFirstHeader("ETag").getValue();
+        Assert.assertNotEquals(etag, gzipEtag);
+
+        byte[] compressed = EntityUtils.toByteArray(response.getEntity());
+        Assert.assertTrue(compressed.length < css.length());
+        Assert.assertEquals(css, StreamUtil.readString(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+        response = get(gzipEtag, "gzip");
+        Assert.assertEquals(304, response.getStatusLine().getStatusCode());
+
+        response = get(null, "gzip;q=0");
+        Assert.assertNull(response.getFirstHeader("Content-Encoding"));
+        EntityUtils.consume(response.getEntity());
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        HttpResponse response = client.execute(new HttpGet(CSS_URL.replace("login.css", "missing.css")));
+        Assert.assertEquals(404, response.getStatusLine().getStatusCode());
+        EntityUtils.consume(response.getEntity());
+    }
+
+    private HttpResponse get(String ifNoneMatch, String acceptEncoding) throws Exception {
+        HttpGet get = new HttpGet(CSS_URL);
+        if (ifNoneMatch != null) {
+            get.setHeader("If-None-Match", ifNoneMatch);
+        }
+        if (acceptEncoding != null) {
+            get.setHeader("Accept-Encoding", acceptEncoding);
+        }
+        return client.execute(get);
+    }
+
+}